@@ -0,0 +1,263 @@
+package org.rapla.plugin.export2excel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.rapla.entities.domain.Allocatable;
+import org.rapla.entities.domain.Appointment;
+import org.rapla.entities.domain.AppointmentBlock;
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.dynamictype.DynamicType;
+
+import semesterTimeTable.excel.LectureTable;
+
+/**
+ * Extractor of the lectures directly from the appointment blocks of the
+ * calendar. The dates, the name of the reservation and the allocatables of the
+ * appointment are read without formatting them as table cells.
+ *
+ * The allocatables, which are no persons, are rooms or classes. They are
+ * classified by their dynamic type (see {@link RoomTypeClassifier}), so a room
+ * is not taken for a class, because its name looks like a class name.
+ *
+ * The blocks are read into rows at first (see {@link BlockRow}), which contain
+ * the dates and names of a block, and the lectures are built from the rows. So
+ * the rows can be kept and the lectures can be built again without reading the
+ * blocks (see {@link LectureSnapshotCache}).
+ */
+public class AppointmentExtractor {
+
+	/** Line break character */
+	private static final String LINE_BREAK = "\n";
+
+	/** Cell break character */
+	private static final String CELL_BREAK = ";";
+
+	/** The locale of the names */
+	private final Locale locale;
+
+	/** The classifier of the dynamic types of the rooms and classes */
+	private final RoomTypeClassifier roomTypeClassifier;
+
+	/**
+	 * Creates an extractor, which reads the names in the given locale.
+	 * 
+	 * @param locale             The locale of the names
+	 * @param roomTypeClassifier The classifier of the dynamic types of the rooms
+	 *                           and classes
+	 */
+	public AppointmentExtractor(Locale locale, RoomTypeClassifier roomTypeClassifier) {
+		this.locale = locale;
+		this.roomTypeClassifier = roomTypeClassifier;
+	}
+
+	/**
+	 * Returns the locale of the names.
+	 * 
+	 * @return The locale of the names
+	 */
+	public Locale getLocale() {
+		return this.locale;
+	}
+
+	/**
+	 * Extracts the lectures and the counts of the class names of the given
+	 * appointment blocks.
+	 * 
+	 * @param blocks   The appointment blocks of the calendar
+	 * @param timeZone The time zone of the lectures
+	 * @return The lectures and the counts of the class names
+	 */
+	public LectureExtraction extract(List<AppointmentBlock> blocks, TimeZone timeZone) {
+		return this.buildExtraction(this.readBlocks(blocks, null, null), timeZone);
+	}
+
+	/**
+	 * Reads the rows of the given appointment blocks. The previous rows of each
+	 * reservation, which was not touched since they were read, are reused for the
+	 * blocks of the reservation, so only the blocks of the touched and the new
+	 * reservations are read.
+	 * 
+	 * @param blocks              The appointment blocks of the calendar
+	 * @param previousRows        The rows of a previous read of the calendar or null
+	 * @param touchedReservations The reservations, which were changed or removed
+	 *                            since the previous read, or null
+	 * @return The rows of the blocks in the order of the blocks
+	 */
+	public List<BlockRow> readBlocks(List<AppointmentBlock> blocks, List<BlockRow> previousRows,
+			Set<Reservation> touchedReservations) {
+		Map<Reservation, Deque<BlockRow>> reusableRows = new HashMap<Reservation, Deque<BlockRow>>();
+		if (previousRows != null) {
+			for (BlockRow row : previousRows) {
+				if (touchedReservations == null || !touchedReservations.contains(row.reservation)) {
+					Deque<BlockRow> rowsOfReservation = reusableRows.get(row.reservation);
+					if (rowsOfReservation == null) {
+						rowsOfReservation = new ArrayDeque<BlockRow>();
+						reusableRows.put(row.reservation, rowsOfReservation);
+					}
+					rowsOfReservation.add(row);
+				}
+			}
+		}
+
+		Map<Reservation, String> reservationNames = new HashMap<Reservation, String>();
+		Map<Allocatable, String> allocatableNames = new HashMap<Allocatable, String>();
+		List<BlockRow> rows = new ArrayList<BlockRow>(blocks.size());
+		for (AppointmentBlock block : blocks) {
+			Appointment appointment = block.getAppointment();
+			Reservation reservation = appointment.getReservation();
+			Deque<BlockRow> rowsOfReservation = reusableRows.get(reservation);
+			BlockRow row = rowsOfReservation == null ? null : rowsOfReservation.poll();
+			if (row != null && (row.start != block.getStart() || row.end != block.getEnd())) {
+				// The blocks of the reservation do not match its previous rows, so they
+				// are read again
+				reusableRows.remove(reservation);
+				row = null;
+			}
+			if (row == null) {
+				row = this.readBlock(block, appointment, reservation, reservationNames, allocatableNames);
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * Builds the lectures and the counts of the class names of the given rows. The
+	 * rows are not changed, so they can be used for building the lectures again.
+	 * 
+	 * @param rows     The rows of the appointment blocks
+	 * @param timeZone The time zone of the lectures
+	 * @return The lectures and the counts of the class names
+	 */
+	public LectureExtraction buildExtraction(List<BlockRow> rows, TimeZone timeZone) {
+		LectureTable lectures = new LectureTable(timeZone);
+		lectures.ensureCapacity(rows.size());
+		Map<String, Integer> classNameCounts = new HashMap<String, Integer>();
+		List<String> rooms = new ArrayList<String>();
+		List<String> lecturers = new ArrayList<String>();
+		for (BlockRow row : rows) {
+			rooms.clear();
+			lecturers.clear();
+			for (int index = 0; index < row.allocatables.length; index++) {
+				String name = row.allocatableNames[index];
+				DynamicType type = row.types[index];
+				if (type == null) {
+					lecturers.add(name);
+				} else if (this.roomTypeClassifier.isRoomType(type)) {
+					rooms.add(name);
+				} else {
+					Integer count = classNameCounts.get(name);
+					classNameCounts.put(name, count == null ? 1 : count + 1);
+				}
+			}
+			lectures.add(row.name, row.name, LectureTable.toEpochMinute(row.start),
+					LectureTable.toEpochMinute(row.end), rooms.toArray(new String[rooms.size()]),
+					lecturers.toArray(new String[lecturers.size()]));
+		}
+		return new LectureExtraction(lectures, classNameCounts);
+	}
+
+	/**
+	 * Reads the row of the given appointment block. The names of the reservations
+	 * and allocatables are looked up once for each entity.
+	 * 
+	 * @param block            The appointment block
+	 * @param appointment      The appointment of the block
+	 * @param reservation      The reservation of the appointment
+	 * @param reservationNames The names of the reservations, which were read
+	 * @param allocatableNames The names of the allocatables, which were read
+	 * @return The row of the block
+	 */
+	private BlockRow readBlock(AppointmentBlock block, Appointment appointment, Reservation reservation,
+			Map<Reservation, String> reservationNames, Map<Allocatable, String> allocatableNames) {
+		if (!reservationNames.containsKey(reservation)) {
+			String name = reservation.getName(this.locale);
+			reservationNames.put(reservation, name == null ? null : AppointmentExtractor.escape(name));
+		}
+		Allocatable[] allocatables = reservation.getAllocatablesFor(appointment);
+		String[] names = new String[allocatables.length];
+		DynamicType[] types = new DynamicType[allocatables.length];
+		for (int index = 0; index < allocatables.length; index++) {
+			Allocatable allocatable = allocatables[index];
+			String name = allocatableNames.get(allocatable);
+			if (name == null) {
+				name = AppointmentExtractor.escape(allocatable.getName(this.locale));
+				allocatableNames.put(allocatable, name);
+			}
+			names[index] = name;
+			types[index] = allocatable.isPerson() ? null : allocatable.getClassification().getType();
+		}
+		return new BlockRow(reservation, reservationNames.get(reservation), block.getStart(), block.getEnd(),
+				allocatables, names, types);
+	}
+
+	/**
+	 * Returns the plain string of a name without line breaks and cell breaks.
+	 * 
+	 * @param name The name
+	 * @return The plain string of the name
+	 */
+	private static String escape(String name) {
+		return name.replace(AppointmentExtractor.LINE_BREAK, " ").replace(AppointmentExtractor.CELL_BREAK, " ");
+	}
+
+	/**
+	 * Row of an appointment block with the dates, the name of the reservation and
+	 * the names and types of the allocatables of the appointment. A row is not
+	 * changed after it was read.
+	 */
+	public static class BlockRow {
+
+		/** The reservation of the block */
+		private final Reservation reservation;
+
+		/** The escaped name of the reservation */
+		private final String name;
+
+		/** The start of the block in milliseconds */
+		private final long start;
+
+		/** The end of the block in milliseconds */
+		private final long end;
+
+		/** The allocatables of the appointment of the block */
+		private final Allocatable[] allocatables;
+
+		/** The escaped names of the allocatables */
+		private final String[] allocatableNames;
+
+		/** The dynamic types of the allocatables or null for persons */
+		private final DynamicType[] types;
+
+		/**
+		 * Creates the row of an appointment block.
+		 * 
+		 * @param reservation      The reservation of the block
+		 * @param name             The escaped name of the reservation
+		 * @param start            The start of the block in milliseconds
+		 * @param end              The end of the block in milliseconds
+		 * @param allocatables     The allocatables of the appointment of the block
+		 * @param allocatableNames The escaped names of the allocatables
+		 * @param types            The dynamic types of the allocatables or null for
+		 *                         persons
+		 */
+		private BlockRow(Reservation reservation, String name, long start, long end, Allocatable[] allocatables,
+				String[] allocatableNames, DynamicType[] types) {
+			this.reservation = reservation;
+			this.name = name;
+			this.start = start;
+			this.end = end;
+			this.allocatables = allocatables;
+			this.allocatableNames = allocatableNames;
+			this.types = types;
+		}
+	}
+}
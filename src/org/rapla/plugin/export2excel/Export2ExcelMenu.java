@@ -6,64 +6,94 @@ import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collection;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.JMenuItem;
 import javax.swing.SwingUtilities;
 
-import org.rapla.entities.User;
-import org.rapla.entities.domain.AppointmentBlock;
+import org.rapla.facade.CalendarModel;
 import org.rapla.facade.CalendarSelectionModel;
+import org.rapla.framework.Configuration;
+import org.rapla.framework.Disposable;
 import org.rapla.framework.RaplaContext;
 import org.rapla.framework.RaplaContextException;
 import org.rapla.framework.RaplaException;
 import org.rapla.gui.RaplaGUIComponent;
 import org.rapla.gui.toolkit.DialogUI;
 import org.rapla.gui.toolkit.IdentifiableMenuEntry;
-import org.rapla.plugin.tableview.RaplaTableColumn;
-import org.rapla.plugin.tableview.TableViewExtensionPoints;
-import org.rapla.plugin.tableview.internal.TableConfig;
 
+import semesterTimeTable.excel.CompiledConfig;
+import semesterTimeTable.excel.ConfigWorkbook;
+import semesterTimeTable.excel.ExportPhase;
+import semesterTimeTable.excel.Holidays;
+import semesterTimeTable.excel.LectureTable;
 import semesterTimeTable.excel.LectureWorkbook;
-import semesterTimeTable.excel.Lecture;
+import semesterTimeTable.excel.ProgressListener;
 
 /**
  * Class representing the export to excel menu entry and its functionality.
  */
-public class Export2ExcelMenu extends RaplaGUIComponent implements IdentifiableMenuEntry, ActionListener {
+public class Export2ExcelMenu extends RaplaGUIComponent
+		implements IdentifiableMenuEntry, ActionListener, Disposable {
 
 	String id = "export_file_text";
 	JMenuItem item;
 
-	/** Line break character */
-	private static final String LINE_BREAK = "\n";
-
-	/** Cell break character */
-	private static final String CELL_BREAK = ";";
-
 	/** File extension for excel files */
 	private static final String FILE_EXTENSION = "xlsx";
 
+	/** Executor running the exports in the background one after another */
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Export2Excel");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Cache of the lectures, which were read for the calendar selections */
+	private final LectureSnapshotCache lectureCache = new LectureSnapshotCache();
+
+	/** Classifier of the dynamic types of the rooms and classes */
+	private final RoomTypeClassifier roomTypeClassifier;
+
 	/**
 	 * Creates the export menu for the export to excel plugin.
 	 * 
-	 * @param sm The rapla context
+	 * @param sm     The rapla context
+	 * @param config The configuration of the plugin
 	 */
-	public Export2ExcelMenu(RaplaContext sm) {
+	public Export2ExcelMenu(RaplaContext sm, Configuration config) {
 		super(sm);
+		String roomTypes = config.getAttribute(Export2ExcelPlugin.ROOM_TYPES, Export2ExcelPlugin.DEFAULT_ROOM_TYPES);
+		String classTypes = config.getAttribute(Export2ExcelPlugin.CLASS_TYPES,
+				Export2ExcelPlugin.DEFAULT_CLASS_TYPES);
+		this.roomTypeClassifier = new RoomTypeClassifier(Arrays.asList(roomTypes.trim().split("\\s*,\\s*")),
+				Arrays.asList(classTypes.trim().split("\\s*,\\s*")), getLogger());
 		setChildBundleName(Export2ExcelPlugin.RESOURCE_FILE);
 		this.item = new JMenuItem(getString(this.id));
 		this.item.setIcon(getIcon("icon.export"));
 		this.item.addActionListener(this);
+		getClientFacade().addModificationListener(this.lectureCache);
+		getClientFacade().addModificationListener(this.roomTypeClassifier);
+	}
+
+	/**
+	 * Removes the modification listeners of the menu from the client facade, so
+	 * the cached lectures are released, when the menu is no longer used.
+	 */
+	public void dispose() {
+		getClientFacade().removeModificationListener(this.lectureCache);
+		getClientFacade().removeModificationListener(this.roomTypeClassifier);
 	}
 
 	/**
@@ -101,20 +131,145 @@ public class Export2ExcelMenu extends RaplaGUIComponent implements IdentifiableM
 	 * Method implementing the actual exporting functionality. It is called by the
 	 * event handler for clicking on the export menu entry.
 	 * 
-	 * @param model The calendar selection model
-	 * @throws IOException           If saving or loading a workbook fails
+	 * The file dialog is opened at once. No appointment blocks are read on the
+	 * event dispatch thread, the most common class name for the default file name
+	 * is taken from the last lectures read for the calendar selection (see
+	 * {@link LectureSnapshotCache#getLastClassName(CalendarModel, AppointmentExtractor)}).
+	 * While the file dialog is open, the lectures of the quarter of the calendar
+	 * are read speculatively in the background (see
+	 * {@link #prefetch(CalendarSelectionModel, AppointmentExtractor)}). The export
+	 * itself runs in the background on a copy of the calendar selection model, so
+	 * the calendar can still be used. Its progress is shown in a progress monitor,
+	 * which can cancel the export between two phases. The export finished message
+	 * is shown on the event dispatch thread at the end.
+	 * 
 	 * @throws RaplaException
 	 * @throws RaplaContextException
 	 */
-	public void export() throws IOException, RaplaContextException, RaplaException {
-		CalendarSelectionModel preModel = getService(CalendarSelectionModel.class);
-		String mostCommonClassName = this.getMostCommonClassName(preModel);
+	public void export() throws RaplaContextException, RaplaException {
+		CalendarSelectionModel model = getService(CalendarSelectionModel.class).clone();
+		AppointmentExtractor extractor = new AppointmentExtractor(getRaplaLocale().getLocale(),
+				this.roomTypeClassifier);
+		CalendarSelectionModel prefetchModel = model.clone();
+		Future<Prefetch> prefetch = Export2ExcelMenu.EXECUTOR.submit(() -> this.prefetch(prefetchModel, extractor));
+		String mostCommonClassName = this.lectureCache.getLastClassName(model, extractor);
 		String filename = this.getDefaultFileName(mostCommonClassName);
 		String path = this.loadFile(filename);
 		if (path != null) {
-			LectureWorkbook lectureWorkbook = new LectureWorkbook(path);
+			ExportProgressMonitor progressMonitor = new ExportProgressMonitor(getMainComponent(),
+					getString("export_progress"), this.getPhaseNotes());
+			this.item.setEnabled(false);
+			Export2ExcelMenu.EXECUTOR.execute(() -> this.runExport(path, model, extractor, prefetch, progressMonitor));
+		} else {
+			prefetch.cancel(false);
+		}
+	}
+
+	/**
+	 * Does the work of an export, which does not depend on the workbook file, in
+	 * advance. The compiled template and the holiday calendar are loaded and the
+	 * lectures are read for the quarter, which a new workbook with the default
+	 * configuration would get. It is called in the background, while the file
+	 * dialog is open.
+	 * 
+	 * @param model     A copy of the calendar selection model for the prefetch
+	 * @param extractor The extractor of the lectures
+	 * @return The prefetched lectures with their quarter or null, if the calendar
+	 *         is in no quarter
+	 * @throws IOException           If the template or the configuration cannot be
+	 *                               loaded
+	 * @throws RaplaException
+	 * @throws RaplaContextException
+	 */
+	private Prefetch prefetch(CalendarSelectionModel model, AppointmentExtractor extractor)
+			throws IOException, RaplaContextException, RaplaException {
+		CompiledConfig config = new CompiledConfig(new ConfigWorkbook());
+
+		Calendar dateInQuarter = new GregorianCalendar();
+		dateInQuarter.setTime(model.getStartDate());
+		dateInQuarter.setTimeZone(getRaplaLocale().getTimeZone());
+		Calendar[] borderDates = LectureWorkbook.getQuarterBorderDates(dateInQuarter, config.getQuarterStartWeeks());
+		if (borderDates == null) {
+			LectureWorkbook.loadTemplate();
+			return null;
+		}
+		model.setStartDate(borderDates[0].getTime());
+		model.setEndDate(borderDates[1].getTime());
+		Prefetch prefetch = new Prefetch(borderDates[0], borderDates[1], this.extractLectures(extractor, model));
+
+		LectureWorkbook.loadTemplate();
+		Calendar quarterIncludedEndDate = (Calendar) borderDates[1].clone();
+		quarterIncludedEndDate.add(Calendar.DAY_OF_MONTH, -1);
+		Holidays.getHolidays(borderDates[0], quarterIncludedEndDate, config.getHolidayLocale());
+		return prefetch;
+	}
+
+	/**
+	 * Runs the export in the background and shows its result on the event
+	 * dispatch thread afterwards. A cancelled export shows no message.
+	 * The menu item is enabled again in any case, also after an error like an
+	 * {@link OutOfMemoryError}.
+	 * 
+	 * @param path            The path of the workbook file
+	 * @param model           The copy of the calendar selection model
+	 * @param extractor       The extractor of the lectures
+	 * @param prefetch        The speculative work started with the file dialog
+	 * @param progressMonitor The progress monitor of the export
+	 */
+	private void runExport(String path, CalendarSelectionModel model, AppointmentExtractor extractor,
+			Future<Prefetch> prefetch, ExportProgressMonitor progressMonitor) {
+		String errorLogging = null;
+		Exception exception = null;
+		try {
+			errorLogging = this.exportLectures(path, model, extractor, Export2ExcelMenu.getPrefetch(prefetch),
+					progressMonitor);
+		} catch (InterruptedIOException ex) {
+			// The export was cancelled, so the file was not changed
+		} catch (Exception ex) {
+			exception = ex;
+		} catch (Error ex) {
+			// The error is shown and thrown, the menu item is enabled again anyway
+			exception = new Exception(ex.toString(), ex);
+			throw ex;
+		} finally {
+			progressMonitor.close();
+			String finishedErrorLogging = errorLogging;
+			Exception finishedException = exception;
+			SwingUtilities.invokeLater(() -> {
+				this.item.setEnabled(true);
+				if (finishedException != null) {
+					showException(finishedException, getMainComponent());
+				} else if (finishedErrorLogging != null) {
+					this.exportFinished(getMainComponent(), finishedErrorLogging);
+				}
+			});
+		}
+	}
 
-			CalendarSelectionModel model = getService(CalendarSelectionModel.class);
+	/**
+	 * Exports the lectures of the quarter of the workbook file into the workbook
+	 * file. The start of each phase is reported to the given progress listener.
+	 * The prefetched lectures are used, if they were read for the same quarter.
+	 * 
+	 * @param path             The path of the workbook file
+	 * @param model            The copy of the calendar selection model
+	 * @param extractor        The extractor of the lectures
+	 * @param prefetch         The prefetched lectures or null
+	 * @param progressListener The progress listener of the export
+	 * @return The error logging of the export (empty string, if no errors
+	 *         occurred)
+	 * @throws InterruptedIOException If the export was cancelled
+	 * @throws IOException            If saving or loading a workbook fails
+	 * @throws RaplaException
+	 * @throws RaplaContextException
+	 */
+	private String exportLectures(String path, CalendarSelectionModel model, AppointmentExtractor extractor,
+			Prefetch prefetch, ProgressListener progressListener) throws IOException, RaplaContextException, RaplaException {
+		ExportPhase.LOAD_WORKBOOK.start(progressListener);
+		LectureWorkbook lectureWorkbook = new LectureWorkbook(path);
+		boolean saving = false;
+		try {
+			lectureWorkbook.setProgressListener(progressListener);
 
 			if (lectureWorkbook.getQuarterStartDate() == null || lectureWorkbook.getQuarterEndDate() == null) {
 				TimeZone timeZone = getRaplaLocale().getTimeZone();
@@ -125,17 +280,60 @@ public class Export2ExcelMenu extends RaplaGUIComponent implements IdentifiableM
 				lectureWorkbook.setBorderDatesWithDateInQuarter(dateInQuarter);
 			}
 
-			Date startDate = lectureWorkbook.getQuarterStartDate().getTime();
-			model.setStartDate(startDate);
-			Date endDate = lectureWorkbook.getQuarterEndDate().getTime();
-			model.setEndDate(endDate);
-
-			List<Lecture> lectures = this.getLecturesFromRaplaModel(model);
+			ExportPhase.READ_LECTURES.start(progressListener);
+			LectureTable lectures;
+			if (prefetch != null && prefetch.hasQuarter(lectureWorkbook.getQuarterStartDate(),
+					lectureWorkbook.getQuarterEndDate())) {
+				lectures = prefetch.extraction.getLectures();
+			} else {
+				Date startDate = lectureWorkbook.getQuarterStartDate().getTime();
+				model.setStartDate(startDate);
+				Date endDate = lectureWorkbook.getQuarterEndDate().getTime();
+				model.setEndDate(endDate);
+
+				lectures = this.extractLectures(extractor, model).getLectures();
+			}
+			getLogger().info("Read " + lectures.size() + " lectures, " + lectures.getDictionary());
 
 			lectureWorkbook.setLectures(lectures);
+			saving = true;
 			lectureWorkbook.saveToFile(path);
-			this.exportFinished(getMainComponent(), lectureWorkbook.getErrorOutput().getErrorOutput());
+		} finally {
+			if (!saving) {
+				lectureWorkbook.discard();
+			}
+		}
+		return lectureWorkbook.getErrorOutput().getErrorOutput();
+	}
+
+	/**
+	 * Returns the result of the speculative work. The speculative work has
+	 * already finished, because it was submitted to the executor before the
+	 * export. If it failed, the export reads the lectures itself.
+	 * 
+	 * @param prefetch The speculative work
+	 * @return The prefetched lectures or null
+	 * @throws InterruptedException If the thread was interrupted
+	 */
+	private static Prefetch getPrefetch(Future<Prefetch> prefetch) throws InterruptedException {
+		try {
+			return prefetch.get();
+		} catch (ExecutionException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the notes of the progress monitor for the phases of the export.
+	 * 
+	 * @return The notes for the phases
+	 */
+	private Map<ExportPhase, String> getPhaseNotes() {
+		Map<ExportPhase, String> notes = new EnumMap<ExportPhase, String>(ExportPhase.class);
+		for (ExportPhase phase : ExportPhase.values()) {
+			notes.put(phase, getString("export_phase_" + phase.name().toLowerCase()));
 		}
+		return notes;
 	}
 
 	/**
@@ -191,16 +389,6 @@ public class Export2ExcelMenu extends RaplaGUIComponent implements IdentifiableM
 		return path;
 	}
 
-	/**
-	 * Returns the plain string of a cell without line breaks and cell breaks.
-	 * 
-	 * @param cell
-	 * @return The plain string of a cell
-	 */
-	private String escape(Object cell) {
-		return cell.toString().replace(LINE_BREAK, " ").replace(CELL_BREAK, " ");
-	}
-
 	/**
 	 * Returns the full path of a file dialog.
 	 * 
@@ -227,169 +415,60 @@ public class Export2ExcelMenu extends RaplaGUIComponent implements IdentifiableM
 	}
 
 	/**
-	 * Extracts a collection of rapla table column objects from the given calendar
-	 * selection model.
-	 * 
-	 * @param model The calendar selection model
-	 * @return A collection of rapla table column objects
-	 * @throws RaplaContextException
-	 * @throws RaplaException
-	 */
-	private Collection<? extends RaplaTableColumn<?>> getColumnsFromModel(CalendarSelectionModel model)
-			throws RaplaContextException, RaplaException {
-		Collection<? extends RaplaTableColumn<?>> columns;
-		User user = model.getUser();
-		columns = TableConfig.loadColumns(getContainer(), "appointments",
-				TableViewExtensionPoints.APPOINTMENT_TABLE_COLUMN, user);
-		return columns;
-	}
-
-	/**
-	 * Extracts a list of raw lecture objects from the given calendar selection
-	 * model.
-	 * 
-	 * @param model The calendar selection model
-	 * @return A list of raw lecture objects
-	 * @throws RaplaException
-	 */
-	private List<Object> getObjectsFromModel(CalendarSelectionModel model) throws RaplaException {
-		final List<AppointmentBlock> blocks = model.getBlocks();
-		List<Object> objects = new ArrayList<Object>();
-		objects.addAll(blocks);
-		return objects;
-	}
-
-	/**
-	 * Extracts a list of lectures from the given calendar selection model.
+	 * Extracts the lectures and the class names of the appointment blocks of the
+	 * given calendar selection model. The lectures are built from the cached
+	 * snapshot of the selection, if the reservations were not modified since, so
+	 * repeated exports of the same quarter do not read the blocks again.
 	 * 
-	 * @param model The calendar selection model
-	 * @return A list of lectures
-	 * @throws RaplaContextException
+	 * @param extractor The extractor of the lectures
+	 * @param model     The calendar selection model
+	 * @return The lectures and the counts of the class names
 	 * @throws RaplaException
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private List<Lecture> getLecturesFromRaplaModel(CalendarSelectionModel model)
-			throws RaplaContextException, RaplaException {
-		Collection<? extends RaplaTableColumn<?>> columns = this.getColumnsFromModel(model);
-		List<Object> objects = this.getObjectsFromModel(model);
-
-		TimeZone timeZone = getRaplaLocale().getTimeZone();
-		List<Lecture> lectures = new ArrayList<Lecture>();
-		for (Object row : objects) {
-			String lectureName = null;
-			Calendar lectureStartDate = null;
-			Calendar lectureEndDate = null;
-			String[] lectureResources = null;
-			String[] lectureLecturers = null;
-
-			for (RaplaTableColumn column : columns) {
-				Object value = column.getValue(row);
-				Class columnClass = column.getColumnClass();
-				String columnName = column.getColumnName();
-				boolean isDate = columnClass.isAssignableFrom(java.util.Date.class);
-
-				if (value != null) {
-					if (columnName == getString("name")) {
-						lectureName = escape(value);
-					} else if (columnName == getString("start_date") && isDate) {
-						lectureStartDate = new GregorianCalendar();
-						lectureStartDate.setTime((Date) value);
-						lectureStartDate.setTimeZone(timeZone);
-					} else if (columnName == getString("end_date") && isDate) {
-						lectureEndDate = new GregorianCalendar();
-						lectureEndDate.setTime((Date) value);
-						lectureEndDate.setTimeZone(timeZone);
-					} else if (columnName == getString("resources")) {
-						String[] resources = escape(value).split(", ");
-						ArrayList<String> rooms = new ArrayList<String>();
-						for (String resource : resources) {
-							if (Export2ExcelMenu.resourceIsRoom(resource)) {
-								rooms.add(resource);
-							}
-						}
-						lectureResources = new String[rooms.size()];
-						lectureResources = rooms.toArray(lectureResources);
-
-					} else if (columnName == getString("persons")) {
-						lectureLecturers = escape(value).split(", ");
-					}
-				}
-			}
-
-			Lecture lecture = new Lecture(lectureName, lectureStartDate, lectureEndDate, lectureResources,
-					lectureLecturers);
-			lectures.add(lecture);
-		}
-
-		return lectures;
+	private LectureExtraction extractLectures(AppointmentExtractor extractor, CalendarSelectionModel model)
+			throws RaplaException {
+		return this.lectureCache.getExtraction(model, extractor, getRaplaLocale().getTimeZone());
 	}
 
 	/**
-	 * Extracts the most common class name from the given calendar selection model.
-	 * 
-	 * The class names are all resources except rooms.
-	 * 
-	 * @param model The calendar selection model
-	 * @return The most common class name
-	 * @throws RaplaContextException
-	 * @throws RaplaException
+	 * Lectures, which were read speculatively for a quarter before the workbook
+	 * file was chosen.
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private String getMostCommonClassName(CalendarSelectionModel model) throws RaplaContextException, RaplaException {
-		Collection<? extends RaplaTableColumn<?>> columns = this.getColumnsFromModel(model);
-		List<Object> objects = this.getObjectsFromModel(model);
-
-		Map<String, Integer> classNames = new HashMap<String, Integer>();
-
-		for (Object row : objects) {
-			for (RaplaTableColumn column : columns) {
-				Object value = column.getValue(row);
-				String columnName = column.getColumnName();
-
-				if (columnName == getString("resources") && value != null) {
-					String[] resources = this.escape(value).split(", ");
-					for (String resource : resources) {
-						if (!Export2ExcelMenu.resourceIsRoom(resource)) {
-							resource = resource.replaceAll(" \\(.*\\)", "");
-							int count = 0;
-							if (classNames.containsKey(resource)) {
-								count = classNames.get(resource);
-							}
-							count++;
-							classNames.put(resource, count);
-						}
-					}
-
-				}
-			}
+	private static class Prefetch {
+
+		/** The start date of the quarter */
+		private final Calendar quarterStartDate;
+
+		/** The excluded end date of the quarter */
+		private final Calendar quarterEndDate;
+
+		/** The lectures and the counts of the class names of the quarter */
+		private final LectureExtraction extraction;
+
+		/**
+		 * Creates the prefetched lectures of the given quarter.
+		 * 
+		 * @param quarterStartDate The start date of the quarter
+		 * @param quarterEndDate   The excluded end date of the quarter
+		 * @param extraction       The lectures and the counts of the class names of
+		 *                         the quarter
+		 */
+		private Prefetch(Calendar quarterStartDate, Calendar quarterEndDate, LectureExtraction extraction) {
+			this.quarterStartDate = quarterStartDate;
+			this.quarterEndDate = quarterEndDate;
+			this.extraction = extraction;
 		}
-		return getHighestCountKey(classNames);
-	}
 
-	/**
-	 * Checks if the given resource name matches the regular expression for a room.
-	 * If the name does NOT contains 3 upper case letters followed by two digits.
-	 * 
-	 * @param resourceName The name to check if it is a room name
-	 * @return True if the given name is a room name, otherwise false.
-	 */
-	public static boolean resourceIsRoom(String resourceName) {
-		return !resourceName.matches(".*\\p{Upper}{3}\\d{2}.*");
-	}
-
-	/**
-	 * Returns the key with the highest value number in the given map.
-	 * 
-	 * @param map The map for searching the highest number
-	 * @return The key of the highest value number
-	 */
-	private static String getHighestCountKey(Map<String, Integer> map) {
-		Entry<String, Integer> highestEntry = null;
-		for (Entry<String, Integer> entry : map.entrySet()) {
-			if (highestEntry == null || entry.getValue() > highestEntry.getValue()) {
-				highestEntry = entry;
-			}
+		/**
+		 * Checks if the lectures were read for the given quarter.
+		 * 
+		 * @param quarterStartDate The start date of the quarter of the workbook
+		 * @param quarterEndDate   The excluded end date of the quarter of the workbook
+		 * @return True if the lectures can be used for the workbook, otherwise false
+		 */
+		private boolean hasQuarter(Calendar quarterStartDate, Calendar quarterEndDate) {
+			return this.quarterStartDate.getTimeInMillis() == quarterStartDate.getTimeInMillis()
+					&& this.quarterEndDate.getTimeInMillis() == quarterEndDate.getTimeInMillis();
 		}
-		return highestEntry == null ? null : highestEntry.getKey();
 	}
 }
\ No newline at end of file
@@ -19,6 +19,24 @@ public class Export2ExcelPlugin implements PluginDescriptor<ClientServiceContain
 	public static final TypedComponentRole<I18nBundle> RESOURCE_FILE = new TypedComponentRole<I18nBundle>(
 			Export2ExcelPlugin.class.getPackage().getName() + ".ExcelResources");
 
+	/**
+	 * The attribute of the plugin configuration containing the comma separated
+	 * keys of the dynamic types of rooms.
+	 */
+	public static final String ROOM_TYPES = "room-types";
+
+	/** The keys of the dynamic types of rooms, if none are configured. */
+	public static final String DEFAULT_ROOM_TYPES = "room,raum";
+
+	/**
+	 * The attribute of the plugin configuration containing the comma separated
+	 * keys of the dynamic types of classes.
+	 */
+	public static final String CLASS_TYPES = "class-types";
+
+	/** The keys of the dynamic types of classes, if none are configured. */
+	public static final String DEFAULT_CLASS_TYPES = "kurs,course,class";
+
 	public void provideServices(ClientServiceContainer container, Configuration config) {
 		if (config.getAttributeAsBoolean("enabled", ENABLE_BY_DEFAULT)) {
 
@@ -28,7 +46,7 @@ public class Export2ExcelPlugin implements PluginDescriptor<ClientServiceContain
 			// MyOption.class);
 
 			container.addContainerProvidedComponent(RaplaClientExtensionPoints.EXPORT_MENU_EXTENSION_POINT,
-					Export2ExcelMenu.class);
+					Export2ExcelMenu.class, config);
 
 			// container.addContainerProvidedComponent(RaplaClientExtensionPoints.HELP_MENU_EXTENSION_POINT,
 			// MyHelpMenuExtension.class);
@@ -0,0 +1,97 @@
+package org.rapla.plugin.export2excel;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Map;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import semesterTimeTable.excel.ExportPhase;
+import semesterTimeTable.excel.ProgressListener;
+
+/**
+ * Progress listener of an export running in the background, which shows the
+ * current phase in a progress monitor. The progress monitor is only updated
+ * on the event dispatch thread and is shown, if the export takes longer than
+ * half a second. Its cancel button cancels the export before its next phase.
+ */
+public class ExportProgressMonitor implements ProgressListener, ActionListener {
+
+	/** Maximum of the progress of the progress monitor */
+	private static final int MAXIMUM = 1000;
+
+	/** Interval for polling the cancel button in milliseconds */
+	private static final int POLL_INTERVAL = 100;
+
+	/** The progress monitor showing the phases */
+	private final ProgressMonitor progressMonitor;
+
+	/** The notes shown for the phases */
+	private final Map<ExportPhase, String> notes;
+
+	/** Timer polling the cancel button of the progress monitor */
+	private final Timer timer;
+
+	/** True if the export was cancelled */
+	private volatile boolean cancelled;
+
+	/**
+	 * Creates a progress monitor for an export. It must be created on the event
+	 * dispatch thread.
+	 * 
+	 * @param parentComponent The parent component of the progress monitor
+	 * @param message         The message of the progress monitor
+	 * @param notes           The notes shown for the phases
+	 */
+	public ExportProgressMonitor(Component parentComponent, String message, Map<ExportPhase, String> notes) {
+		this.progressMonitor = new ProgressMonitor(parentComponent, message, "", 0,
+				ExportProgressMonitor.MAXIMUM);
+		this.notes = notes;
+		this.timer = new Timer(ExportProgressMonitor.POLL_INTERVAL, this);
+		this.timer.start();
+	}
+
+	@Override
+	public void phaseStarted(ExportPhase phase) {
+		int progress = (int) (phase.getProgress() * ExportProgressMonitor.MAXIMUM);
+		String note = this.notes.get(phase);
+		SwingUtilities.invokeLater(() -> {
+			if (!this.progressMonitor.isCanceled()) {
+				this.progressMonitor.setNote(note);
+				this.progressMonitor.setProgress(progress);
+			}
+		});
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	/**
+	 * Polls the cancel button of the progress monitor. It is called by the timer
+	 * on the event dispatch thread.
+	 * 
+	 * @param evt The action event of the timer
+	 */
+	@Override
+	public void actionPerformed(ActionEvent evt) {
+		if (this.progressMonitor.isCanceled()) {
+			this.cancelled = true;
+			this.timer.stop();
+		}
+	}
+
+	/**
+	 * Closes the progress monitor. It can be called by any thread.
+	 */
+	public void close() {
+		SwingUtilities.invokeLater(() -> {
+			this.timer.stop();
+			this.progressMonitor.close();
+		});
+	}
+}
@@ -0,0 +1,73 @@
+package org.rapla.plugin.export2excel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import semesterTimeTable.excel.LectureTable;
+
+/**
+ * The lectures and the counts of the class names, which were extracted from
+ * the appointment blocks by an {@link AppointmentExtractor}.
+ */
+public class LectureExtraction {
+
+	/** The extracted lectures */
+	private final LectureTable lectures;
+
+	/** The counts of the resource names, which are no rooms */
+	private final Map<String, Integer> classNameCounts;
+
+	/**
+	 * Creates an extraction with the given lectures and counts.
+	 * 
+	 * @param lectures        The extracted lectures
+	 * @param classNameCounts The counts of the resource names, which are no rooms
+	 */
+	public LectureExtraction(LectureTable lectures, Map<String, Integer> classNameCounts) {
+		this.lectures = lectures;
+		this.classNameCounts = classNameCounts;
+	}
+
+	/**
+	 * Returns the extracted lectures.
+	 * 
+	 * @return The table of the lectures
+	 */
+	public LectureTable getLectures() {
+		return this.lectures;
+	}
+
+	/**
+	 * Returns the most common class name. The class names are all resources except
+	 * rooms without their suffix in parentheses.
+	 * 
+	 * @return The most common class name or null, if there are no classes
+	 */
+	public String getMostCommonClassName() {
+		// The suffix is removed once for each distinct resource name
+		Map<String, Integer> classNames = new HashMap<String, Integer>();
+		for (Entry<String, Integer> entry : this.classNameCounts.entrySet()) {
+			String className = entry.getKey().replaceAll(" \\(.*\\)", "");
+			Integer count = classNames.get(className);
+			classNames.put(className, count == null ? entry.getValue() : count + entry.getValue());
+		}
+		return LectureExtraction.getHighestCountKey(classNames);
+	}
+
+	/**
+	 * Returns the key with the highest value number in the given map.
+	 * 
+	 * @param map The map for searching the highest number
+	 * @return The key of the highest value number
+	 */
+	private static String getHighestCountKey(Map<String, Integer> map) {
+		Entry<String, Integer> highestEntry = null;
+		for (Entry<String, Integer> entry : map.entrySet()) {
+			if (highestEntry == null || entry.getValue() > highestEntry.getValue()) {
+				highestEntry = entry;
+			}
+		}
+		return highestEntry == null ? null : highestEntry.getKey();
+	}
+}
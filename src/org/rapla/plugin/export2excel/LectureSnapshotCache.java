@@ -0,0 +1,241 @@
+package org.rapla.plugin.export2excel;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.rapla.entities.domain.Reservation;
+import org.rapla.entities.dynamictype.ClassificationFilter;
+import org.rapla.facade.CalendarModel;
+import org.rapla.facade.ModificationEvent;
+import org.rapla.facade.ModificationListener;
+import org.rapla.framework.RaplaException;
+import org.rapla.plugin.export2excel.AppointmentExtractor.BlockRow;
+
+/**
+ * Cache of snapshots of the lectures in the Rapla client. A snapshot contains
+ * the rows of the appointment blocks (see {@link BlockRow}) of a calendar
+ * selection and a time range (e.g. a quarter).
+ *
+ * The cache listens to the modifications of the client facade. A changed or
+ * removed reservation is marked as touched in each snapshot. Any other changed
+ * or removed entity (e.g. an allocatable or a dynamic type) and a modification
+ * without changed or removed entities (e.g. a new reservation) remove all
+ * snapshots, because they can change the names and types of many rows.
+ *
+ * If nothing was modified since a snapshot was taken, the lectures are built
+ * from its rows without reading the appointment blocks. Otherwise the blocks
+ * are read again, but only the blocks of the touched and the new reservations
+ * are extracted.
+ *
+ * The most common class name of each snapshot is kept, so the default file
+ * name of an export can be chosen without reading the appointment blocks.
+ */
+public class LectureSnapshotCache implements ModificationListener {
+
+	/** Maximum number of snapshots, the least recently used one is removed */
+	private static final int MAX_SNAPSHOTS = 8;
+
+	/** The snapshots by their selection key in access order */
+	private final Map<List<Object>, Snapshot> snapshots = new LinkedHashMap<List<Object>, Snapshot>(16, 0.75f,
+			true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Object>, Snapshot> eldest) {
+			return this.size() > LectureSnapshotCache.MAX_SNAPSHOTS;
+		}
+	};
+
+	/** Number of the received modifications */
+	private long modificationCount = 0;
+
+	/**
+	 * Returns the lectures and the counts of the class names of the appointment
+	 * blocks of the given calendar model. The lectures are built from the snapshot
+	 * of the selection and the time range of the model, if there is one. A new
+	 * snapshot is only kept, if no modification was received while its blocks
+	 * were read.
+	 * 
+	 * @param model     The calendar model
+	 * @param extractor The extractor of the lectures
+	 * @param timeZone  The time zone of the lectures
+	 * @return The lectures and the counts of the class names
+	 * @throws RaplaException If the filters or the blocks of the model cannot be
+	 *                        read
+	 */
+	public LectureExtraction getExtraction(CalendarModel model, AppointmentExtractor extractor, TimeZone timeZone)
+			throws RaplaException {
+		List<Object> key = LectureSnapshotCache.getKey(model, extractor);
+		Snapshot snapshot;
+		boolean modified;
+		Set<Reservation> touchedReservations;
+		long modificationCount;
+		synchronized (this) {
+			snapshot = this.snapshots.get(key);
+			modified = snapshot == null || snapshot.modified;
+			touchedReservations = snapshot == null ? null : new HashSet<Reservation>(snapshot.touchedReservations);
+			modificationCount = this.modificationCount;
+		}
+
+		if (!modified) {
+			return extractor.buildExtraction(snapshot.rows, timeZone);
+		}
+		List<BlockRow> rows = extractor.readBlocks(model.getBlocks(), snapshot == null ? null : snapshot.rows,
+				touchedReservations);
+		LectureExtraction extraction = extractor.buildExtraction(rows, timeZone);
+		synchronized (this) {
+			if (this.modificationCount == modificationCount) {
+				this.snapshots.put(key, new Snapshot(rows, extraction.getMostCommonClassName()));
+			}
+		}
+		return extraction;
+	}
+
+	/**
+	 * Returns the most common class name of the snapshot of the selection of the
+	 * given calendar model, which was used last, for any time range. The
+	 * appointment blocks are not read, so the class name can be outdated, if the
+	 * reservations were modified since.
+	 * 
+	 * @param model     The calendar model
+	 * @param extractor The extractor of the lectures
+	 * @return The most common class name or null, if there is no snapshot of the
+	 *         selection or it contains no class
+	 * @throws RaplaException If the filters of the model cannot be read
+	 */
+	public String getLastClassName(CalendarModel model, AppointmentExtractor extractor) throws RaplaException {
+		List<Object> selectionKey = LectureSnapshotCache.getSelectionKey(model, extractor);
+		String className = null;
+		synchronized (this) {
+			// The snapshots are iterated from the least to the most recently used one
+			for (Map.Entry<List<Object>, Snapshot> entry : this.snapshots.entrySet()) {
+				if (entry.getKey().get(0).equals(selectionKey)) {
+					className = entry.getValue().mostCommonClassName;
+				}
+			}
+		}
+		return className;
+	}
+
+	/**
+	 * Marks the changed and removed reservations as touched in each snapshot or
+	 * removes all snapshots, if other entities were changed or removed.
+	 * 
+	 * @param evt The modification event of the client facade
+	 */
+	@Override
+	public synchronized void dataChanged(ModificationEvent evt) {
+		this.modificationCount++;
+		Set<Reservation> touchedReservations = new HashSet<Reservation>();
+		if (!LectureSnapshotCache.addReservations(evt.getChanged(), touchedReservations)
+				|| !LectureSnapshotCache.addReservations(evt.getRemoved(), touchedReservations)
+				|| touchedReservations.isEmpty()) {
+			this.snapshots.clear();
+			return;
+		}
+		for (Snapshot snapshot : this.snapshots.values()) {
+			snapshot.modified = true;
+			snapshot.touchedReservations.addAll(touchedReservations);
+		}
+	}
+
+	/**
+	 * Adds the given entities to the given reservations, if all entities are
+	 * reservations.
+	 * 
+	 * @param entities     The changed or removed entities or null
+	 * @param reservations The touched reservations
+	 * @return True if all entities are reservations, otherwise false
+	 */
+	private static boolean addReservations(Collection<?> entities, Set<Reservation> reservations) {
+		if (entities == null) {
+			return true;
+		}
+		for (Object entity : entities) {
+			if (!(entity instanceof Reservation)) {
+				return false;
+			}
+			reservations.add((Reservation) entity);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the key of the selection and the time range of the given calendar
+	 * model. A filter, which cannot be compared with an equal filter, results in
+	 * a new snapshot.
+	 * 
+	 * @param model     The calendar model
+	 * @param extractor The extractor of the lectures
+	 * @return The key of the snapshot
+	 * @throws RaplaException If the filters of the model cannot be read
+	 */
+	private static List<Object> getKey(CalendarModel model, AppointmentExtractor extractor) throws RaplaException {
+		return Arrays.<Object>asList(LectureSnapshotCache.getSelectionKey(model, extractor),
+				model.getStartDate().getTime(), model.getEndDate().getTime());
+	}
+
+	/**
+	 * Returns the key of the selection of the given calendar model without its
+	 * time range.
+	 * 
+	 * @param model     The calendar model
+	 * @param extractor The extractor of the lectures
+	 * @return The key of the selection
+	 * @throws RaplaException If the filters of the model cannot be read
+	 */
+	private static List<Object> getSelectionKey(CalendarModel model, AppointmentExtractor extractor)
+			throws RaplaException {
+		return Arrays.<Object>asList(new HashSet<Object>(model.getSelectedObjects()),
+				LectureSnapshotCache.getFilterKey(model.getReservationFilter()),
+				LectureSnapshotCache.getFilterKey(model.getAllocatableFilter()), model.getUser(),
+				extractor.getLocale());
+	}
+
+	/**
+	 * Returns the key of the given filters.
+	 * 
+	 * @param filters The filters or null
+	 * @return The list of the filters or null
+	 */
+	private static List<ClassificationFilter> getFilterKey(ClassificationFilter[] filters) {
+		return filters == null ? null : Arrays.asList(filters);
+	}
+
+	/**
+	 * Snapshot of the rows of the appointment blocks of a selection and a time
+	 * range.
+	 */
+	private static class Snapshot {
+
+		/** The rows of the appointment blocks */
+		private final List<BlockRow> rows;
+
+		/** The most common class name of the rows or null */
+		private final String mostCommonClassName;
+
+		/** The reservations, which were touched since the snapshot was taken */
+		private final Set<Reservation> touchedReservations = new HashSet<Reservation>();
+
+		/** True if a modification was received since the snapshot was taken */
+		private boolean modified = false;
+
+		/**
+		 * Creates a snapshot of the given rows.
+		 * 
+		 * @param rows                The rows of the appointment blocks
+		 * @param mostCommonClassName The most common class name of the rows or null
+		 */
+		private Snapshot(List<BlockRow> rows, String mostCommonClassName) {
+			this.rows = rows;
+			this.mostCommonClassName = mostCommonClassName;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.rapla.plugin.export2excel;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.rapla.entities.dynamictype.DynamicType;
+import org.rapla.facade.ModificationEvent;
+import org.rapla.facade.ModificationListener;
+import org.rapla.framework.logger.Logger;
+
+/**
+ * Classifier of the dynamic types of the allocatables, which are no persons,
+ * into room types and class types.
+ *
+ * A type with the annotation {@link #ROOM_ANNOTATION} is a room type, if the
+ * annotation is "true", otherwise it is a class type. A type without the
+ * annotation is a class type, if its key is one of the configured class type
+ * keys (see {@link Export2ExcelPlugin#CLASS_TYPES}). All other types are room
+ * types like the resources before the classification by type (e.g. equipment).
+ * A warning is logged for each type, whose key is neither a configured room
+ * type key (see {@link Export2ExcelPlugin#ROOM_TYPES}) nor a configured class
+ * type key, so a wrong configuration can be noticed.
+ *
+ * The result is kept for each type. The classifier listens to the
+ * modifications of the client facade and forgets the result of a changed or
+ * removed type.
+ */
+public class RoomTypeClassifier implements ModificationListener {
+
+	/** Annotation of a dynamic type, which marks it as room type or not */
+	public static final String ROOM_ANNOTATION = "export2excel-room";
+
+	/** The keys of the room types */
+	private final Set<String> roomTypeKeys;
+
+	/** The keys of the class types */
+	private final Set<String> classTypeKeys;
+
+	/** The logger for the types without configured key */
+	private final Logger logger;
+
+	/** The classification of each dynamic type, which was classified */
+	private final Map<DynamicType, Boolean> roomTypes = new HashMap<DynamicType, Boolean>();
+
+	/**
+	 * Creates a classifier with the given keys of the room and class types.
+	 * 
+	 * @param roomTypeKeys  The keys of the room types
+	 * @param classTypeKeys The keys of the class types
+	 * @param logger        The logger for the types without configured key
+	 */
+	public RoomTypeClassifier(Collection<String> roomTypeKeys, Collection<String> classTypeKeys, Logger logger) {
+		this.roomTypeKeys = new HashSet<String>(roomTypeKeys);
+		this.classTypeKeys = new HashSet<String>(classTypeKeys);
+		this.logger = logger;
+	}
+
+	/**
+	 * Checks if the allocatables of the given dynamic type are rooms.
+	 * 
+	 * @param type The dynamic type
+	 * @return True if the allocatables of the type are rooms, otherwise false
+	 */
+	public synchronized boolean isRoomType(DynamicType type) {
+		Boolean roomType = this.roomTypes.get(type);
+		if (roomType == null) {
+			String annotation = type.getAnnotation(RoomTypeClassifier.ROOM_ANNOTATION);
+			String key = type.getKey();
+			if (annotation != null) {
+				roomType = Boolean.valueOf(annotation.trim());
+			} else if (this.classTypeKeys.contains(key)) {
+				roomType = false;
+			} else {
+				roomType = true;
+				if (!this.roomTypeKeys.contains(key)) {
+					this.logger.warn("The resource type \"" + key + "\" is neither configured in \""
+							+ Export2ExcelPlugin.ROOM_TYPES + "\" nor in \"" + Export2ExcelPlugin.CLASS_TYPES
+							+ "\", so its resources are exported as rooms");
+				}
+			}
+			this.roomTypes.put(type, roomType);
+		}
+		return roomType;
+	}
+
+	/**
+	 * Forgets the classification of the changed and removed dynamic types.
+	 * 
+	 * @param evt The modification event of the client facade
+	 */
+	@Override
+	public synchronized void dataChanged(ModificationEvent evt) {
+		this.removeTypes(evt.getChanged());
+		this.removeTypes(evt.getRemoved());
+	}
+
+	/**
+	 * Forgets the classification of the dynamic types of the given entities.
+	 * 
+	 * @param entities The changed or removed entities or null
+	 */
+	private void removeTypes(Collection<?> entities) {
+		if (entities != null) {
+			for (Object entity : entities) {
+				if (entity instanceof DynamicType) {
+					this.roomTypes.remove(entity);
+				}
+			}
+		}
+	}
+}
@@ -1,18 +1,34 @@
 package semesterTimeTable.excel;
 
 import java.awt.Color;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.xssf.usermodel.DefaultIndexedColorMap;
@@ -23,6 +39,10 @@ import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTMergeCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTMergeCells;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorksheet;
 
 /**
  * Wrapper class for the Apache POI library. Provides a simplified interface for
@@ -30,18 +50,210 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
  */
 public final class ApachePOIWrapper {
 
+	/** Indexed color map shared by all converted colors */
+	private final static DefaultIndexedColorMap INDEXED_COLOR_MAP = new DefaultIndexedColorMap();
+
+	/** Size of the buffer for writing workbooks */
+	private final static int BUFFER_SIZE = 64 * 1024;
+
+	/** Cache of all converted colors */
+	private final static Map<Color, XSSFColor> XSSF_COLORS = new ConcurrentHashMap<Color, XSSFColor>();
+
 	/**
 	 * Saves the given workbook to the given file.
 	 * 
+	 * The workbook is streamed into a temporary file in the same directory, which
+	 * replaces the file atomically after the workbook was written completely. So
+	 * the file is never left truncated, if saving fails.
+	 * 
 	 * @param workbook The workbook to save
 	 * @param file     The file for saving the workbook
 	 * @throws IOException If saving the workbook in the file failed
 	 */
 	public static void saveWorkbookToFile(XSSFWorkbook workbook, File file) throws IOException {
-		ByteArrayOutputStream stream = new ByteArrayOutputStream();
-		workbook.write(stream);
-		byte[] content = stream.toByteArray();
-		writeFile(file, content);
+		ApachePOIWrapper.saveContentToFile(ApachePOIWrapper.getContent(workbook), null, file,
+				CompressionPolicy.DEFAULT);
+	}
+
+	/**
+	 * Saves the given workbook to the given path and closes the workbook with
+	 * {@link #closeWorkbook(XSSFWorkbook)}.
+	 * 
+	 * The workbook is closed before the saved file replaces the file at the path,
+	 * so a file backed workbook (see {@link #openWorkbookFromFile(File)}) can be
+	 * saved to its own file.
+	 * 
+	 * @see #saveWorkbookToFile(XSSFWorkbook, File)
+	 * @param workbook The workbook to save and close
+	 * @param path     The path for saving the workbook
+	 * @throws IOException If saving the workbook in the file failed
+	 */
+	public static void saveAndCloseWorkbook(XSSFWorkbook workbook, Path path) throws IOException {
+		ApachePOIWrapper.saveAndCloseWorkbook(workbook, path, CompressionPolicy.DEFAULT);
+	}
+
+	/**
+	 * Saves the given workbook to the given path with the given compression
+	 * policy and closes the workbook with {@link #closeWorkbook(XSSFWorkbook)}.
+	 * 
+	 * @see #saveAndCloseWorkbook(XSSFWorkbook, Path)
+	 * @param workbook          The workbook to save and close
+	 * @param path              The path for saving the workbook
+	 * @param compressionPolicy The policy for compressing the parts
+	 * @throws IOException If saving the workbook in the file failed
+	 */
+	public static void saveAndCloseWorkbook(XSSFWorkbook workbook, Path path, CompressionPolicy compressionPolicy)
+			throws IOException {
+		ApachePOIWrapper.saveContentToFile(ApachePOIWrapper.getContent(workbook), workbook, path.toFile(),
+				compressionPolicy);
+	}
+
+	/**
+	 * Saves the workbook of the given sheet spool with its spooled sheets to the
+	 * given path and closes the workbook with {@link #closeWorkbook(XSSFWorkbook)}.
+	 * 
+	 * @see #saveAndCloseWorkbook(XSSFWorkbook, Path)
+	 * @param sheetSpool        The sheet spool of the workbook to save and close
+	 * @param path              The path for saving the workbook
+	 * @param compressionPolicy The policy for compressing the parts
+	 * @throws IOException If saving the workbook in the file failed
+	 */
+	public static void saveAndCloseWorkbook(SheetSpool sheetSpool, Path path, CompressionPolicy compressionPolicy)
+			throws IOException {
+		ApachePOIWrapper.saveContentToFile(sheetSpool, sheetSpool.getWorkbook(), path.toFile(), compressionPolicy);
+	}
+
+	/**
+	 * Saves the workbook of the given patch with the unchanged parts of its file
+	 * to the given path and closes the workbook with
+	 * {@link #closeWorkbook(XSSFWorkbook)}.
+	 * 
+	 * @see #saveAndCloseWorkbook(XSSFWorkbook, Path)
+	 * @param workbookPatch     The patch of the workbook to save and close
+	 * @param path              The path for saving the workbook
+	 * @param compressionPolicy The policy for compressing the changed parts
+	 * @throws IOException If saving the workbook in the file failed
+	 */
+	public static void saveAndCloseWorkbook(WorkbookPatch workbookPatch, Path path,
+			CompressionPolicy compressionPolicy) throws IOException {
+		ApachePOIWrapper.saveContentToFile(workbookPatch, workbookPatch.getWorkbook(), path.toFile(),
+				compressionPolicy);
+	}
+
+	/**
+	 * Saves the given workbook content (e.g. a sheet written from the compiled
+	 * template) to the given path like {@link #saveWorkbookToFile(XSSFWorkbook,
+	 * File)}.
+	 * 
+	 * @param content           The content of the workbook file
+	 * @param path              The path for saving the workbook
+	 * @param compressionPolicy The policy for compressing the parts
+	 * @throws IOException If saving the workbook in the file failed
+	 */
+	public static void saveContentToPath(WorkbookContent content, Path path, CompressionPolicy compressionPolicy)
+			throws IOException {
+		ApachePOIWrapper.saveContentToFile(content, null, path.toFile(), compressionPolicy);
+	}
+
+	/**
+	 * Writes the given workbook content into a temporary file, which replaces the
+	 * given file afterwards.
+	 * 
+	 * @param content           The content of the workbook file
+	 * @param workbookToClose   The workbook, which is closed before the file is
+	 *                          replaced, or null
+	 * @param file              The file for saving the workbook
+	 * @param compressionPolicy The policy for compressing the parts
+	 * @throws IOException If saving the workbook in the file failed
+	 */
+	private static void saveContentToFile(WorkbookContent content, XSSFWorkbook workbookToClose, File file,
+			CompressionPolicy compressionPolicy) throws IOException {
+		boolean closed = workbookToClose == null;
+		File tempFile = ApachePOIWrapper.createTempFile(file);
+		try {
+			try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+				content.write(Channels.newOutputStream(channel), compressionPolicy);
+				channel.force(false);
+			}
+			if (!closed) {
+				closed = true;
+				ApachePOIWrapper.closeWorkbook(workbookToClose);
+			}
+			ApachePOIWrapper.moveAtomically(tempFile, file);
+		} finally {
+			if (!closed) {
+				ApachePOIWrapper.closeWorkbook(workbookToClose);
+			}
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	/**
+	 * Returns the content of the given workbook, which is written by Apache POI.
+	 * 
+	 * @param workbook The workbook
+	 * @return The content of the workbook file
+	 */
+	private static WorkbookContent getContent(XSSFWorkbook workbook) {
+		return (outputStream, compressionPolicy) -> ApachePOIWrapper.saveWorkbookToStream(workbook, outputStream,
+				compressionPolicy);
+	}
+
+	/**
+	 * Saves the given workbook to the given path.
+	 * 
+	 * @see #saveWorkbookToFile(XSSFWorkbook, File)
+	 * @param workbook The workbook to save
+	 * @param path     The path for saving the workbook
+	 * @throws IOException If saving the workbook in the file failed
+	 */
+	public static void saveWorkbookToPath(XSSFWorkbook workbook, Path path) throws IOException {
+		ApachePOIWrapper.saveWorkbookToFile(workbook, path.toFile());
+	}
+
+	/**
+	 * Writes the given workbook into the given output stream. The output stream
+	 * is flushed, but not closed.
+	 * 
+	 * @param workbook     The workbook to save
+	 * @param outputStream The output stream for the workbook
+	 * @throws IOException If writing the workbook failed
+	 */
+	public static void saveWorkbookToStream(XSSFWorkbook workbook, OutputStream outputStream) throws IOException {
+		ApachePOIWrapper.saveWorkbookToStream(workbook, outputStream, CompressionPolicy.DEFAULT);
+	}
+
+	/**
+	 * Writes the given workbook with the given compression policy into the given
+	 * output stream. Apache POI writes the parts into a
+	 * {@link WorkbookZipOutputStream}, which streams the compressed parts and
+	 * deflates large parts in parallel on more than one processor. The output
+	 * stream is flushed, but not closed.
+	 * 
+	 * @param workbook          The workbook to save
+	 * @param outputStream      The output stream for the workbook
+	 * @param compressionPolicy The policy for compressing the parts
+	 * @throws IOException If writing the workbook failed
+	 */
+	public static void saveWorkbookToStream(XSSFWorkbook workbook, OutputStream outputStream,
+			CompressionPolicy compressionPolicy) throws IOException {
+		WorkbookZipOutputStream zipOutputStream = new WorkbookZipOutputStream(
+				new BufferedOutputStream(outputStream, ApachePOIWrapper.BUFFER_SIZE), compressionPolicy);
+		workbook.write(zipOutputStream);
+		zipOutputStream.flush();
+	}
+
+	/**
+	 * Writes the given workbook into the given channel. The channel is not
+	 * closed.
+	 * 
+	 * @param workbook The workbook to save
+	 * @param channel  The channel for the workbook
+	 * @throws IOException If writing the workbook failed
+	 */
+	public static void saveWorkbookToChannel(XSSFWorkbook workbook, WritableByteChannel channel)
+			throws IOException {
+		ApachePOIWrapper.saveWorkbookToStream(workbook, Channels.newOutputStream(channel));
 	}
 
 	/**
@@ -52,9 +264,86 @@ public final class ApachePOIWrapper {
 	 * @throws IOException If reading the workbook failed
 	 */
 	public static XSSFWorkbook loadWorkbookFromFile(File file) throws IOException {
-		FileInputStream excelFile = new FileInputStream(file);
-		XSSFWorkbook workbook = new XSSFWorkbook(excelFile);
-		return workbook;
+		return ApachePOIWrapper.loadWorkbookFromPath(file.toPath());
+	}
+
+	/**
+	 * Returns the workbook of the given path.
+	 * 
+	 * @param path The path of the workbook
+	 * @return The workbook of the given path
+	 * @throws IOException If reading the workbook failed
+	 */
+	public static XSSFWorkbook loadWorkbookFromPath(Path path) throws IOException {
+		try (InputStream inputStream = Files.newInputStream(path)) {
+			return new XSSFWorkbook(inputStream);
+		}
+	}
+
+	/**
+	 * Opens the workbook of the given file without buffering the zip package in
+	 * memory. The parts of the package are read directly from the file, when they
+	 * are needed, so only the parsed parts are kept in memory.
+	 * 
+	 * The file is kept open until the workbook is closed with
+	 * {@link #closeWorkbook(XSSFWorkbook)}. The workbook must not be closed with
+	 * {@link XSSFWorkbook#close()}, because this would write the workbook back to
+	 * the file.
+	 * 
+	 * @param file The file of the workbook
+	 * @return The file backed workbook
+	 * @throws IOException If opening the workbook failed
+	 */
+	public static XSSFWorkbook openWorkbookFromFile(File file) throws IOException {
+		OPCPackage opcPackage;
+		try {
+			opcPackage = OPCPackage.open(file, PackageAccess.READ_WRITE);
+		} catch (InvalidFormatException e) {
+			throw new IOException("The file \"" + file + "\" is no valid excel file", e);
+		}
+		boolean opened = false;
+		try {
+			XSSFWorkbook workbook = new XSSFWorkbook(opcPackage);
+			opened = true;
+			return workbook;
+		} finally {
+			if (!opened) {
+				opcPackage.revert();
+			}
+		}
+	}
+
+	/**
+	 * Closes the given workbook without writing it back to the file, it was
+	 * opened from. Unsaved changes are discarded.
+	 * 
+	 * @param workbook The workbook to close
+	 */
+	public static void closeWorkbook(XSSFWorkbook workbook) {
+		workbook.getPackage().revert();
+	}
+
+	/**
+	 * Returns the number of bytes of the uncompressed parts of the given zip
+	 * file. This is the size of the buffer, which is needed to load the workbook
+	 * of the file into memory.
+	 * 
+	 * @param file The zip file of the workbook
+	 * @return The number of uncompressed bytes
+	 * @throws IOException If reading the zip file failed
+	 */
+	public static long getUncompressedSize(File file) throws IOException {
+		long size = 0;
+		try (ZipFile zipFile = new ZipFile(file)) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				// The size of an entry can be unknown, so the compressed size is the
+				// lower bound
+				size += Math.max(entry.getSize(), entry.getCompressedSize());
+			}
+		}
+		return size;
 	}
 
 	/**
@@ -88,11 +377,15 @@ public final class ApachePOIWrapper {
 	/**
 	 * Converts a Color into a XSSFColor.
 	 * 
+	 * The XSSFColor is cached and shared by all callers, so it must not be
+	 * modified.
+	 * 
 	 * @param color The color to be converted
 	 * @return The XSSFColor
 	 */
 	public static XSSFColor colorToXSSFColor(Color color) {
-		return new XSSFColor(color, new DefaultIndexedColorMap());
+		return ApachePOIWrapper.XSSF_COLORS.computeIfAbsent(color,
+				key -> new XSSFColor(key, ApachePOIWrapper.INDEXED_COLOR_MAP));
 	}
 
 	/**
@@ -119,6 +412,65 @@ public final class ApachePOIWrapper {
 		cell.setCellStyle(cellStyle);
 	}
 
+	/**
+	 * Resets the given cell by setting the cell blank and setting the cell style of
+	 * the given index.
+	 * 
+	 * Blank cells are not rebuilt and the style index is written directly into the
+	 * cell, because {@link XSSFCell#setCellStyle} searches the styles table of the
+	 * workbook for each cell.
+	 * 
+	 * @param cell           The cell
+	 * @param cellStyleIndex The index of the style for the cell in the workbook
+	 */
+	public static void resetCell(XSSFCell cell, short cellStyleIndex) {
+		if (cell.getCellType() != CellType.BLANK) {
+			cell.setBlank();
+		}
+		CTCell ctCell = cell.getCTCell();
+		if (!ctCell.isSetS() || ctCell.getS() != cellStyleIndex) {
+			ctCell.setS(cellStyleIndex);
+		}
+	}
+
+	/**
+	 * Removes all merged regions of the given sheet, which are accepted by the
+	 * given filter, in one batch.
+	 * 
+	 * The remaining merged regions are written into a new list, so the cost does
+	 * not grow with the number of removed regions like the cost of
+	 * {@link XSSFSheet#removeMergedRegion(int)} for each region.
+	 * 
+	 * @param sheet  The sheet
+	 * @param filter The filter, which accepts the merged regions to remove
+	 * @return The number of removed merged regions
+	 */
+	public static int removeMergedRegions(XSSFSheet sheet, Predicate<CellRangeAddress> filter) {
+		CTWorksheet worksheet = sheet.getCTWorksheet();
+		if (!worksheet.isSetMergeCells()) {
+			return 0;
+		}
+		List<CTMergeCell> mergeCells = worksheet.getMergeCells().getMergeCellList();
+		List<String> remainingRefs = new ArrayList<String>();
+		for (CTMergeCell mergeCell : mergeCells) {
+			String ref = mergeCell.getRef();
+			if (!filter.test(CellRangeAddress.valueOf(ref))) {
+				remainingRefs.add(ref);
+			}
+		}
+		int removedCount = mergeCells.size() - remainingRefs.size();
+		if (removedCount > 0) {
+			worksheet.unsetMergeCells();
+			if (!remainingRefs.isEmpty()) {
+				CTMergeCells newMergeCells = worksheet.addNewMergeCells();
+				for (String ref : remainingRefs) {
+					newMergeCells.addNewMergeCell().setRef(ref);
+				}
+			}
+		}
+		return removedCount;
+	}
+
 	/**
 	 * Returns a map of font colors from a cell range. All cells with a value in the
 	 * cell range will be added to the map with their font color.
@@ -128,7 +480,7 @@ public final class ApachePOIWrapper {
 	 * @return A map of cell values and font color pairs
 	 */
 	public static Map<String, XSSFFont> getMappedFontColor(XSSFSheet sheet, CellRangeAddress cellRange) {
-		Map<String, XSSFFont> fontMap = new HashMap<String, XSSFFont>();
+		Map<String, XSSFFont> fontMap = new LinkedHashMap<String, XSSFFont>();
 		for (int rowNum = cellRange.getFirstRow(); rowNum <= cellRange.getLastRow(); rowNum++) {
 			XSSFRow row = sheet.getRow(rowNum);
 			for (int columnNum = cellRange.getFirstColumn(); columnNum <= cellRange.getLastColumn(); columnNum++) {
@@ -247,10 +599,41 @@ public final class ApachePOIWrapper {
 	 * @throws IOException If saving the content in the file failed
 	 */
 	public static void writeFile(File file, byte[] content) throws IOException {
-		FileOutputStream out = new FileOutputStream(file);
-		out.write(content);
-		out.flush();
-		out.close();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(content);
+		}
+	}
+
+	/**
+	 * Creates an empty temporary file in the directory of the given file. The
+	 * temporary file can replace the file with
+	 * {@link #moveAtomically(File, File)}.
+	 * 
+	 * @param file The file, which will be replaced
+	 * @return The temporary file
+	 * @throws IOException If creating the temporary file failed
+	 */
+	public static File createTempFile(File file) throws IOException {
+		// Unlike Files#createTempFile the file permissions are not restricted, so
+		// the replaced file keeps the default permissions
+		return File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+	}
+
+	/**
+	 * Replaces the given target file with the given source file. The file is
+	 * moved atomically, if the file system supports it.
+	 * 
+	 * @param source The file to move
+	 * @param target The file to replace
+	 * @throws IOException If moving the file failed
+	 */
+	public static void moveAtomically(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
 	}
 
 	/**
@@ -0,0 +1,286 @@
+package semesterTimeTable.excel;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.poi.xssf.usermodel.DefaultIndexedColorMap;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTColor;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFont;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
+
+/**
+ * Immutable snapshot of all configurations of a configuration workbook.
+ *
+ * All fonts and colors are copied from the configuration workbook, so the
+ * snapshot does not depend on the workbook and can be shared by multiple
+ * exports and threads. The fonts, colors and lecture properties returned by
+ * the getters must not be modified.
+ */
+public class CompiledConfig {
+
+	/** Indexed color map for the copied colors */
+	private final static DefaultIndexedColorMap INDEXED_COLOR_MAP = new DefaultIndexedColorMap();
+
+	/** Map of lecture names and their properties */
+	private final Map<String, LectureProperties> lecturePropertiesMap;
+
+	/** Matcher of the lecture names and their properties */
+	private final WildcardMatcher<LectureProperties> lecturePropertiesMatcher;
+
+	/** Map of values and their font to highlight the value with */
+	private final Map<String, XSSFFont> highlightedFonts;
+
+	/** Highlighter of the highlighted values and their fonts */
+	private final TextHighlighter textHighlighter;
+
+	/**
+	 * Array of all prefixes, which should be ignored by the grouping of lectures
+	 */
+	private final String[] ignorePrefixes;
+
+	/** The locale for the holidays */
+	private final Locale holidayLocale;
+
+	/** An array of start weeks of quarters */
+	private final int[] quarterStartWeeks;
+
+	/** The length of the exam week */
+	private final int examWeekLength;
+
+	/** The start date of the quarter */
+	private final Calendar quarterStartDate;
+
+	/** The text for the box on the bottom of the exam week */
+	private final CTRst examWeekText;
+
+	/** The font for the box on the bottom of the exam week */
+	private final XSSFFont examWeekFont;
+
+	/** The fill color for the box on the bottom of the exam week */
+	private final XSSFColor examWeekFillColor;
+
+	/**
+	 * Creates a snapshot of all configurations of the given configuration
+	 * workbook.
+	 * 
+	 * @param configWorkbook The configuration workbook
+	 */
+	public CompiledConfig(ConfigWorkbook configWorkbook) {
+		this(configWorkbook.getLecturePropertiesMap(), configWorkbook.getHighlightedFonts(),
+				configWorkbook.getIgnorePrefixes(), configWorkbook.getHolidayLocale(),
+				configWorkbook.getQuarterStartWeeks(), configWorkbook.getExamWeekLength(),
+				configWorkbook.getQuarterStartDate(), configWorkbook.getExamWeekText(),
+				configWorkbook.getExamWeekFont(), configWorkbook.getExamWeekFillColor());
+	}
+
+	/**
+	 * Creates a snapshot of the given configurations. All given values are
+	 * copied.
+	 * 
+	 * @param lecturePropertiesMap The map of lecture names and their properties
+	 * @param highlightedFonts     The map of values and their font to highlight
+	 *                             the value with
+	 * @param ignorePrefixes       The prefixes, which should be ignored by the
+	 *                             grouping of lectures
+	 * @param holidayLocale        The locale for the holidays
+	 * @param quarterStartWeeks    The start weeks of quarters
+	 * @param examWeekLength       The length of the exam week
+	 * @param quarterStartDate     The start date of the quarter or null
+	 * @param examWeekText         The text for the exam week box or null
+	 * @param examWeekFont         The font for the exam week box or null
+	 * @param examWeekFillColor    The fill color for the exam week box or null
+	 */
+	public CompiledConfig(Map<String, LectureProperties> lecturePropertiesMap, Map<String, XSSFFont> highlightedFonts,
+			String[] ignorePrefixes, Locale holidayLocale, int[] quarterStartWeeks, int examWeekLength,
+			Calendar quarterStartDate, XSSFRichTextString examWeekText, XSSFFont examWeekFont,
+			XSSFColor examWeekFillColor) {
+		// Lectures sharing the same font or color object also share the copy
+		Map<XSSFFont, XSSFFont> copiedFonts = new IdentityHashMap<XSSFFont, XSSFFont>();
+		Map<XSSFColor, XSSFColor> copiedColors = new IdentityHashMap<XSSFColor, XSSFColor>();
+		Map<String, LectureProperties> copiedLecturePropertiesMap = new LinkedHashMap<String, LectureProperties>();
+		for (Entry<String, LectureProperties> entry : lecturePropertiesMap.entrySet()) {
+			LectureProperties lectureProperties = entry.getValue();
+			XSSFFont font = lectureProperties.getFont();
+			XSSFFont copiedFont = copiedFonts.get(font);
+			if (copiedFont == null) {
+				copiedFont = CompiledConfig.copyFont(font);
+				copiedFonts.put(font, copiedFont);
+			}
+			XSSFColor fillColor = lectureProperties.getFillColor();
+			XSSFColor copiedFillColor = copiedColors.get(fillColor);
+			if (copiedFillColor == null) {
+				copiedFillColor = CompiledConfig.copyColor(fillColor);
+				copiedColors.put(fillColor, copiedFillColor);
+			}
+			copiedLecturePropertiesMap.put(entry.getKey(), new LectureProperties(lectureProperties.getLectureName(),
+					lectureProperties.getShortLectureName(), copiedFont, copiedFillColor));
+		}
+		this.lecturePropertiesMap = Collections.unmodifiableMap(copiedLecturePropertiesMap);
+		this.lecturePropertiesMatcher = new WildcardMatcher<LectureProperties>(copiedLecturePropertiesMap);
+
+		Map<String, XSSFFont> copiedHighlightedFonts = new LinkedHashMap<String, XSSFFont>();
+		for (Entry<String, XSSFFont> entry : highlightedFonts.entrySet()) {
+			copiedHighlightedFonts.put(entry.getKey(), CompiledConfig.copyFont(entry.getValue()));
+		}
+		this.highlightedFonts = Collections.unmodifiableMap(copiedHighlightedFonts);
+		this.textHighlighter = new TextHighlighter(copiedHighlightedFonts);
+
+		this.ignorePrefixes = ignorePrefixes.clone();
+		this.holidayLocale = holidayLocale;
+		this.quarterStartWeeks = quarterStartWeeks.clone();
+		this.examWeekLength = examWeekLength;
+		this.quarterStartDate = quarterStartDate == null ? null : (Calendar) quarterStartDate.clone();
+		this.examWeekText = examWeekText == null ? null : (CTRst) examWeekText.getCTRst().copy();
+		this.examWeekFont = CompiledConfig.copyFont(examWeekFont);
+		this.examWeekFillColor = CompiledConfig.copyColor(examWeekFillColor);
+	}
+
+	/**
+	 * Returns an unmodifiable map of the lecture properties.
+	 * 
+	 * @return A map of the lecture properties
+	 */
+	public Map<String, LectureProperties> getLecturePropertiesMap() {
+		return this.lecturePropertiesMap;
+	}
+
+	/**
+	 * Returns the matcher of the lecture names, which can contain wildcards, and
+	 * their properties. The matchers are in the order of the lecture properties
+	 * map, so the first matching row of the configuration file wins.
+	 * 
+	 * @return The matcher of the lecture properties
+	 */
+	public WildcardMatcher<LectureProperties> getLecturePropertiesMatcher() {
+		return this.lecturePropertiesMatcher;
+	}
+
+	/**
+	 * Returns an unmodifiable map of values and their font to highlight the value
+	 * with.
+	 * 
+	 * @return A map of value font pairs
+	 */
+	public Map<String, XSSFFont> getHighlightedFonts() {
+		return this.highlightedFonts;
+	}
+
+	/**
+	 * Returns the highlighter of the highlighted values. The font ids of the
+	 * highlighter are in the order of the map of highlighted fonts.
+	 * 
+	 * @return The highlighter of the highlighted values
+	 */
+	public TextHighlighter getTextHighlighter() {
+		return this.textHighlighter;
+	}
+
+	/**
+	 * Returns an array of prefixes, which should be ignored.
+	 * 
+	 * @return An array of ignore prefixes
+	 */
+	public String[] getIgnorePrefixes() {
+		return this.ignorePrefixes.clone();
+	}
+
+	/**
+	 * Returns the locale for the holidays.
+	 * 
+	 * @return The locale for the holidays
+	 */
+	public Locale getHolidayLocale() {
+		return this.holidayLocale;
+	}
+
+	/**
+	 * Returns an array of all start weeks of quarters.
+	 * 
+	 * @return The start weeks of quarters
+	 */
+	public int[] getQuarterStartWeeks() {
+		return this.quarterStartWeeks.clone();
+	}
+
+	/**
+	 * Returns the length of the exam week. Only Monday to Friday counts as days.
+	 * 
+	 * @return The length of the exam week
+	 */
+	public int getExamWeekLength() {
+		return this.examWeekLength;
+	}
+
+	/**
+	 * Returns a copy of the start date of the quarter.
+	 * 
+	 * @return The start date of the quarter or null, if no start date is configured
+	 */
+	public Calendar getQuarterStartDate() {
+		return this.quarterStartDate == null ? null : (Calendar) this.quarterStartDate.clone();
+	}
+
+	/**
+	 * Returns a new copy of the text for the box at the bottom of the exam week.
+	 * 
+	 * @return The text for the exam week box or null, if no text is configured
+	 */
+	public XSSFRichTextString getExamWeekText() {
+		return this.examWeekText == null ? null : new XSSFRichTextString((CTRst) this.examWeekText.copy());
+	}
+
+	/**
+	 * Returns the font for the box at the bottom of the exam week.
+	 * 
+	 * @return The font for the exam week box
+	 */
+	public XSSFFont getExamWeekFont() {
+		return this.examWeekFont;
+	}
+
+	/**
+	 * Returns the fill color for the box at the bottom of the exam week.
+	 * 
+	 * @return The fill color for the exam week box
+	 */
+	public XSSFColor getExamWeekFillColor() {
+		return this.examWeekFillColor;
+	}
+
+	/**
+	 * Returns a copy of the given font, which does not belong to any workbook.
+	 * 
+	 * The color of the copy is the color resolved by the font, because the copy
+	 * cannot resolve theme colors without the workbook.
+	 * 
+	 * @param font The font to copy
+	 * @return The copy of the font or null, if the given font is null
+	 */
+	private static XSSFFont copyFont(XSSFFont font) {
+		if (font == null) {
+			return null;
+		}
+		XSSFFont copiedFont = new XSSFFont((CTFont) font.getCTFont().copy());
+		copiedFont.setColor(font.getXSSFColor());
+		return copiedFont;
+	}
+
+	/**
+	 * Returns a copy of the given color, which does not belong to any workbook.
+	 * 
+	 * @param color The color to copy
+	 * @return The copy of the color or null, if the given color is null
+	 */
+	private static XSSFColor copyColor(XSSFColor color) {
+		return color == null ? null
+				: XSSFColor.from((CTColor) color.getCTColor().copy(), CompiledConfig.INDEXED_COLOR_MAP);
+	}
+}
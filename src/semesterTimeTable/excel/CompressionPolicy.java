@@ -0,0 +1,38 @@
+package semesterTimeTable.excel;
+
+import java.util.zip.Deflater;
+
+/**
+ * The policies for compressing the parts of a workbook file.
+ */
+public enum CompressionPolicy {
+	/** Writes the parts without compression (fastest, largest file) */
+	STORE(Deflater.NO_COMPRESSION),
+	/** Deflates the parts with the fastest level */
+	FAST(Deflater.BEST_SPEED),
+	/** Deflates the parts with the default level like Apache POI does */
+	DEFAULT(Deflater.DEFAULT_COMPRESSION),
+	/** Deflates the parts with the best level (slowest, smallest file) */
+	MAX(Deflater.BEST_COMPRESSION);
+
+	/** The level of the deflater */
+	private final int level;
+
+	/**
+	 * Creates a policy with the given level of the deflater.
+	 * 
+	 * @param level The level of the deflater
+	 */
+	private CompressionPolicy(int level) {
+		this.level = level;
+	}
+
+	/**
+	 * Returns the level of the deflater.
+	 * 
+	 * @return The level of the deflater
+	 */
+	public int getLevel() {
+		return this.level;
+	}
+}
@@ -0,0 +1,184 @@
+package semesterTimeTable.excel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process wide cache of compiled configuration files.
+ *
+ * A configuration file is identified by its canonical path. The compiled
+ * configuration is reused as long as the modification time and the size of the
+ * file do not change, so exports into the same directory load an unchanged
+ * configuration file only once.
+ *
+ * The cache is bounded. If more configuration files are loaded than the cache
+ * can hold, the least recently used configuration is evicted.
+ */
+public class ConfigCache {
+
+	/** Default maximum number of cached configurations */
+	public final static int DEFAULT_MAX_SIZE = 32;
+
+	/** The cache used by all exports of the process */
+	private final static ConfigCache DEFAULT_CACHE = new ConfigCache(ConfigCache.DEFAULT_MAX_SIZE);
+
+	/** Maximum number of cached configurations */
+	private final int maxSize;
+
+	/** Map of the canonical paths and their cache entries in least recently used order */
+	private final Map<String, CacheEntry> configs;
+
+	/** Number of loads, which used a cached configuration */
+	private long hits;
+
+	/** Number of loads, which had to read the configuration file */
+	private long misses;
+
+	/**
+	 * Creates an empty cache holding at most the given number of configurations.
+	 * 
+	 * @param maxSize The maximum number of cached configurations
+	 */
+	public ConfigCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("The maximum size of the configuration cache must be at least 1");
+		}
+		this.maxSize = maxSize;
+		this.configs = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the cache used by all exports of the process.
+	 * 
+	 * @return The default configuration cache
+	 */
+	public static ConfigCache getDefault() {
+		return ConfigCache.DEFAULT_CACHE;
+	}
+
+	/**
+	 * Returns the compiled configuration of the given existing configuration file.
+	 * The file is only loaded, if it is not cached yet or if it was changed since
+	 * it was cached.
+	 * 
+	 * @param file The configuration file
+	 * @return The compiled configuration
+	 * @throws IOException If reading the configuration file failed
+	 */
+	public CompiledConfig getConfig(File file) throws IOException {
+		File canonicalFile = file.getCanonicalFile();
+		String key = canonicalFile.getPath();
+		long lastModified = canonicalFile.lastModified();
+		long length = canonicalFile.length();
+
+		synchronized (this) {
+			CacheEntry cacheEntry = this.configs.get(key);
+			if (cacheEntry != null && cacheEntry.lastModified == lastModified && cacheEntry.length == length) {
+				this.hits++;
+				return cacheEntry.config;
+			}
+			this.misses++;
+		}
+
+		// The file is loaded outside of the lock, so a slow load does not block
+		// exports with other cached configurations
+		CompiledConfig config = ConfigReader.read(canonicalFile);
+
+		synchronized (this) {
+			this.configs.put(key, new CacheEntry(config, lastModified, length));
+			while (this.configs.size() > this.maxSize) {
+				this.configs.remove(this.configs.keySet().iterator().next());
+			}
+		}
+		return config;
+	}
+
+	/**
+	 * Removes the configuration of the given file from the cache.
+	 * 
+	 * @param file The configuration file
+	 * @return True if the configuration was cached, otherwise false
+	 * @throws IOException If the canonical path of the file cannot be determined
+	 */
+	public boolean evict(File file) throws IOException {
+		String key = file.getCanonicalPath();
+		synchronized (this) {
+			return this.configs.remove(key) != null;
+		}
+	}
+
+	/**
+	 * Removes all configurations from the cache. The statistics are not reset.
+	 */
+	public synchronized void clear() {
+		this.configs.clear();
+	}
+
+	/**
+	 * Returns the number of cached configurations.
+	 * 
+	 * @return The number of cached configurations
+	 */
+	public synchronized int getSize() {
+		return this.configs.size();
+	}
+
+	/**
+	 * Returns the number of loads, which used a cached configuration.
+	 * 
+	 * @return The number of cache hits
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of loads, which had to read the configuration file.
+	 * 
+	 * @return The number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the statistics of the cache.
+	 * 
+	 * @return The statistics as text
+	 */
+	@Override
+	public synchronized String toString() {
+		return "ConfigCache[size=" + this.configs.size() + "/" + this.maxSize + ", hits=" + this.hits + ", misses="
+				+ this.misses + "]";
+	}
+
+	/**
+	 * A compiled configuration with the modification time and size of its file.
+	 */
+	private static class CacheEntry {
+
+		/** The compiled configuration */
+		private final CompiledConfig config;
+
+		/** The modification time of the file, when it was loaded */
+		private final long lastModified;
+
+		/** The size of the file, when it was loaded */
+		private final long length;
+
+		/**
+		 * Creates a cache entry.
+		 * 
+		 * @param config       The compiled configuration
+		 * @param lastModified The modification time of the file
+		 * @param length       The size of the file
+		 */
+		private CacheEntry(CompiledConfig config, long lastModified, long length) {
+			this.config = config;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,558 @@
+package semesterTimeTable.excel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Read only loader for configuration files.
+ *
+ * The first sheet of the configuration file is streamed once and all
+ * configurations are collected in a single pass, without building the cells of
+ * the sheet in memory. Only the styles table and the shared strings table are
+ * loaded completely. The cell ranges of the configurations are the same as in
+ * {@link ConfigWorkbook}, which is still used if the configuration file has to
+ * be written.
+ */
+public class ConfigReader extends DefaultHandler {
+
+	/** First (zero based) row with configuration values */
+	private final static int FIRST_ROW = 2;
+
+	/** Column of the lecture names */
+	private final static int LECTURE_NAME_COLUMN = 1;
+
+	/** Column of the short lecture names */
+	private final static int SHORT_LECTURE_NAME_COLUMN = 2;
+
+	/** Column of the highlighted values */
+	private final static int HIGHLIGHT_COLUMN = 3;
+
+	/** Column of the ignore prefixes */
+	private final static int IGNORE_PREFIX_COLUMN = 4;
+
+	/** Column of the holiday locale */
+	private final static int HOLIDAY_LOCALE_COLUMN = 5;
+
+	/** Column of the quarter start weeks */
+	private final static int QUARTER_START_WEEK_COLUMN = 6;
+
+	/** Column of the exam week length */
+	private final static int EXAM_WEEK_LENGTH_COLUMN = 7;
+
+	/** Column of the quarter start date and its time zone */
+	private final static int QUARTER_START_DATE_COLUMN = 8;
+
+	/** Column of the exam week text */
+	private final static int EXAM_WEEK_TEXT_COLUMN = 9;
+
+	/** The styles table of the configuration file */
+	private StylesTable stylesTable;
+
+	/** The shared strings table of the configuration file */
+	private SharedStringsTable sharedStringsTable;
+
+	/** Map of the style indices and their font */
+	private Map<Integer, XSSFFont> fonts;
+
+	/** Map of the style indices and their fill color */
+	private Map<Integer, XSSFColor> fillColors;
+
+	/** True if the dates of the configuration file are based on 1904 */
+	private boolean date1904;
+
+	/** Map of lecture names and their properties */
+	private Map<String, LectureProperties> lecturePropertiesMap;
+
+	/** Map of values and their font to highlight the value with */
+	private Map<String, XSSFFont> highlightedFonts;
+
+	/** List of all ignore prefixes */
+	private List<String> ignorePrefixes;
+
+	/** List of all locale values */
+	private List<String> localeValues;
+
+	/** List of all start weeks of quarters */
+	private List<Integer> quarterStartWeeks;
+
+	/** List of all exam week lengths */
+	private List<Integer> examWeekLengths;
+
+	/** List of all start dates of the quarter */
+	private List<Date> quarterStartDates;
+
+	/** List of all time zone codes */
+	private List<String> timeZoneCodes;
+
+	/** The text for the box on the bottom of the exam week */
+	private XSSFRichTextString examWeekText;
+
+	/** The font for the box on the bottom of the exam week */
+	private XSSFFont examWeekFont;
+
+	/** The fill color for the box on the bottom of the exam week */
+	private XSSFColor examWeekFillColor;
+
+	/** The (zero based) number of the current row */
+	private int rowNum;
+
+	/** The (zero based) number of the current cell */
+	private int columnNum;
+
+	/** The type attribute of the current cell */
+	private String cellType;
+
+	/** The style index of the current cell */
+	private int styleIndex;
+
+	/** True if the current cell contains a formula */
+	private boolean hasFormula;
+
+	/** True if the characters of the current element are part of the cell value */
+	private boolean isValue;
+
+	/** The value of the current cell */
+	private StringBuilder value;
+
+	/** The lecture name of the current row */
+	private String lectureName;
+
+	/** The style index of the lecture name of the current row */
+	private int lectureNameStyleIndex;
+
+	/** The short lecture name of the current row */
+	private String shortLectureName;
+
+	/**
+	 * Creates a reader for a configuration file with the given styles and shared
+	 * strings table.
+	 * 
+	 * @param stylesTable        The styles table of the configuration file
+	 * @param sharedStringsTable The shared strings table of the configuration
+	 *                           file, or null if it has none
+	 * @param date1904           True if the dates are based on 1904
+	 */
+	private ConfigReader(StylesTable stylesTable, SharedStringsTable sharedStringsTable, boolean date1904) {
+		this.stylesTable = stylesTable;
+		this.sharedStringsTable = sharedStringsTable;
+		this.date1904 = date1904;
+		this.fonts = new HashMap<Integer, XSSFFont>();
+		this.fillColors = new HashMap<Integer, XSSFColor>();
+		this.lecturePropertiesMap = new LinkedHashMap<String, LectureProperties>();
+		this.highlightedFonts = new LinkedHashMap<String, XSSFFont>();
+		this.ignorePrefixes = new ArrayList<String>();
+		this.localeValues = new ArrayList<String>();
+		this.quarterStartWeeks = new ArrayList<Integer>();
+		this.examWeekLengths = new ArrayList<Integer>();
+		this.quarterStartDates = new ArrayList<Date>();
+		this.timeZoneCodes = new ArrayList<String>();
+		this.value = new StringBuilder();
+		this.rowNum = -1;
+	}
+
+	/**
+	 * Reads all configurations of the given configuration file.
+	 * 
+	 * @param file The configuration file
+	 * @return The compiled configuration
+	 * @throws IOException If reading the configuration file failed
+	 */
+	public static CompiledConfig read(File file) throws IOException {
+		OPCPackage opcPackage;
+		try {
+			opcPackage = OPCPackage.open(file, PackageAccess.READ);
+		} catch (OpenXML4JException e) {
+			throw new IOException("The configuration file \"" + file.getName() + "\" is no valid excel file", e);
+		}
+		try {
+			XSSFReader xssfReader = new XSSFReader(opcPackage);
+			ConfigReader configReader = new ConfigReader(xssfReader.getStylesTable(),
+					xssfReader.getSharedStringsTable(), ConfigReader.isDate1904(xssfReader));
+
+			Iterator<InputStream> sheets = xssfReader.getSheetsData();
+			if (sheets.hasNext()) {
+				InputStream sheet = sheets.next();
+				try {
+					ConfigReader.parse(sheet, configReader);
+				} finally {
+					sheet.close();
+				}
+			}
+			return configReader.createConfig();
+		} catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+			throw new IOException("Reading the configuration file \"" + file.getName() + "\" failed", e);
+		} finally {
+			// The package was opened read only, so it must be reverted instead of closed
+			opcPackage.revert();
+		}
+	}
+
+	/**
+	 * Returns true if the dates of the workbook are based on 1904.
+	 * 
+	 * @param xssfReader The reader of the workbook
+	 * @return True if the dates are based on 1904, otherwise false
+	 * @throws IOException                  If reading the workbook part failed
+	 * @throws OpenXML4JException           If the workbook part does not exist
+	 * @throws SAXException                 If parsing the workbook part failed
+	 * @throws ParserConfigurationException If no XML parser is available
+	 */
+	private static boolean isDate1904(XSSFReader xssfReader)
+			throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+		final boolean[] date1904 = new boolean[1];
+		InputStream workbook = xssfReader.getWorkbookData();
+		try {
+			ConfigReader.parse(workbook, new DefaultHandler() {
+				@Override
+				public void startElement(String uri, String localName, String qName, Attributes attributes) {
+					if ("workbookPr".equals(localName)) {
+						String value = attributes.getValue("date1904");
+						date1904[0] = "1".equals(value) || "true".equals(value);
+					}
+				}
+			});
+		} finally {
+			workbook.close();
+		}
+		return date1904[0];
+	}
+
+	/**
+	 * Parses the given XML input stream with the given handler.
+	 * 
+	 * @param inputStream The XML input stream
+	 * @param handler     The handler for the XML events
+	 * @throws IOException                  If reading the input stream failed
+	 * @throws SAXException                 If parsing the input stream failed
+	 * @throws ParserConfigurationException If no XML parser is available
+	 */
+	private static void parse(InputStream inputStream, DefaultHandler handler)
+			throws IOException, SAXException, ParserConfigurationException {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+		XMLReader xmlReader = factory.newSAXParser().getXMLReader();
+		xmlReader.setContentHandler(handler);
+		xmlReader.parse(new InputSource(inputStream));
+	}
+
+	/**
+	 * Creates the compiled configuration of all read values.
+	 * 
+	 * @return The compiled configuration
+	 */
+	private CompiledConfig createConfig() {
+		int[] quarterStartWeeks = new int[this.quarterStartWeeks.size()];
+		for (int index = 0; index < quarterStartWeeks.length; index++) {
+			quarterStartWeeks[index] = this.quarterStartWeeks.get(index);
+		}
+		int[] examWeekLengths = new int[this.examWeekLengths.size()];
+		for (int index = 0; index < examWeekLengths.length; index++) {
+			examWeekLengths[index] = this.examWeekLengths.get(index);
+		}
+
+		return new CompiledConfig(this.lecturePropertiesMap, this.highlightedFonts,
+				this.ignorePrefixes.toArray(new String[this.ignorePrefixes.size()]),
+				ConfigWorkbook.createHolidayLocale(this.localeValues.toArray(new String[this.localeValues.size()])),
+				ConfigWorkbook.createQuarterStartWeeks(quarterStartWeeks),
+				ConfigWorkbook.createExamWeekLength(examWeekLengths),
+				ConfigWorkbook.createQuarterStartDate(
+						this.quarterStartDates.toArray(new Date[this.quarterStartDates.size()]),
+						this.timeZoneCodes.toArray(new String[this.timeZoneCodes.size()])),
+				this.examWeekText, this.examWeekFont, this.examWeekFillColor);
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) {
+		if ("row".equals(localName)) {
+			String reference = attributes.getValue("r");
+			this.rowNum = reference == null ? this.rowNum + 1 : Integer.parseInt(reference) - 1;
+			this.columnNum = -1;
+			this.lectureName = null;
+			this.shortLectureName = null;
+		} else if ("c".equals(localName)) {
+			String reference = attributes.getValue("r");
+			this.columnNum = reference == null ? this.columnNum + 1 : ConfigReader.getColumnNum(reference);
+			this.cellType = attributes.getValue("t");
+			String styleIndex = attributes.getValue("s");
+			this.styleIndex = styleIndex == null ? 0 : Integer.parseInt(styleIndex);
+			this.hasFormula = false;
+			this.value.setLength(0);
+		} else if ("f".equals(localName)) {
+			this.hasFormula = true;
+		} else if ("v".equals(localName) || "t".equals(localName)) {
+			this.isValue = true;
+		} else if ("rPh".equals(localName)) {
+			// Phonetic runs of inline strings are not part of the value
+			this.isValue = false;
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) {
+		if ("v".equals(localName) || "t".equals(localName)) {
+			this.isValue = false;
+		} else if ("c".equals(localName)) {
+			if (this.rowNum >= ConfigReader.FIRST_ROW) {
+				this.readCell();
+			}
+		} else if ("row".equals(localName)) {
+			if (this.lectureName != null) {
+				String shortLectureName = this.shortLectureName == null ? "" : this.shortLectureName;
+				this.lecturePropertiesMap.put(this.lectureName,
+						new LectureProperties(this.lectureName, shortLectureName,
+								this.getFont(this.lectureNameStyleIndex),
+								this.getFillColor(this.lectureNameStyleIndex)));
+			}
+		}
+	}
+
+	@Override
+	public void characters(char[] characters, int start, int length) {
+		if (this.isValue) {
+			this.value.append(characters, start, length);
+		}
+	}
+
+	/**
+	 * Adds the value of the current cell to the configuration of its column.
+	 */
+	private void readCell() {
+		int rowNum = this.rowNum;
+		switch (this.columnNum) {
+		case ConfigReader.LECTURE_NAME_COLUMN: {
+			String stringValue = this.getStringValue();
+			if (stringValue != null && !stringValue.isEmpty()) {
+				this.lectureName = stringValue;
+				this.lectureNameStyleIndex = this.styleIndex;
+			}
+			break;
+		}
+		case ConfigReader.SHORT_LECTURE_NAME_COLUMN:
+			this.shortLectureName = this.getStringValue();
+			break;
+		case ConfigReader.HIGHLIGHT_COLUMN: {
+			String stringValue = this.getStringValue();
+			if (stringValue != null && !stringValue.isEmpty()) {
+				XSSFFont font = new XSSFFont();
+				font.setColor(this.getFont(this.styleIndex).getXSSFColor());
+				this.highlightedFonts.put(stringValue, font);
+			}
+			break;
+		}
+		case ConfigReader.IGNORE_PREFIX_COLUMN:
+			this.addStringValue(this.ignorePrefixes);
+			break;
+		case ConfigReader.HOLIDAY_LOCALE_COLUMN:
+			this.addStringValue(this.localeValues);
+			break;
+		case ConfigReader.QUARTER_START_WEEK_COLUMN:
+			this.addIntegerValue(this.quarterStartWeeks);
+			break;
+		case ConfigReader.EXAM_WEEK_LENGTH_COLUMN:
+			if (rowNum == ConfigReader.FIRST_ROW) {
+				this.addIntegerValue(this.examWeekLengths);
+			}
+			break;
+		case ConfigReader.QUARTER_START_DATE_COLUMN:
+			if (rowNum == ConfigReader.FIRST_ROW) {
+				Double numericValue = this.getNumericValue();
+				if (numericValue != null) {
+					this.quarterStartDates.add(DateUtil.getJavaDate(numericValue, this.date1904));
+				}
+			} else if (rowNum == ConfigReader.FIRST_ROW + 1) {
+				this.addStringValue(this.timeZoneCodes);
+			}
+			break;
+		case ConfigReader.EXAM_WEEK_TEXT_COLUMN:
+			if (rowNum == ConfigReader.FIRST_ROW) {
+				XSSFRichTextString richText = this.getRichTextValue();
+				if (richText != null) {
+					this.examWeekText = richText;
+					this.examWeekFont = this.getFont(this.styleIndex);
+					this.examWeekFillColor = this.getFillColor(this.styleIndex);
+				}
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Returns the font of the cell style with the given index. The font is created
+	 * only once for each cell style, so lectures with the same cell style share
+	 * their font.
+	 * 
+	 * @param styleIndex The index of the cell style
+	 * @return The font of the cell style
+	 */
+	private XSSFFont getFont(int styleIndex) {
+		XSSFFont font = this.fonts.get(styleIndex);
+		if (font == null) {
+			font = this.stylesTable.getStyleAt(styleIndex).getFont();
+			this.fonts.put(styleIndex, font);
+		}
+		return font;
+	}
+
+	/**
+	 * Returns the fill color of the cell style with the given index. The fill
+	 * color is the foreground color or the background color, if the cell style has
+	 * no foreground color. The fill color is created only once for each cell
+	 * style.
+	 * 
+	 * @param styleIndex The index of the cell style
+	 * @return The fill color of the cell style or null, if it has no fill color
+	 */
+	private XSSFColor getFillColor(int styleIndex) {
+		if (!this.fillColors.containsKey(styleIndex)) {
+			XSSFCellStyle cellStyle = this.stylesTable.getStyleAt(styleIndex);
+			XSSFColor fillColor = cellStyle.getFillForegroundColorColor();
+			fillColor = fillColor == null ? cellStyle.getFillBackgroundColorColor() : fillColor;
+			this.fillColors.put(styleIndex, fillColor);
+		}
+		return this.fillColors.get(styleIndex);
+	}
+
+	/**
+	 * Adds the string value of the current cell to the given list, if the cell
+	 * contains a string, which is not empty.
+	 * 
+	 * @param values The list of values
+	 */
+	private void addStringValue(List<String> values) {
+		String stringValue = this.getStringValue();
+		if (stringValue != null && !stringValue.isEmpty()) {
+			values.add(stringValue);
+		}
+	}
+
+	/**
+	 * Adds the integer value of the current cell to the given list, if the cell
+	 * contains a number or a string with a number. Floating point numbers are cut
+	 * off like in {@link ApachePOIWrapper#getIntegerValuesFromWorkbook}.
+	 * 
+	 * @param values The list of values
+	 */
+	private void addIntegerValue(List<Integer> values) {
+		Double numericValue = this.getNumericValue();
+		if (numericValue == null) {
+			String stringValue = this.getStringValue();
+			if (stringValue != null) {
+				try {
+					numericValue = Double.parseDouble(stringValue);
+				} catch (NumberFormatException e) {
+
+				}
+			}
+		}
+		if (numericValue != null) {
+			values.add((int) numericValue.doubleValue());
+		}
+	}
+
+	/**
+	 * Returns the numeric value of the current cell.
+	 * 
+	 * @return The numeric value or null, if the cell does not contain a number
+	 */
+	private Double getNumericValue() {
+		if (!this.hasFormula && (this.cellType == null || "n".equals(this.cellType)) && this.value.length() > 0) {
+			try {
+				return Double.valueOf(this.value.toString());
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the string value of the current cell.
+	 * 
+	 * @return The string value or null, if the cell does not contain a string
+	 */
+	private String getStringValue() {
+		if (this.hasFormula) {
+			return null;
+		}
+		if ("s".equals(this.cellType)) {
+			XSSFRichTextString richText = this.getRichTextValue();
+			return richText == null ? null : richText.getString();
+		} else if ("inlineStr".equals(this.cellType)) {
+			return this.value.toString();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the rich text value of the current cell. Inline strings are returned
+	 * without formatting.
+	 * 
+	 * @return The rich text value or null, if the cell does not contain a string
+	 */
+	private XSSFRichTextString getRichTextValue() {
+		if (this.hasFormula) {
+			return null;
+		}
+		if ("s".equals(this.cellType) && this.sharedStringsTable != null) {
+			try {
+				return (XSSFRichTextString) this.sharedStringsTable
+						.getItemAt(Integer.parseInt(this.value.toString().trim()));
+			} catch (NumberFormatException | IndexOutOfBoundsException e) {
+				return null;
+			}
+		} else if ("inlineStr".equals(this.cellType)) {
+			return new XSSFRichTextString(this.value.toString());
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the (zero based) column number of the given cell reference (e.g. 2
+	 * for "C12").
+	 * 
+	 * @param reference The cell reference
+	 * @return The column number
+	 */
+	private static int getColumnNum(String reference) {
+		int columnNum = 0;
+		for (int index = 0; index < reference.length(); index++) {
+			char character = reference.charAt(index);
+			if (character < 'A' || character > 'Z') {
+				break;
+			}
+			columnNum = columnNum * 26 + (character - 'A' + 1);
+		}
+		return columnNum - 1;
+	}
+}
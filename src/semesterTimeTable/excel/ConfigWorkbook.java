@@ -5,10 +5,12 @@ import java.io.IOException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 
 import org.apache.poi.ss.usermodel.CellType;
@@ -77,8 +79,7 @@ public class ConfigWorkbook {
 	 * @throws IOException If loading the template file fails
 	 */
 	public ConfigWorkbook() throws IOException {
-		this.setWorkbook(ApachePOIWrapper
-				.loadWorkbookFromInputStream(LectureWorkbook.getTemplateInputStream(ConfigWorkbook.TEMPLATE_FILENAME)));
+		this.setWorkbook(TemplateCache.getDefault().loadWorkbook(ConfigWorkbook.TEMPLATE_FILENAME));
 		this.initConfigWorkbook();
 		this.setIsNewConfig(false);
 	}
@@ -100,8 +101,7 @@ public class ConfigWorkbook {
 			this.initConfigWorkbook();
 			this.setIsNewConfig(false);
 		} else {
-			this.setWorkbook(ApachePOIWrapper.loadWorkbookFromInputStream(
-					LectureWorkbook.getTemplateInputStream(ConfigWorkbook.TEMPLATE_FILENAME)));
+			this.setWorkbook(TemplateCache.getDefault().loadWorkbook(ConfigWorkbook.TEMPLATE_FILENAME));
 			this.initConfigWorkbook(file);
 			this.setIsNewConfig(true);
 		}
@@ -133,8 +133,7 @@ public class ConfigWorkbook {
 			this.initConfigWorkbook();
 			this.setIsNewConfig(false);
 		} else {
-			this.setWorkbook(ApachePOIWrapper.loadWorkbookFromInputStream(
-					LectureWorkbook.getTemplateInputStream(ConfigWorkbook.TEMPLATE_FILENAME)));
+			this.setWorkbook(TemplateCache.getDefault().loadWorkbook(ConfigWorkbook.TEMPLATE_FILENAME));
 			this.initConfigWorkbook(file, lectureNames);
 			this.setIsNewConfig(true);
 		}
@@ -157,8 +156,7 @@ public class ConfigWorkbook {
 			this.initConfigWorkbook();
 			this.setIsNewConfig(false);
 		} else {
-			this.setWorkbook(ApachePOIWrapper.loadWorkbookFromInputStream(
-					LectureWorkbook.getTemplateInputStream(ConfigWorkbook.TEMPLATE_FILENAME)));
+			this.setWorkbook(TemplateCache.getDefault().loadWorkbook(ConfigWorkbook.TEMPLATE_FILENAME));
 			this.initConfigWorkbook(file);
 			this.setIsNewConfig(true);
 		}
@@ -191,13 +189,23 @@ public class ConfigWorkbook {
 			this.initConfigWorkbook();
 			this.setIsNewConfig(false);
 		} else {
-			this.setWorkbook(ApachePOIWrapper.loadWorkbookFromInputStream(
-					LectureWorkbook.getTemplateInputStream(ConfigWorkbook.TEMPLATE_FILENAME)));
+			this.setWorkbook(TemplateCache.getDefault().loadWorkbook(ConfigWorkbook.TEMPLATE_FILENAME));
 			this.initConfigWorkbook(file, lectureNames);
 			this.setIsNewConfig(true);
 		}
 	}
 
+	/**
+	 * Returns the configuration file with the
+	 * {@link ConfigWorkbook#TEMPLATE_FILENAME} as filename in the given path.
+	 * 
+	 * @param pathToTemplate The path to the custom template
+	 * @return The configuration file
+	 */
+	public static File getConfigFile(String pathToTemplate) {
+		return new File(pathToTemplate, ConfigWorkbook.TEMPLATE_FILENAME);
+	}
+
 	/**
 	 * Returns the workbook containing the configurations.
 	 * 
@@ -291,6 +299,19 @@ public class ConfigWorkbook {
 		int lastRowNum = sheet.getLastRowNum();
 		String[] localeValues = ApachePOIWrapper.getStringValuesFromWorkbook(sheet,
 				new CellRangeAddress(2, lastRowNum, 5, 5));
+		this.holidayLocale = ConfigWorkbook.createHolidayLocale(localeValues);
+	}
+
+	/**
+	 * Returns the locale for the holidays of the given locale values. The first
+	 * value is the country and all following values are the variant. If there are
+	 * no values, the locale for Baden-Wuerttemberg in Germany will be returned.
+	 * 
+	 * @param localeValues The values of the locale
+	 * @return The locale for the holidays
+	 */
+	public static Locale createHolidayLocale(String[] localeValues) {
+		Locale holidayLocale;
 		if (localeValues.length > 0) {
 			String country = localeValues[0];
 			String variant = "";
@@ -298,14 +319,15 @@ public class ConfigWorkbook {
 				variant += "_" + localeValues[i];
 			}
 			if (variant == "") {
-				this.holidayLocale = new Locale("de", country);
+				holidayLocale = new Locale("de", country);
 			} else {
 				variant = variant.substring(1);
-				this.holidayLocale = new Locale("de", country, variant);
+				holidayLocale = new Locale("de", country, variant);
 			}
 		} else {
-			this.holidayLocale = new Locale("de", "de", "bw");
+			holidayLocale = new Locale("de", "de", "bw");
 		}
+		return holidayLocale;
 	}
 
 	/**
@@ -326,10 +348,21 @@ public class ConfigWorkbook {
 		int lastRowNum = sheet.getLastRowNum();
 		int[] quarterStartWeeks = ApachePOIWrapper.getIntegerValuesFromWorkbook(sheet,
 				new CellRangeAddress(2, lastRowNum, 6, 6));
+		this.quarterStartWeeks = ConfigWorkbook.createQuarterStartWeeks(quarterStartWeeks);
+	}
+
+	/**
+	 * Returns the given start weeks of quarters or the default start weeks, if no
+	 * start week is given.
+	 * 
+	 * @param quarterStartWeeks The configured start weeks of quarters
+	 * @return The start weeks of quarters
+	 */
+	public static int[] createQuarterStartWeeks(int[] quarterStartWeeks) {
 		if (quarterStartWeeks.length < 1) {
 			quarterStartWeeks = new int[] { 2, 15, 27, 40 };
 		}
-		this.quarterStartWeeks = quarterStartWeeks;
+		return quarterStartWeeks;
 	}
 
 	/**
@@ -352,17 +385,33 @@ public class ConfigWorkbook {
 	private void setExamWeekLength() {
 		XSSFSheet sheet = ApachePOIWrapper.getSheet(this.getWorkbook());
 		int[] lengths = ApachePOIWrapper.getIntegerValuesFromWorkbook(sheet, new CellRangeAddress(2, 2, 7, 7));
+		this.examWeekLength = ConfigWorkbook.createExamWeekLength(lengths);
+	}
+
+	/**
+	 * Returns the length of the exam week of the given configured lengths.
+	 * 
+	 * If the value is smaller than zero, the length will be zero. If the value is
+	 * higher than ten, the length will be ten. If there is not exactly one value,
+	 * the default length of six will be used.
+	 * 
+	 * @param lengths The configured lengths
+	 * @return The length of the exam week
+	 */
+	public static int createExamWeekLength(int[] lengths) {
+		int examWeekLength;
 		if (lengths.length == 1) {
 			if (lengths[0] < 0) {
-				this.examWeekLength = 0;
+				examWeekLength = 0;
 			} else if (lengths[0] > 10) {
-				this.examWeekLength = 10;
+				examWeekLength = 10;
 			} else {
-				this.examWeekLength = lengths[0];
+				examWeekLength = lengths[0];
 			}
 		} else {
-			this.examWeekLength = 6;
+			examWeekLength = 6;
 		}
+		return examWeekLength;
 	}
 
 	/**
@@ -387,9 +436,22 @@ public class ConfigWorkbook {
 		XSSFSheet sheet = ApachePOIWrapper.getSheet(this.getWorkbook());
 		Date[] dates = ApachePOIWrapper.getDateValuesFromWorkbook(sheet, new CellRangeAddress(2, 2, 8, 8));
 		String[] timeZoneCodes = ApachePOIWrapper.getStringValuesFromWorkbook(sheet, new CellRangeAddress(3, 3, 8, 8));
+		this.quarterStartDate = ConfigWorkbook.createQuarterStartDate(dates, timeZoneCodes);
+	}
 
+	/**
+	 * Returns the start date of the quarter of the given configured dates and time
+	 * zone codes. If no time zone is set, the time zone with the id "GMT" will be
+	 * used as default.
+	 * 
+	 * @param dates         The configured dates
+	 * @param timeZoneCodes The configured time zone codes
+	 * @return The start date of the quarter or null, if there is not exactly one
+	 *         date
+	 */
+	public static Calendar createQuarterStartDate(Date[] dates, String[] timeZoneCodes) {
 		TimeZone timeZone;
-		Calendar quarterStartDate;
+		Calendar quarterStartDate = null;
 		if (timeZoneCodes.length == 1) {
 			timeZone = TimeZone.getTimeZone(timeZoneCodes[0]);
 		} else {
@@ -400,8 +462,8 @@ public class ConfigWorkbook {
 			quarterStartDate = new GregorianCalendar();
 			quarterStartDate.setTime(dates[0]);
 			quarterStartDate.setTimeZone(timeZone);
-			this.quarterStartDate = quarterStartDate;
 		}
+		return quarterStartDate;
 	}
 
 	/**
@@ -553,14 +615,16 @@ public class ConfigWorkbook {
 		int rowNum = 2;
 		XSSFSheet sheet = ApachePOIWrapper.getSheet(this.getWorkbook());
 		int lastRowNum = sheet.getLastRowNum();
-		String[] namesToColor = ApachePOIWrapper.getStringValuesFromWorkbook(sheet,
-				new CellRangeAddress(rowNum, lastRowNum, 1, 1));
+		WildcardMatcher<String> namesToColor = WildcardMatcher.fromArray(ApachePOIWrapper
+				.getStringValuesFromWorkbook(sheet, new CellRangeAddress(rowNum, lastRowNum, 1, 1)));
+		Set<String> lectureNameSet = new HashSet<String>(lectureNames);
 		this.setIgnorePrefixes();
+		String[] ignorePrefixes = this.getIgnorePrefixes();
 
 		for (String lectureName : lectureNames) {
-			String rawLectureName = LectureWorkbook.removePrefixFromString(lectureName, this.getIgnorePrefixes());
-			if (!ConfigWorkbook.arrayContainsWithWildcard(rawLectureName, namesToColor)
-					&& (rawLectureName.equals(lectureName) || !lectureNames.contains(rawLectureName))) {
+			String rawLectureName = LectureWorkbook.removePrefixFromString(lectureName, ignorePrefixes);
+			if (!namesToColor.matches(rawLectureName)
+					&& (rawLectureName.equals(lectureName) || !lectureNameSet.contains(rawLectureName))) {
 
 				rowNum = ConfigWorkbook.addValueToNextEmptyCellInARow(sheet, rawLectureName, rowNum, 1);
 
@@ -588,12 +652,15 @@ public class ConfigWorkbook {
 	 */
 	public static Map<String, LectureProperties> getMappedLectureProperties(XSSFSheet sheet,
 			CellRangeAddress cellRange) {
-		Map<String, LectureProperties> lecturePropertiesMap = new HashMap<String, LectureProperties>();
+		Map<String, LectureProperties> lecturePropertiesMap = new LinkedHashMap<String, LectureProperties>();
 		int firstColumnNum = cellRange.getFirstColumn();
 		int lastColumnNum = cellRange.getLastColumn();
 
-		for (int rowNum = cellRange.getFirstColumn(); rowNum <= cellRange.getLastRow(); rowNum++) {
+		for (int rowNum = cellRange.getFirstRow(); rowNum <= cellRange.getLastRow(); rowNum++) {
 			XSSFRow row = sheet.getRow(rowNum);
+			if (row == null) {
+				continue;
+			}
 			XSSFCell firstCell = row.getCell(firstColumnNum);
 			if (firstCell != null && firstCell.getCellType() == CellType.STRING) {
 				String lectureName = firstCell.getStringCellValue();
@@ -654,15 +721,6 @@ public class ConfigWorkbook {
 	 * @return True if the name matches one of the matchers, otherwise false
 	 */
 	public static boolean arrayContainsWithWildcard(String name, String[] matchers) {
-		boolean matches = false;
-		for (String matcher : matchers) {
-			String matcherKey = "\\Q" + matcher.replace("*", "\\E.*\\Q") + "\\E";
-			if (name.matches(matcherKey)) {
-				matches = true;
-				break;
-			}
-		}
-		return matches;
-		// TODO move method to helper class
+		return WildcardMatcher.fromArray(matchers).matches(name);
 	}
 }
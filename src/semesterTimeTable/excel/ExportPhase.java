@@ -0,0 +1,45 @@
+package semesterTimeTable.excel;
+
+import java.io.InterruptedIOException;
+
+/**
+ * The phases of an export of lectures into a workbook file in their order.
+ */
+public enum ExportPhase {
+	/** Loads the configuration and the workbook file or the template */
+	LOAD_WORKBOOK,
+	/** Reads the lectures of the quarter from the calendar */
+	READ_LECTURES,
+	/** Lays out the lectures in the sheet */
+	FILL_WORKBOOK,
+	/** Recalculates the formulas, which depend on the changed cells */
+	RECALCULATE_FORMULAS,
+	/** Saves the workbook file */
+	SAVE_WORKBOOK;
+
+	/**
+	 * Reports the start of this phase to the given progress listener. The export
+	 * is stopped, if it was cancelled before.
+	 * 
+	 * @param progressListener The progress listener of the export or null
+	 * @throws InterruptedIOException If the export was cancelled
+	 */
+	public void start(ProgressListener progressListener) throws InterruptedIOException {
+		if (progressListener == null) {
+			return;
+		}
+		if (progressListener.isCancelled()) {
+			throw new InterruptedIOException("The export was cancelled before the phase " + this);
+		}
+		progressListener.phaseStarted(this);
+	}
+
+	/**
+	 * Returns the fraction of the export, which is done before this phase.
+	 * 
+	 * @return The fraction between 0 (inclusive) and 1 (exclusive)
+	 */
+	public double getProgress() {
+		return (double) this.ordinal() / ExportPhase.values().length;
+	}
+}
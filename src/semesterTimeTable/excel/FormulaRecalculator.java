@@ -0,0 +1,391 @@
+package semesterTimeTable.excel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.AbstractFunctionPtg;
+import org.apache.poi.ss.formula.ptg.Area3DPxg;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPxg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Ref3DPxg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFFormulaEvaluator;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Recalculates the formulas of a workbook after some cells were changed.
+ *
+ * The formulas are parsed once into a dependency index, so only the formulas,
+ * which depend on the changed cells directly or through other formulas, are
+ * evaluated. Formulas with volatile functions (e.g. TODAY()), defined names or
+ * references, which cannot be resolved, are always evaluated.
+ *
+ * The index is kept for all following recalculations of the workbook, so the
+ * formulas are only parsed once. If formulas or sheets of the workbook are
+ * added or removed, the index must be invalidated (see {@link #invalidate()}).
+ */
+public class FormulaRecalculator {
+
+	/**
+	 * The modes of a recalculation.
+	 */
+	public enum Mode {
+		/** Evaluates all formulas of the workbook */
+		ALL,
+		/** Evaluates only the formulas, which depend on the changed cells */
+		DEPENDENT,
+		/** Evaluates no formula, but lets Excel recalculate the workbook on load */
+		DEFERRED
+	}
+
+	/** Number of integers of one precedent (sheet, rows and columns) */
+	private final static int PRECEDENT_LENGTH = 5;
+
+	/** Names of the functions, whose result can change without changed cells */
+	private final static List<String> VOLATILE_FUNCTIONS = Arrays.asList("NOW", "TODAY", "RAND", "RANDBETWEEN",
+			"OFFSET", "INDIRECT", "CELL", "INFO");
+
+	/** The workbook */
+	private final XSSFWorkbook workbook;
+
+	/** All formula cells of the workbook in the order of their formula id */
+	private List<XSSFCell> formulaCells;
+
+	/** The precedents of each formula id */
+	private List<int[]> precedents;
+
+	/** The formula ids, which are always evaluated */
+	private BitSet volatileFormulas;
+
+	/** Map of the cell keys of single cell precedents and their dependent formula ids */
+	private Map<Long, List<Integer>> cellDependents;
+
+	/** The formula ids with at least one precedent of more than one cell */
+	private List<Integer> areaDependents;
+
+	/**
+	 * Creates a recalculator of the given workbook. The dependency index is
+	 * created on the first recalculation of dependent formulas.
+	 * 
+	 * @param workbook The workbook
+	 */
+	public FormulaRecalculator(XSSFWorkbook workbook) {
+		this.workbook = workbook;
+	}
+
+	/**
+	 * Drops the dependency index, so it is created again with the current formulas
+	 * of the workbook on the next recalculation of dependent formulas.
+	 */
+	public void invalidate() {
+		this.formulaCells = null;
+		this.precedents = null;
+		this.volatileFormulas = null;
+		this.cellDependents = null;
+		this.areaDependents = null;
+	}
+
+	/**
+	 * Recalculates the formulas of the workbook after the given cell ranges of the
+	 * given sheet were changed.
+	 * 
+	 * @param mode          The mode of the recalculation
+	 * @param sheetIndex    The index of the sheet of the changed cells
+	 * @param changedRanges The changed cell ranges
+	 * @return The number of evaluated formula cells
+	 */
+	public int recalculate(Mode mode, int sheetIndex, List<CellRangeAddress> changedRanges) {
+		if (mode == Mode.DEFERRED) {
+			this.workbook.setForceFormulaRecalculation(true);
+			return 0;
+		}
+		if (mode == Mode.ALL) {
+			XSSFFormulaEvaluator.evaluateAllFormulaCells(this.workbook);
+			return this.getFormulaCount();
+		}
+
+		BitSet dirtyFormulas = this.getDependentFormulas(sheetIndex, changedRanges);
+		XSSFFormulaEvaluator evaluator = this.workbook.getCreationHelper().createFormulaEvaluator();
+		int evaluatedCount = 0;
+		for (int formulaId = dirtyFormulas.nextSetBit(0); formulaId >= 0; formulaId = dirtyFormulas
+				.nextSetBit(formulaId + 1)) {
+			evaluator.evaluateFormulaCell(this.formulaCells.get(formulaId));
+			evaluatedCount++;
+		}
+		return evaluatedCount;
+	}
+
+	/**
+	 * Returns the ids of all formulas, which depend directly or transitively on
+	 * the given cell ranges, and of all volatile formulas.
+	 * 
+	 * @param sheetIndex    The index of the sheet of the changed cells
+	 * @param changedRanges The changed cell ranges
+	 * @return The ids of the formulas to evaluate
+	 */
+	private BitSet getDependentFormulas(int sheetIndex, List<CellRangeAddress> changedRanges) {
+		this.createIndex();
+		BitSet dirtyFormulas = new BitSet();
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+		for (int formulaId = 0; formulaId < this.formulaCells.size(); formulaId++) {
+			if (this.volatileFormulas.get(formulaId)
+					|| FormulaRecalculator.intersects(this.precedents.get(formulaId), sheetIndex, changedRanges)) {
+				dirtyFormulas.set(formulaId);
+				queue.add(formulaId);
+			}
+		}
+
+		while (!queue.isEmpty()) {
+			XSSFCell cell = this.formulaCells.get(queue.poll());
+			int cellSheetIndex = this.workbook.getSheetIndex(cell.getSheet());
+			List<Integer> dependents = this.cellDependents
+					.get(FormulaRecalculator.getCellKey(cellSheetIndex, cell.getRowIndex(), cell.getColumnIndex()));
+			if (dependents != null) {
+				for (int dependent : dependents) {
+					if (!dirtyFormulas.get(dependent)) {
+						dirtyFormulas.set(dependent);
+						queue.add(dependent);
+					}
+				}
+			}
+			for (int dependent : this.areaDependents) {
+				if (!dirtyFormulas.get(dependent) && FormulaRecalculator.contains(this.precedents.get(dependent),
+						cellSheetIndex, cell.getRowIndex(), cell.getColumnIndex())) {
+					dirtyFormulas.set(dependent);
+					queue.add(dependent);
+				}
+			}
+		}
+		return dirtyFormulas;
+	}
+
+	/**
+	 * Parses all formulas of the workbook and creates the dependency index, if it
+	 * does not exist.
+	 */
+	private void createIndex() {
+		if (this.formulaCells != null) {
+			return;
+		}
+		this.formulaCells = new ArrayList<XSSFCell>();
+		this.precedents = new ArrayList<int[]>();
+		this.volatileFormulas = new BitSet();
+		this.cellDependents = new HashMap<Long, List<Integer>>();
+		this.areaDependents = new ArrayList<Integer>();
+
+		XSSFEvaluationWorkbook evaluationWorkbook = XSSFEvaluationWorkbook.create(this.workbook);
+		for (int sheetIndex = 0; sheetIndex < this.workbook.getNumberOfSheets(); sheetIndex++) {
+			XSSFSheet sheet = this.workbook.getSheetAt(sheetIndex);
+			for (Row row : sheet) {
+				for (Cell cell : row) {
+					if (cell.getCellType() == CellType.FORMULA) {
+						this.addFormula(evaluationWorkbook, sheetIndex, (XSSFCell) cell);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses the formula of the given cell and adds it to the dependency index.
+	 * 
+	 * @param evaluationWorkbook The workbook for parsing formulas
+	 * @param sheetIndex         The index of the sheet of the cell
+	 * @param cell               The formula cell
+	 */
+	private void addFormula(XSSFEvaluationWorkbook evaluationWorkbook, int sheetIndex, XSSFCell cell) {
+		int formulaId = this.formulaCells.size();
+		this.formulaCells.add(cell);
+
+		Ptg[] ptgs;
+		try {
+			ptgs = FormulaParser.parse(cell.getCellFormula(), evaluationWorkbook, FormulaType.CELL, sheetIndex,
+					cell.getRowIndex());
+		} catch (FormulaParseException e) {
+			this.volatileFormulas.set(formulaId);
+			this.precedents.add(new int[0]);
+			return;
+		}
+
+		int[] precedents = new int[ptgs.length * FormulaRecalculator.PRECEDENT_LENGTH];
+		int precedentCount = 0;
+		boolean hasArea = false;
+		for (Ptg ptg : ptgs) {
+			int precedentSheetIndex = sheetIndex;
+			int firstRow;
+			int lastRow;
+			int firstColumn;
+			int lastColumn;
+			if (ptg instanceof Ref3DPxg || ptg instanceof Area3DPxg) {
+				String sheetName = ptg instanceof Ref3DPxg ? ((Ref3DPxg) ptg).getSheetName()
+						: ((Area3DPxg) ptg).getSheetName();
+				String lastSheetName = ptg instanceof Ref3DPxg ? ((Ref3DPxg) ptg).getLastSheetName()
+						: ((Area3DPxg) ptg).getLastSheetName();
+				precedentSheetIndex = this.workbook.getSheetIndex(sheetName);
+				if (precedentSheetIndex < 0 || lastSheetName != null) {
+					this.volatileFormulas.set(formulaId);
+					continue;
+				}
+			}
+			if (ptg instanceof RefPtgBase) {
+				RefPtgBase refPtg = (RefPtgBase) ptg;
+				firstRow = refPtg.getRow();
+				lastRow = firstRow;
+				firstColumn = refPtg.getColumn();
+				lastColumn = firstColumn;
+			} else if (ptg instanceof AreaPtgBase) {
+				AreaPtgBase areaPtg = (AreaPtgBase) ptg;
+				firstRow = areaPtg.getFirstRow();
+				lastRow = areaPtg.getLastRow();
+				firstColumn = areaPtg.getFirstColumn();
+				lastColumn = areaPtg.getLastColumn();
+			} else {
+				if (ptg instanceof NamePtg || ptg instanceof NameXPxg || (ptg instanceof AbstractFunctionPtg
+						&& FormulaRecalculator.VOLATILE_FUNCTIONS.contains(((AbstractFunctionPtg) ptg).getName()))) {
+					this.volatileFormulas.set(formulaId);
+				}
+				continue;
+			}
+
+			int offset = precedentCount * FormulaRecalculator.PRECEDENT_LENGTH;
+			precedents[offset] = precedentSheetIndex;
+			precedents[offset + 1] = firstRow;
+			precedents[offset + 2] = lastRow;
+			precedents[offset + 3] = firstColumn;
+			precedents[offset + 4] = lastColumn;
+			precedentCount++;
+
+			if (firstRow == lastRow && firstColumn == lastColumn) {
+				long cellKey = FormulaRecalculator.getCellKey(precedentSheetIndex, firstRow, firstColumn);
+				List<Integer> dependents = this.cellDependents.get(cellKey);
+				if (dependents == null) {
+					dependents = new ArrayList<Integer>(2);
+					this.cellDependents.put(cellKey, dependents);
+				}
+				dependents.add(formulaId);
+			} else {
+				hasArea = true;
+			}
+		}
+		if (hasArea) {
+			this.areaDependents.add(formulaId);
+		}
+		this.precedents.add(Arrays.copyOf(precedents, precedentCount * FormulaRecalculator.PRECEDENT_LENGTH));
+	}
+
+	/**
+	 * Checks if at least one formula of the workbook refers directly to the given
+	 * cell.
+	 * 
+	 * @param sheetIndex The index of the sheet of the cell
+	 * @param rowNum     The (0 based) row number of the cell
+	 * @param columnNum  The (0 based) column number of the cell
+	 * @return True if the cell is a precedent of a formula, otherwise false
+	 */
+	public boolean isPrecedent(int sheetIndex, int rowNum, int columnNum) {
+		this.createIndex();
+		for (int[] precedents : this.precedents) {
+			if (FormulaRecalculator.contains(precedents, sheetIndex, rowNum, columnNum)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of formula cells of the workbook.
+	 * 
+	 * @return The number of formula cells
+	 */
+	public int getFormulaCount() {
+		if (this.formulaCells != null) {
+			return this.formulaCells.size();
+		}
+		int formulaCount = 0;
+		for (int sheetIndex = 0; sheetIndex < this.workbook.getNumberOfSheets(); sheetIndex++) {
+			for (Row row : this.workbook.getSheetAt(sheetIndex)) {
+				for (Cell cell : row) {
+					if (cell.getCellType() == CellType.FORMULA) {
+						formulaCount++;
+					}
+				}
+			}
+		}
+		return formulaCount;
+	}
+
+	/**
+	 * Checks if one of the given precedents intersects one of the given cell
+	 * ranges.
+	 * 
+	 * @param precedents The precedents of a formula
+	 * @param sheetIndex The index of the sheet of the cell ranges
+	 * @param ranges     The cell ranges
+	 * @return True if a precedent intersects a cell range, otherwise false
+	 */
+	private static boolean intersects(int[] precedents, int sheetIndex, List<CellRangeAddress> ranges) {
+		for (int offset = 0; offset < precedents.length; offset += FormulaRecalculator.PRECEDENT_LENGTH) {
+			if (precedents[offset] != sheetIndex) {
+				continue;
+			}
+			for (CellRangeAddress range : ranges) {
+				if (precedents[offset + 1] <= range.getLastRow() && precedents[offset + 2] >= range.getFirstRow()
+						&& precedents[offset + 3] <= range.getLastColumn()
+						&& precedents[offset + 4] >= range.getFirstColumn()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if one of the given precedents contains the given cell.
+	 * 
+	 * @param precedents The precedents of a formula
+	 * @param sheetIndex The index of the sheet of the cell
+	 * @param rowNum     The (0 based) row number of the cell
+	 * @param columnNum  The (0 based) column number of the cell
+	 * @return True if a precedent contains the cell, otherwise false
+	 */
+	private static boolean contains(int[] precedents, int sheetIndex, int rowNum, int columnNum) {
+		for (int offset = 0; offset < precedents.length; offset += FormulaRecalculator.PRECEDENT_LENGTH) {
+			if (precedents[offset] == sheetIndex && precedents[offset + 1] <= rowNum
+					&& precedents[offset + 2] >= rowNum && precedents[offset + 3] <= columnNum
+					&& precedents[offset + 4] >= columnNum) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the key of the given cell.
+	 * 
+	 * @param sheetIndex The index of the sheet of the cell
+	 * @param rowNum     The (0 based) row number of the cell
+	 * @param columnNum  The (0 based) column number of the cell
+	 * @return The key of the cell
+	 */
+	private static long getCellKey(int sheetIndex, int rowNum, int columnNum) {
+		return ((long) sheetIndex << 40) | ((long) rowNum << 16) | columnNum;
+	}
+}
@@ -0,0 +1,124 @@
+package semesterTimeTable.excel;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Monitor of the peak heap usage during a phase of an export (e.g. loading or
+ * saving a workbook).
+ *
+ * The peak is read from the memory pools of the heap. Their peak usage belongs
+ * to the whole JVM, so it is not reset, but compared with the peak usage at the
+ * start of the monitor. If the peak usage of a pool increased, the pool reached
+ * its peak during the phase. Otherwise the larger usage of the pool at the start
+ * and at the stop is taken, which is a lower bound of its peak during the
+ * phase. The peaks of the pools are added, so the peak heap is an upper bound
+ * of the heap used at the same time. If several exports run concurrently, the
+ * peak heap of one export includes the heap of the other exports.
+ */
+public class HeapMonitor {
+
+	/** The memory pools of the heap */
+	private final List<MemoryPoolMXBean> heapPools;
+
+	/** Used heap, when the monitor was started */
+	private long startHeap;
+
+	/** Used bytes of each pool, when the monitor was started */
+	private final long[] startUsages;
+
+	/** Peak bytes of each pool, when the monitor was started */
+	private final long[] startPeakUsages;
+
+	/** Peak heap, when the monitor was stopped */
+	private long peakHeap;
+
+	/**
+	 * Creates a monitor, which is not started yet.
+	 */
+	public HeapMonitor() {
+		this.heapPools = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				this.heapPools.add(pool);
+			}
+		}
+		this.startUsages = new long[this.heapPools.size()];
+		this.startPeakUsages = new long[this.heapPools.size()];
+	}
+
+	/**
+	 * Starts the monitor by reading the usage and the peak usage of the heap.
+	 */
+	public void start() {
+		long usedHeap = 0;
+		for (int index = 0; index < this.heapPools.size(); index++) {
+			MemoryPoolMXBean pool = this.heapPools.get(index);
+			this.startUsages[index] = pool.getUsage().getUsed();
+			this.startPeakUsages[index] = pool.getPeakUsage().getUsed();
+			usedHeap += this.startUsages[index];
+		}
+		this.startHeap = usedHeap;
+		this.peakHeap = usedHeap;
+	}
+
+	/**
+	 * Stops the monitor and returns the peak heap since the start.
+	 * 
+	 * @return The peak heap in bytes
+	 */
+	public long stop() {
+		long peakHeap = 0;
+		for (int index = 0; index < this.heapPools.size(); index++) {
+			MemoryPoolMXBean pool = this.heapPools.get(index);
+			long peakUsage = pool.getPeakUsage().getUsed();
+			if (peakUsage > this.startPeakUsages[index]) {
+				peakHeap += peakUsage;
+			} else {
+				peakHeap += Math.max(this.startUsages[index], pool.getUsage().getUsed());
+			}
+		}
+		this.peakHeap = Math.max(peakHeap, this.startHeap);
+		return this.peakHeap;
+	}
+
+	/**
+	 * Returns the used heap, when the monitor was started.
+	 * 
+	 * @return The used heap in bytes
+	 */
+	public long getStartHeap() {
+		return this.startHeap;
+	}
+
+	/**
+	 * Returns the peak heap between the start and the stop of the monitor.
+	 * 
+	 * @return The peak heap in bytes
+	 */
+	public long getPeakHeap() {
+		return this.peakHeap;
+	}
+
+	/**
+	 * Returns the additional heap used at the peak compared to the start.
+	 * 
+	 * @return The additional peak heap in bytes
+	 */
+	public long getPeakHeapIncrease() {
+		return this.peakHeap - this.startHeap;
+	}
+
+	/**
+	 * Returns the heap usage of the monitored phase.
+	 * 
+	 * @return The heap usage as text
+	 */
+	@Override
+	public String toString() {
+		return "HeapMonitor[start=" + (this.startHeap >> 10) + " KB, peak=" + (this.peakHeap >> 10) + " KB]";
+	}
+}
@@ -1,29 +1,26 @@
 package semesterTimeTable.excel;
 
 import java.util.Calendar;
+import java.util.TimeZone;
 
 /**
  * Class representing a lecture.
+ *
+ * A lecture is a view of a row of a {@link LectureTable}. The constructors
+ * create a single row, which keeps its values without a table, until the table
+ * of the lecture is needed (see {@link #getLectureTable()}). Lectures of a bulk
+ * import should be added to a common table instead.
  */
 public class Lecture {
 
-	/** Name of the lecture. */
-	private String name;
+	/** The table containing the lecture or null, if it was not needed yet */
+	private LectureTable lectureTable;
 
-	/** Short name of the lecture */
-	private String shortName;
+	/** The row of the lecture in the table */
+	private int row;
 
-	/** Start date and time of the lecture. */
-	private Calendar startDate;
-
-	/** End date and time of the lecture. */
-	private Calendar endDate;
-
-	/** The resources which the lecture uses. */
-	private String[] resources;
-
-	/** The lecturers giving the lecture. */
-	private String[] lecturers;
+	/** The values of a lecture, which was created by a constructor, or null */
+	private final SingleRow singleRow;
 
 	/**
 	 * Constructor method taking multiple resources and lecturers.
@@ -35,11 +32,9 @@ public class Lecture {
 	 * @param lecturers
 	 */
 	public Lecture(String name, Calendar startDate, Calendar endDate, String[] resources, String[] lecturers) {
-		this.setName(name);
-		this.setStartDate(startDate);
-		this.setEndDate(endDate);
-		this.setResources(resources);
-		this.setLecturers(lecturers);
+		this.singleRow = new SingleRow(startDate == null ? TimeZone.getDefault() : startDate.getTimeZone(), name,
+				LectureTable.toEpochMinute(startDate), LectureTable.toEpochMinute(endDate),
+				resources == null ? null : resources.clone(), lecturers == null ? null : lecturers.clone());
 	}
 
 	/**
@@ -52,11 +47,7 @@ public class Lecture {
 	 * @param lecturer
 	 */
 	public Lecture(String name, Calendar startDate, Calendar endDate, String[] resources, String lecturer) {
-		this.setName(name);
-		this.setStartDate(startDate);
-		this.setEndDate(endDate);
-		this.setResources(resources);
-		this.setLecturers(lecturer);
+		this(name, startDate, endDate, resources, new String[] { lecturer });
 	}
 
 	/**
@@ -69,11 +60,7 @@ public class Lecture {
 	 * @param lecturer
 	 */
 	public Lecture(String name, Calendar startDate, Calendar endDate, String resource, String[] lecturers) {
-		this.setName(name);
-		this.setStartDate(startDate);
-		this.setEndDate(endDate);
-		this.setResources(resource);
-		this.setLecturers(lecturers);
+		this(name, startDate, endDate, new String[] { resource }, lecturers);
 	}
 
 	/**
@@ -86,29 +73,61 @@ public class Lecture {
 	 * @param lecturer
 	 */
 	public Lecture(String name, Calendar startDate, Calendar endDate, String resource, String lecturer) {
-		this.setName(name);
-		this.setStartDate(startDate);
-		this.setEndDate(endDate);
-		this.setResources(resource);
-		this.setLecturers(lecturer);
+		this(name, startDate, endDate, new String[] { resource }, new String[] { lecturer });
 	}
 
 	/**
-	 * Getter method for the name of the lecture.
+	 * Creates a view of the given row of the given table.
 	 * 
-	 * @return The name of the lecture
+	 * @param lectureTable The table containing the lecture
+	 * @param row          The row of the lecture in the table
 	 */
-	public String getName() {
-		return this.name;
+	Lecture(LectureTable lectureTable, int row) {
+		this.lectureTable = lectureTable;
+		this.row = row;
+		this.singleRow = null;
+	}
+
+	/**
+	 * Returns the table containing the lecture. A lecture, which was created by a
+	 * constructor, gets a table with only this lecture at the first call.
+	 * 
+	 * @return The table of the lecture
+	 */
+	public LectureTable getLectureTable() {
+		if (this.lectureTable == null) {
+			SingleRow singleRow = this.singleRow;
+			LectureTable lectureTable = new LectureTable(singleRow.timeZone);
+			this.row = lectureTable.add(singleRow.name, singleRow.name, singleRow.startMinute, singleRow.endMinute,
+					singleRow.resources, singleRow.lecturers);
+			if (singleRow.shortName != null) {
+				lectureTable.setShortName(this.row, singleRow.shortName);
+			}
+			this.lectureTable = lectureTable;
+		}
+		return this.lectureTable;
+	}
+
+	/**
+	 * Returns the row of the lecture in its table.
+	 * 
+	 * @return The row of the lecture
+	 */
+	public int getRow() {
+		this.getLectureTable();
+		return this.row;
 	}
 
 	/**
-	 * Setter method for the name of the lecture.
+	 * Getter method for the name of the lecture.
 	 * 
-	 * @param The name for the lecture
+	 * @return The name of the lecture
 	 */
-	private void setName(String name) {
-		this.name = name;
+	public String getName() {
+		if (this.lectureTable == null) {
+			return this.singleRow.name;
+		}
+		return this.lectureTable.getName(this.row);
 	}
 
 	/**
@@ -117,7 +136,10 @@ public class Lecture {
 	 * @return The short name of the lecture
 	 */
 	public String getShortName() {
-		return this.shortName;
+		if (this.lectureTable == null) {
+			return this.singleRow.shortName;
+		}
+		return this.lectureTable.getShortName(this.row);
 	}
 
 	/**
@@ -126,43 +148,61 @@ public class Lecture {
 	 * @param shortName The short name for the lecture
 	 */
 	public void setShortName(String shortName) {
-		this.shortName = shortName;
+		if (this.lectureTable == null) {
+			this.singleRow.shortName = shortName;
+		} else {
+			this.lectureTable.setShortName(this.row, shortName);
+		}
 	}
 
 	/**
-	 * Getter method for the start date of the lecture.
+	 * Getter method for the start date of the lecture. The calendar is created
+	 * for each call.
 	 * 
 	 * @return The start date of the lecture
 	 */
 	public Calendar getStartDate() {
-		return this.startDate;
+		if (this.lectureTable == null) {
+			return LectureTable.toCalendar(this.singleRow.startMinute, this.singleRow.timeZone);
+		}
+		return this.lectureTable.getStartDate(this.row);
 	}
 
 	/**
-	 * Setter method for the start date of the lecture.
+	 * Getter method for the end date of the lecture. The calendar is created for
+	 * each call.
 	 * 
-	 * @param startDate The start date for the lecture
+	 * @return The end date of the lecture
 	 */
-	private void setStartDate(Calendar startDate) {
-		this.startDate = startDate;
+	public Calendar getEndDate() {
+		if (this.lectureTable == null) {
+			return LectureTable.toCalendar(this.singleRow.endMinute, this.singleRow.timeZone);
+		}
+		return this.lectureTable.getEndDate(this.row);
 	}
 
 	/**
-	 * Getter method for the end date of the lecture
+	 * Returns the start date of the lecture as epoch minute.
 	 * 
-	 * @return The end date of the lecture
+	 * @return The start date or {@link LectureTable#NO_DATE}
 	 */
-	public Calendar getEndDate() {
-		return this.endDate;
+	public long getStartEpochMinute() {
+		if (this.lectureTable == null) {
+			return this.singleRow.startMinute;
+		}
+		return this.lectureTable.getStartMinute(this.row);
 	}
 
 	/**
-	 * Setter method for the end date of the lecture.
+	 * Returns the end date of the lecture as epoch minute.
 	 * 
-	 * @param endDate The end date for the lecture
+	 * @return The end date or {@link LectureTable#NO_DATE}
 	 */
-	private void setEndDate(Calendar endDate) {
-		this.endDate = endDate;
+	public long getEndEpochMinute() {
+		if (this.lectureTable == null) {
+			return this.singleRow.endMinute;
+		}
+		return this.lectureTable.getEndMinute(this.row);
 	}
 
 	/**
@@ -171,7 +211,10 @@ public class Lecture {
 	 * @return The resources of the lectures
 	 */
 	public String[] getResources() {
-		return this.resources;
+		if (this.lectureTable == null) {
+			return this.singleRow.resources == null ? null : this.singleRow.resources.clone();
+		}
+		return this.lectureTable.getResources(this.row);
 	}
 
 	/**
@@ -180,72 +223,100 @@ public class Lecture {
 	 * @return The (first) resource of the lectures
 	 */
 	public String getResource() {
-		return this.resources[0];
+		return this.getResources()[0];
 	}
 
 	/**
-	 * Setter method for multiple resources of the lecture.
+	 * Getter method for multiple lecturers of the lecture.
 	 * 
-	 * @param resources The resources for the lecture
+	 * @return The lecturers of the lecture
 	 */
-	private void setResources(String[] resources) {
-		this.resources = resources;
+	public String[] getLecturers() {
+		if (this.lectureTable == null) {
+			return this.singleRow.lecturers == null ? null : this.singleRow.lecturers.clone();
+		}
+		return this.lectureTable.getLecturers(this.row);
 	}
 
 	/**
-	 * Setter method for a single resource of the lecture.
+	 * Getter method for a single lecturer of the lecture.
 	 * 
-	 * @param resource The resource for the lecture
+	 * @return The (first) lecturer of the lecture
 	 */
-	private void setResources(String resource) {
-		this.resources = new String[] { resource };
+	public String getLecturer() {
+		return this.getLecturers()[0];
 	}
 
 	/**
-	 * Getter method for multiple lecturers of the lecture.
+	 * Getter method for the comma (",") separated resources of the lecture.
 	 * 
-	 * @return The lecturers of the lecture
+	 * @return The resources of the lecture as text or null, if the lecture has no
+	 *         resource array
 	 */
-	public String[] getLecturers() {
-		return this.lecturers;
+	public String getResourcesText() {
+		if (this.lectureTable == null) {
+			return LectureTable.joinText(this.singleRow.resources);
+		}
+		return this.lectureTable.getResourcesText(this.row);
 	}
 
 	/**
-	 * Getter method for a single lecturer of the lecture.
+	 * Getter method for the comma (",") separated lecturers of the lecture.
 	 * 
-	 * @return The (first) lecturer of the lecture
+	 * @return The lecturers of the lecture as text or null, if the lecture has no
+	 *         lecturer array
 	 */
-	public String getLecturer() {
-		return this.lecturers[0];
+	public String getLecturersText() {
+		if (this.lectureTable == null) {
+			return LectureTable.joinText(this.singleRow.lecturers);
+		}
+		return this.lectureTable.getLecturersText(this.row);
 	}
 
 	/**
-	 * Setter method for multiple lecturers of the lecture.
+	 * Checks if the given object is a view of the same row of the same table. A
+	 * lecture, which was created by a constructor, is only equal to itself.
 	 * 
-	 * @param lecturers The lecturers for the lecture
+	 * @param object The object to compare with
+	 * @return True if the object is the same lecture, otherwise false
 	 */
-	private void setLecturers(String[] lecturers) {
-		this.lecturers = lecturers;
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof Lecture)) {
+			return false;
+		}
+		Lecture lecture = (Lecture) object;
+		if (this.singleRow != null || lecture.singleRow != null) {
+			return this == lecture;
+		}
+		return this.lectureTable == lecture.lectureTable && this.row == lecture.row;
 	}
 
 	/**
-	 * Setter method for a single lecturer of the lecture.
+	 * Returns the hash code of the row and the table.
 	 * 
-	 * @param lecturer The lecturer for the lecture
+	 * @return The hash code of the lecture
 	 */
-	private void setLecturers(String lecturer) {
-		this.lecturers = new String[] { lecturer };
+	@Override
+	public int hashCode() {
+		if (this.singleRow != null) {
+			return System.identityHashCode(this);
+		}
+		return System.identityHashCode(this.lectureTable) * 31 + this.row;
 	}
 
 	/**
 	 * Returns the lecture in the format {@link #getName() name} (start date - end
-	 * date) as string.
+	 * date) as string. If a date is missing, only the name is returned.
 	 * 
 	 * @return The lecture name and dates as string
 	 */
 	public String toShortString() {
 		Calendar startDate = this.getStartDate();
 		Calendar endDate = this.getEndDate();
+		if (startDate == null || endDate == null) {
+			return this.getName();
+		}
 
 		String startDateString = Lecture.calendarToDateString(startDate);
 		String endDateString = Lecture.calendarToDateString(endDate);
@@ -305,4 +376,54 @@ public class Lecture {
 	public static String NumberToTwoDigitString(int number) {
 		return number < 10 && number > -10 ? "0" + number : "" + number;
 	}
+
+	/**
+	 * Values of a lecture, which was created by a constructor. They are kept in
+	 * the lecture, so no table is allocated for a single lecture.
+	 */
+	private static class SingleRow {
+
+		/** The time zone of the dates */
+		private final TimeZone timeZone;
+
+		/** The name of the lecture */
+		private final String name;
+
+		/** The short name of the lecture or null */
+		private String shortName;
+
+		/** The start date as epoch minute or {@link LectureTable#NO_DATE} */
+		private final long startMinute;
+
+		/** The end date as epoch minute or {@link LectureTable#NO_DATE} */
+		private final long endMinute;
+
+		/** The resources or null */
+		private final String[] resources;
+
+		/** The lecturers or null */
+		private final String[] lecturers;
+
+		/**
+		 * Creates the values of a lecture.
+		 * 
+		 * @param timeZone    The time zone of the dates
+		 * @param name        The name of the lecture
+		 * @param startMinute The start date as epoch minute or
+		 *                    {@link LectureTable#NO_DATE}
+		 * @param endMinute   The end date as epoch minute or
+		 *                    {@link LectureTable#NO_DATE}
+		 * @param resources   The resources or null
+		 * @param lecturers   The lecturers or null
+		 */
+		private SingleRow(TimeZone timeZone, String name, long startMinute, long endMinute, String[] resources,
+				String[] lecturers) {
+			this.timeZone = timeZone;
+			this.name = name;
+			this.startMinute = startMinute;
+			this.endMinute = endMinute;
+			this.resources = resources;
+			this.lecturers = lecturers;
+		}
+	}
 }
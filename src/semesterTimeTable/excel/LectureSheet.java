@@ -0,0 +1,86 @@
+package semesterTimeTable.excel;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+
+/**
+ * The interface is to make sure, that the lectures can be filled into the sheet
+ * of a workbook (see {@link XSSFLectureSheet}) or into a sheet, which is
+ * written directly from the compiled template (see {@link RawLectureSheet}).
+ *
+ * All cells, which are changed, must exist in the template sheet.
+ */
+public interface LectureSheet {
+
+	/**
+	 * Returns all merged regions of the sheet.
+	 * 
+	 * @return The list of merged regions
+	 */
+	public List<CellRangeAddress> getMergedRegions();
+
+	/**
+	 * Adds the given merged region to the sheet after validating, that it does
+	 * not overlap an existing merged region.
+	 * 
+	 * @param cellRange The cell range to merge
+	 * @throws IllegalArgumentException If the cell range contains less than two
+	 *                                  cells or is invalid
+	 * @throws IllegalStateException    If the cell range overlaps an existing
+	 *                                  merged region
+	 */
+	public void addMergedRegion(CellRangeAddress cellRange);
+
+	/**
+	 * Adds the given merged region to the sheet without validating, that it does
+	 * not overlap an existing merged region.
+	 * 
+	 * @param cellRange The cell range to merge
+	 * @throws IllegalArgumentException If the cell range contains less than two
+	 *                                  cells or is invalid
+	 */
+	public void addMergedRegionUnsafe(CellRangeAddress cellRange);
+
+	/**
+	 * Removes all merged regions of the sheet, which are accepted by the given
+	 * filter.
+	 * 
+	 * @param filter The filter, which accepts the merged regions to remove
+	 */
+	public void removeMergedRegions(Predicate<CellRangeAddress> filter);
+
+	/**
+	 * Sets the given cell blank and sets the cell style of the given index.
+	 * 
+	 * @param rowNum         The (0 based) row number of the cell
+	 * @param columnNum      The (0 based) column number of the cell
+	 * @param cellStyleIndex The index of the style for the cell in the workbook
+	 */
+	public void setCellBlank(int rowNum, int columnNum, short cellStyleIndex);
+
+	/**
+	 * Sets the given text and cell style of the given cell. If the text is null,
+	 * the cell is set blank.
+	 * 
+	 * @param rowNum    The (0 based) row number of the cell
+	 * @param columnNum The (0 based) column number of the cell
+	 * @param value     The text of the cell or null
+	 * @param cellStyle The style of the cell
+	 */
+	public void setCellValue(int rowNum, int columnNum, XSSFRichTextString value, XSSFCellStyle cellStyle);
+
+	/**
+	 * Sets the given date of the given cell. The style of the cell is not
+	 * changed.
+	 * 
+	 * @param rowNum    The (0 based) row number of the cell
+	 * @param columnNum The (0 based) column number of the cell
+	 * @param value     The date of the cell
+	 */
+	public void setCellValue(int rowNum, int columnNum, Calendar value);
+}
@@ -0,0 +1,861 @@
+package semesterTimeTable.excel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Compact column store of lectures.
+ *
+ * Each lecture is a row of the table. The start and end dates are stored as
+ * epoch minutes, the names as ids of a {@link StringDictionary} and the
+ * lecturers and resources as ranges of string ids. So the table stores a lecture in a few
+ * dozen bytes instead of two calendars and two string arrays. All lectures of a
+ * table use the time zone of the table for their local time.
+ *
+ * The joined lecturers and resources of the rows are kept in a dictionary of
+ * the table, so the dictionary of the names, which can be shared by the tables
+ * of an export, contains only single names.
+ *
+ * A {@link Lecture} is a lightweight view of a row of the table.
+ */
+public class LectureTable {
+
+	/** Epoch minute of a missing date */
+	public final static long NO_DATE = Long.MIN_VALUE;
+
+	/** Initial number of rows */
+	private final static int INITIAL_CAPACITY = 16;
+
+	/** String id of a missing string */
+	private final static int NO_STRING = -1;
+
+	/** Separator of the joined lecturers and resources */
+	private final static String TEXT_SEPARATOR = ",";
+
+	/** The time zone for the local time of the lectures */
+	private final TimeZone timeZone;
+
+	/** Number of rows */
+	private int size;
+
+	/** Start date of each row as epoch minute */
+	private long[] startMinutes;
+
+	/** End date of each row as epoch minute */
+	private long[] endMinutes;
+
+	/** String id of the name of each row */
+	private int[] nameIds;
+
+	/** Group id of each row */
+	private int[] groupIds;
+
+	/** Short name of each row or null, if no short name is set for any row */
+	private String[] shortNames;
+
+	/** Offset of the first lecturer of each row and the end offset of the last row */
+	private int[] lecturerOffsets;
+
+	/** String ids of the lecturers of all rows */
+	private int[] lecturerIds;
+
+	/** Rows without lecturer array */
+	private BitSet missingLecturers;
+
+	/** Text id of the joined lecturers of each row */
+	private int[] lecturerTextIds;
+
+	/** Offset of the first resource of each row and the end offset of the last row */
+	private int[] resourceOffsets;
+
+	/** String ids of the resources of all rows */
+	private int[] resourceIds;
+
+	/** Rows without resource array */
+	private BitSet missingResources;
+
+	/** Text id of the joined resources of each row */
+	private int[] resourceTextIds;
+
+	/** The dictionary of the string ids */
+	private final StringDictionary dictionary;
+
+	/** The dictionary of the text ids of the joined lecturers and resources */
+	private final StringDictionary textDictionary;
+
+	/** The group names of the group ids */
+	private List<String> groupNames;
+
+	/** Map of the group names and their group id */
+	private Map<String, Integer> groupNameIds;
+
+	/**
+	 * Creates an empty table, which uses the default time zone.
+	 */
+	public LectureTable() {
+		this(TimeZone.getDefault());
+	}
+
+	/**
+	 * Creates an empty table with its own string dictionary.
+	 * 
+	 * @param timeZone The time zone for the local time of the lectures
+	 */
+	public LectureTable(TimeZone timeZone) {
+		this(timeZone, new StringDictionary());
+	}
+
+	/**
+	 * Creates an empty table.
+	 * 
+	 * @param timeZone   The time zone for the local time of the lectures
+	 * @param dictionary The dictionary of the names, lecturers and resources
+	 */
+	public LectureTable(TimeZone timeZone, StringDictionary dictionary) {
+		this.timeZone = timeZone;
+		this.dictionary = dictionary;
+		this.textDictionary = new StringDictionary();
+		this.size = 0;
+		this.startMinutes = new long[LectureTable.INITIAL_CAPACITY];
+		this.endMinutes = new long[LectureTable.INITIAL_CAPACITY];
+		this.nameIds = new int[LectureTable.INITIAL_CAPACITY];
+		this.groupIds = new int[LectureTable.INITIAL_CAPACITY];
+		this.lecturerOffsets = new int[LectureTable.INITIAL_CAPACITY + 1];
+		this.lecturerIds = new int[LectureTable.INITIAL_CAPACITY];
+		this.missingLecturers = new BitSet();
+		this.lecturerTextIds = new int[LectureTable.INITIAL_CAPACITY];
+		this.resourceOffsets = new int[LectureTable.INITIAL_CAPACITY + 1];
+		this.resourceIds = new int[LectureTable.INITIAL_CAPACITY];
+		this.missingResources = new BitSet();
+		this.resourceTextIds = new int[LectureTable.INITIAL_CAPACITY];
+		this.groupNames = new ArrayList<String>();
+		this.groupNameIds = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Creates a table of the given lectures. Each lecture is grouped by its name.
+	 * The time zone of the table is the time zone of the start date of the first
+	 * lecture.
+	 * 
+	 * @param lectures The list of lectures
+	 * @return The table of the lectures
+	 */
+	public static LectureTable fromLectures(List<Lecture> lectures) {
+		TimeZone timeZone = TimeZone.getDefault();
+		if (!lectures.isEmpty()) {
+			Calendar startDate = lectures.get(0).getStartDate();
+			timeZone = startDate == null ? timeZone : startDate.getTimeZone();
+		}
+		LectureTable lectureTable = new LectureTable(timeZone);
+		lectureTable.ensureCapacity(lectures.size());
+		for (Lecture lecture : lectures) {
+			lectureTable.add(lecture.getName(), lecture.getName(), lecture.getStartEpochMinute(),
+					lecture.getEndEpochMinute(), lecture.getResources(), lecture.getLecturers());
+		}
+		return lectureTable;
+	}
+
+	/**
+	 * Returns the time zone for the local time of the lectures.
+	 * 
+	 * @return The time zone of the table
+	 */
+	public TimeZone getTimeZone() {
+		return this.timeZone;
+	}
+
+	/**
+	 * Returns the dictionary of the names, lecturers and resources.
+	 * 
+	 * @return The string dictionary of the table
+	 */
+	public StringDictionary getDictionary() {
+		return this.dictionary;
+	}
+
+	/**
+	 * Returns the number of lectures.
+	 * 
+	 * @return The number of rows
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Makes sure, that the table can hold the given number of lectures without
+	 * growing its arrays. Use it before adding many lectures at once.
+	 * 
+	 * @param capacity The number of rows
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > this.startMinutes.length) {
+			this.startMinutes = Arrays.copyOf(this.startMinutes, capacity);
+			this.endMinutes = Arrays.copyOf(this.endMinutes, capacity);
+			this.nameIds = Arrays.copyOf(this.nameIds, capacity);
+			this.groupIds = Arrays.copyOf(this.groupIds, capacity);
+			this.lecturerOffsets = Arrays.copyOf(this.lecturerOffsets, capacity + 1);
+			this.lecturerTextIds = Arrays.copyOf(this.lecturerTextIds, capacity);
+			this.resourceOffsets = Arrays.copyOf(this.resourceOffsets, capacity + 1);
+			this.resourceTextIds = Arrays.copyOf(this.resourceTextIds, capacity);
+			if (this.shortNames != null) {
+				this.shortNames = Arrays.copyOf(this.shortNames, capacity);
+			}
+		}
+	}
+
+	/**
+	 * Adds a lecture, which is grouped by its name.
+	 * 
+	 * @param name      The name of the lecture
+	 * @param startDate The start date of the lecture or null
+	 * @param endDate   The end date of the lecture or null
+	 * @param resources The resources of the lecture or null
+	 * @param lecturers The lecturers of the lecture or null
+	 * @return The row of the lecture
+	 */
+	public int add(String name, Calendar startDate, Calendar endDate, String[] resources, String[] lecturers) {
+		return this.add(name, name, LectureTable.toEpochMinute(startDate), LectureTable.toEpochMinute(endDate),
+				resources, lecturers);
+	}
+
+	/**
+	 * Adds a lecture, which is grouped by its name.
+	 * 
+	 * @param name      The name of the lecture
+	 * @param startDate The start date of the lecture or null
+	 * @param endDate   The end date of the lecture or null
+	 * @param resources The resources of the lecture or null
+	 * @param lecturers The lecturers of the lecture or null
+	 * @return The row of the lecture
+	 */
+	public int add(String name, Date startDate, Date endDate, String[] resources, String[] lecturers) {
+		return this.add(name, name, LectureTable.toEpochMinute(startDate), LectureTable.toEpochMinute(endDate),
+				resources, lecturers);
+	}
+
+	/**
+	 * Adds a lecture. A missing group name is grouped as empty group name.
+	 * 
+	 * @param groupName   The name of the group of the lecture
+	 * @param name        The name of the lecture
+	 * @param startMinute The start date of the lecture as epoch minute or
+	 *                    {@link #NO_DATE}
+	 * @param endMinute   The end date of the lecture as epoch minute or
+	 *                    {@link #NO_DATE}
+	 * @param resources   The resources of the lecture or null
+	 * @param lecturers   The lecturers of the lecture or null
+	 * @return The row of the lecture
+	 */
+	public int add(String groupName, String name, long startMinute, long endMinute, String[] resources,
+			String[] lecturers) {
+		int row = this.size;
+		if (row == this.startMinutes.length) {
+			this.ensureCapacity(row * 2);
+		}
+		this.startMinutes[row] = startMinute;
+		this.endMinutes[row] = endMinute;
+		this.nameIds[row] = this.getStringId(name);
+		this.groupIds[row] = this.getGroupId(groupName == null ? "" : groupName);
+
+		if (lecturers == null) {
+			this.missingLecturers.set(row);
+			this.lecturerOffsets[row + 1] = this.lecturerOffsets[row];
+			this.lecturerTextIds[row] = LectureTable.NO_STRING;
+		} else {
+			this.lecturerIds = this.addStringIds(this.lecturerIds, this.lecturerOffsets[row], lecturers);
+			this.lecturerOffsets[row + 1] = this.lecturerOffsets[row] + lecturers.length;
+			this.lecturerTextIds[row] = this.getJoinedStringId(this.lecturerIds, this.lecturerOffsets[row],
+					this.lecturerOffsets[row + 1]);
+		}
+		if (resources == null) {
+			this.missingResources.set(row);
+			this.resourceOffsets[row + 1] = this.resourceOffsets[row];
+			this.resourceTextIds[row] = LectureTable.NO_STRING;
+		} else {
+			this.resourceIds = this.addStringIds(this.resourceIds, this.resourceOffsets[row], resources);
+			this.resourceOffsets[row + 1] = this.resourceOffsets[row] + resources.length;
+			this.resourceTextIds[row] = this.getJoinedStringId(this.resourceIds, this.resourceOffsets[row],
+					this.resourceOffsets[row + 1]);
+		}
+		this.size++;
+		return row;
+	}
+
+	/**
+	 * Writes the string ids of the given strings at the given offset into the
+	 * given array. The array is grown, if it is too small.
+	 * 
+	 * @param ids     The array of string ids
+	 * @param offset  The offset of the first string id
+	 * @param strings The strings
+	 * @return The array of string ids
+	 */
+	private int[] addStringIds(int[] ids, int offset, String[] strings) {
+		if (offset + strings.length > ids.length) {
+			ids = Arrays.copyOf(ids, Math.max(ids.length * 2, offset + strings.length));
+		}
+		for (int i = 0; i < strings.length; i++) {
+			ids[offset + i] = this.getStringId(strings[i]);
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns the string id of the given string and adds the string to the
+	 * dictionary, if it does not exist.
+	 * 
+	 * @param string The string or null
+	 * @return The string id or {@link #NO_STRING}, if the string is null
+	 */
+	private int getStringId(String string) {
+		return string == null ? LectureTable.NO_STRING : this.dictionary.getId(string);
+	}
+
+	/**
+	 * Returns the text id of the text of the string ids between the given offsets
+	 * joined with {@value #TEXT_SEPARATOR}. Missing strings are joined as "null"
+	 * like by string concatenation.
+	 * 
+	 * @param ids   The array of string ids
+	 * @param start The offset of the first string id (inclusive)
+	 * @param end   The offset of the last string id (exclusive)
+	 * @return The text id of the joined text
+	 */
+	private int getJoinedStringId(int[] ids, int start, int end) {
+		if (end - start == 1 && ids[start] != LectureTable.NO_STRING) {
+			return this.textDictionary.getId(this.dictionary.getString(ids[start]));
+		}
+		StringBuilder builder = new StringBuilder();
+		for (int i = start; i < end; i++) {
+			builder.append(i > start ? LectureTable.TEXT_SEPARATOR : "").append(this.getString(ids[i]));
+		}
+		return this.textDictionary.getId(builder.toString());
+	}
+
+	/**
+	 * Returns the string of the given string id.
+	 * 
+	 * @param stringId The string id
+	 * @return The string or null, if the string id is {@link #NO_STRING}
+	 */
+	private String getString(int stringId) {
+		return stringId == LectureTable.NO_STRING ? null : this.dictionary.getString(stringId);
+	}
+
+	/**
+	 * Returns the joined text of the given text id.
+	 * 
+	 * @param textId The text id
+	 * @return The text or null, if the text id is {@link #NO_STRING}
+	 */
+	private String getText(int textId) {
+		return textId == LectureTable.NO_STRING ? null : this.textDictionary.getString(textId);
+	}
+
+	/**
+	 * Returns the group id of the given group name and adds the group, if it does
+	 * not exist.
+	 * 
+	 * @param groupName The group name
+	 * @return The group id
+	 */
+	private int getGroupId(String groupName) {
+		Integer groupId = this.groupNameIds.get(groupName);
+		if (groupId == null) {
+			groupId = this.groupNames.size();
+			this.groupNames.add(this.dictionary.intern(groupName));
+			this.groupNameIds.put(groupName, groupId);
+		}
+		return groupId;
+	}
+
+	/**
+	 * Returns a view of the lecture of the given row.
+	 * 
+	 * @param row The row
+	 * @return The lecture of the row
+	 */
+	public Lecture getLecture(int row) {
+		return new Lecture(this, row);
+	}
+
+	/**
+	 * Returns the name of the lecture of the given row.
+	 * 
+	 * @param row The row
+	 * @return The name of the lecture
+	 */
+	public String getName(int row) {
+		return this.getString(this.nameIds[row]);
+	}
+
+	/**
+	 * Returns the group name of the lecture of the given row.
+	 * 
+	 * @param row The row
+	 * @return The group name of the lecture
+	 */
+	public String getGroupName(int row) {
+		return this.groupNames.get(this.groupIds[row]);
+	}
+
+	/**
+	 * Returns the short name of the lecture of the given row.
+	 * 
+	 * @param row The row
+	 * @return The short name of the lecture or null, if it is not set
+	 */
+	public String getShortName(int row) {
+		return this.shortNames == null ? null : this.shortNames[row];
+	}
+
+	/**
+	 * Sets the short name of the lecture of the given row.
+	 * 
+	 * @param row       The row
+	 * @param shortName The short name of the lecture
+	 */
+	public void setShortName(int row, String shortName) {
+		if (this.shortNames == null) {
+			this.shortNames = new String[this.startMinutes.length];
+		}
+		this.shortNames[row] = shortName;
+	}
+
+	/**
+	 * Returns the start date of the lecture of the given row as epoch minute.
+	 * 
+	 * @param row The row
+	 * @return The start date or {@link #NO_DATE}
+	 */
+	public long getStartMinute(int row) {
+		return this.startMinutes[row];
+	}
+
+	/**
+	 * Returns the end date of the lecture of the given row as epoch minute.
+	 * 
+	 * @param row The row
+	 * @return The end date or {@link #NO_DATE}
+	 */
+	public long getEndMinute(int row) {
+		return this.endMinutes[row];
+	}
+
+	/**
+	 * Returns the offset of the local time of the given epoch minute to UTC in
+	 * minutes in the time zone of the table.
+	 * 
+	 * @param epochMinute The epoch minute
+	 * @return The offset in minutes
+	 */
+	public int getOffsetMinutes(long epochMinute) {
+		return epochMinute == LectureTable.NO_DATE ? 0
+				: this.timeZone.getOffset(epochMinute * SlotMapper.MILLIS_PER_MINUTE) / SlotMapper.MILLIS_PER_MINUTE;
+	}
+
+	/**
+	 * Returns a new calendar of the start date of the lecture of the given row.
+	 * 
+	 * @param row The row
+	 * @return The start date or null, if the lecture has no start date
+	 */
+	public Calendar getStartDate(int row) {
+		return LectureTable.toCalendar(this.startMinutes[row], this.timeZone);
+	}
+
+	/**
+	 * Returns a new calendar of the end date of the lecture of the given row.
+	 * 
+	 * @param row The row
+	 * @return The end date or null, if the lecture has no end date
+	 */
+	public Calendar getEndDate(int row) {
+		return LectureTable.toCalendar(this.endMinutes[row], this.timeZone);
+	}
+
+	/**
+	 * Returns a new array of the lecturers of the lecture of the given row.
+	 * 
+	 * @param row The row
+	 * @return The lecturers or null, if the lecture has no lecturer array
+	 */
+	public String[] getLecturers(int row) {
+		return this.missingLecturers.get(row) ? null
+				: this.getStrings(this.lecturerIds, this.lecturerOffsets[row], this.lecturerOffsets[row + 1]);
+	}
+
+	/**
+	 * Returns a new array of the resources of the lecture of the given row.
+	 * 
+	 * @param row The row
+	 * @return The resources or null, if the lecture has no resource array
+	 */
+	public String[] getResources(int row) {
+		return this.missingResources.get(row) ? null
+				: this.getStrings(this.resourceIds, this.resourceOffsets[row], this.resourceOffsets[row + 1]);
+	}
+
+	/**
+	 * Returns the lecturers of the lecture of the given row joined with
+	 * {@value #TEXT_SEPARATOR}. The text is stored once in the table for all
+	 * lectures with the same lecturers.
+	 * 
+	 * @param row The row
+	 * @return The joined lecturers or null, if the lecture has no lecturer array
+	 */
+	public String getLecturersText(int row) {
+		return this.getText(this.lecturerTextIds[row]);
+	}
+
+	/**
+	 * Returns the resources of the lecture of the given row joined with
+	 * {@value #TEXT_SEPARATOR}. The text is stored once in the table for all
+	 * lectures with the same resources.
+	 * 
+	 * @param row The row
+	 * @return The joined resources or null, if the lecture has no resource array
+	 */
+	public String getResourcesText(int row) {
+		return this.getText(this.resourceTextIds[row]);
+	}
+
+	/**
+	 * Returns the strings of the string ids between the given offsets.
+	 * 
+	 * @param ids   The array of string ids
+	 * @param start The offset of the first string id (inclusive)
+	 * @param end   The offset of the last string id (exclusive)
+	 * @return The strings of the string ids
+	 */
+	private String[] getStrings(int[] ids, int start, int end) {
+		String[] strings = new String[end - start];
+		for (int i = start; i < end; i++) {
+			strings[i - start] = this.getString(ids[i]);
+		}
+		return strings;
+	}
+
+	/**
+	 * Removes all lectures of the given group. The order of the remaining lectures
+	 * is not changed.
+	 * 
+	 * @param groupName The group name
+	 * @return The number of removed lectures
+	 */
+	public int removeGroup(String groupName) {
+		Integer groupId = this.groupNameIds.get(groupName);
+		if (groupId == null) {
+			return 0;
+		}
+		int[] rows = new int[this.size];
+		int rowCount = 0;
+		for (int row = 0; row < this.size; row++) {
+			if (this.groupIds[row] != groupId) {
+				rows[rowCount++] = row;
+			}
+		}
+		int removedCount = this.size - rowCount;
+		if (removedCount > 0) {
+			this.reorder(Arrays.copyOf(rows, rowCount));
+		}
+		return removedCount;
+	}
+
+	/**
+	 * Sorts the lectures by their start date. Lectures with the same start date
+	 * keep their order and lectures without start date are sorted first.
+	 */
+	public void sortByStartDate() {
+		int[] rows = new int[this.size];
+		for (int row = 0; row < this.size; row++) {
+			rows[row] = row;
+		}
+		LectureTable.sortRows(rows, this.startMinutes);
+		this.reorder(rows);
+	}
+
+	/**
+	 * Groups the lectures by their group name. The groups are sorted by their name
+	 * and the lectures of a group keep their order. No objects are created for
+	 * the lectures.
+	 * 
+	 * @return The grouped rows
+	 */
+	public Groups groupByName() {
+		int groupCount = this.groupNames.size();
+		int[] rowCounts = new int[groupCount];
+		for (int row = 0; row < this.size; row++) {
+			rowCounts[this.groupIds[row]]++;
+		}
+
+		List<String> usedGroupNames = new ArrayList<String>();
+		for (int groupId = 0; groupId < groupCount; groupId++) {
+			if (rowCounts[groupId] > 0) {
+				usedGroupNames.add(this.groupNames.get(groupId));
+			}
+		}
+		String[] sortedGroupNames = usedGroupNames.toArray(new String[usedGroupNames.size()]);
+		Arrays.sort(sortedGroupNames);
+
+		int[] sortedGroupIds = new int[sortedGroupNames.length];
+		int[] offsets = new int[sortedGroupNames.length + 1];
+		int[] groupOffsets = new int[groupCount];
+		for (int i = 0; i < sortedGroupNames.length; i++) {
+			int groupId = this.groupNameIds.get(sortedGroupNames[i]);
+			sortedGroupIds[i] = groupId;
+			groupOffsets[groupId] = offsets[i];
+			offsets[i + 1] = offsets[i] + rowCounts[groupId];
+		}
+
+		int[] rows = new int[this.size];
+		for (int row = 0; row < this.size; row++) {
+			rows[groupOffsets[this.groupIds[row]]++] = row;
+		}
+		return new Groups(this, sortedGroupIds, offsets, rows);
+	}
+
+	/**
+	 * Keeps only the given rows in the given order.
+	 * 
+	 * @param rows The rows to keep in their new order
+	 */
+	private void reorder(int[] rows) {
+		int newSize = rows.length;
+		int capacity = Math.max(newSize, LectureTable.INITIAL_CAPACITY);
+		long[] startMinutes = new long[capacity];
+		long[] endMinutes = new long[capacity];
+		int[] nameIds = new int[capacity];
+		int[] groupIds = new int[capacity];
+		String[] shortNames = this.shortNames == null ? null : new String[capacity];
+		int[] lecturerOffsets = new int[capacity + 1];
+		int[] lecturerIds = new int[Math.max(this.lecturerOffsets[this.size], 1)];
+		BitSet missingLecturers = new BitSet();
+		int[] lecturerTextIds = new int[capacity];
+		int[] resourceOffsets = new int[capacity + 1];
+		int[] resourceIds = new int[Math.max(this.resourceOffsets[this.size], 1)];
+		BitSet missingResources = new BitSet();
+		int[] resourceTextIds = new int[capacity];
+
+		for (int newRow = 0; newRow < newSize; newRow++) {
+			int row = rows[newRow];
+			startMinutes[newRow] = this.startMinutes[row];
+			endMinutes[newRow] = this.endMinutes[row];
+			nameIds[newRow] = this.nameIds[row];
+			groupIds[newRow] = this.groupIds[row];
+			if (shortNames != null) {
+				shortNames[newRow] = this.shortNames[row];
+			}
+
+			int lecturerCount = this.lecturerOffsets[row + 1] - this.lecturerOffsets[row];
+			System.arraycopy(this.lecturerIds, this.lecturerOffsets[row], lecturerIds, lecturerOffsets[newRow],
+					lecturerCount);
+			lecturerOffsets[newRow + 1] = lecturerOffsets[newRow] + lecturerCount;
+			missingLecturers.set(newRow, this.missingLecturers.get(row));
+			lecturerTextIds[newRow] = this.lecturerTextIds[row];
+
+			int resourceCount = this.resourceOffsets[row + 1] - this.resourceOffsets[row];
+			System.arraycopy(this.resourceIds, this.resourceOffsets[row], resourceIds, resourceOffsets[newRow],
+					resourceCount);
+			resourceOffsets[newRow + 1] = resourceOffsets[newRow] + resourceCount;
+			missingResources.set(newRow, this.missingResources.get(row));
+			resourceTextIds[newRow] = this.resourceTextIds[row];
+		}
+
+		this.size = newSize;
+		this.startMinutes = startMinutes;
+		this.endMinutes = endMinutes;
+		this.nameIds = nameIds;
+		this.groupIds = groupIds;
+		this.shortNames = shortNames;
+		this.lecturerOffsets = lecturerOffsets;
+		this.lecturerIds = lecturerIds;
+		this.missingLecturers = missingLecturers;
+		this.lecturerTextIds = lecturerTextIds;
+		this.resourceOffsets = resourceOffsets;
+		this.resourceIds = resourceIds;
+		this.missingResources = missingResources;
+		this.resourceTextIds = resourceTextIds;
+	}
+
+	/**
+	 * Sorts the given rows stable by the keys of the rows.
+	 * 
+	 * @param rows The rows to sort
+	 * @param keys The keys of all rows
+	 */
+	private static void sortRows(int[] rows, long[] keys) {
+		int[] buffer = new int[rows.length];
+		for (int width = 1; width < rows.length; width *= 2) {
+			for (int start = 0; start < rows.length; start += 2 * width) {
+				int middle = Math.min(start + width, rows.length);
+				int end = Math.min(start + 2 * width, rows.length);
+				int left = start;
+				int right = middle;
+				for (int i = start; i < end; i++) {
+					if (left < middle && (right >= end || keys[rows[left]] <= keys[rows[right]])) {
+						buffer[i] = rows[left++];
+					} else {
+						buffer[i] = rows[right++];
+					}
+				}
+			}
+			System.arraycopy(buffer, 0, rows, 0, rows.length);
+		}
+	}
+
+	/**
+	 * Returns a new calendar of the given epoch minute in the given time zone.
+	 * 
+	 * @param epochMinute The epoch minute
+	 * @param timeZone    The time zone of the calendar
+	 * @return The calendar or null, if the epoch minute is {@link #NO_DATE}
+	 */
+	static Calendar toCalendar(long epochMinute, TimeZone timeZone) {
+		if (epochMinute == LectureTable.NO_DATE) {
+			return null;
+		}
+		Calendar calendar = new GregorianCalendar(timeZone);
+		calendar.setTimeInMillis(epochMinute * SlotMapper.MILLIS_PER_MINUTE);
+		return calendar;
+	}
+
+	/**
+	 * Returns the given strings joined with {@value #TEXT_SEPARATOR} like the
+	 * joined lecturers and resources of a row.
+	 * 
+	 * @param strings The strings or null
+	 * @return The joined strings or null, if the strings are null
+	 */
+	static String joinText(String[] strings) {
+		if (strings == null) {
+			return null;
+		}
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < strings.length; i++) {
+			builder.append(i > 0 ? LectureTable.TEXT_SEPARATOR : "").append(strings[i]);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Returns the given date as epoch minute.
+	 * 
+	 * @param date The date or null
+	 * @return The epoch minute or {@link #NO_DATE}, if the date is null
+	 */
+	public static long toEpochMinute(Calendar date) {
+		return date == null ? LectureTable.NO_DATE : SlotMapper.getEpochMinute(date);
+	}
+
+	/**
+	 * Returns the given date as epoch minute.
+	 * 
+	 * @param date The date or null
+	 * @return The epoch minute or {@link #NO_DATE}, if the date is null
+	 */
+	public static long toEpochMinute(Date date) {
+		return date == null ? LectureTable.NO_DATE : LectureTable.toEpochMinute(date.getTime());
+	}
+
+	/**
+	 * Returns the given time in milliseconds as epoch minute.
+	 * 
+	 * @param millis The time in milliseconds since the epoch
+	 * @return The epoch minute
+	 */
+	public static long toEpochMinute(long millis) {
+		return Math.floorDiv(millis, (long) SlotMapper.MILLIS_PER_MINUTE);
+	}
+
+	/**
+	 * Lectures of a table grouped by their group name.
+	 */
+	public static class Groups {
+
+		/** The table of the lectures */
+		private final LectureTable lectureTable;
+
+		/** The group ids in the order of their group names */
+		private final int[] groupIds;
+
+		/** Offset of the first row of each group and the end offset of the last group */
+		private final int[] offsets;
+
+		/** The rows of all groups */
+		private final int[] rows;
+
+		/**
+		 * Creates the groups of a table.
+		 * 
+		 * @param lectureTable The table of the lectures
+		 * @param groupIds     The group ids in the order of their group names
+		 * @param offsets      The offsets of the first row of each group
+		 * @param rows         The rows of all groups
+		 */
+		private Groups(LectureTable lectureTable, int[] groupIds, int[] offsets, int[] rows) {
+			this.lectureTable = lectureTable;
+			this.groupIds = groupIds;
+			this.offsets = offsets;
+			this.rows = rows;
+		}
+
+		/**
+		 * Returns the number of groups.
+		 * 
+		 * @return The number of groups
+		 */
+		public int size() {
+			return this.groupIds.length;
+		}
+
+		/**
+		 * Returns the name of the given group.
+		 * 
+		 * @param group The index of the group
+		 * @return The group name
+		 */
+		public String getGroupName(int group) {
+			return this.lectureTable.groupNames.get(this.groupIds[group]);
+		}
+
+		/**
+		 * Returns the offset of the first row of the given group.
+		 * 
+		 * @param group The index of the group
+		 * @return The offset of the first row (inclusive)
+		 */
+		public int getStart(int group) {
+			return this.offsets[group];
+		}
+
+		/**
+		 * Returns the offset after the last row of the given group.
+		 * 
+		 * @param group The index of the group
+		 * @return The offset of the last row (exclusive)
+		 */
+		public int getEnd(int group) {
+			return this.offsets[group + 1];
+		}
+
+		/**
+		 * Returns the row at the given offset.
+		 * 
+		 * @param offset The offset
+		 * @return The row of the table
+		 */
+		public int getRow(int offset) {
+			return this.rows[offset];
+		}
+	}
+}
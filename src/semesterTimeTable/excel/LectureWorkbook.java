@@ -4,22 +4,27 @@ import java.awt.Color;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.time.temporal.ChronoUnit;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.FillPatternType;
@@ -27,10 +32,9 @@ import org.apache.poi.ss.usermodel.HorizontalAlignment;
 import org.apache.poi.ss.usermodel.VerticalAlignment;
 import org.apache.poi.ss.util.CellAddress;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.ss.util.WorkbookUtil;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFFont;
-import org.apache.poi.xssf.usermodel.XSSFFormulaEvaluator;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -54,9 +58,44 @@ public class LectureWorkbook {
 	/** Name of the template workbook file */
 	private final static String TEMPLATE_FILENAME = "template.xlsx";
 
+	/** Index of the template sheet, which is filled for each sheet in bulk mode */
+	private final static int TEMPLATE_SHEET_INDEX = 0;
+
+	/**
+	 * Default memory budget for loading an existing workbook file. Workbook files,
+	 * whose uncompressed parts are larger, are opened file backed.
+	 */
+	public final static long DEFAULT_MEMORY_BUDGET = 8 * 1024 * 1024;
+
 	/** String representing a line break inside a workbook cell */
 	public final static String LINE_BREAK = "\n";
 
+	/** Number of rows of the lecture area including the rows between the blocks */
+	private final static int LECTURE_AREA_ROWS = 147;
+
+	/** Number of columns of the lecture area including the column between the weeks */
+	private final static int LECTURE_AREA_COLUMNS = 22;
+
+	/** Style index of a cell, which is not part of the lecture area */
+	private final static short NO_STYLE_INDEX = -1;
+
+	/**
+	 * Kind of top border of each row of a block or -1 for rows outside of the
+	 * lecture area. For more details see {@link #setLectureAreaGrid()}
+	 */
+	private final static byte[] KIND_OF_ROWS = LectureWorkbook.toKinds(49,
+			new int[] { 5, 6, 8, 9, 12, 13, 15, 16, 19, 20, 22, 23, 25, 26, 27, 29, 30, 32, 33, 36, 37, 39, 40, 43, 44,
+					46, 47 },
+			new int[] { 4, 7, 10, 11, 14, 17, 18, 21, 31, 34, 35, 38, 41, 42, 45, 48 }, new int[] { 3, 24, 28 });
+
+	/**
+	 * Kind of left/right border of each column or -1 for columns outside of the
+	 * lecture area. For more details see {@link #setLectureAreaGrid()}
+	 */
+	private final static byte[] KIND_OF_COLUMNS = LectureWorkbook.toKinds(LectureWorkbook.LECTURE_AREA_COLUMNS,
+			new int[] { 1, 6, 12, 17 }, new int[] { 2, 3, 4, 7, 8, 9, 13, 14, 15, 18, 19, 20 },
+			new int[] { 5, 10, 16, 21 });
+
 	/** Error Output for printing errors */
 	private ErrorOutput errorOutput;
 
@@ -64,40 +103,65 @@ public class LectureWorkbook {
 	 * Object containing style (especially color) configurations from a workbook for
 	 * the lectures
 	 */
-	private ConfigWorkbook configWorkbook;
+	private CompiledConfig config;
 
-	/** Workbook for the lectures */
+	/**
+	 * The configuration workbook, if the configuration file was recreated and the
+	 * lecture names have to be added, otherwise null
+	 */
+	private ConfigWorkbook newConfigWorkbook;
+
+	/**
+	 * Workbook for the lectures or null, if a new workbook is written from the
+	 * compiled template (see {@link #templateSheetWriter})
+	 */
 	private XSSFWorkbook workbook;
 
+	/**
+	 * Writer of the compiled template, if a new workbook is written without a
+	 * workbook of Apache POI, otherwise null
+	 */
+	private TemplateSheetWriter templateSheetWriter;
+
+	/** The filled sheet, which is written from the compiled template, or null */
+	private RawLectureSheet rawLectureSheet;
+
+	/**
+	 * Patch of the workbook, if it was loaded from a file, otherwise null. The
+	 * patch copies the unchanged parts of the file, when the workbook is saved.
+	 */
+	private WorkbookPatch workbookPatch;
+
+	/** True if the unchanged parts of a loaded file are copied while saving */
+	private boolean passthroughSave = true;
+
+	/**
+	 * Spool of the finished sheets, if sheets are added in bulk mode (see
+	 * {@link #addSheet(String, LectureTable)}), otherwise null
+	 */
+	private SheetSpool sheetSpool;
+
+	/** Set of the lecture names, which were added to a new configuration */
+	private final Set<String> configuredLectureNames = new HashSet<String>();
+
 	/** Included start date of the quarter */
 	private Calendar quarterStartDate;
 
 	/** Excluded end date of the quarter */
 	private Calendar quarterEndDate;
 
-	/** Map of lectures grouped by their names */
-	private Map<String, List<Lecture>> groupedLectures;
+	/** Mapper of dates to the cells of the quarter */
+	private SlotMapper slotMapper;
+
+	/** Table of all lectures, which are grouped by their names */
+	private LectureTable lectureTable;
 
 	/**
-	 * Lists of columns for different types of left/right borders in last block
-	 * expect the exam week. For more details see {@link #setBorderLists()}
-	 */
-	private List<List<Integer>> borderColumnsLastBlock;
-	/**
-	 * Lists of columns for different types of left/right borders in the exam week.
-	 * For more details see {@link #setBorderLists()}
-	 */
-	private List<List<Integer>> borderColumnsExamWeek;
-	/**
-	 * Lists of columns for different types of left/right borders in first two
-	 * blocks. For more details see {@link #setBorderLists()}
-	 */
-	private List<List<Integer>> borderColumns;
-	/**
-	 * Lists of rows for different types of top borders. For more details see
-	 * {@link #setBorderLists()}
+	 * Index of the border style of each cell of the lecture area by row and column
+	 * or {@link #NO_STYLE_INDEX}. Rows without lecture cells are null. For more
+	 * details see {@link #setLectureAreaGrid()}
 	 */
-	private List<List<Integer>> borderRows;
+	private short[][] lectureAreaStyleIndexes;
 
 	/**
 	 * 3x3 Matrix of border Styles with white fill color for all empty cells in
@@ -122,11 +186,41 @@ public class LectureWorkbook {
 	 */
 	private XSSFCellStyle[][] borderStyle;
 	/**
-	 * Same border Styles like {@link #borderColumns #borderStyle} but with other
+	 * Same border Styles like {@link #borderStyle} but with other
 	 * fill color for empty cells in exam week area
 	 */
 	private XSSFCellStyle[][] borderStyleExamWeek;
 
+	/** Grid of all cells in the lecture blocks, which are part of a merged region */
+	private OccupancyGrid occupancyGrid;
+
+	/** Registry of the cell styles and fonts of the workbook */
+	private StyleRegistry styleRegistry;
+
+	/** Mode of the recalculation of the formulas after filling the workbook */
+	private FormulaRecalculator.Mode recalculationMode = FormulaRecalculator.Mode.DEPENDENT;
+
+	/** Policy for compressing the parts of the workbook file */
+	private CompressionPolicy compressionPolicy = CompressionPolicy.DEFAULT;
+
+	/** Listener of the phases of filling and saving the workbook or null */
+	private ProgressListener progressListener;
+
+	/** Recalculator of the formulas of the workbook with its dependency index or null */
+	private FormulaRecalculator formulaRecalculator;
+
+	/** Number of formula cells, which were evaluated by the last fill */
+	private int evaluatedFormulaCount;
+
+	/** True if the workbook is read from its file instead of from memory */
+	private boolean fileBacked;
+
+	/** Monitor of the heap while loading the workbook */
+	private final HeapMonitor loadHeapMonitor = new HeapMonitor();
+
+	/** Monitor of the heap while saving the workbook */
+	private final HeapMonitor saveHeapMonitor = new HeapMonitor();
+
 	/**
 	 * Loads the workbook of the given filename, if the file exists. If not a
 	 * workbook template will be loaded. Insert the given lectures into the workbook
@@ -138,21 +232,7 @@ public class LectureWorkbook {
 	 * @throws IOException If reading one workbook file failed
 	 */
 	public LectureWorkbook(String filename) throws IOException {
-		this.errorOutput = new ErrorOutput();
-		File file = new File(filename);
-		this.setConfigWorkbook(new ConfigWorkbook(file.getParent()));
-		if (file.exists()) {
-			this.setWorkbook(ApachePOIWrapper.loadWorkbookFromFile(file));
-		} else {
-			this.setWorkbook(ApachePOIWrapper.loadWorkbookFromInputStream(
-					LectureWorkbook.getTemplateInputStream(LectureWorkbook.TEMPLATE_FILENAME)));
-		}
-		this.setBorderLists();
-		this.createBorderStyles();
-		Calendar quarterStartDate = this.getConfigWorkbook().getQuarterStartDate();
-		if (quarterStartDate != null) {
-			this.setBorderDatesWithDateInFirstWeek(quarterStartDate);
-		}
+		this(Paths.get(filename), null);
 	}
 
 	/**
@@ -162,28 +242,145 @@ public class LectureWorkbook {
 	 * colorMap.xlsx in the directory of the file, it will be loaded as custom
 	 * colorWorkbook.
 	 * 
-	 * @param filename    The path to the workbook file
-	 * @param errorOutput The object for error outputs
+	 * @param filename The path to the workbook file
+	 * @param output   The object for error outputs
 	 * @throws IOException If reading one workbook file failed
 	 */
 	public LectureWorkbook(String filename, Output output) throws IOException {
+		this(Paths.get(filename), output);
+	}
+
+	/**
+	 * Loads the workbook of the given path, if the file exists. If not a workbook
+	 * template will be loaded. The configuration is loaded from the directory of
+	 * the path.
+	 * 
+	 * @param path   The path to the workbook file
+	 * @param output The object for error outputs or null
+	 * @throws IOException If reading one workbook file failed
+	 */
+	public LectureWorkbook(Path path, Output output) throws IOException {
+		this(path, output, LectureWorkbook.DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Loads the workbook of the given path, if the file exists. If not a workbook
+	 * template will be loaded. The configuration is loaded from the directory of
+	 * the path.
+	 * 
+	 * If the uncompressed parts of the workbook file are larger than the given
+	 * memory budget, the workbook is opened file backed. Then the zip package is
+	 * not buffered in memory, but its parts are read from the file, when they are
+	 * needed. The file is kept open until the workbook is saved.
+	 * 
+	 * @param path         The path to the workbook file
+	 * @param output       The object for error outputs or null
+	 * @param memoryBudget The number of bytes, which can be buffered for loading
+	 *                     the workbook file
+	 * @throws IOException If reading one workbook file failed
+	 */
+	public LectureWorkbook(Path path, Output output, long memoryBudget) throws IOException {
 		this.errorOutput = new ErrorOutput(output);
-		File file = new File(filename);
-		this.setConfigWorkbook(new ConfigWorkbook(file.getParent()));
-		if (file.exists()) {
-			this.setWorkbook(ApachePOIWrapper.loadWorkbookFromFile(file));
+		this.loadHeapMonitor.start();
+		try {
+			Path parent = path.getParent();
+			this.loadConfig(parent == null ? null : parent.toString());
+			if (!Files.exists(path)) {
+				this.init(null);
+			} else {
+				XSSFWorkbook workbook;
+				if (ApachePOIWrapper.getUncompressedSize(path.toFile()) > memoryBudget) {
+					this.fileBacked = true;
+					workbook = ApachePOIWrapper.openWorkbookFromFile(path.toFile());
+				} else {
+					workbook = ApachePOIWrapper.loadWorkbookFromPath(path);
+				}
+				boolean initialized = false;
+				try {
+					// The patch is created before the styles are changed by init
+					this.workbookPatch = new WorkbookPatch(workbook, path.toFile());
+					this.workbookPatch.addChangedSheet(ApachePOIWrapper.getSheet(workbook));
+					this.init(workbook);
+					initialized = true;
+				} finally {
+					if (!initialized) {
+						// A file backed workbook releases its file
+						if (this.workbook != workbook) {
+							ApachePOIWrapper.closeWorkbook(workbook);
+						}
+						this.closeWorkbook();
+					}
+				}
+			}
+		} finally {
+			this.loadHeapMonitor.stop();
+		}
+	}
+
+	/**
+	 * Loads the workbook of the given input stream. If the input stream is null,
+	 * the workbook template will be loaded. The input stream is not closed.
+	 * 
+	 * @param inputStream     The input stream of the workbook or null
+	 * @param configDirectory The directory of the configuration file or null for
+	 *                        the working directory
+	 * @param output          The object for error outputs or null
+	 * @throws IOException If reading one workbook failed
+	 */
+	public LectureWorkbook(InputStream inputStream, String configDirectory, Output output) throws IOException {
+		this.errorOutput = new ErrorOutput(output);
+		this.loadHeapMonitor.start();
+		try {
+			this.loadConfig(configDirectory);
+			if (inputStream != null) {
+				this.init(ApachePOIWrapper.loadWorkbookFromInputStream(inputStream));
+			} else {
+				this.init(null);
+			}
+		} finally {
+			this.loadHeapMonitor.stop();
+		}
+	}
+
+	/**
+	 * Sets the loaded workbook and prepares its styles and border dates.
+	 * 
+	 * If no workbook is given, the new workbook is written from the compiled
+	 * template (see {@link TemplateSheetWriter}) without a workbook of Apache POI.
+	 * The styles are created in the model workbook of the template, which is
+	 * shared by all exports.
+	 * 
+	 * @param workbook The loaded workbook or null for a new workbook
+	 * @throws IOException If the template cannot be compiled
+	 */
+	private void init(XSSFWorkbook workbook) throws IOException {
+		if (workbook == null) {
+			this.templateSheetWriter = TemplateSheetWriter.getDefault(LectureWorkbook.TEMPLATE_FILENAME);
+			this.initStyles(this.templateSheetWriter.getStyleRegistry());
 		} else {
-			this.setWorkbook(ApachePOIWrapper.loadWorkbookFromInputStream(
-					LectureWorkbook.getTemplateInputStream(LectureWorkbook.TEMPLATE_FILENAME)));
+			this.setWorkbook(workbook);
+			this.initStyles(new StyleRegistry(workbook));
 		}
-		this.setBorderLists();
-		this.createBorderStyles();
-		Calendar quarterStartDate = this.getConfigWorkbook().getQuarterStartDate();
+		Calendar quarterStartDate = this.getConfig().getQuarterStartDate();
 		if (quarterStartDate != null) {
 			this.setBorderDatesWithDateInFirstWeek(quarterStartDate);
 		}
 	}
 
+	/**
+	 * Sets the style registry and creates the border styles and the grid of the
+	 * lecture area with it.
+	 * 
+	 * @param styleRegistry The registry of the cell styles of the workbook
+	 */
+	private void initStyles(StyleRegistry styleRegistry) {
+		synchronized (styleRegistry) {
+			this.styleRegistry = styleRegistry;
+			this.createBorderStyles();
+			this.setLectureAreaGrid();
+		}
+	}
+
 	/**
 	 * Returns the error output object.
 	 * 
@@ -198,29 +395,55 @@ public class LectureWorkbook {
 	}
 
 	/**
-	 * Returns the workbook containing the color styles for the lectures.
+	 * Returns the configuration containing the color styles for the lectures.
 	 * 
-	 * @return The color workbook
+	 * @return The configuration
 	 */
-	public ConfigWorkbook getConfigWorkbook() {
-		return this.configWorkbook;
+	public CompiledConfig getConfig() {
+		return this.config;
 	}
 
 	/**
-	 * Sets the workbook containing the color styles for the lectures.
+	 * Loads the configuration file in the given path. An existing configuration
+	 * file is taken from the {@link ConfigCache}, so an unchanged configuration
+	 * file is only loaded once. If there is no configuration file, a new one is
+	 * created and kept open, so the lecture names can be added while saving.
 	 * 
-	 * @param colorWorkbook The workbook with the color styles
+	 * @param pathToTemplate The path to the configuration file
+	 * @throws IOException If reading or creating the configuration file failed
 	 */
-	private void setConfigWorkbook(ConfigWorkbook colorWorkbook) {
-		this.configWorkbook = colorWorkbook;
+	private void loadConfig(String pathToTemplate) throws IOException {
+		File configFile = ConfigWorkbook.getConfigFile(pathToTemplate);
+		if (configFile.exists()) {
+			this.config = ConfigCache.getDefault().getConfig(configFile);
+			this.newConfigWorkbook = null;
+		} else {
+			ConfigWorkbook configWorkbook = new ConfigWorkbook(pathToTemplate);
+			this.config = new CompiledConfig(configWorkbook);
+			this.newConfigWorkbook = configWorkbook;
+		}
 	}
 
 	/**
 	 * Returns the lecture workbook.
 	 * 
+	 * If the new workbook would be written from the compiled template, the
+	 * template workbook is loaded now and the workbook is written by Apache POI
+	 * like a loaded workbook.
+	 * 
 	 * @return The workbook
+	 * @throws UncheckedIOException If the template workbook cannot be loaded
 	 */
 	public XSSFWorkbook getWorkbook() {
+		if (this.workbook == null) {
+			try {
+				this.setWorkbook(TemplateCache.getDefault().loadWorkbook(LectureWorkbook.TEMPLATE_FILENAME));
+			} catch (IOException e) {
+				throw new UncheckedIOException("The template workbook cannot be loaded", e);
+			}
+			this.templateSheetWriter = null;
+			this.initStyles(new StyleRegistry(this.workbook));
+		}
 		return this.workbook;
 	}
 
@@ -232,6 +455,74 @@ public class LectureWorkbook {
 	 */
 	private void setWorkbook(XSSFWorkbook workbook) {
 		this.workbook = workbook;
+		this.formulaRecalculator = null;
+	}
+
+	/**
+	 * Adds a new sheet with the given name and the lectures of the given table
+	 * (e.g. the timetable of one class) to the workbook. The template sheet is
+	 * filled with the lectures and its content is spooled as the content of the
+	 * new sheet, so the template sheet is reused for the next sheet like for a
+	 * repeated export.
+	 * 
+	 * After the first added sheet the workbook is in bulk mode. All sheets share
+	 * the styles and the shared strings of the workbook. The finished sheets are
+	 * spooled into temporary files (see {@link SheetSpool}), so the memory does
+	 * not grow with the number of sheets. When the workbook is saved, the template
+	 * sheet is removed and only the added sheets remain.
+	 * 
+	 * @param sheetName    The name of the sheet, which is made unique and valid
+	 * @param lectureTable The table of the lectures of the sheet
+	 * @return The name of the added sheet
+	 * @throws IOException If saving the configuration or spooling the sheet
+	 *                     failed
+	 */
+	public String addSheet(String sheetName, LectureTable lectureTable) throws IOException {
+		XSSFWorkbook workbook = this.getWorkbook();
+		if (this.sheetSpool == null) {
+			this.sheetSpool = new SheetSpool(workbook);
+			// Sheets are added and removed, so the file cannot be patched
+			this.workbookPatch = null;
+		}
+		String uniqueSheetName = LectureWorkbook.getUniqueSheetName(workbook, sheetName);
+		XSSFSheet newSheet = workbook.createSheet(uniqueSheetName);
+		XSSFSheet sheet = workbook.getSheetAt(LectureWorkbook.TEMPLATE_SHEET_INDEX);
+		// The first added sheet will be the first sheet after the template sheet is
+		// removed
+		sheet.setSelected(this.sheetSpool.size() == 0);
+		this.setLectures(lectureTable);
+		this.addLectureNamesToNewConfig();
+		this.fillWorkbook();
+		this.sheetSpool.spool(sheet, newSheet);
+		return uniqueSheetName;
+	}
+
+	/**
+	 * Returns a valid sheet name for the given name, which is not used by another
+	 * sheet of the given workbook.
+	 * 
+	 * @param workbook  The workbook
+	 * @param sheetName The name of the sheet
+	 * @return The unique sheet name
+	 */
+	private static String getUniqueSheetName(XSSFWorkbook workbook, String sheetName) {
+		String safeSheetName = WorkbookUtil.createSafeSheetName(sheetName);
+		String uniqueSheetName = safeSheetName;
+		for (int number = 2; workbook.getSheet(uniqueSheetName) != null; number++) {
+			String suffix = " (" + number + ")";
+			uniqueSheetName = safeSheetName.substring(0, Math.min(safeSheetName.length(), 31 - suffix.length()))
+					+ suffix;
+		}
+		return uniqueSheetName;
+	}
+
+	/**
+	 * Returns the number of sheets, which were added in bulk mode.
+	 * 
+	 * @return The number of added sheets
+	 */
+	public int getAddedSheetCount() {
+		return this.sheetSpool == null ? 0 : this.sheetSpool.size();
 	}
 
 	/**
@@ -240,36 +531,195 @@ public class LectureWorkbook {
 	 */
 	public void fillWorkbook() {
 		XSSFSheet sheet = ApachePOIWrapper.getSheet(this.getWorkbook());
-		this.resetLectureAreaInWorkbook();
+		this.fillLectureSheet(new XSSFLectureSheet(sheet));
+		this.recalculateFormulas(sheet);
+	}
 
-		ConfigWorkbook configWorkbook = this.getConfigWorkbook();
-		int firstColumn = 22 - configWorkbook.getExamWeekLength();
+	/**
+	 * Recalculates the formulas of the workbook after the given lecture sheet was
+	 * filled with the recalculation mode of the workbook. The recalculator is kept
+	 * for the workbook, so its formulas are only parsed for the first fill and not
+	 * again for each added sheet or save.
+	 * 
+	 * @param sheet The filled lecture sheet
+	 */
+	private void recalculateFormulas(XSSFSheet sheet) {
+		// Only the quarter start date, the timestamp and the lecture blocks are
+		// changed
+		List<CellRangeAddress> changedRanges = Arrays.asList(new CellRangeAddress(2, 2, 1, 1),
+				new CellRangeAddress(1, 1, 0, 0), new CellRangeAddress(3, 48, 1, 21), new CellRangeAddress(52, 97, 1, 21),
+				new CellRangeAddress(101, 146, 1, 21));
+		if (this.formulaRecalculator == null) {
+			this.formulaRecalculator = new FormulaRecalculator(this.getWorkbook());
+		}
+		this.evaluatedFormulaCount = this.formulaRecalculator.recalculate(this.getRecalculationMode(),
+				this.getWorkbook().getSheetIndex(sheet), changedRanges);
+	}
+
+	/**
+	 * Deletes all lectures in the given sheet and inserts the lectures of the
+	 * lecture table, the exam week and the dates into the sheet. The formulas are
+	 * not recalculated.
+	 * 
+	 * @param sheet The sheet of the workbook or of the compiled template
+	 */
+	private void fillLectureSheet(LectureSheet sheet) {
+		this.resetLectureArea(sheet);
+
+		CompiledConfig config = this.getConfig();
+		int firstColumn = 22 - config.getExamWeekLength();
 		if (firstColumn < 22) {
 			sheet.addMergedRegion(new CellRangeAddress(139, 146, firstColumn, 21));
-			XSSFCell cell = sheet.getRow(139).getCell(firstColumn);
-			XSSFWorkbook workbook = this.getWorkbook();
+			StyleRegistry styleRegistry = this.styleRegistry;
 
-			XSSFCellStyle cellStyle = workbook.createCellStyle();
-			cellStyle.setFillForegroundColor(configWorkbook.getExamWeekFillColor());
+			XSSFCellStyle cellStyle = styleRegistry.createPrototype();
+			cellStyle.setFillForegroundColor(config.getExamWeekFillColor());
 			cellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 			cellStyle.setWrapText(true);
 			cellStyle.setVerticalAlignment(VerticalAlignment.CENTER);
 			cellStyle.setAlignment(HorizontalAlignment.CENTER);
+			cellStyle.setFont(styleRegistry.getFont(config.getExamWeekFont()));
 
-			XSSFFont font = workbook.createFont();
-			XSSFFont examWeekFont = configWorkbook.getExamWeekFont();
-			ApachePOIWrapper.copyFont(font, examWeekFont);
-			cellStyle.setFont(font);
-
-			cell.setCellStyle(cellStyle);
-			cell.setCellValue(configWorkbook.getExamWeekText());
+			sheet.setCellValue(139, firstColumn, config.getExamWeekText(), styleRegistry.getCellStyle(cellStyle));
 		}
 
-		this.addLecturesToWorkbook();
+		this.occupancyGrid = new OccupancyGrid();
+		this.occupancyGrid.occupyAll(sheet.getMergedRegions());
+
+		this.addLecturesToWorkbook(sheet);
+
+		sheet.setCellValue(2, 1, this.getQuarterStartDate());
+		sheet.setCellValue(1, 0, new GregorianCalendar());
+	}
+
+	/**
+	 * Returns the mode of the recalculation of the formulas after filling the
+	 * workbook.
+	 * 
+	 * @return The recalculation mode
+	 */
+	public FormulaRecalculator.Mode getRecalculationMode() {
+		return this.recalculationMode;
+	}
+
+	/**
+	 * Sets the mode of the recalculation of the formulas after filling the
+	 * workbook. The default mode evaluates only the formulas, which depend on the
+	 * changed cells.
+	 * 
+	 * @param recalculationMode The recalculation mode
+	 */
+	public void setRecalculationMode(FormulaRecalculator.Mode recalculationMode) {
+		this.recalculationMode = recalculationMode;
+	}
+
+	/**
+	 * Returns the policy for compressing the parts of the workbook file.
+	 * 
+	 * @return The compression policy
+	 */
+	public CompressionPolicy getCompressionPolicy() {
+		return this.compressionPolicy;
+	}
+
+	/**
+	 * Sets the policy for compressing the parts of the workbook file. The default
+	 * policy deflates the parts with the default level like Apache POI does.
+	 * 
+	 * @param compressionPolicy The compression policy
+	 */
+	public void setCompressionPolicy(CompressionPolicy compressionPolicy) {
+		this.compressionPolicy = compressionPolicy;
+	}
+
+	/**
+	 * Returns the listener of the phases of filling and saving the workbook.
+	 * 
+	 * @return The progress listener or null
+	 */
+	public ProgressListener getProgressListener() {
+		return this.progressListener;
+	}
+
+	/**
+	 * Sets the listener of the phases of filling and saving the workbook. If the
+	 * listener cancels the export, saving stops before the next phase with an
+	 * {@link java.io.InterruptedIOException} and the workbook file is not
+	 * changed.
+	 * 
+	 * @param progressListener The progress listener or null
+	 */
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Returns the number of formula cells, which were evaluated by the last fill
+	 * of the workbook. A new workbook written from the compiled template evaluates
+	 * no formula, because the formula values are taken from the template.
+	 * 
+	 * @return The number of evaluated formula cells
+	 */
+	public int getEvaluatedFormulaCount() {
+		return this.evaluatedFormulaCount;
+	}
+
+	/**
+	 * Checks if the unchanged parts of a loaded workbook file are copied from the
+	 * file, when the workbook is saved (see {@link WorkbookPatch}).
+	 * 
+	 * @return True if the unchanged parts are copied, otherwise false
+	 */
+	public boolean isPassthroughSave() {
+		return this.passthroughSave;
+	}
 
-		sheet.getRow(2).getCell(1).setCellValue(this.getQuarterStartDate());
-		sheet.getRow(1).getCell(0).setCellValue(new GregorianCalendar());
-		XSSFFormulaEvaluator.evaluateAllFormulaCells(this.getWorkbook());
+	/**
+	 * Sets if the unchanged parts of a loaded workbook file are copied from the
+	 * file, when the workbook is saved. This is enabled by default. It must be
+	 * disabled, if other parts than the lecture sheet, the styles and the shared
+	 * strings are changed with {@link #getWorkbook()}, because these changes would
+	 * not be saved otherwise.
+	 * 
+	 * If the file was changed since it was loaded, all parts are written by
+	 * Apache POI anyway.
+	 * 
+	 * @param passthroughSave True if the unchanged parts should be copied
+	 */
+	public void setPassthroughSave(boolean passthroughSave) {
+		this.passthroughSave = passthroughSave;
+	}
+
+	/**
+	 * Checks if the workbook is read from its file instead of from memory.
+	 * 
+	 * @return True if the workbook is file backed, otherwise false
+	 */
+	public boolean isFileBacked() {
+		return this.fileBacked;
+	}
+
+	/**
+	 * Returns the peak heap while loading the workbook. If several exports run
+	 * concurrently, the peak includes the heap of the other exports.
+	 * 
+	 * @see HeapMonitor
+	 * @return The peak heap in bytes
+	 */
+	public long getLoadPeakHeap() {
+		return this.loadHeapMonitor.getPeakHeap();
+	}
+
+	/**
+	 * Returns the peak heap while saving the workbook or 0, if the workbook was
+	 * not saved yet. If several exports run concurrently, the peak includes the
+	 * heap of the other exports.
+	 * 
+	 * @see HeapMonitor
+	 * @return The peak heap in bytes
+	 */
+	public long getSavePeakHeap() {
+		return this.saveHeapMonitor.getPeakHeap();
 	}
 
 	/**
@@ -285,226 +735,162 @@ public class LectureWorkbook {
 	}
 
 	/**
-	 * Creates lists with row numbers and their top border style and with column
-	 * numbers and their left/right border style.
+	 * Creates the grid of the style indexes of all cells in the lecture area. The
+	 * border styles must be created before, see {@link #createBorderStyles()}.
 	 * 
-	 * Each border columns list ({@link #borderColumnsLastBlock},
-	 * {@link #borderColumnsExamWeek}, {@link #borderColumns}) contains three inner
-	 * lists. Each inner list contains column numbers for different left/right
-	 * border types.
+	 * The style of a cell is {@link #borderStyle}[kindOfRow][kindOfColumn] or
+	 * {@link #borderStyleExamWeek}[kindOfRow][kindOfColumn] for the cells of the
+	 * exam week.
 	 * 
 	 * <table>
 	 * <tr>
-	 * <th>list index</th>
-	 * <th>list content</th>
-	 * </tr>
-	 * <tr>
-	 * <td>0</td>
-	 * <td>column numbers with left border</td>
-	 * </tr>
-	 * <tr>
-	 * <td>1</td>
-	 * <td>column numbers with no left or right border</td>
-	 * </tr>
-	 * <tr>
-	 * <td>2</td>
-	 * <td>column numbers with right border</td>
-	 * </tr>
-	 * </table>
-	 * 
-	 * Each border rows list ({@link #borderRows}) contains three lists. Each inner
-	 * list contains row numbers for different top border types.
-	 * 
-	 * <table>
-	 * <tr>
-	 * <th>list index</th>
-	 * <th>list content</th>
+	 * <th>kind</th>
+	 * <th>kind of row ({@link #KIND_OF_ROWS})</th>
+	 * <th>kind of column ({@link #KIND_OF_COLUMNS})</th>
 	 * </tr>
 	 * <tr>
 	 * <td>0</td>
 	 * <td>rows with no top border</td>
+	 * <td>columns with left border</td>
 	 * </tr>
 	 * <tr>
 	 * <td>1</td>
 	 * <td>rows with gray top border</td>
+	 * <td>columns with no left or right border</td>
 	 * </tr>
 	 * <tr>
 	 * <td>2</td>
 	 * <td>rows with black top border</td>
+	 * <td>columns with right border</td>
 	 * </tr>
 	 * </table>
-	 * 
 	 */
-	private void setBorderLists() {
-		int firstExamWeekColumn = 22 - this.getConfigWorkbook().getExamWeekLength();
-
-		List<Integer> leftBorderColumns = Arrays.asList(1, 6, 12, 17);
-		List<Integer> noBorderColumns = Arrays.asList(2, 3, 4, 7, 8, 9, 13, 14, 15, 18, 19, 20);
-		List<Integer> rightBorderColumns = Arrays.asList(5, 10, 16, 21);
-
-		this.borderColumnsLastBlock = new ArrayList<List<Integer>>(3);
-		this.borderColumnsExamWeek = new ArrayList<List<Integer>>(3);
-		this.borderColumns = new ArrayList<List<Integer>>(3);
-
-		this.borderColumnsLastBlock.add(0, LectureWorkbook.getSubColumnList(leftBorderColumns, 0, firstExamWeekColumn));
-		this.borderColumnsExamWeek.add(0, LectureWorkbook.getSubColumnList(leftBorderColumns, firstExamWeekColumn, 22));
-		this.borderColumns.add(0, leftBorderColumns);
-
-		this.borderColumnsLastBlock.add(1, LectureWorkbook.getSubColumnList(noBorderColumns, 0, firstExamWeekColumn));
-		this.borderColumnsExamWeek.add(1, LectureWorkbook.getSubColumnList(noBorderColumns, firstExamWeekColumn, 22));
-		this.borderColumns.add(1, noBorderColumns);
-
-		this.borderColumnsLastBlock.add(2,
-				LectureWorkbook.getSubColumnList(rightBorderColumns, 0, firstExamWeekColumn));
-		this.borderColumnsExamWeek.add(2,
-				LectureWorkbook.getSubColumnList(rightBorderColumns, firstExamWeekColumn, 22));
-		this.borderColumns.add(2, rightBorderColumns);
-
-		this.borderRows = new ArrayList<List<Integer>>(3);
-		this.borderRows.add(0, Arrays.asList(5, 6, 8, 9, 12, 13, 15, 16, 19, 20, 22, 23, 25, 26, 27, 29, 30, 32, 33, 36,
-				37, 39, 40, 43, 44, 46, 47));
-		this.borderRows.add(1, Arrays.asList(4, 7, 10, 11, 14, 17, 18, 21, 31, 34, 35, 38, 41, 42, 45, 48));
-		this.borderRows.add(2, Arrays.asList(3, 24, 28));
+	private void setLectureAreaGrid() {
+		int firstExamWeekColumn = LectureWorkbook.LECTURE_AREA_COLUMNS - this.getConfig().getExamWeekLength();
+		this.lectureAreaStyleIndexes = new short[LectureWorkbook.LECTURE_AREA_ROWS][];
+		for (int rowNum = 0; rowNum < LectureWorkbook.LECTURE_AREA_ROWS; rowNum++) {
+			int kindOfRow = LectureWorkbook.KIND_OF_ROWS[rowNum % 49];
+			if (kindOfRow < 0) {
+				continue;
+			}
+			short[] styleIndexes = new short[LectureWorkbook.LECTURE_AREA_COLUMNS];
+			for (int columnNum = 0; columnNum < LectureWorkbook.LECTURE_AREA_COLUMNS; columnNum++) {
+				int kindOfColumn = LectureWorkbook.KIND_OF_COLUMNS[columnNum];
+				if (kindOfColumn < 0) {
+					styleIndexes[columnNum] = LectureWorkbook.NO_STYLE_INDEX;
+				} else {
+					boolean isExamWeek = rowNum >= 2 * 49 && columnNum >= firstExamWeekColumn;
+					XSSFCellStyle[][] borderStyle = isExamWeek ? this.borderStyleExamWeek : this.borderStyle;
+					styleIndexes[columnNum] = borderStyle[kindOfRow][kindOfColumn].getIndex();
+				}
+			}
+			this.lectureAreaStyleIndexes[rowNum] = styleIndexes;
+		}
 	}
 
-	private static List<Integer> getSubColumnList(List<Integer> columns, int startColumn, int endColumn) {
-		List<Integer> subColumns = new ArrayList<Integer>();
-		for (int column : columns) {
-			if (column >= startColumn && column < endColumn) {
-				subColumns.add(column);
+	/**
+	 * Returns an array of the given length, which contains the index of the list
+	 * containing each number and -1 for all other numbers.
+	 * 
+	 * @param length The length of the array
+	 * @param lists  The lists of numbers of each kind
+	 * @return The kind of each number
+	 */
+	private static byte[] toKinds(int length, int[]... lists) {
+		byte[] kinds = new byte[length];
+		Arrays.fill(kinds, (byte) -1);
+		for (int kind = 0; kind < lists.length; kind++) {
+			for (int number : lists[kind]) {
+				kinds[number] = (byte) kind;
 			}
 		}
-		return subColumns;
+		return kinds;
 	}
 
 	/**
-	 * Creates border styles for each kind of cell.
+	 * Creates border styles for each kind of cell. Border styles, which already
+	 * exist in the workbook, are reused.
 	 */
 	private void createBorderStyles() {
 
-		XSSFWorkbook workbook = this.getWorkbook();
+		StyleRegistry styleRegistry = this.styleRegistry;
 
 		// leftNoTop middleNoTop rightNoTop
 		// leftGrey middleGrey rightGrey
 		// leftBlack middleBlack rightBlack
-		this.borderStyle = new XSSFCellStyle[3][3];
+		XSSFCellStyle[][] prototypes = new XSSFCellStyle[3][3];
 
-		this.borderStyle[0][1] = workbook.createCellStyle();
-		this.borderStyle[0][1].setBorderLeft(BorderStyle.THIN);
-		this.borderStyle[0][1].setBorderRight(BorderStyle.THIN);
-		this.borderStyle[0][1].setFillForegroundColor(ApachePOIWrapper.colorToXSSFColor(Color.WHITE));
-		this.borderStyle[0][1].setFillPattern(FillPatternType.SOLID_FOREGROUND);
+		prototypes[0][1] = styleRegistry.createPrototype();
+		prototypes[0][1].setBorderLeft(BorderStyle.THIN);
+		prototypes[0][1].setBorderRight(BorderStyle.THIN);
+		prototypes[0][1].setFillForegroundColor(ApachePOIWrapper.colorToXSSFColor(Color.WHITE));
+		prototypes[0][1].setFillPattern(FillPatternType.SOLID_FOREGROUND);
 
-		this.borderStyle[0][0] = workbook.createCellStyle();
-		this.borderStyle[0][0].cloneStyleFrom(this.borderStyle[0][1]);
-		this.borderStyle[0][0].setBorderLeft(BorderStyle.THICK);
+		prototypes[0][0] = styleRegistry.createPrototype(prototypes[0][1]);
+		prototypes[0][0].setBorderLeft(BorderStyle.THICK);
 
-		this.borderStyle[0][2] = workbook.createCellStyle();
-		this.borderStyle[0][2].cloneStyleFrom(this.borderStyle[0][1]);
-		this.borderStyle[0][2].setBorderRight(BorderStyle.THICK);
+		prototypes[0][2] = styleRegistry.createPrototype(prototypes[0][1]);
+		prototypes[0][2].setBorderRight(BorderStyle.THICK);
 
-		this.borderStyle[2][1] = workbook.createCellStyle();
-		this.borderStyle[2][1].cloneStyleFrom(this.borderStyle[0][1]);
-		this.borderStyle[2][1].setBorderTop(BorderStyle.THIN);
+		prototypes[2][1] = styleRegistry.createPrototype(prototypes[0][1]);
+		prototypes[2][1].setBorderTop(BorderStyle.THIN);
 
-		this.borderStyle[2][0] = workbook.createCellStyle();
-		this.borderStyle[2][0].cloneStyleFrom(this.borderStyle[2][1]);
-		this.borderStyle[2][0].setBorderLeft(BorderStyle.THICK);
+		prototypes[2][0] = styleRegistry.createPrototype(prototypes[2][1]);
+		prototypes[2][0].setBorderLeft(BorderStyle.THICK);
 
-		this.borderStyle[2][2] = workbook.createCellStyle();
-		this.borderStyle[2][2].cloneStyleFrom(this.borderStyle[2][1]);
-		this.borderStyle[2][2].setBorderRight(BorderStyle.THICK);
+		prototypes[2][2] = styleRegistry.createPrototype(prototypes[2][1]);
+		prototypes[2][2].setBorderRight(BorderStyle.THICK);
 
-		this.borderStyle[1][1] = workbook.createCellStyle();
-		this.borderStyle[1][1].cloneStyleFrom(this.borderStyle[2][1]);
-		this.borderStyle[1][1].setTopBorderColor(ApachePOIWrapper.colorToXSSFColor(Color.LIGHT_GRAY));
+		prototypes[1][1] = styleRegistry.createPrototype(prototypes[2][1]);
+		prototypes[1][1].setTopBorderColor(ApachePOIWrapper.colorToXSSFColor(Color.LIGHT_GRAY));
 
-		this.borderStyle[1][0] = workbook.createCellStyle();
-		this.borderStyle[1][0].cloneStyleFrom(this.borderStyle[1][1]);
-		this.borderStyle[1][0].setBorderLeft(BorderStyle.THICK);
+		prototypes[1][0] = styleRegistry.createPrototype(prototypes[1][1]);
+		prototypes[1][0].setBorderLeft(BorderStyle.THICK);
 
-		this.borderStyle[1][2] = workbook.createCellStyle();
-		this.borderStyle[1][2].cloneStyleFrom(this.borderStyle[1][1]);
-		this.borderStyle[1][2].setBorderRight(BorderStyle.THICK);
+		prototypes[1][2] = styleRegistry.createPrototype(prototypes[1][1]);
+		prototypes[1][2].setBorderRight(BorderStyle.THICK);
 
+		this.borderStyle = new XSSFCellStyle[3][3];
 		this.borderStyleExamWeek = new XSSFCellStyle[3][3];
 		for (int kindOfRow = 0; kindOfRow < 3; kindOfRow++) {
 			for (int kindOfColumn = 0; kindOfColumn < 3; kindOfColumn++) {
-				this.borderStyleExamWeek[kindOfRow][kindOfColumn] = workbook.createCellStyle();
-				this.borderStyleExamWeek[kindOfRow][kindOfColumn]
-						.cloneStyleFrom(this.borderStyle[kindOfRow][kindOfColumn]);
-				this.borderStyleExamWeek[kindOfRow][kindOfColumn]
-						.setFillForegroundColor(ApachePOIWrapper.colorToXSSFColor(Color.CYAN));
-				this.borderStyleExamWeek[kindOfRow][kindOfColumn].setFillPattern(FillPatternType.SOLID_FOREGROUND);
+				XSSFCellStyle prototype = prototypes[kindOfRow][kindOfColumn];
+				this.borderStyle[kindOfRow][kindOfColumn] = styleRegistry.getCellStyle(prototype);
+
+				XSSFCellStyle examWeekPrototype = styleRegistry.createPrototype(prototype);
+				examWeekPrototype.setFillForegroundColor(ApachePOIWrapper.colorToXSSFColor(Color.CYAN));
+				examWeekPrototype.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+				if (kindOfRow == 1) {
+					examWeekPrototype.setTopBorderColor(ApachePOIWrapper.colorToXSSFColor(Color.BLACK));
+				}
+				this.borderStyleExamWeek[kindOfRow][kindOfColumn] = styleRegistry.getCellStyle(examWeekPrototype);
 			}
 		}
-		for (int kindOfColumn = 0; kindOfColumn < 3; kindOfColumn++) {
-			this.borderStyleExamWeek[1][kindOfColumn].setTopBorderColor(ApachePOIWrapper.colorToXSSFColor(Color.BLACK));
-		}
 	}
 
 	/**
-	 * Resets each cell in the lecture area in the sheet of the workbook by setting
-	 * the cells blank and adding the correct cellStyle.
+	 * Resets each cell in the lecture area in the given sheet by setting the cells
+	 * blank and adding the correct cellStyle.
+	 * 
+	 * All merged regions of the lecture area are removed in one batch, each row is
+	 * fetched only once and the styles are set by their precomputed index, so the
+	 * cost does not depend on the number of lectures of the previous export.
+	 * 
+	 * @param sheet The sheet of the workbook or of the compiled template
 	 */
-	private void resetLectureAreaInWorkbook() {
-		XSSFSheet sheet = ApachePOIWrapper.getSheet(this.getWorkbook());
-		List<CellRangeAddress> ranges = sheet.getMergedRegions();
-		for (int index = sheet.getNumMergedRegions() - 1; index > -1; index--) {
-			CellRangeAddress range = ranges.get(index);
-			if (this.isLectureCell(range.getFirstRow(), range.getFirstColumn())) {
-				sheet.removeMergedRegion(index);
-			}
-		}
+	private void resetLectureArea(LectureSheet sheet) {
+		sheet.removeMergedRegions(range -> this.isLectureCell(range.getFirstRow(), range.getFirstColumn()));
 
-		// First two blocks
-		for (int block = 0; block < 2; block++) {
-			int blockStartRow = block * 49;
-			int kindOfRowIndex = 0;
-			for (List<Integer> kindOfRow : this.borderRows) {
-				for (int rawRowNum : kindOfRow) {
-					int rowNum = rawRowNum + blockStartRow;
-					int kindOfColumnIndex = 0;
-					for (List<Integer> kindOfColumn : this.borderColumns) {
-						for (int columnNum : kindOfColumn) {
-							ApachePOIWrapper.resetCell(this.getWorkbook(), rowNum, columnNum,
-									this.borderStyle[kindOfRowIndex][kindOfColumnIndex]);
-						}
-						kindOfColumnIndex++;
-					}
-				}
-				kindOfRowIndex++;
+		for (int rowNum = 0; rowNum < LectureWorkbook.LECTURE_AREA_ROWS; rowNum++) {
+			short[] styleIndexes = this.lectureAreaStyleIndexes[rowNum];
+			if (styleIndexes == null) {
+				continue;
 			}
-		}
-
-		// Last block
-		int blockStartRow = 2 * 49;
-		int kindOfRowIndex = 0;
-		for (List<Integer> kindOfRow : this.borderRows) {
-			for (int rawRowNum : kindOfRow) {
-				int rowNum = rawRowNum + blockStartRow;
-
-				// Before Exam week
-				int kindOfColumnIndex = 0;
-				for (List<Integer> kindOfColumn : this.borderColumnsLastBlock) {
-					for (int columnNum : kindOfColumn) {
-						ApachePOIWrapper.resetCell(this.getWorkbook(), rowNum, columnNum,
-								this.borderStyle[kindOfRowIndex][kindOfColumnIndex]);
-					}
-					kindOfColumnIndex++;
-				}
-
-				// Exam week
-				kindOfColumnIndex = 0;
-				for (List<Integer> kindOfColumn : this.borderColumnsExamWeek) {
-					for (int columnNum : kindOfColumn) {
-						ApachePOIWrapper.resetCell(this.getWorkbook(), rowNum, columnNum,
-								this.borderStyleExamWeek[kindOfRowIndex][kindOfColumnIndex]);
-					}
-					kindOfColumnIndex++;
+			for (int columnNum = 0; columnNum < styleIndexes.length; columnNum++) {
+				if (styleIndexes[columnNum] != LectureWorkbook.NO_STYLE_INDEX) {
+					sheet.setCellBlank(rowNum, columnNum, styleIndexes[columnNum]);
 				}
 			}
-			kindOfRowIndex++;
 		}
 	}
 
@@ -537,19 +923,30 @@ public class LectureWorkbook {
 	 * @param timeZone   The time zone for the start and end date
 	 */
 	private void setBorderDates(int weekOfYear, int year, TimeZone timeZone) {
-		this.quarterStartDate = LectureWorkbook.weekOfYearToDate(weekOfYear, Calendar.MONDAY, year, timeZone);
-		this.quarterEndDate = LectureWorkbook.weekOfYearToDate(weekOfYear + 11, Calendar.SATURDAY, year, timeZone);
+		this.setBorderDates(LectureWorkbook.getQuarterBorderDates(weekOfYear, year, timeZone));
+	}
+
+	/**
+	 * Sets the start and end date of the quarter.
+	 * 
+	 * @param borderDates The start date and the excluded end date of the quarter
+	 */
+	private void setBorderDates(Calendar[] borderDates) {
+		this.quarterStartDate = borderDates[0];
+		this.quarterEndDate = borderDates[1];
+		this.slotMapper = new SlotMapper(this.quarterStartDate);
 		this.addHolidays();
 	}
 
 	/**
 	 * Calculates and sets the start and end date of the quarter from the given
-	 * date. The date can be any date in the first week of the quarter.
+	 * date. The date can be any date in the first week of the quarter. The week is
+	 * the ISO week of the date.
 	 * 
 	 * @param date Any date in the first week of the quarter
 	 */
 	public void setBorderDatesWithDateInFirstWeek(Calendar date) {
-		this.setBorderDates(date.get(Calendar.WEEK_OF_YEAR), date.get(Calendar.YEAR), date.getTimeZone());
+		this.setBorderDates(SlotMapper.getIsoWeek(date), SlotMapper.getIsoWeekBasedYear(date), date.getTimeZone());
 	}
 
 	/**
@@ -561,35 +958,111 @@ public class LectureWorkbook {
 	 * @param date Any date in the quarter
 	 */
 	public void setBorderDatesWithDateInQuarter(Calendar date) {
-		int[] quarterStartWeeks = this.getConfigWorkbook().getQuarterStartWeeks();
-		int week = date.get(Calendar.WEEK_OF_YEAR);
+		Calendar[] borderDates = LectureWorkbook.getQuarterBorderDates(date, this.getConfig().getQuarterStartWeeks());
+		if (borderDates != null) {
+			this.setBorderDates(borderDates);
+		}
+	}
+
+	/**
+	 * Calculates the start and end date of the quarter, which contains the given
+	 * date, like {@link #setBorderDatesWithDateInQuarter(Calendar)} does with the
+	 * given quarter start weeks of a configuration.
+	 * 
+	 * @param date              Any date in the quarter
+	 * @param quarterStartWeeks The start weeks of the quarters
+	 * @return The start date and the excluded end date of the quarter or null, if
+	 *         the date is in no quarter
+	 */
+	public static Calendar[] getQuarterBorderDates(Calendar date, int[] quarterStartWeeks) {
+		int week = SlotMapper.getIsoWeek(date);
 		for (int quarterStartWeek : quarterStartWeeks) {
 			if (week >= quarterStartWeek && week < quarterStartWeek + 13) {
-				this.setBorderDates(quarterStartWeek, date.get(Calendar.YEAR), date.getTimeZone());
-				break;
+				return LectureWorkbook.getQuarterBorderDates(quarterStartWeek, SlotMapper.getIsoWeekBasedYear(date),
+						date.getTimeZone());
 			}
 		}
+		return null;
 	}
 
 	/**
-	 * Returns the lectures grouped by their name.
+	 * Calculates the start and end date of the quarter from the given week of
+	 * year and year.
 	 * 
-	 * @return The map of grouped lectures
+	 * @param weekOfYear The start week of the quarter
+	 * @param year       The year of the quarter
+	 * @param timeZone   The time zone for the start and end date
+	 * @return The start date and the excluded end date of the quarter
+	 */
+	private static Calendar[] getQuarterBorderDates(int weekOfYear, int year, TimeZone timeZone) {
+		return new Calendar[] { LectureWorkbook.weekOfYearToDate(weekOfYear, Calendar.MONDAY, year, timeZone),
+				LectureWorkbook.weekOfYearToDate(weekOfYear + 11, Calendar.SATURDAY, year, timeZone) };
+	}
+
+	/**
+	 * Loads the compiled template, which is shared by all new workbooks, in
+	 * advance. It can be called by a background thread, so the first export
+	 * does not wait for it.
+	 * 
+	 * @throws IOException If the template cannot be loaded or compiled
+	 */
+	public static void loadTemplate() throws IOException {
+		TemplateSheetWriter.getDefault(LectureWorkbook.TEMPLATE_FILENAME);
+	}
+
+	/**
+	 * Returns the lectures grouped by their name. The map is created for each call
+	 * and contains views of the rows of the lecture table.
+	 * 
+	 * @return The map of grouped lectures or null, if no lectures are set
 	 */
 	public Map<String, List<Lecture>> getGroupedLectures() {
-		return this.groupedLectures;
+		LectureTable lectureTable = this.getLectureTable();
+		if (lectureTable == null) {
+			return null;
+		}
+		Map<String, List<Lecture>> groupedLectures = new TreeMap<String, List<Lecture>>();
+		LectureTable.Groups groups = lectureTable.groupByName();
+		for (int group = 0; group < groups.size(); group++) {
+			List<Lecture> lectures = new ArrayList<Lecture>(groups.getEnd(group) - groups.getStart(group));
+			for (int offset = groups.getStart(group); offset < groups.getEnd(group); offset++) {
+				lectures.add(lectureTable.getLecture(groups.getRow(offset)));
+			}
+			groupedLectures.put(groups.getGroupName(group), lectures);
+		}
+		return groupedLectures;
+	}
+
+	/**
+	 * Returns the table of all lectures.
+	 * 
+	 * @return The lecture table or null, if no lectures are set
+	 */
+	public LectureTable getLectureTable() {
+		return this.lectureTable;
 	}
 
 	/**
-	 * Sets the grouped lectures by grouping the given lecture list without. This
-	 * method only sets the grouped lectures and do not change the workbook.
+	 * Sets the lectures, which are grouped by their name. This method only sets
+	 * the lectures and do not change the workbook.
 	 * 
 	 * @param lectures A list of lectures
 	 * @throws IOException
 	 */
 	public void setLectures(List<Lecture> lectures) throws IOException {
-		this.groupedLectures = new TreeMap<String, List<Lecture>>(
-				lectures.stream().collect(Collectors.groupingBy(Lecture::getName)));
+		this.setLectures(LectureTable.fromLectures(lectures));
+	}
+
+	/**
+	 * Sets the lectures of the given table, which are grouped by their group name.
+	 * The holidays of the quarter are added to the table. This method only sets
+	 * the lectures and do not change the workbook.
+	 * 
+	 * @param lectureTable The table of lectures
+	 * @throws IOException
+	 */
+	public void setLectures(LectureTable lectureTable) throws IOException {
+		this.lectureTable = lectureTable;
 		this.addHolidays();
 	}
 
@@ -600,26 +1073,218 @@ public class LectureWorkbook {
 	 * @return The list of all lectures without duplicates
 	 */
 	public List<String> getLectures() {
-		Set<String> keys = this.getGroupedLectures().keySet();
-		return Arrays.asList(keys.toArray(new String[keys.size()]));
+		LectureTable.Groups groups = this.getLectureTable().groupByName();
+		String[] names = new String[groups.size()];
+		for (int group = 0; group < names.length; group++) {
+			names[group] = groups.getGroupName(group);
+		}
+		return Arrays.asList(names);
 	}
 
 	/**
-	 * Saves the workbook as an xlsx file with the given filename.
+	 * Saves the workbook as an xlsx file with the given filename. The file is
+	 * replaced atomically, so it is never left truncated, if saving fails.
 	 * 
 	 * @param filename The name for the xlsx file
 	 * @throws IOException If saving the workbook failed
 	 */
 	public void saveToFile(String filename) throws IOException {
-		ConfigWorkbook configWorkbook = this.getConfigWorkbook();
-		if (configWorkbook.isNewConfig()) {
-			configWorkbook.addLectureNames(this.getLectures());
+		this.saveToPath(Paths.get(filename));
+	}
+
+	/**
+	 * Saves the workbook as an xlsx file with the given path. The file is replaced
+	 * atomically, so it is never left truncated, if saving fails.
+	 * 
+	 * @param path The path for the xlsx file
+	 * @throws IOException If saving the workbook failed
+	 */
+	public void saveToPath(Path path) throws IOException {
+		this.saveHeapMonitor.start();
+		try {
+			this.prepareSave();
+			ExportPhase.SAVE_WORKBOOK.start(this.progressListener);
+			if (this.sheetSpool != null) {
+				ApachePOIWrapper.saveAndCloseWorkbook(this.sheetSpool, path, this.getCompressionPolicy());
+			} else if (this.rawLectureSheet != null) {
+				ApachePOIWrapper.saveContentToPath(this.rawLectureSheet, path, this.getCompressionPolicy());
+			} else if (this.isPatchApplicable()) {
+				ApachePOIWrapper.saveAndCloseWorkbook(this.workbookPatch, path, this.getCompressionPolicy());
+			} else {
+				ApachePOIWrapper.saveAndCloseWorkbook(this.getWorkbook(), path, this.getCompressionPolicy());
+			}
+		} finally {
+			this.closeWorkbook();
+			this.saveHeapMonitor.stop();
+		}
+	}
+
+	/**
+	 * Writes the workbook as xlsx content into the given output stream. The output
+	 * stream is not closed.
+	 * 
+	 * @param outputStream The output stream for the xlsx content
+	 * @throws IOException If saving the workbook failed
+	 */
+	public void save(OutputStream outputStream) throws IOException {
+		this.saveHeapMonitor.start();
+		try {
+			this.prepareSave();
+			ExportPhase.SAVE_WORKBOOK.start(this.progressListener);
+			this.writeWorkbook(outputStream);
+		} finally {
+			this.closeWorkbook();
+			this.saveHeapMonitor.stop();
+		}
+	}
+
+	/**
+	 * Writes the workbook as xlsx content into the given channel. The channel is
+	 * not closed.
+	 * 
+	 * @param channel The channel for the xlsx content
+	 * @throws IOException If saving the workbook failed
+	 */
+	public void save(WritableByteChannel channel) throws IOException {
+		this.saveHeapMonitor.start();
+		try {
+			this.prepareSave();
+			ExportPhase.SAVE_WORKBOOK.start(this.progressListener);
+			this.writeWorkbook(Channels.newOutputStream(channel));
+		} finally {
+			this.closeWorkbook();
+			this.saveHeapMonitor.stop();
+		}
+	}
+
+	/**
+	 * Saves a new configuration with the lecture names and fills the lectures
+	 * into the workbook. A new workbook is filled into a sheet of the compiled
+	 * template, while the shared styles of the template are locked.
+	 * 
+	 * @throws IOException If saving the configuration failed or the export was
+	 *                     cancelled
+	 */
+	private void prepareSave() throws IOException {
+		ExportPhase.FILL_WORKBOOK.start(this.progressListener);
+		if (this.sheetSpool == null) {
+			this.addLectureNamesToNewConfig();
+		}
+		ConfigWorkbook configWorkbook = this.newConfigWorkbook;
+		if (configWorkbook != null) {
+			configWorkbook.close();
+			this.newConfigWorkbook = null;
+		}
+		if (this.sheetSpool != null) {
+			XSSFWorkbook workbook = this.getWorkbook();
+			workbook.removeSheetAt(LectureWorkbook.TEMPLATE_SHEET_INDEX);
+			workbook.setActiveSheet(0);
+			if (this.formulaRecalculator != null) {
+				// The sheet indexes of the formulas were shifted
+				this.formulaRecalculator.invalidate();
+			}
+		} else if (this.templateSheetWriter != null) {
+			RawLectureSheet rawLectureSheet = this.templateSheetWriter.createSheet();
+			synchronized (this.styleRegistry) {
+				this.fillLectureSheet(rawLectureSheet);
+			}
+			this.rawLectureSheet = rawLectureSheet;
+			this.evaluatedFormulaCount = 0;
+		} else {
+			XSSFSheet sheet = ApachePOIWrapper.getSheet(this.getWorkbook());
+			this.fillLectureSheet(new XSSFLectureSheet(sheet));
+			ExportPhase.RECALCULATE_FORMULAS.start(this.progressListener);
+			this.recalculateFormulas(sheet);
+		}
+	}
+
+	/**
+	 * Adds the names of the current lectures to the configuration, if the
+	 * configuration file was recreated. Names, which were added for a previous
+	 * sheet, are not added again, so the configuration file is only saved, if
+	 * there are new names.
+	 * 
+	 * @throws IOException If saving the configuration failed
+	 */
+	private void addLectureNamesToNewConfig() throws IOException {
+		ConfigWorkbook configWorkbook = this.newConfigWorkbook;
+		if (configWorkbook != null && configWorkbook.isNewConfig()) {
+			List<String> lectureNames = new ArrayList<String>();
+			for (String lectureName : this.getLectures()) {
+				if (this.configuredLectureNames.add(lectureName)) {
+					lectureNames.add(lectureName);
+				}
+			}
+			if (!lectureNames.isEmpty()) {
+				configWorkbook.addLectureNames(lectureNames);
+				this.config = new CompiledConfig(configWorkbook);
+			}
+		}
+	}
+
+	/**
+	 * Writes the workbook into the given output stream. In bulk mode the spooled
+	 * sheets are written, too. A new workbook is written from the compiled
+	 * template and a loaded workbook with its patch, if it is applicable.
+	 * 
+	 * @param outputStream The output stream for the xlsx content
+	 * @throws IOException If writing the workbook failed
+	 */
+	private void writeWorkbook(OutputStream outputStream) throws IOException {
+		if (this.sheetSpool != null) {
+			this.sheetSpool.write(outputStream, this.getCompressionPolicy());
+		} else if (this.rawLectureSheet != null) {
+			this.rawLectureSheet.write(outputStream, this.getCompressionPolicy());
+		} else if (this.isPatchApplicable()) {
+			this.workbookPatch.write(outputStream, this.getCompressionPolicy());
+		} else {
+			ApachePOIWrapper.saveWorkbookToStream(this.getWorkbook(), outputStream, this.getCompressionPolicy());
+		}
+	}
+
+	/**
+	 * Checks if the workbook is saved with its patch, so the unchanged parts are
+	 * copied from its file.
+	 * 
+	 * @return True if the patch is used for saving, otherwise false
+	 * @throws IOException If reading the file failed
+	 */
+	private boolean isPatchApplicable() throws IOException {
+		return this.passthroughSave && this.workbookPatch != null && this.workbookPatch.isApplicable();
+	}
+
+	/**
+	 * Closes the workbook without saving it, e.g. if the export was cancelled. A
+	 * workbook, which is opened file backed, releases its file.
+	 * 
+	 * @throws IOException If closing the workbook failed
+	 */
+	public void discard() throws IOException {
+		ConfigWorkbook configWorkbook = this.newConfigWorkbook;
+		this.newConfigWorkbook = null;
+		try {
+			if (configWorkbook != null) {
+				configWorkbook.close();
+			}
+		} finally {
+			this.closeWorkbook();
+		}
+	}
+
+	/**
+	 * Closes the workbook without writing it back to its file and deletes the
+	 * spooled sheets.
+	 * 
+	 * @throws IOException If deleting the spooled sheets failed
+	 */
+	private void closeWorkbook() throws IOException {
+		this.rawLectureSheet = null;
+		if (this.workbook != null) {
+			ApachePOIWrapper.closeWorkbook(this.workbook);
+		}
+		if (this.sheetSpool != null) {
+			this.sheetSpool.close();
 		}
-		configWorkbook.close();
-		this.fillWorkbook();
-		File file = new File(filename);
-		ApachePOIWrapper.saveWorkbookToFile(this.getWorkbook(), file);
-		this.getWorkbook().close();
 	}
 
 	/**
@@ -630,21 +1295,22 @@ public class LectureWorkbook {
 	 * see {@link LectureWorkbook#adjustOverlappingCellRanges(List)}.
 	 * 
 	 * @see LectureWorkbook#adjustOverlappingCellRanges(List)
-	 * @param groupedLectures The map of grouped lectures
+	 * @param lectureTable The table of lectures
 	 * @return A map of grouped lectures mapped to their cell range
 	 */
-	private Map<String, Map<Lecture, CellRangeAddress>> mapCellRangesForParallelLectures(
-			Map<String, List<Lecture>> groupedLectures) {
+	private Map<String, Map<Lecture, CellRangeAddress>> mapCellRangesForParallelLectures(LectureTable lectureTable) {
 
 		Map<String, Map<Lecture, CellRangeAddress>> groupedLecturesCellRangeMap = new TreeMap<String, Map<Lecture, CellRangeAddress>>();
-		Calendar quarterStartDate = this.getQuarterStartDate();
+		SlotMapper slotMapper = this.slotMapper;
 
 		List<CellRangeAddress> cellRanges = new ArrayList<CellRangeAddress>();
 
-		for (Entry<String, List<Lecture>> lectureListEntry : groupedLectures.entrySet()) {
-			Map<Lecture, CellRangeAddress> lectureCellRangeMap = new HashMap<Lecture, CellRangeAddress>();
-			for (Lecture lecture : lectureListEntry.getValue()) {
-				CellRangeAddress cellRange = LectureWorkbook.getCellRangeFromLecture(quarterStartDate, lecture);
+		LectureTable.Groups groups = lectureTable.groupByName();
+		for (int group = 0; group < groups.size(); group++) {
+			Map<Lecture, CellRangeAddress> lectureCellRangeMap = new LinkedHashMap<Lecture, CellRangeAddress>();
+			for (int offset = groups.getStart(group); offset < groups.getEnd(group); offset++) {
+				Lecture lecture = lectureTable.getLecture(groups.getRow(offset));
+				CellRangeAddress cellRange = LectureWorkbook.getCellRangeFromLecture(slotMapper, lecture);
 				if (cellRange != null) {
 					lectureCellRangeMap.put(lecture, cellRange);
 					cellRanges.add(cellRange);
@@ -653,7 +1319,7 @@ public class LectureWorkbook {
 							+ "\", because the lecture date is not in the visible semester time table.");
 				}
 			}
-			groupedLecturesCellRangeMap.put(lectureListEntry.getKey(), lectureCellRangeMap);
+			groupedLecturesCellRangeMap.put(groups.getGroupName(group), lectureCellRangeMap);
 		}
 
 		LectureWorkbook.adjustCellRanges(cellRanges);
@@ -670,71 +1336,140 @@ public class LectureWorkbook {
 	 * is smaller than the total cell range, the other lecture cell range will
 	 * decrease for the remaining cell range space.
 	 * 
+	 * The cell ranges are grouped into clusters of (transitively) overlapping cell
+	 * ranges with a sweep line over each column, see
+	 * {@link LectureWorkbook#getOverlapClusters(List)}. Each cluster is adjusted
+	 * with {@link LectureWorkbook#adjustOverlappingCellRanges(List)}.
+	 * 
 	 * @param cellRanges The list of cell ranges to adjust
 	 */
 	private static void adjustCellRanges(List<CellRangeAddress> cellRanges) {
-		List<CellRangeAddress> cellRangeList = new ArrayList<>(cellRanges);
+		for (List<CellRangeAddress> overlapCellRanges : LectureWorkbook.getOverlapClusters(cellRanges)) {
+			if (overlapCellRanges.size() > 1) {
+				LectureWorkbook.adjustOverlappingCellRanges(overlapCellRanges);
+			}
+		}
+	}
 
-		int cellRangeListSize = cellRangeList.size();
-		while (cellRangeListSize > 0) {
-			int lastCellRangeInList = cellRangeListSize - 1;
-			CellRangeAddress cellRange = cellRangeList.get(lastCellRangeInList);
-			cellRangeList.remove(lastCellRangeInList);
+	/**
+	 * Returns the clusters of (transitively) overlapping cell ranges from the given
+	 * cell range list. Each cell range is part of exactly one cluster and each
+	 * cluster keeps the order of the given cell range list.
+	 * 
+	 * Two cell ranges only overlap, if they share at least one column. So the cell
+	 * ranges are sorted once by their first row for each column they cover, and a
+	 * sweep line over the rows of each column joins all cell ranges, which start
+	 * before the sweep line has passed the last row of the current cluster. The
+	 * clusters of all columns are joined with a union find structure, so the cost
+	 * grows with O(n log n) for n cell ranges instead of quadratic.
+	 * 
+	 * @param cellRanges The list of cell ranges
+	 * @return A list of clusters of overlapping cell ranges
+	 */
+	private static List<List<CellRangeAddress>> getOverlapClusters(List<CellRangeAddress> cellRanges) {
+		int size = cellRanges.size();
+		int[] parents = new int[size];
+		int columnEntries = 0;
+		int maxColumn = -1;
+		for (int index = 0; index < size; index++) {
+			CellRangeAddress cellRange = cellRanges.get(index);
+			parents[index] = index;
+			columnEntries += cellRange.getLastColumn() - cellRange.getFirstColumn() + 1;
+			maxColumn = Math.max(maxColumn, cellRange.getLastColumn());
+		}
 
-			List<CellRangeAddress> overlapCellRanges = new ArrayList<CellRangeAddress>();
-			overlapCellRanges.addAll(LectureWorkbook.getRecursiveOverlapCellRanges(cellRange, cellRangeList));
+		// Bucket the indexes of the cell ranges by column (counting sort)
+		int[] columnStarts = new int[maxColumn + 2];
+		for (CellRangeAddress cellRange : cellRanges) {
+			for (int column = cellRange.getFirstColumn(); column <= cellRange.getLastColumn(); column++) {
+				columnStarts[column + 1]++;
+			}
+		}
+		for (int column = 0; column <= maxColumn; column++) {
+			columnStarts[column + 1] += columnStarts[column];
+		}
+		int[] columnIndexes = new int[columnEntries];
+		int[] columnFill = Arrays.copyOf(columnStarts, columnStarts.length);
+		for (int index = 0; index < size; index++) {
+			CellRangeAddress cellRange = cellRanges.get(index);
+			for (int column = cellRange.getFirstColumn(); column <= cellRange.getLastColumn(); column++) {
+				columnIndexes[columnFill[column]++] = index;
+			}
+		}
 
-			if (overlapCellRanges.size() > 0) {
-				overlapCellRanges.add(cellRange);
-				LectureWorkbook.adjustOverlappingCellRanges(overlapCellRanges);
+		// Sweep over the rows of each column
+		long[] sortKeys = new long[size];
+		for (int column = 0; column <= maxColumn; column++) {
+			int from = columnStarts[column];
+			int to = columnStarts[column + 1];
+			for (int position = from; position < to; position++) {
+				int index = columnIndexes[position];
+				sortKeys[position - from] = ((long) cellRanges.get(index).getFirstRow() << 32) | index;
+			}
+			Arrays.sort(sortKeys, 0, to - from);
+
+			int clusterRoot = -1;
+			int clusterLastRow = Integer.MIN_VALUE;
+			for (int position = 0; position < to - from; position++) {
+				int index = (int) sortKeys[position];
+				CellRangeAddress cellRange = cellRanges.get(index);
+				if (clusterRoot >= 0 && cellRange.getFirstRow() <= clusterLastRow) {
+					LectureWorkbook.union(parents, clusterRoot, index);
+					clusterLastRow = Math.max(clusterLastRow, cellRange.getLastRow());
+				} else {
+					clusterRoot = index;
+					clusterLastRow = cellRange.getLastRow();
+				}
 			}
+		}
 
-			cellRangeListSize = cellRangeList.size();
+		Map<Integer, List<CellRangeAddress>> clusters = new LinkedHashMap<Integer, List<CellRangeAddress>>();
+		for (int index = 0; index < size; index++) {
+			int root = LectureWorkbook.find(parents, index);
+			List<CellRangeAddress> cluster = clusters.get(root);
+			if (cluster == null) {
+				cluster = new ArrayList<CellRangeAddress>();
+				clusters.put(root, cluster);
+			}
+			cluster.add(cellRanges.get(index));
 		}
+		return new ArrayList<List<CellRangeAddress>>(clusters.values());
 	}
 
 	/**
-	 * Returns a list of all cell ranges from the given cell range list, which
-	 * overlaps the given cell range and all overlapping cell ranges.
+	 * Returns the root of the given element in a union find structure. The path to
+	 * the root is compressed while searching.
 	 * 
-	 * @param cellRange     The cell range for checking overlapping cell ranges
-	 * @param cellRangeList The list of possible overlapping cell ranges
-	 * @return A list of all overlapping cell ranges
+	 * @param parents The parent array of the union find structure
+	 * @param element The element to search the root for
+	 * @return The root of the element
 	 */
-	private static List<CellRangeAddress> getRecursiveOverlapCellRanges(CellRangeAddress cellRange,
-			List<CellRangeAddress> cellRangeList) {
-		return LectureWorkbook.getRecursiveOverlapCellRanges(cellRange, cellRangeList, cellRangeList.size() - 1);
+	private static int find(int[] parents, int element) {
+		int root = element;
+		while (parents[root] != root) {
+			root = parents[root];
+		}
+		while (parents[element] != root) {
+			int parent = parents[element];
+			parents[element] = root;
+			element = parent;
+		}
+		return root;
 	}
 
 	/**
-	 * Returns a list of all cell ranges from the given cell range list, which
-	 * overlaps the given cell range and all overlapping cell ranges.
+	 * Joins the sets of the two given elements in a union find structure.
 	 * 
-	 * @param cellRange          The cell range for checking overlapping cell ranges
-	 * @param cellRangeList      The list of possible overlapping cell ranges
-	 * @param lastCellRangeIndex The index of the last cell range, which should be
-	 *                           checked
-	 * @return A list of all overlapping cell ranges
+	 * @param parents The parent array of the union find structure
+	 * @param element The first element
+	 * @param other   The second element
 	 */
-	private static List<CellRangeAddress> getRecursiveOverlapCellRanges(CellRangeAddress cellRange,
-			List<CellRangeAddress> cellRangeList, int lastCellRangeIndex) {
-
-		List<CellRangeAddress> overlapCellRanges = new ArrayList<CellRangeAddress>();
-
-		lastCellRangeIndex = lastCellRangeIndex < cellRangeList.size() ? lastCellRangeIndex : cellRangeList.size() - 1;
-
-		for (int index = lastCellRangeIndex; index >= 0; index--) {
-			CellRangeAddress otherCellRange = cellRangeList.get(index);
-
-			if (cellRange.intersects(otherCellRange)) {
-				cellRangeList.remove(index);
-				overlapCellRanges.addAll(
-						LectureWorkbook.getRecursiveOverlapCellRanges(otherCellRange, cellRangeList, index - 1));
-				overlapCellRanges.add(otherCellRange);
-			}
+	private static void union(int[] parents, int element, int other) {
+		int root = LectureWorkbook.find(parents, element);
+		int otherRoot = LectureWorkbook.find(parents, other);
+		if (root != otherRoot) {
+			parents[Math.max(root, otherRoot)] = Math.min(root, otherRoot);
 		}
-
-		return overlapCellRanges;
 	}
 
 	/**
@@ -751,10 +1486,12 @@ public class LectureWorkbook {
 		cellRanges.sort((CellRangeAddress a, CellRangeAddress b) -> a.getLastRow() - b.getLastRow());
 		cellRanges.sort((CellRangeAddress a, CellRangeAddress b) -> a.getFirstRow() - b.getFirstRow());
 
-		while (cellRanges.size() > 0) {
-			CellRangeAddress cellRange = cellRanges.get(0);
+		int size = cellRanges.size();
+		for (int index = 0; index < size; index++) {
+			CellRangeAddress cellRange = cellRanges.get(index);
 
-			List<CellRangeAddress> overlapCellRanges = LectureWorkbook.getOverlapCellRanges(cellRange, cellRanges);
+			List<CellRangeAddress> overlapCellRanges = LectureWorkbook.getOverlapCellRanges(cellRange,
+					cellRanges.subList(index, size));
 			int totalCellRanges = overlapCellRanges.size();
 			if (totalCellRanges > 1) {
 				CellRangeAddress nextCellRange = overlapCellRanges.get(1);
@@ -776,7 +1513,6 @@ public class LectureWorkbook {
 				cellRange.setLastRow(lastRow);
 				nextCellRange.setFirstRow(lastRow + 1);
 			}
-			cellRanges.remove(0);
 		}
 	}
 
@@ -805,62 +1541,60 @@ public class LectureWorkbook {
 	 * Insert the lectures from the groupedLectures variable into the lecture area
 	 * of the workbook sheet.
 	 */
-	private void addLecturesToWorkbook() {
-		XSSFWorkbook workbook = this.getWorkbook();
-
-		ConfigWorkbook configWorkbook = this.getConfigWorkbook();
-		Map<String, LectureProperties> lecturePropertiesMap = configWorkbook.getLecturePropertiesMap();
-		Map<String, XSSFFont> highlightedFontsRaw = configWorkbook.getHighlightedFonts();
-		Map<String, XSSFFont> highlightedFonts = new HashMap<String, XSSFFont>();
-		for (Entry<String, XSSFFont> highlightedFontRaw : highlightedFontsRaw.entrySet()) {
-			XSSFFont highlightedFont = workbook.createFont();
-			ApachePOIWrapper.copyFont(highlightedFont, highlightedFontRaw.getValue());
-			highlightedFonts.put(highlightedFontRaw.getKey(), highlightedFont);
+	private void addLecturesToWorkbook(LectureSheet sheet) {
+		StyleRegistry styleRegistry = this.styleRegistry;
+
+		CompiledConfig config = this.getConfig();
+		WildcardMatcher<LectureProperties> lecturePropertiesMatcher = config.getLecturePropertiesMatcher();
+		TextHighlighter textHighlighter = config.getTextHighlighter();
+		XSSFFont[] highlightedFonts = new XSSFFont[textHighlighter.getFontCount()];
+		for (int fontId = 0; fontId < highlightedFonts.length; fontId++) {
+			// Fonts of rich text runs are copied into the run, so they are not added to
+			// the workbook
+			highlightedFonts[fontId] = new XSSFFont();
+			ApachePOIWrapper.copyFont(highlightedFonts[fontId], textHighlighter.getFont(fontId));
 		}
-		String[] ignorePrefixes = configWorkbook.getIgnorePrefixes();
+		String[] ignorePrefixes = config.getIgnorePrefixes();
 
 		Map<String, Map<Lecture, CellRangeAddress>> groupedLecturesCellRangeMap = this
-				.mapCellRangesForParallelLectures(this.getGroupedLectures());
+				.mapCellRangesForParallelLectures(this.getLectureTable());
 
-		XSSFFont defaultFont = workbook.createFont();
-		defaultFont.setFontHeight((short) 200);
-		defaultFont.setFontName("Arial");
+		XSSFFont defaultFontPrototype = new XSSFFont();
+		defaultFontPrototype.setFontHeight((short) 200);
+		defaultFontPrototype.setFontName("Arial");
+		XSSFFont defaultFont = styleRegistry.getFont(defaultFontPrototype);
 
-		XSSFCellStyle defaultCellStyle = workbook.createCellStyle();
+		XSSFCellStyle defaultCellStyle = styleRegistry.createPrototype();
 		defaultCellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 		defaultCellStyle.setWrapText(true);
 		defaultCellStyle.setVerticalAlignment(VerticalAlignment.TOP);
 		defaultCellStyle.setFillForegroundColor(ApachePOIWrapper.colorToXSSFColor(Color.WHITE));
 		defaultCellStyle.setFont(defaultFont);
+		defaultCellStyle = styleRegistry.getCellStyle(defaultCellStyle);
 
 		for (Entry<String, Map<Lecture, CellRangeAddress>> groupedLecture : groupedLecturesCellRangeMap.entrySet()) {
 			Map<Lecture, CellRangeAddress> lectureCellRangeMap = groupedLecture.getValue();
 			String groupedLectureName = groupedLecture.getKey();
 
-			Map<XSSFFont, Integer[]> lectureNameFonts = LectureWorkbook.getTextHighlights(groupedLectureName,
-					highlightedFonts);
+			int[] highlights = textHighlighter.getHighlights(groupedLectureName);
 
 			String rawLectureName = LectureWorkbook.removePrefixFromString(groupedLectureName, ignorePrefixes);
-			LectureProperties lectureProperties = LectureWorkbook.getLecturePropertiesFromMap(rawLectureName,
-					lecturePropertiesMap);
+			LectureProperties lectureProperties = lecturePropertiesMatcher.getFirstMatch(rawLectureName);
 
 			XSSFFont mainFont = null;
 			XSSFCellStyle cellStyle = null;
 
-			String shortLectureName = rawLectureName == LectureWorkbook.HOLIDAY ? "" : groupedLectureName;
+			String shortLectureName = LectureWorkbook.HOLIDAY.equals(rawLectureName) ? "" : groupedLectureName;
 			if (lectureProperties != null) {
-				mainFont = workbook.createFont();
+				mainFont = styleRegistry.getFont(lectureProperties.getFont());
 
-				cellStyle = workbook.createCellStyle();
+				cellStyle = styleRegistry.createPrototype();
 				cellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 				cellStyle.setWrapText(true);
 				cellStyle.setVerticalAlignment(VerticalAlignment.TOP);
-
-				XSSFFont lectureFont = lectureProperties.getFont();
-				ApachePOIWrapper.copyFont(mainFont, lectureFont);
-
 				cellStyle.setFillForegroundColor(lectureProperties.getFillColor());
 				cellStyle.setFont(mainFont);
+				cellStyle = styleRegistry.getCellStyle(cellStyle);
 
 				String subShortLectureName = lectureProperties.getShortLectureName();
 				if (subShortLectureName != "") {
@@ -876,7 +1610,8 @@ public class LectureWorkbook {
 				Lecture lecture = lectureCellRangeEntry.getKey();
 				lecture.setShortName(shortLectureName);
 				CellRangeAddress cellRange = lectureCellRangeEntry.getValue();
-				this.addLectureToWorkbook(cellRange, cellStyle, mainFont, lectureNameFonts, lecture);
+				this.addLectureToWorkbook(sheet, cellRange, cellStyle, mainFont, highlights, highlightedFonts,
+						lecture);
 			}
 		}
 	}
@@ -884,39 +1619,61 @@ public class LectureWorkbook {
 	/**
 	 * Inserts a given lecture into the lecture area of the workbook sheet.
 	 * 
-	 * The lectureNameFonts are a map which contains the font and an integer array
-	 * where to add the font in the text. The array contains at index 0 the start
-	 * index (inclusive) and at index 1 the end index (exclusive).
+	 * The highlights are runs of {@value TextHighlighter#RUN_LENGTH} integers: the
+	 * start index (inclusive), the end index (exclusive) and the font id of the
+	 * highlighted area of the text.
+	 * 
+	 * Overlapping merged regions inside the lecture blocks are detected with the
+	 * {@link OccupancyGrid}, so the cell range is merged without validating it
+	 * against all other merged regions of the sheet.
 	 * 
+	 * @param sheet            The sheet of the workbook or of the compiled
+	 *                         template
 	 * @param cellRange        The cell range for the lecture
 	 * @param cellStyle        The style for the lecture
 	 * @param mainFont         The main font for the lecture
-	 * @param lectureNameFonts A map for highlighting areas of the lecture text
+	 * @param highlights       The runs for highlighting areas of the lecture text
+	 * @param highlightedFonts The fonts of the font ids of the runs
 	 * @param lecture          The lecture itself
 	 * @return true if inserting the lecture was successful, false otherwise
 	 */
-	private boolean addLectureToWorkbook(CellRangeAddress cellRange, XSSFCellStyle cellStyle, XSSFFont mainFont,
-			Map<XSSFFont, Integer[]> lectureNameFonts, Lecture lecture) {
+	private boolean addLectureToWorkbook(LectureSheet sheet, CellRangeAddress cellRange, XSSFCellStyle cellStyle,
+			XSSFFont mainFont, int[] highlights, XSSFFont[] highlightedFonts, Lecture lecture) {
 		boolean mergedSuccessful = false;
 		boolean addedSuccessful = false;
-		XSSFSheet sheet = ApachePOIWrapper.getSheet(this.getWorkbook());
 		if (cellRange != null) {
+			OccupancyGrid occupancyGrid = this.occupancyGrid;
+			boolean insideGrid = occupancyGrid.contains(cellRange);
+			Lecture overlappingLecture = null;
 			try {
-				sheet.addMergedRegion(cellRange);
-				mergedSuccessful = true;
+				if (!insideGrid) {
+					sheet.addMergedRegion(cellRange);
+					mergedSuccessful = true;
+				} else if (!occupancyGrid.isOccupied(cellRange)) {
+					sheet.addMergedRegionUnsafe(cellRange);
+					occupancyGrid.occupy(cellRange, lecture);
+					mergedSuccessful = true;
+				} else {
+					overlappingLecture = occupancyGrid.getOverlappingLecture(cellRange);
+				}
 			} catch (IllegalStateException | IllegalArgumentException e) {
-				this.errorOutput.addErrorMessage("Skipped the lecture \"" + lecture.toShortString()
-						+ "\", because the cell range for the lecture cannot be merged. Maybe there is a problem with overlapping lectures.");
+			}
+
+			if (!mergedSuccessful) {
+				String reason = overlappingLecture == null
+						? "the cell range for the lecture cannot be merged. Maybe there is a problem with overlapping lectures."
+						: "the cell range for the lecture overlaps the lecture \"" + overlappingLecture.toShortString()
+								+ "\".";
+				this.errorOutput.addErrorMessage(
+						"Skipped the lecture \"" + lecture.toShortString() + "\", because " + reason);
 			}
 		}
 
 		if (mergedSuccessful) {
-			XSSFCell cell = sheet.getRow(cellRange.getFirstRow()).getCell(cellRange.getFirstColumn());
 			boolean modifiedCellRange = !cellRange
-					.equals(LectureWorkbook.getCellRangeFromLecture(this.getQuarterStartDate(), lecture));
-			cell.setCellValue(
-					LectureWorkbook.lectureToRichText(mainFont, lectureNameFonts, lecture, modifiedCellRange));
-			cell.setCellStyle(cellStyle);
+					.equals(LectureWorkbook.getCellRangeFromLecture(this.slotMapper, lecture));
+			sheet.setCellValue(cellRange.getFirstRow(), cellRange.getFirstColumn(), LectureWorkbook
+					.lectureToRichText(mainFont, highlights, highlightedFonts, lecture, modifiedCellRange), cellStyle);
 			addedSuccessful = true;
 		}
 
@@ -933,23 +1690,24 @@ public class LectureWorkbook {
 	private void addHolidays() {
 		Calendar quarterStartDate = this.getQuarterStartDate();
 		Calendar quarterEndDate = this.getQuarterEndDate();
-		Map<String, List<Lecture>> groupedLectures = this.getGroupedLectures();
-		if (quarterStartDate != null && quarterEndDate != null && groupedLectures != null) {
+		LectureTable lectureTable = this.getLectureTable();
+		if (quarterStartDate != null && quarterEndDate != null && lectureTable != null) {
+			lectureTable.removeGroup(LectureWorkbook.HOLIDAY);
 			Calendar quarterIncludedEndDate = (Calendar) quarterEndDate.clone();
 			quarterIncludedEndDate.add(Calendar.DAY_OF_MONTH, -1);
 			Map<Calendar, String> holidays = Holidays.getHolidays(quarterStartDate, quarterIncludedEndDate,
-					this.getConfigWorkbook().getHolidayLocale());
-			List<Lecture> holidaysLecture = new ArrayList<Lecture>();
+					this.getConfig().getHolidayLocale());
+			String[] noResources = new String[] { "" };
+			String[] noLecturers = new String[] { "" };
 			for (Entry<Calendar, String> holiday : holidays.entrySet()) {
 				Calendar startDate = holiday.getKey();
 				startDate.setTimeZone(quarterStartDate.getTimeZone());
 				Calendar endDate = (Calendar) startDate.clone();
 				startDate.add(Calendar.MILLISECOND, 1);
 				endDate.add(Calendar.DAY_OF_MONTH, 1);
-				Lecture lecture = new Lecture(holiday.getValue(), startDate, endDate, "", "");
-				holidaysLecture.add(lecture);
+				lectureTable.add(LectureWorkbook.HOLIDAY, holiday.getValue(), LectureTable.toEpochMinute(startDate),
+						LectureTable.toEpochMinute(endDate), noResources, noLecturers);
 			}
-			groupedLectures.put(LectureWorkbook.HOLIDAY, holidaysLecture);
 		}
 	}
 
@@ -958,40 +1716,40 @@ public class LectureWorkbook {
 	 * fonts.
 	 * 
 	 * @param mainFont          The main font for the lecture
-	 * @param lectureNameFonts  A map for highlighting areas of the lecture text
+	 * @param highlights        The runs for highlighting areas of the lecture text
+	 * @param highlightedFonts  The fonts of the font ids of the runs
 	 * @param lecture           The lecture itself
 	 * @param modifiedCellRange True if the cell range for the lecture has changed
 	 *                          (caused by parallel lectures), otherwise false
 	 * @return The lecture converted to a rich text
 	 */
-	private static XSSFRichTextString lectureToRichText(XSSFFont mainFont, Map<XSSFFont, Integer[]> lectureNameFonts,
-			Lecture lecture, boolean modifiedCellRange) {
+	private static XSSFRichTextString lectureToRichText(XSSFFont mainFont, int[] highlights,
+			XSSFFont[] highlightedFonts, Lecture lecture, boolean modifiedCellRange) {
 		String shortLectureName = lecture.getShortName();
 		String text = shortLectureName != null && shortLectureName != "" ? shortLectureName : lecture.getName();
 		if (modifiedCellRange || !LectureWorkbook.hasLectureNormalTimeInterval(lecture)) {
-			String startTime = LectureWorkbook.getTime(lecture.getStartDate());
-			String endTime = LectureWorkbook.getTime(lecture.getEndDate());
+			String startTime = LectureWorkbook.getTime(LectureWorkbook.getStartMinuteOfDay(lecture));
+			String endTime = LectureWorkbook.getTime(LectureWorkbook.getEndMinuteOfDay(lecture));
 			text += LectureWorkbook.LINE_BREAK + startTime + "-" + endTime;
 		}
-		String[] lecturers = lecture.getLecturers();
+		String lecturers = lecture.getLecturersText();
 		if (lecturers != null) {
-			text += LectureWorkbook.LINE_BREAK + LectureWorkbook.arrayToString(lecturers);
+			text += LectureWorkbook.LINE_BREAK + lecturers;
 		}
-		String[] resources = lecture.getResources();
+		String resources = lecture.getResourcesText();
 		if (resources != null) {
-			text += LectureWorkbook.LINE_BREAK + LectureWorkbook.arrayToString(lecture.getResources());
+			text += LectureWorkbook.LINE_BREAK + resources;
 		}
 		// TODO move following lines to ApachePOIWrapper?
 		XSSFRichTextString richText = new XSSFRichTextString(text);
 		richText.applyFont(mainFont);
 		short mainFontHeight = mainFont.getFontHeight();
 		String mainFontName = mainFont.getFontName();
-		for (Entry<XSSFFont, Integer[]> lectureNameFont : lectureNameFonts.entrySet()) {
-			Integer[] indexes = lectureNameFont.getValue();
-			XSSFFont nameFont = lectureNameFont.getKey();
+		for (int i = 0; i < highlights.length; i += TextHighlighter.RUN_LENGTH) {
+			XSSFFont nameFont = highlightedFonts[highlights[i + 2]];
 			nameFont.setFontHeight(mainFontHeight);
 			nameFont.setFontName(mainFontName);
-			richText.applyFont(indexes[0], indexes[1], nameFont);
+			richText.applyFont(highlights[i], highlights[i + 1], nameFont);
 		}
 		return richText;
 	}
@@ -999,8 +1757,11 @@ public class LectureWorkbook {
 	/**
 	 * Returns the color array of the given name from the color map. If the name
 	 * does not match lecture properties key, then null is returned.
-	 *
-	 * The name can contain a '*' as a wildcard.
+	 * 
+	 * The keys can contain a '*' as a wildcard. If the name matches more than one
+	 * key, the first key in the iteration order of the map wins. The keys are
+	 * compiled for each call, so multiple names should be matched with
+	 * {@link CompiledConfig#getLecturePropertiesMatcher()}.
 	 * 
 	 * @param name                 The name for matching a key
 	 * @param lecturePropertiesMap A map of lecture properties
@@ -1009,38 +1770,7 @@ public class LectureWorkbook {
 	 */
 	public static LectureProperties getLecturePropertiesFromMap(String name,
 			Map<String, LectureProperties> lecturePropertiesMap) {
-		LectureProperties lectureProperties = null;
-		for (String key : lecturePropertiesMap.keySet()) {
-			String matchKey = "\\Q" + key.replace("*", "\\E.*\\Q") + "\\E";
-			if (name.matches(matchKey)) {
-				lectureProperties = lecturePropertiesMap.get(key);
-				break;
-			}
-		}
-		return lectureProperties;
-	}
-
-	/**
-	 * Returns a map of fonts and their index pairs in the given text. All matches
-	 * of the font map key in the text will be added to the font index pair map. The
-	 * index pair consists always of the start and end index.
-	 * 
-	 * @param text    The text, which will be scanned
-	 * @param fontMap A map of pattern and their color
-	 * @return A map of fonts and their index pairs (the integer array always
-	 *         consists of the start and end index)
-	 */
-	public static Map<XSSFFont, Integer[]> getTextHighlights(String text, Map<String, XSSFFont> fontMap) {
-		Map<XSSFFont, Integer[]> fontIndexMap = new HashMap<XSSFFont, Integer[]>();
-		for (String key : fontMap.keySet()) {
-			Pattern pattern = Pattern.compile("\\Q" + key + "\\E");
-			Matcher matcher = pattern.matcher(text);
-			XSSFFont font = fontMap.get(key);
-			while (matcher.find()) {
-				fontIndexMap.put(font, new Integer[] { matcher.start(), matcher.end() });
-			}
-		}
-		return fontIndexMap;
+		return new WildcardMatcher<LectureProperties>(lecturePropertiesMap).getFirstMatch(name);
 	}
 
 	/**
@@ -1065,41 +1795,40 @@ public class LectureWorkbook {
 	}
 
 	/**
-	 * Returns the array as an comma (",") separated string.
+	 * Returns the cell range address for a given lecture.
 	 * 
-	 * @param array The array to convert
-	 * @return The comma separated array
+	 * @param quarterStartDate The start date of the quarter
+	 * @param lecture          The lecture
+	 * @return The cell range address of the lecture
 	 */
-	private static String arrayToString(String[] array) {
-		String string = "";
-		if (array != null) {
-			for (String element : array) {
-				string += "," + element;
-			}
-			string = string == "" ? "" : string.substring(1);
-		}
-		return string;
+	public static CellRangeAddress getCellRangeFromLecture(Calendar quarterStartDate, Lecture lecture) {
+		return LectureWorkbook.getCellRangeFromLecture(new SlotMapper(quarterStartDate), lecture);
 	}
 
 	/**
 	 * Returns the cell range address for a given lecture.
 	 * 
-	 * @param quarterStartDate The start date of the quarter
-	 * @param lecture          The lecture
-	 * @return The cell range address of the lecture
+	 * @param slotMapper The mapper of dates to the cells of the quarter
+	 * @param lecture    The lecture
+	 * @return The cell range address of the lecture or null, if the lecture is not
+	 *         inside the lecture area
 	 */
-	public static CellRangeAddress getCellRangeFromLecture(Calendar quarterStartDate, Lecture lecture) {
-		CellAddress startCellAddress = LectureWorkbook.getCellAddressFromDate(quarterStartDate, lecture.getStartDate(),
-				false);
-		CellAddress endCellAddress = LectureWorkbook.getCellAddressFromDate(quarterStartDate, lecture.getEndDate(),
-				true);
+	public static CellRangeAddress getCellRangeFromLecture(SlotMapper slotMapper, Lecture lecture) {
+		LectureTable lectureTable = lecture.getLectureTable();
+		long startMinute = lecture.getStartEpochMinute();
+		long endMinute = lecture.getEndEpochMinute();
+		if (startMinute == LectureTable.NO_DATE || endMinute == LectureTable.NO_DATE) {
+			return null;
+		}
+		int startSlot = slotMapper.getSlot(startMinute, lectureTable.getOffsetMinutes(startMinute), false);
+		int endSlot = slotMapper.getSlot(endMinute, lectureTable.getOffsetMinutes(endMinute - 1), true);
 		CellRangeAddress cellRange;
 
-		if (startCellAddress == null || endCellAddress == null) {
+		if (startSlot == SlotMapper.NO_SLOT || endSlot == SlotMapper.NO_SLOT) {
 			cellRange = null;
 		} else {
-			cellRange = new CellRangeAddress(startCellAddress.getRow(), endCellAddress.getRow(),
-					startCellAddress.getColumn(), endCellAddress.getColumn());
+			cellRange = new CellRangeAddress(SlotMapper.getRow(startSlot), SlotMapper.getRow(endSlot),
+					SlotMapper.getColumn(startSlot), SlotMapper.getColumn(endSlot));
 		}
 
 		return cellRange;
@@ -1116,44 +1845,13 @@ public class LectureWorkbook {
 	 * @param lectureDate      The start or end time of a lecture
 	 * @param isLectureEnd     A boolean whether the lectureDate is the end time of
 	 *                         the lecture or not
-	 * @return
+	 * @return The cell address of the date or null, if the date is on a weekend or
+	 *         outside of the quarter
 	 */
 	public static CellAddress getCellAddressFromDate(Calendar quarterStartDate, Calendar lectureDate,
 			boolean isLectureEnd) {
-		CellAddress cellAddress;
-		Calendar date = (Calendar) lectureDate.clone();
-		if (isLectureEnd) {
-			date.add(Calendar.MINUTE, -1);
-		}
-		int lectureDayOfWeek = date.get(Calendar.DAY_OF_WEEK);
-
-		int daysBetween = (int) ChronoUnit.DAYS.between(quarterStartDate.toInstant(), date.toInstant());
-
-		if (lectureDayOfWeek == Calendar.SUNDAY || lectureDayOfWeek == Calendar.SATURDAY || daysBetween > 81) {
-			cellAddress = null;
-		} else {
-			int columnNum = daysBetween % 28;
-			columnNum -= columnNum / 7 * 2;
-			columnNum += columnNum / 10 + 1;
-
-			int rowNum = daysBetween / 28 * 49 + 4;
-
-			int minutes = date.get(Calendar.MINUTE);
-			int hours = date.get(Calendar.HOUR_OF_DAY);
-			int timePosition = ((hours - 8) * 4) + (minutes / 15);
-
-			if (timePosition < 0) {
-				rowNum--;
-			} else if (timePosition >= 44) {
-				rowNum += 44;
-			} else {
-				rowNum += timePosition;
-			}
-
-			cellAddress = new CellAddress(rowNum, columnNum);
-		}
-
-		return cellAddress;
+		int slot = new SlotMapper(quarterStartDate).getSlot(lectureDate, isLectureEnd);
+		return slot == SlotMapper.NO_SLOT ? null : new CellAddress(SlotMapper.getRow(slot), SlotMapper.getColumn(slot));
 	}
 
 	/**
@@ -1168,9 +1866,30 @@ public class LectureWorkbook {
 	 * @return true if the lecture has normal start and end time, false otherwise
 	 */
 	public static boolean hasLectureNormalTimeInterval(Lecture lecture) {
-		String startTime = LectureWorkbook.getTime(lecture.getStartDate());
-		String endTime = LectureWorkbook.getTime(lecture.getEndDate());
-		return LectureWorkbook.START_TIMES.contains(startTime) && LectureWorkbook.END_TIMES.contains(endTime);
+		return SlotMapper.isNormalStartTime(LectureWorkbook.getStartMinuteOfDay(lecture))
+				&& SlotMapper.isNormalEndTime(LectureWorkbook.getEndMinuteOfDay(lecture));
+	}
+
+	/**
+	 * Returns the local minute of the day of the start date of the given lecture.
+	 * 
+	 * @param lecture The lecture
+	 * @return The minute of the day (0 until 1439)
+	 */
+	private static int getStartMinuteOfDay(Lecture lecture) {
+		long startMinute = lecture.getStartEpochMinute();
+		return SlotMapper.getMinuteOfDay(startMinute, lecture.getLectureTable().getOffsetMinutes(startMinute));
+	}
+
+	/**
+	 * Returns the local minute of the day of the end date of the given lecture.
+	 * 
+	 * @param lecture The lecture
+	 * @return The minute of the day (0 until 1439)
+	 */
+	private static int getEndMinuteOfDay(Lecture lecture) {
+		long endMinute = lecture.getEndEpochMinute();
+		return SlotMapper.getMinuteOfDay(endMinute, lecture.getLectureTable().getOffsetMinutes(endMinute));
 	}
 
 	/**
@@ -1180,33 +1899,35 @@ public class LectureWorkbook {
 	 * @return The time of the calendar
 	 */
 	public static String getTime(Calendar calendar) {
-		int hours = calendar.get(Calendar.HOUR_OF_DAY);
-		int minutes = calendar.get(Calendar.MINUTE);
+		return LectureWorkbook.getTime(calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE));
+	}
+
+	/**
+	 * Returns the given minute of the day in the hh:mm format of a 24 hour clock.
+	 * 
+	 * @param minuteOfDay The minute of the day
+	 * @return The time of the minute of the day
+	 */
+	public static String getTime(int minuteOfDay) {
+		int hours = minuteOfDay / 60;
+		int minutes = minuteOfDay % 60;
 		String hour = hours < 10 ? "0" + hours : Integer.toString(hours);
 		String minute = minutes < 10 ? "0" + minutes : Integer.toString(minutes);
 		return hour + ":" + minute;
 	}
 
 	/**
-	 * Converts the given week of the year, day of the week and year to a Date.
+	 * Converts the given week of the year, day of the week and year to a Date. The
+	 * week of the year is the ISO week of the week based year.
 	 * 
 	 * @param weekOfYear The week of the year
-	 * @param dayOfWeek  The day of the week
+	 * @param dayOfWeek  The day of the week (e.g. {@link Calendar#MONDAY})
 	 * @param year       The year
 	 * @param timeZone   The time zone
 	 * @return The date created from the given parameters
 	 */
 	public static Calendar weekOfYearToDate(int weekOfYear, int dayOfWeek, int year, TimeZone timeZone) {
-		Calendar calendar = new GregorianCalendar();
-		calendar.set(Calendar.DAY_OF_WEEK, dayOfWeek);
-		calendar.set(Calendar.WEEK_OF_YEAR, weekOfYear);
-		calendar.set(Calendar.YEAR, year);
-		calendar.setTimeZone(timeZone);
-		calendar.set(Calendar.HOUR_OF_DAY, 0);
-		calendar.set(Calendar.MINUTE, 0);
-		calendar.set(Calendar.SECOND, 0);
-		calendar.set(Calendar.MILLISECOND, 0);
-		return calendar;
+		return SlotMapper.isoWeekToDate(weekOfYear, DayOfWeek.of((dayOfWeek + 5) % 7 + 1), year, timeZone);
 	}
 
 	/**
@@ -0,0 +1,141 @@
+package semesterTimeTable.excel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * Bitmap of the cells in the three lecture blocks of the lecture sheet, which
+ * are already part of a merged region.
+ *
+ * The grid is used to detect overlapping merged regions before they are added
+ * to the sheet, so the sheet does not have to validate each new merged region
+ * against all existing merged regions.
+ */
+public class OccupancyGrid {
+
+	/** Number of rows covered by the grid (three blocks with 49 rows) */
+	public final static int ROWS = 3 * 49;
+
+	/** Number of columns covered by the grid */
+	public final static int COLUMNS = 22;
+
+	/** Bits of all occupied cells in row major order */
+	private long[] occupiedCells;
+
+	/** List of all occupied cell ranges */
+	private List<CellRangeAddress> cellRanges;
+
+	/**
+	 * List of the lectures of the occupied cell ranges (null for cell ranges
+	 * without a lecture)
+	 */
+	private List<Lecture> lectures;
+
+	/**
+	 * Creates an empty grid.
+	 */
+	public OccupancyGrid() {
+		this.occupiedCells = new long[(OccupancyGrid.ROWS * OccupancyGrid.COLUMNS + 63) / 64];
+		this.cellRanges = new ArrayList<CellRangeAddress>();
+		this.lectures = new ArrayList<Lecture>();
+	}
+
+	/**
+	 * Checks if the given cell range is completely covered by the grid.
+	 * 
+	 * @param cellRange The cell range to check
+	 * @return true if the cell range is inside the grid, false otherwise
+	 */
+	public boolean contains(CellRangeAddress cellRange) {
+		return cellRange.getFirstRow() >= 0 && cellRange.getLastRow() < OccupancyGrid.ROWS
+				&& cellRange.getFirstColumn() >= 0 && cellRange.getLastColumn() < OccupancyGrid.COLUMNS
+				&& cellRange.getFirstRow() <= cellRange.getLastRow()
+				&& cellRange.getFirstColumn() <= cellRange.getLastColumn();
+	}
+
+	/**
+	 * Checks if at least one cell of the given cell range is already occupied. Only
+	 * the part of the cell range inside the grid is checked.
+	 * 
+	 * @param cellRange The cell range to check
+	 * @return true if a cell of the cell range is occupied, false otherwise
+	 */
+	public boolean isOccupied(CellRangeAddress cellRange) {
+		int lastRow = Math.min(cellRange.getLastRow(), OccupancyGrid.ROWS - 1);
+		int lastColumn = Math.min(cellRange.getLastColumn(), OccupancyGrid.COLUMNS - 1);
+		for (int rowNum = Math.max(cellRange.getFirstRow(), 0); rowNum <= lastRow; rowNum++) {
+			for (int columnNum = Math.max(cellRange.getFirstColumn(), 0); columnNum <= lastColumn; columnNum++) {
+				int bit = rowNum * OccupancyGrid.COLUMNS + columnNum;
+				if ((this.occupiedCells[bit >>> 6] & (1L << bit)) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Marks all cells of the given cell range as occupied. Only the part of the
+	 * cell range inside the grid is marked.
+	 * 
+	 * @param cellRange The cell range to mark
+	 * @param lecture   The lecture of the cell range or null, if the cell range
+	 *                  does not belong to a lecture
+	 */
+	public void occupy(CellRangeAddress cellRange, Lecture lecture) {
+		int lastRow = Math.min(cellRange.getLastRow(), OccupancyGrid.ROWS - 1);
+		int lastColumn = Math.min(cellRange.getLastColumn(), OccupancyGrid.COLUMNS - 1);
+		for (int rowNum = Math.max(cellRange.getFirstRow(), 0); rowNum <= lastRow; rowNum++) {
+			for (int columnNum = Math.max(cellRange.getFirstColumn(), 0); columnNum <= lastColumn; columnNum++) {
+				int bit = rowNum * OccupancyGrid.COLUMNS + columnNum;
+				this.occupiedCells[bit >>> 6] |= 1L << bit;
+			}
+		}
+		this.cellRanges.add(cellRange);
+		this.lectures.add(lecture);
+	}
+
+	/**
+	 * Marks all cells of the given cell ranges as occupied, which do not belong to
+	 * a lecture.
+	 * 
+	 * @param cellRanges The cell ranges to mark
+	 */
+	public void occupyAll(List<CellRangeAddress> cellRanges) {
+		for (CellRangeAddress cellRange : cellRanges) {
+			this.occupy(cellRange, null);
+		}
+	}
+
+	/**
+	 * Returns the lecture, which occupies cells of the given cell range.
+	 * 
+	 * This method scans all occupied cell ranges, so only use it for diagnostics
+	 * after {@link #isOccupied(CellRangeAddress)} returned true.
+	 * 
+	 * @param cellRange The cell range to check
+	 * @return The lecture of the overlapping cell range, or null if the cell range
+	 *         overlaps no lecture
+	 */
+	public Lecture getOverlappingLecture(CellRangeAddress cellRange) {
+		for (int index = 0; index < this.cellRanges.size(); index++) {
+			if (this.cellRanges.get(index).intersects(cellRange)) {
+				return this.lectures.get(index);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all occupied cells from the grid.
+	 */
+	public void clear() {
+		for (int index = 0; index < this.occupiedCells.length; index++) {
+			this.occupiedCells[index] = 0;
+		}
+		this.cellRanges.clear();
+		this.lectures.clear();
+	}
+}
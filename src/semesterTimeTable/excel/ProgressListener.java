@@ -0,0 +1,24 @@
+package semesterTimeTable.excel;
+
+/**
+ * The interface is to make sure, that a class can follow the phases of an
+ * export and cancel the export between two phases.
+ */
+public interface ProgressListener {
+
+	/**
+	 * Is called, when the export starts the given phase. It is called by the
+	 * thread running the export.
+	 * 
+	 * @param phase The started phase
+	 */
+	public void phaseStarted(ExportPhase phase);
+
+	/**
+	 * Checks if the export should be cancelled. The export is stopped before its
+	 * next phase, if it was cancelled.
+	 * 
+	 * @return True if the export was cancelled, otherwise false
+	 */
+	public boolean isCancelled();
+}
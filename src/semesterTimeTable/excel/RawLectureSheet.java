@@ -0,0 +1,286 @@
+package semesterTimeTable.excel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+
+/**
+ * Lecture sheet, which only records the changed cells and merged regions of
+ * one export. The sheet is written with the static fragments of the compiled
+ * template by its {@link TemplateSheetWriter}, so no workbook of Apache POI is
+ * created for the export.
+ *
+ * The texts are added to a shared strings table of the export, which contains
+ * the shared strings of the template. The cell styles must be styles of the
+ * model workbook of the template sheet writer (see
+ * {@link TemplateSheetWriter#getStyleRegistry()}).
+ */
+public class RawLectureSheet implements LectureSheet, WorkbookContent {
+
+	/** Type of the cells, which are not changed */
+	public final static byte UNCHANGED = 0;
+
+	/** Type of the blank cells */
+	public final static byte BLANK = 1;
+
+	/** Type of the cells with a shared string */
+	public final static byte STRING = 2;
+
+	/** Type of the cells with a number (e.g. a date) */
+	public final static byte NUMBER = 3;
+
+	/** The writer of the sheet */
+	private final TemplateSheetWriter writer;
+
+	/** Number of columns of the cell arrays */
+	private final int columns;
+
+	/** The types of the cells in row major order */
+	private final byte[] types;
+
+	/** The style indexes of the changed cells or -1 for the style of the template */
+	private final int[] styleIndexes;
+
+	/** The shared string indexes of the cells with a shared string */
+	private final int[] sharedStringIndexes;
+
+	/** The numbers of the cells with a number */
+	private final double[] numbers;
+
+	/** The merged regions of the sheet */
+	private final List<CellRangeAddress> mergedRegions;
+
+	/** The shared strings of the template and of the export */
+	private final SharedStringsTable sharedStrings;
+
+	/** True if the dates are based on 1904 instead of 1900 */
+	private final boolean date1904;
+
+	/**
+	 * Creates a sheet without changes.
+	 * 
+	 * @param writer        The writer of the sheet
+	 * @param rows          The number of rows of the template sheet
+	 * @param columns       The number of columns of the template sheet
+	 * @param mergedRegions The merged regions of the template sheet
+	 * @param sharedStrings The shared strings of the template
+	 * @param date1904      True if the dates of the template are based on 1904
+	 */
+	public RawLectureSheet(TemplateSheetWriter writer, int rows, int columns, List<CellRangeAddress> mergedRegions,
+			SharedStringsTable sharedStrings, boolean date1904) {
+		this.writer = writer;
+		this.columns = columns;
+		this.types = new byte[rows * columns];
+		this.styleIndexes = new int[rows * columns];
+		this.sharedStringIndexes = new int[rows * columns];
+		this.numbers = new double[rows * columns];
+		this.mergedRegions = new ArrayList<CellRangeAddress>(mergedRegions);
+		this.sharedStrings = sharedStrings;
+		this.date1904 = date1904;
+	}
+
+	@Override
+	public List<CellRangeAddress> getMergedRegions() {
+		return new ArrayList<CellRangeAddress>(this.mergedRegions);
+	}
+
+	@Override
+	public void addMergedRegion(CellRangeAddress cellRange) {
+		RawLectureSheet.validateMergedRegion(cellRange);
+		for (CellRangeAddress mergedRegion : this.mergedRegions) {
+			if (mergedRegion.intersects(cellRange)) {
+				throw new IllegalStateException("The cell range " + cellRange.formatAsString()
+						+ " intersects with the existing merged region " + mergedRegion.formatAsString());
+			}
+		}
+		this.mergedRegions.add(cellRange);
+	}
+
+	@Override
+	public void addMergedRegionUnsafe(CellRangeAddress cellRange) {
+		RawLectureSheet.validateMergedRegion(cellRange);
+		this.mergedRegions.add(cellRange);
+	}
+
+	@Override
+	public void removeMergedRegions(Predicate<CellRangeAddress> filter) {
+		this.mergedRegions.removeIf(filter);
+	}
+
+	@Override
+	public void setCellBlank(int rowNum, int columnNum, short cellStyleIndex) {
+		int key = this.getCellKey(rowNum, columnNum);
+		this.types[key] = RawLectureSheet.BLANK;
+		this.styleIndexes[key] = cellStyleIndex;
+	}
+
+	@Override
+	public void setCellValue(int rowNum, int columnNum, XSSFRichTextString value, XSSFCellStyle cellStyle) {
+		if (value == null) {
+			this.setCellBlank(rowNum, columnNum, cellStyle.getIndex());
+			return;
+		}
+		int key = this.getCellKey(rowNum, columnNum);
+		this.types[key] = RawLectureSheet.STRING;
+		this.styleIndexes[key] = cellStyle.getIndex();
+		this.sharedStringIndexes[key] = this.sharedStrings.addSharedStringItem(value);
+	}
+
+	@Override
+	public void setCellValue(int rowNum, int columnNum, Calendar value) {
+		int key = this.getCellKey(rowNum, columnNum);
+		this.types[key] = RawLectureSheet.NUMBER;
+		this.styleIndexes[key] = -1;
+		this.numbers[key] = DateUtil.getExcelDate(value, this.date1904);
+	}
+
+	/**
+	 * Returns the type of the given cell.
+	 * 
+	 * @param rowNum    The (0 based) row number of the cell
+	 * @param columnNum The (0 based) column number of the cell
+	 * @return The type of the cell, e.g. {@link #UNCHANGED}
+	 */
+	public byte getCellType(int rowNum, int columnNum) {
+		return this.types[rowNum * this.columns + columnNum];
+	}
+
+	/**
+	 * Returns the number of the given cell.
+	 * 
+	 * @param rowNum    The (0 based) row number of the cell
+	 * @param columnNum The (0 based) column number of the cell
+	 * @return The number of the cell or 0, if the cell has no number
+	 */
+	public double getNumber(int rowNum, int columnNum) {
+		return this.numbers[rowNum * this.columns + columnNum];
+	}
+
+	/**
+	 * Writes the XML element of the given cell, if the cell was changed.
+	 * 
+	 * @param writer             The writer of the worksheet part
+	 * @param rowNum             The (0 based) row number of the cell
+	 * @param columnNum          The (0 based) column number of the cell
+	 * @param reference          The reference of the cell (e.g. "B4")
+	 * @param templateStyleIndex The style index of the cell in the template
+	 * @return True if the cell was written, false if the cell was not changed
+	 * @throws IOException If writing the cell failed
+	 */
+	public boolean writeCell(Writer writer, int rowNum, int columnNum, String reference, int templateStyleIndex)
+			throws IOException {
+		int key = rowNum * this.columns + columnNum;
+		byte type = this.types[key];
+		if (type == RawLectureSheet.UNCHANGED) {
+			return false;
+		}
+		int styleIndex = this.styleIndexes[key] < 0 ? templateStyleIndex : this.styleIndexes[key];
+		writer.write("<c r=\"");
+		writer.write(reference);
+		writer.write('"');
+		if (styleIndex != 0) {
+			writer.write(" s=\"");
+			writer.write(Integer.toString(styleIndex));
+			writer.write('"');
+		}
+		if (type == RawLectureSheet.BLANK) {
+			writer.write("/>");
+		} else if (type == RawLectureSheet.STRING) {
+			writer.write(" t=\"s\"><v>");
+			writer.write(Integer.toString(this.sharedStringIndexes[key]));
+			writer.write("</v></c>");
+		} else {
+			writer.write(" t=\"n\"><v>");
+			writer.write(Double.toString(this.numbers[key]));
+			writer.write("</v></c>");
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the merge cells element of all merged regions of the sheet.
+	 * 
+	 * @param writer The writer of the worksheet part
+	 * @throws IOException If writing the merged regions failed
+	 */
+	public void writeMergedRegions(Writer writer) throws IOException {
+		if (this.mergedRegions.isEmpty()) {
+			return;
+		}
+		writer.write("<mergeCells count=\"");
+		writer.write(Integer.toString(this.mergedRegions.size()));
+		writer.write("\">");
+		for (CellRangeAddress mergedRegion : this.mergedRegions) {
+			writer.write("<mergeCell ref=\"");
+			writer.write(mergedRegion.formatAsString());
+			writer.write("\"/>");
+		}
+		writer.write("</mergeCells>");
+	}
+
+	/**
+	 * Writes the shared strings part of the template and of the export.
+	 * 
+	 * @param outputStream The output stream of the shared strings part
+	 * @throws IOException If writing the shared strings failed
+	 */
+	public void writeSharedStrings(OutputStream outputStream) throws IOException {
+		this.sharedStrings.writeTo(outputStream);
+	}
+
+	/**
+	 * Writes the workbook of the template with the changes of this sheet into the
+	 * given output stream. The output stream is flushed, but not closed.
+	 * 
+	 * @param outputStream      The output stream for the xlsx content
+	 * @param compressionPolicy The policy for compressing the parts
+	 * @throws IOException If writing the workbook failed
+	 */
+	@Override
+	public void write(OutputStream outputStream, CompressionPolicy compressionPolicy) throws IOException {
+		this.writer.write(this, outputStream, compressionPolicy);
+	}
+
+	/**
+	 * Returns the key of the given cell in the cell arrays.
+	 * 
+	 * @param rowNum    The (0 based) row number of the cell
+	 * @param columnNum The (0 based) column number of the cell
+	 * @return The key of the cell
+	 * @throws IllegalArgumentException If the cell is not part of the template
+	 *                                  sheet
+	 */
+	private int getCellKey(int rowNum, int columnNum) {
+		if (rowNum < 0 || columnNum < 0 || columnNum >= this.columns || rowNum * this.columns >= this.types.length) {
+			throw new IllegalArgumentException(
+					"The cell (" + rowNum + ", " + columnNum + ") is not part of the template sheet");
+		}
+		return rowNum * this.columns + columnNum;
+	}
+
+	/**
+	 * Validates the given cell range like Apache POI does before merging it.
+	 * 
+	 * @param cellRange The cell range to merge
+	 * @throws IllegalArgumentException If the cell range contains less than two
+	 *                                  cells or is invalid
+	 */
+	private static void validateMergedRegion(CellRangeAddress cellRange) {
+		if (cellRange.getNumberOfCells() < 2) {
+			throw new IllegalArgumentException(
+					"Merged region " + cellRange.formatAsString() + " must contain 2 or more cells");
+		}
+		cellRange.validate(SpreadsheetVersion.EXCEL2007);
+	}
+}
@@ -0,0 +1,283 @@
+package semesterTimeTable.excel;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.namespace.QName;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.poi.ooxml.POIXMLDocumentPart.RelationPart;
+import org.apache.poi.ooxml.POIXMLTypeLoader;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.TargetMode;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRow;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorksheet;
+
+/**
+ * Spool of finished sheets of a workbook, which writes many sheets with
+ * constant memory.
+ *
+ * The content of a finished sheet is written into a temporary file, so only an
+ * empty sheet is kept in memory for each spooled sheet. The styles and the
+ * shared strings stay in the workbook and are shared by all sheets. When the
+ * workbook is written, the parts of the spooled sheets are replaced by their
+ * spooled content, like the SXSSF workbook of Apache POI does with its streamed
+ * rows.
+ */
+public class SheetSpool implements WorkbookContent, Closeable {
+
+	/** Options for writing the content of a sheet */
+	private final static XmlOptions SHEET_OPTIONS = SheetSpool.createSheetOptions();
+
+	/** Size of the buffer for copying the spooled data */
+	private final static int BUFFER_SIZE = 64 * 1024;
+
+	/** The workbook of the sheets */
+	private final XSSFWorkbook workbook;
+
+	/** Map of the zip entry names of the spooled sheets and their spooled content */
+	private final Map<String, File> spooledSheets;
+
+	/**
+	 * Creates an empty spool for the sheets of the given workbook.
+	 * 
+	 * @param workbook The workbook of the sheets
+	 */
+	public SheetSpool(XSSFWorkbook workbook) {
+		this.workbook = workbook;
+		this.spooledSheets = new HashMap<String, File>();
+	}
+
+	/**
+	 * Returns the workbook of the spooled sheets.
+	 * 
+	 * @return The workbook
+	 */
+	public XSSFWorkbook getWorkbook() {
+		return this.workbook;
+	}
+
+	/**
+	 * Returns the number of spooled sheets.
+	 * 
+	 * @return The number of spooled sheets
+	 */
+	public int size() {
+		return this.spooledSheets.size();
+	}
+
+	/**
+	 * Writes the current content of the given sheet into a temporary file, which
+	 * becomes the content of the given target sheet, when the workbook is
+	 * written. The relations of the sheet (e.g. to its printer settings) are
+	 * copied to the target sheet, so the given sheet can be changed and spooled
+	 * again afterwards. The formulas of the sheet must be evaluated before.
+	 * 
+	 * @param sheet       The finished sheet of the workbook
+	 * @param targetSheet The empty sheet of the workbook, which gets the content
+	 * @throws IOException If writing the temporary file or copying the relations
+	 *                     failed
+	 */
+	public void spool(XSSFSheet sheet, XSSFSheet targetSheet) throws IOException {
+		String entryName = targetSheet.getPackagePart().getPartName().getName().substring(1);
+		if (this.spooledSheets.containsKey(entryName)) {
+			throw new IllegalStateException("The sheet \"" + targetSheet.getSheetName() + "\" is already spooled");
+		}
+		File file = File.createTempFile("sheet", ".xml");
+		boolean spooled = false;
+		try {
+			try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(file.toPath()),
+					SheetSpool.BUFFER_SIZE)) {
+				SheetSpool.writeSheet(sheet, outputStream);
+			}
+
+			SheetSpool.copyRelations(sheet, targetSheet);
+			this.spooledSheets.put(entryName, file);
+			spooled = true;
+		} finally {
+			if (!spooled) {
+				Files.deleteIfExists(file.toPath());
+			}
+		}
+	}
+
+	/**
+	 * Writes the workbook with the content of the spooled sheets into the given
+	 * output stream. The output stream is not closed.
+	 * 
+	 * The workbook is written into a temporary file without compression at
+	 * first, which is copied into the output stream. The parts of the spooled
+	 * sheets are replaced by their spooled content while copying.
+	 * 
+	 * @param outputStream      The output stream for the workbook
+	 * @param compressionPolicy The policy for compressing the parts
+	 * @throws IOException If writing the workbook failed
+	 */
+	@Override
+	public void write(OutputStream outputStream, CompressionPolicy compressionPolicy) throws IOException {
+		File file = File.createTempFile("workbook", ".xlsx");
+		try {
+			try (OutputStream fileOutputStream = Files.newOutputStream(file.toPath())) {
+				ApachePOIWrapper.saveWorkbookToStream(this.workbook, fileOutputStream, CompressionPolicy.STORE);
+			}
+			WorkbookZipOutputStream zipOutputStream = new WorkbookZipOutputStream(
+					new BufferedOutputStream(outputStream, SheetSpool.BUFFER_SIZE), compressionPolicy);
+			try (ZipFile zipFile = new ZipFile(file)) {
+				byte[] buffer = new byte[SheetSpool.BUFFER_SIZE];
+				Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					zipOutputStream.putArchiveEntry(new ZipArchiveEntry(entry.getName()));
+					File spooledSheet = this.spooledSheets.get(entry.getName());
+					try (InputStream inputStream = spooledSheet == null ? zipFile.getInputStream(entry)
+							: Files.newInputStream(spooledSheet.toPath())) {
+						SheetSpool.copy(inputStream, zipOutputStream, buffer);
+					}
+					zipOutputStream.closeArchiveEntry();
+				}
+			}
+			zipOutputStream.finish();
+			zipOutputStream.flush();
+		} finally {
+			Files.deleteIfExists(file.toPath());
+		}
+	}
+
+	/**
+	 * Deletes the temporary files of all spooled sheets. The spooled sheets
+	 * cannot be written afterwards.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (File spooledSheet : this.spooledSheets.values()) {
+			Files.deleteIfExists(spooledSheet.toPath());
+		}
+		this.spooledSheets.clear();
+	}
+
+	/**
+	 * Writes the worksheet part of the given sheet into the given output stream
+	 * like Apache POI does. The cells of each row are sorted by their column
+	 * before. The output stream is not closed.
+	 * 
+	 * @param sheet        The sheet
+	 * @param outputStream The output stream of the worksheet part
+	 * @throws IOException If writing the worksheet part failed
+	 */
+	public static void writeSheet(XSSFSheet sheet, OutputStream outputStream) throws IOException {
+		for (int rowNum = sheet.getFirstRowNum(); rowNum <= sheet.getLastRowNum(); rowNum++) {
+			XSSFRow row = sheet.getRow(rowNum);
+			if (row != null) {
+				SheetSpool.sortCells(row);
+			}
+		}
+		sheet.getCTWorksheet().save(outputStream, SheetSpool.SHEET_OPTIONS);
+	}
+
+	/**
+	 * Adds all relations of the given sheet with the same ids to the given target
+	 * sheet like {@link XSSFWorkbook#cloneSheet(int)} does. The related parts are
+	 * shared by both sheets, so they are kept, when one of the sheets is removed.
+	 * 
+	 * @param sheet       The sheet
+	 * @param targetSheet The sheet, which gets the relations
+	 * @throws IOException If a relation of the sheet is invalid or unknown
+	 */
+	private static void copyRelations(XSSFSheet sheet, XSSFSheet targetSheet) throws IOException {
+		for (RelationPart relationPart : sheet.getRelationParts()) {
+			PackageRelationship relationship = relationPart.getRelationship();
+			XSSFRelation relation = XSSFRelation.getInstance(relationship.getRelationshipType());
+			if (relation == null) {
+				throw new IOException("The sheet \"" + sheet.getSheetName() + "\" has the unknown relation \""
+						+ relationship.getRelationshipType() + "\"");
+			}
+			targetSheet.addRelation(relationship.getId(), relation, relationPart.getDocumentPart());
+		}
+		try {
+			for (PackageRelationship relationship : sheet.getPackagePart().getRelationships()) {
+				if (relationship.getTargetMode() == TargetMode.EXTERNAL) {
+					targetSheet.getPackagePart().addExternalRelationship(relationship.getTargetURI().toString(),
+							relationship.getRelationshipType(), relationship.getId());
+				}
+			}
+		} catch (InvalidFormatException e) {
+			throw new IOException("The relations of the sheet \"" + sheet.getSheetName() + "\" are invalid", e);
+		}
+	}
+
+	/**
+	 * Sorts the cells of the given row by their column, like Apache POI does
+	 * before writing a row. The cells of the row are already sorted by their
+	 * column, so the row gets copies of their XML elements in this order and each
+	 * cell is bound to its copy. So later changes of a cell are still written.
+	 * 
+	 * @param row The row
+	 */
+	private static void sortCells(XSSFRow row) {
+		CTRow ctRow = row.getCTRow();
+		boolean sorted = ctRow.sizeOfCArray() == row.getPhysicalNumberOfCells();
+		int index = 0;
+		for (Iterator<Cell> iterator = row.cellIterator(); sorted && iterator.hasNext(); index++) {
+			sorted = ((XSSFCell) iterator.next()).getCTCell() == ctRow.getCArray(index);
+		}
+		if (sorted) {
+			return;
+		}
+		CTCell[] sortedCells = new CTCell[row.getPhysicalNumberOfCells()];
+		index = 0;
+		for (Iterator<Cell> iterator = row.cellIterator(); iterator.hasNext(); index++) {
+			XSSFCell cell = (XSSFCell) iterator.next();
+			sortedCells[index] = (CTCell) cell.getCTCell().copy();
+			cell.setCTCell(sortedCells[index]);
+		}
+		ctRow.setCArray(sortedCells);
+	}
+
+	/**
+	 * Returns the options for writing a worksheet like Apache POI does.
+	 * 
+	 * @return The options for writing a worksheet
+	 */
+	private static XmlOptions createSheetOptions() {
+		XmlOptions options = new XmlOptions(POIXMLTypeLoader.DEFAULT_XML_OPTIONS);
+		options.setSaveSyntheticDocumentElement(
+				new QName(CTWorksheet.type.getName().getNamespaceURI(), "worksheet"));
+		return options;
+	}
+
+	/**
+	 * Copies all bytes from the input stream into the output stream.
+	 * 
+	 * @param inputStream  The input stream
+	 * @param outputStream The output stream
+	 * @param buffer       The buffer for copying
+	 * @throws IOException If copying failed
+	 */
+	private static void copy(InputStream inputStream, OutputStream outputStream, byte[] buffer)
+			throws IOException {
+		int count;
+		while ((count = inputStream.read(buffer)) >= 0) {
+			outputStream.write(buffer, 0, count);
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package semesterTimeTable.excel;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Maps dates to the cells (slots) of the lecture area of a quarter.
+ *
+ * The mapping works on epoch minutes and precomputed lookup tables. The day
+ * offset to the start of the quarter is mapped to the column and the block of
+ * the cell and the minute of the day is mapped to the row inside the block, so
+ * mapping a date does not allocate any objects. A slot is the row and the
+ * column of a cell packed into one integer, see {@link #getRow(int)} and
+ * {@link #getColumn(int)}.
+ *
+ * Weeks are always ISO weeks (starting on Monday, the first week of a year
+ * contains the 4th of January).
+ */
+public class SlotMapper {
+
+	/** Number of minutes of a day */
+	public final static int MINUTES_PER_DAY = 24 * 60;
+
+	/** Number of milliseconds of a minute */
+	public final static int MILLIS_PER_MINUTE = 60 * 1000;
+
+	/** Slot of a date outside of the lecture area */
+	public final static int NO_SLOT = -1;
+
+	/** Largest day offset to the start of the quarter inside the lecture area */
+	public final static int MAX_DAY_OFFSET = 81;
+
+	/** Number of days of a block of the lecture area (four weeks) */
+	private final static int DAYS_PER_BLOCK = 28;
+
+	/** Number of rows of a block of the lecture area */
+	private final static int ROWS_PER_BLOCK = 49;
+
+	/** Row of the first time slot of the first block */
+	private final static int FIRST_ROW = 4;
+
+	/** Number of time slots of a day (08:00 until 19:00 in steps of 15 minutes) */
+	private final static int TIME_SLOTS = 44;
+
+	/** Epoch day of the 1st January 1970 is a Thursday (zero based from Monday) */
+	private final static int EPOCH_DAY_OF_WEEK = 3;
+
+	/** Column of each day offset to the start of the quarter */
+	private final static int[] DAY_COLUMNS = new int[SlotMapper.MAX_DAY_OFFSET + 1];
+
+	/** First row of the block of each day offset to the start of the quarter */
+	private final static int[] DAY_ROWS = new int[SlotMapper.MAX_DAY_OFFSET + 1];
+
+	/** Row offset inside a block of each minute of the day */
+	private final static int[] MINUTE_ROWS = new int[SlotMapper.MINUTES_PER_DAY];
+
+	/** Bitset of the minutes of the day, which are normal start times */
+	private final static long[] START_MINUTES = SlotMapper.toMinuteBitset(LectureWorkbook.START_TIMES);
+
+	/** Bitset of the minutes of the day, which are normal end times */
+	private final static long[] END_MINUTES = SlotMapper.toMinuteBitset(LectureWorkbook.END_TIMES);
+
+	static {
+		for (int dayOffset = 0; dayOffset <= SlotMapper.MAX_DAY_OFFSET; dayOffset++) {
+			int columnNum = dayOffset % SlotMapper.DAYS_PER_BLOCK;
+			columnNum -= columnNum / 7 * 2;
+			columnNum += columnNum / 10 + 1;
+			SlotMapper.DAY_COLUMNS[dayOffset] = columnNum;
+			SlotMapper.DAY_ROWS[dayOffset] = dayOffset / SlotMapper.DAYS_PER_BLOCK * SlotMapper.ROWS_PER_BLOCK
+					+ SlotMapper.FIRST_ROW;
+		}
+		for (int minuteOfDay = 0; minuteOfDay < SlotMapper.MINUTES_PER_DAY; minuteOfDay++) {
+			int timePosition = minuteOfDay / 15 - 8 * 4;
+			SlotMapper.MINUTE_ROWS[minuteOfDay] = timePosition < 0 ? -1
+					: Math.min(timePosition, SlotMapper.TIME_SLOTS);
+		}
+	}
+
+	/** Epoch minute of the start of the quarter */
+	private final long quarterStartMinute;
+
+	/**
+	 * Creates a slot mapper for the quarter starting at the given date.
+	 * 
+	 * @param quarterStartDate The start date of the quarter
+	 */
+	public SlotMapper(Calendar quarterStartDate) {
+		this.quarterStartMinute = SlotMapper.getEpochMinute(quarterStartDate);
+	}
+
+	/**
+	 * Returns the slot of the given date.
+	 * 
+	 * If the date is the end time of a lecture, set isLectureEnd to true, so the
+	 * slot of the last minute of the lecture is returned.
+	 * 
+	 * @param epochMinute   The date as minutes since 1970-01-01T00:00Z
+	 * @param offsetMinutes The offset of the local time of the date to UTC in
+	 *                      minutes
+	 * @param isLectureEnd  A boolean whether the date is the end time of the
+	 *                      lecture or not
+	 * @return The slot of the date or {@value #NO_SLOT}, if the date is on a
+	 *         weekend or outside of the quarter
+	 */
+	public int getSlot(long epochMinute, int offsetMinutes, boolean isLectureEnd) {
+		if (isLectureEnd) {
+			epochMinute--;
+		}
+		long minutesBetween = epochMinute - this.quarterStartMinute;
+		long localMinute = epochMinute + offsetMinutes;
+		int dayOfWeek = (int) Math.floorMod(Math.floorDiv(localMinute, SlotMapper.MINUTES_PER_DAY)
+				+ SlotMapper.EPOCH_DAY_OF_WEEK, 7L);
+		if (minutesBetween < 0 || dayOfWeek >= 5) {
+			return SlotMapper.NO_SLOT;
+		}
+		long dayOffset = minutesBetween / SlotMapper.MINUTES_PER_DAY;
+		if (dayOffset > SlotMapper.MAX_DAY_OFFSET) {
+			return SlotMapper.NO_SLOT;
+		}
+		int minuteOfDay = (int) Math.floorMod(localMinute, (long) SlotMapper.MINUTES_PER_DAY);
+		int rowNum = SlotMapper.DAY_ROWS[(int) dayOffset] + SlotMapper.MINUTE_ROWS[minuteOfDay];
+		return (rowNum << 16) | SlotMapper.DAY_COLUMNS[(int) dayOffset];
+	}
+
+	/**
+	 * Returns the slot of the given date.
+	 * 
+	 * @see #getSlot(long, int, boolean)
+	 * @param date         The date
+	 * @param isLectureEnd A boolean whether the date is the end time of the
+	 *                     lecture or not
+	 * @return The slot of the date or {@value #NO_SLOT}, if the date is on a
+	 *         weekend or outside of the quarter
+	 */
+	public int getSlot(Calendar date, boolean isLectureEnd) {
+		return this.getSlot(SlotMapper.getEpochMinute(date), SlotMapper.getOffsetMinutes(date), isLectureEnd);
+	}
+
+	/**
+	 * Returns the zero based row of the given slot.
+	 * 
+	 * @param slot The slot
+	 * @return The row of the slot
+	 */
+	public static int getRow(int slot) {
+		return slot >>> 16;
+	}
+
+	/**
+	 * Returns the zero based column of the given slot.
+	 * 
+	 * @param slot The slot
+	 * @return The column of the slot
+	 */
+	public static int getColumn(int slot) {
+		return slot & 0xFFFF;
+	}
+
+	/**
+	 * Returns the given date as minutes since 1970-01-01T00:00Z. Seconds and
+	 * milliseconds are ignored.
+	 * 
+	 * @param date The date
+	 * @return The epoch minute of the date
+	 */
+	public static long getEpochMinute(Calendar date) {
+		return Math.floorDiv(date.getTimeInMillis(), (long) SlotMapper.MILLIS_PER_MINUTE);
+	}
+
+	/**
+	 * Returns the offset of the local time of the given date to UTC in minutes,
+	 * including the daylight saving time.
+	 * 
+	 * @param date The date
+	 * @return The offset of the date in minutes
+	 */
+	public static int getOffsetMinutes(Calendar date) {
+		return (date.get(Calendar.ZONE_OFFSET) + date.get(Calendar.DST_OFFSET)) / SlotMapper.MILLIS_PER_MINUTE;
+	}
+
+	/**
+	 * Returns the local minute of the day of the given date.
+	 * 
+	 * @param date The date
+	 * @return The minute of the day (0 until 1439)
+	 */
+	public static int getMinuteOfDay(Calendar date) {
+		return SlotMapper.getMinuteOfDay(SlotMapper.getEpochMinute(date), SlotMapper.getOffsetMinutes(date));
+	}
+
+	/**
+	 * Returns the local minute of the day of the given epoch minute.
+	 * 
+	 * @param epochMinute   The date as minutes since 1970-01-01T00:00Z
+	 * @param offsetMinutes The offset of the local time of the date to UTC in
+	 *                      minutes
+	 * @return The minute of the day (0 until 1439)
+	 */
+	public static int getMinuteOfDay(long epochMinute, int offsetMinutes) {
+		return (int) Math.floorMod(epochMinute + offsetMinutes, (long) SlotMapper.MINUTES_PER_DAY);
+	}
+
+	/**
+	 * Checks if the given minute of the day is a normal start time of a lecture.
+	 * The normal start times are defined in {@link LectureWorkbook#START_TIMES}.
+	 * 
+	 * @param minuteOfDay The minute of the day
+	 * @return True if the minute is a normal start time, otherwise false
+	 */
+	public static boolean isNormalStartTime(int minuteOfDay) {
+		return (SlotMapper.START_MINUTES[minuteOfDay >>> 6] & (1L << minuteOfDay)) != 0;
+	}
+
+	/**
+	 * Checks if the given minute of the day is a normal end time of a lecture. The
+	 * normal end times are defined in {@link LectureWorkbook#END_TIMES}.
+	 * 
+	 * @param minuteOfDay The minute of the day
+	 * @return True if the minute is a normal end time, otherwise false
+	 */
+	public static boolean isNormalEndTime(int minuteOfDay) {
+		return (SlotMapper.END_MINUTES[minuteOfDay >>> 6] & (1L << minuteOfDay)) != 0;
+	}
+
+	/**
+	 * Returns the start of the given day of the given ISO week in the given time
+	 * zone. Weeks after the last week of the year continue in the next year.
+	 * 
+	 * @param weekOfYear The ISO week of the week based year
+	 * @param dayOfWeek  The day of the week
+	 * @param year       The week based year
+	 * @param timeZone   The time zone
+	 * @return The start of the day
+	 */
+	public static Calendar isoWeekToDate(int weekOfYear, DayOfWeek dayOfWeek, int year, TimeZone timeZone) {
+		LocalDate date = LocalDate.of(year, 1, 4).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+				.plusWeeks(weekOfYear - 1).with(TemporalAdjusters.nextOrSame(dayOfWeek));
+		Calendar calendar = new GregorianCalendar(timeZone);
+		calendar.setTimeInMillis(date.atStartOfDay(timeZone.toZoneId()).toInstant().toEpochMilli());
+		return calendar;
+	}
+
+	/**
+	 * Returns the local date of the given date in the time zone of the date.
+	 * 
+	 * @param date The date
+	 * @return The local date
+	 */
+	public static LocalDate toLocalDate(Calendar date) {
+		ZoneId zoneId = date.getTimeZone().toZoneId();
+		return Instant.ofEpochMilli(date.getTimeInMillis()).atZone(zoneId).toLocalDate();
+	}
+
+	/**
+	 * Returns the ISO week of the week based year of the given date.
+	 * 
+	 * @param date The date
+	 * @return The ISO week of the date
+	 */
+	public static int getIsoWeek(Calendar date) {
+		return SlotMapper.toLocalDate(date).get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+	}
+
+	/**
+	 * Returns the ISO week based year of the given date. The week based year
+	 * differs from the year for days around the 1st January.
+	 * 
+	 * @param date The date
+	 * @return The week based year of the date
+	 */
+	public static int getIsoWeekBasedYear(Calendar date) {
+		return SlotMapper.toLocalDate(date).get(IsoFields.WEEK_BASED_YEAR);
+	}
+
+	/**
+	 * Returns a bitset of the minutes of the day of the given times.
+	 * 
+	 * @param times The list of times in the hh:mm format of a 24 hour clock
+	 * @return The bitset of the minutes of the day
+	 */
+	private static long[] toMinuteBitset(List<String> times) {
+		long[] bitset = new long[(SlotMapper.MINUTES_PER_DAY + 63) / 64];
+		for (String time : times) {
+			int minuteOfDay = Integer.parseInt(time.substring(0, 2)) * 60 + Integer.parseInt(time.substring(3, 5));
+			bitset[minuteOfDay >>> 6] |= 1L << minuteOfDay;
+		}
+		return bitset;
+	}
+}
@@ -0,0 +1,186 @@
+package semesterTimeTable.excel;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dictionary of the strings of an export (e.g. lecture names, lecturers and
+ * rooms).
+ *
+ * Each distinct string gets a dense string id (0, 1, 2, ...) and a canonical
+ * instance. Strings, which are equal to a string of the dictionary, are
+ * replaced by the canonical instance, so a name occurring in thousands of
+ * lectures is kept in memory only once. A {@link LectureTable} creates its own
+ * dictionary, the lecture tables of a bulk export (e.g. of many class
+ * timetables) can share one dictionary.
+ *
+ * The dictionary can be used by multiple threads. Looking up an existing
+ * string does not lock. String ids are never reused, so strings are only
+ * removed together with the dictionary, when it is no longer used.
+ */
+public class StringDictionary {
+
+	/** Initial number of strings */
+	private final static int INITIAL_CAPACITY = 256;
+
+	/** Map of the canonical strings and their string id */
+	private final ConcurrentMap<String, Integer> stringIds;
+
+	/** The canonical strings of the string ids */
+	private volatile String[] strings;
+
+	/** Number of string ids */
+	private volatile int size;
+
+	/** Number of lookups of strings */
+	private final AtomicLong lookups;
+
+	/**
+	 * Creates an empty dictionary.
+	 */
+	public StringDictionary() {
+		this.stringIds = new ConcurrentHashMap<String, Integer>(StringDictionary.INITIAL_CAPACITY);
+		this.strings = new String[StringDictionary.INITIAL_CAPACITY];
+		this.size = 0;
+		this.lookups = new AtomicLong();
+	}
+
+	/**
+	 * Returns the string id of the given string and adds the string to the
+	 * dictionary, if it does not exist.
+	 * 
+	 * @param string The string
+	 * @return The string id
+	 */
+	public int getId(String string) {
+		this.lookups.incrementAndGet();
+		Integer stringId = this.stringIds.get(string);
+		if (stringId == null) {
+			stringId = this.addString(string);
+		}
+		return stringId;
+	}
+
+	/**
+	 * Adds the given string to the dictionary, if no other thread added it
+	 * before.
+	 * 
+	 * @param string The string
+	 * @return The string id
+	 */
+	private synchronized int addString(String string) {
+		Integer stringId = this.stringIds.get(string);
+		if (stringId != null) {
+			return stringId;
+		}
+		int newStringId = this.size;
+		String[] strings = this.strings;
+		if (newStringId == strings.length) {
+			strings = Arrays.copyOf(strings, newStringId * 2);
+		}
+		strings[newStringId] = string;
+		// The string is published before its id, so each thread, which knows the
+		// id, also sees the string
+		this.strings = strings;
+		this.size = newStringId + 1;
+		this.stringIds.put(string, newStringId);
+		return newStringId;
+	}
+
+	/**
+	 * Returns the canonical string of the given string id.
+	 * 
+	 * @param stringId The string id
+	 * @return The canonical string
+	 */
+	public String getString(int stringId) {
+		return this.strings[stringId];
+	}
+
+	/**
+	 * Returns the canonical instance of the given string and adds the string to
+	 * the dictionary, if it does not exist.
+	 * 
+	 * @param string The string or null
+	 * @return The canonical string or null, if the string is null
+	 */
+	public String intern(String string) {
+		return string == null ? null : this.getString(this.getId(string));
+	}
+
+	/**
+	 * Splits the given text around the given separator and returns the canonical
+	 * instances of the parts. The parts are split like
+	 * {@link String#split(String)}, but the separator is no regular expression.
+	 * 
+	 * @param text      The text to split
+	 * @param separator The separator of the parts
+	 * @return The canonical parts of the text
+	 */
+	public String[] split(String text, String separator) {
+		int partCount = 1;
+		int index = text.indexOf(separator);
+		while (index >= 0) {
+			partCount++;
+			index = text.indexOf(separator, index + separator.length());
+		}
+		String[] parts = new String[partCount];
+		int start = 0;
+		for (int i = 0; i < partCount - 1; i++) {
+			int end = text.indexOf(separator, start);
+			parts[i] = this.intern(text.substring(start, end));
+			start = end + separator.length();
+		}
+		parts[partCount - 1] = this.intern(start == 0 ? text : text.substring(start));
+
+		// Trailing empty parts are removed like by String#split
+		int length = partCount;
+		while (partCount > 1 && length > 0 && parts[length - 1].isEmpty()) {
+			length--;
+		}
+		return length == partCount ? parts : Arrays.copyOf(parts, length);
+	}
+
+	/**
+	 * Returns the number of strings.
+	 * 
+	 * @return The number of strings
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of lookups of strings.
+	 * 
+	 * @return The number of lookups
+	 */
+	public long getLookups() {
+		return this.lookups.get();
+	}
+
+	/**
+	 * Returns the dedup ratio of the dictionary, which is the number of lookups
+	 * per string. A ratio of 50 means, that each string was looked up 50 times on
+	 * average, but is stored only once.
+	 * 
+	 * @return The dedup ratio or 0, if the dictionary is empty
+	 */
+	public double getDedupRatio() {
+		int size = this.size;
+		return size == 0 ? 0 : (double) this.lookups.get() / size;
+	}
+
+	/**
+	 * Returns the statistics of the dictionary.
+	 * 
+	 * @return The statistics as text
+	 */
+	@Override
+	public String toString() {
+		return "StringDictionary[size=" + this.size() + ", lookups=" + this.getLookups() + ", dedupRatio="
+				+ String.format("%.1f", this.getDedupRatio()) + "]";
+	}
+}
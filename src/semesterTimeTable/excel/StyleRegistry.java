@@ -0,0 +1,222 @@
+package semesterTimeTable.excel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTXf;
+
+/**
+ * Registry of the cell styles and fonts of a workbook. Cell styles and fonts
+ * are keyed by their visual properties, so equivalent styles and fonts are only
+ * added once to the workbook.
+ *
+ * The registry also contains all cell styles and fonts, which already exist in
+ * the workbook. So exporting into an existing workbook reuses the styles of the
+ * previous export and the number of styles in the workbook stays constant.
+ */
+public class StyleRegistry {
+
+	/** The workbook containing the cell styles and fonts */
+	private XSSFWorkbook workbook;
+
+	/** Map of the keys of the visual properties and their cell style */
+	private Map<String, XSSFCellStyle> cellStyles;
+
+	/** Map of the keys of the visual properties and their font */
+	private Map<String, XSSFFont> fonts;
+
+	/**
+	 * Creates a registry containing all existing cell styles and fonts of the
+	 * given workbook.
+	 * 
+	 * @param workbook The workbook containing the cell styles and fonts
+	 */
+	public StyleRegistry(XSSFWorkbook workbook) {
+		this.workbook = workbook;
+		this.cellStyles = new HashMap<String, XSSFCellStyle>();
+		this.fonts = new HashMap<String, XSSFFont>();
+
+		int numberOfFonts = workbook.getNumberOfFontsAsInt();
+		for (int index = 0; index < numberOfFonts; index++) {
+			XSSFFont font = workbook.getFontAt(index);
+			this.fonts.putIfAbsent(StyleRegistry.getFontKey(font), font);
+		}
+		int numberOfCellStyles = workbook.getNumCellStyles();
+		for (int index = 0; index < numberOfCellStyles; index++) {
+			XSSFCellStyle cellStyle = workbook.getCellStyleAt(index);
+			this.cellStyles.putIfAbsent(StyleRegistry.getCellStyleKey(cellStyle), cellStyle);
+		}
+	}
+
+	/**
+	 * Returns the workbook containing the cell styles and fonts.
+	 * 
+	 * @return The workbook
+	 */
+	public XSSFWorkbook getWorkbook() {
+		return this.workbook;
+	}
+
+	/**
+	 * Creates a new cell style prototype, which is not added to the workbook. The
+	 * prototype can be modified like every other cell style and has to be passed
+	 * to {@link #getCellStyle(XSSFCellStyle)} to get a cell style of the workbook.
+	 * 
+	 * @return A new cell style prototype
+	 */
+	public XSSFCellStyle createPrototype() {
+		return new XSSFCellStyle(this.getWorkbook().getStylesSource());
+	}
+
+	/**
+	 * Creates a new cell style prototype with the properties of the given cell
+	 * style or cell style prototype. The prototype is not added to the workbook.
+	 * 
+	 * @param cellStyle The cell style to copy the properties from
+	 * @return A new cell style prototype
+	 */
+	public XSSFCellStyle createPrototype(XSSFCellStyle cellStyle) {
+		XSSFCellStyle prototype = this.createPrototype();
+		prototype.getCoreXf().set(cellStyle.getCoreXf());
+		return prototype;
+	}
+
+	/**
+	 * Returns the cell style of the workbook with the same visual properties as the
+	 * given prototype. If the workbook does not contain such a cell style yet, it
+	 * will be created.
+	 * 
+	 * @param prototype The cell style prototype
+	 * @return The cell style of the workbook
+	 */
+	public XSSFCellStyle getCellStyle(XSSFCellStyle prototype) {
+		String key = StyleRegistry.getCellStyleKey(prototype);
+		XSSFCellStyle cellStyle = this.cellStyles.get(key);
+		if (cellStyle == null) {
+			cellStyle = this.getWorkbook().createCellStyle();
+			CTXf cellXf = cellStyle.getCoreXf();
+			long xfId = cellXf.getXfId();
+			cellXf.set(prototype.getCoreXf());
+			if (!cellXf.isSetXfId()) {
+				cellXf.setXfId(xfId);
+			}
+			this.cellStyles.put(key, cellStyle);
+		}
+		return cellStyle;
+	}
+
+	/**
+	 * Returns the font of the workbook with the same visual properties as the given
+	 * font. The font can be a font of another workbook. If the workbook does not
+	 * contain such a font yet, it will be created.
+	 * 
+	 * Only the properties copied by
+	 * {@link ApachePOIWrapper#copyFont(XSSFFont, XSSFFont)} are compared.
+	 * 
+	 * @param fontToCopy The font to copy the properties from
+	 * @return The font of the workbook
+	 */
+	public XSSFFont getFont(XSSFFont fontToCopy) {
+		// The key is taken from a copy, because copying can change the properties
+		// (e.g. the color of the font)
+		XSSFFont copiedFont = new XSSFFont();
+		ApachePOIWrapper.copyFont(copiedFont, fontToCopy);
+		String key = StyleRegistry.getFontKey(copiedFont);
+		XSSFFont font = this.fonts.get(key);
+		if (font == null) {
+			font = this.getWorkbook().createFont();
+			ApachePOIWrapper.copyFont(font, fontToCopy);
+			this.fonts.put(key, font);
+		}
+		return font;
+	}
+
+	/**
+	 * Returns the number of different cell styles in the registry.
+	 * 
+	 * @return The number of cell styles
+	 */
+	public int getNumberOfCellStyles() {
+		return this.cellStyles.size();
+	}
+
+	/**
+	 * Returns the number of different fonts in the registry.
+	 * 
+	 * @return The number of fonts
+	 */
+	public int getNumberOfFonts() {
+		return this.fonts.size();
+	}
+
+	/**
+	 * Returns a key of all visual properties of the given cell style. The font,
+	 * fill, border and number format are compared by their index, because the
+	 * styles table of the workbook already stores equal fills, borders and number
+	 * formats only once.
+	 * 
+	 * @param cellStyle The cell style
+	 * @return The key of the visual properties
+	 */
+	public static String getCellStyleKey(XSSFCellStyle cellStyle) {
+		CTXf cellXf = cellStyle.getCoreXf();
+		return cellXf.getNumFmtId() + "|" + cellXf.getFontId() + "|" + cellXf.getFillId() + "|"
+				+ cellXf.getBorderId() + "|" + cellStyle.getAlignment() + "|" + cellStyle.getVerticalAlignment()
+				+ "|" + cellStyle.getWrapText() + "|" + cellStyle.getIndention() + "|" + cellStyle.getRotation()
+				+ "|" + cellStyle.getShrinkToFit() + "|" + cellStyle.getLocked() + "|" + cellStyle.getHidden();
+	}
+
+	/**
+	 * Returns a key of the visual properties of the given font, which are copied
+	 * by {@link ApachePOIWrapper#copyFont(XSSFFont, XSSFFont)}.
+	 * 
+	 * @param font The font
+	 * @return The key of the visual properties
+	 */
+	public static String getFontKey(XSSFFont font) {
+		return font.getBold() + "|" + font.getItalic() + "|" + StyleRegistry.getColorKey(font.getXSSFColor()) + "|"
+				+ font.getFontHeight() + "|" + font.getFontName() + "|" + font.getStrikeout() + "|"
+				+ font.getUnderline();
+	}
+
+	/**
+	 * Returns a key of the sizes of the given styles table. Cell styles, fonts,
+	 * fills, borders and number formats are only added to a styles table, so the
+	 * key changes, whenever something is added.
+	 * 
+	 * @param stylesTable The styles table of a workbook
+	 * @return The key of the styles table
+	 */
+	public static String getStylesTableKey(StylesTable stylesTable) {
+		return stylesTable.getNumCellStyles() + "|" + stylesTable.getFonts().size() + "|"
+				+ stylesTable.getFills().size() + "|" + stylesTable.getBorders().size() + "|"
+				+ stylesTable.getNumberFormats().size();
+	}
+
+	/**
+	 * Returns a key of the given color.
+	 * 
+	 * @param color The color
+	 * @return The key of the color
+	 */
+	private static String getColorKey(XSSFColor color) {
+		String key;
+		if (color == null) {
+			key = "none";
+		} else if (color.isAuto()) {
+			key = "auto";
+		} else if (color.isThemed()) {
+			key = "theme" + color.getTheme() + "/" + color.getTint();
+		} else if (color.isRGB()) {
+			key = color.getARGBHex() + "/" + color.getTint();
+		} else {
+			key = "indexed" + color.getIndexed() + "/" + color.getTint();
+		}
+		return key;
+	}
+}
@@ -0,0 +1,273 @@
+package semesterTimeTable.excel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Process wide cache of the bundled template files (e.g. template.xlsx and
+ * rapla_config.xlsx).
+ *
+ * The content of each template is kept in memory with uncompressed zip
+ * entries, so loading a template neither reads the resource again nor inflates
+ * its parts. Each call of {@link #loadWorkbook(String)} returns a new and
+ * independent workbook, which can be modified without changing the cached
+ * template.
+ *
+ * The cache is bounded. If more templates are loaded than the cache can hold,
+ * the least recently used template is evicted.
+ */
+public class TemplateCache {
+
+	/** Default maximum number of cached templates */
+	public final static int DEFAULT_MAX_SIZE = 8;
+
+	/** The cache used by all exports of the process */
+	private final static TemplateCache DEFAULT_CACHE = new TemplateCache(TemplateCache.DEFAULT_MAX_SIZE);
+
+	/** Maximum number of cached templates */
+	private final int maxSize;
+
+	/** Map of the template filenames and their content in least recently used order */
+	private final Map<String, byte[]> templates;
+
+	/** Number of loads, which used a cached template */
+	private long hits;
+
+	/** Number of loads, which had to read the template resource */
+	private long misses;
+
+	/** Number of templates, which were removed because the cache was full */
+	private long evictions;
+
+	/**
+	 * Creates an empty cache holding at most the given number of templates.
+	 * 
+	 * @param maxSize The maximum number of cached templates
+	 */
+	public TemplateCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("The maximum size of the template cache must be at least 1");
+		}
+		this.maxSize = maxSize;
+		this.templates = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the cache used by all exports of the process.
+	 * 
+	 * @return The default template cache
+	 */
+	public static TemplateCache getDefault() {
+		return TemplateCache.DEFAULT_CACHE;
+	}
+
+	/**
+	 * Returns a new workbook of the template file with the given filename. The
+	 * template is read from the resources only, if it is not cached yet.
+	 * 
+	 * @param filename The filename of the template file
+	 * @return A new workbook of the template
+	 * @throws IOException If reading the template file failed
+	 */
+	public XSSFWorkbook loadWorkbook(String filename) throws IOException {
+		return ApachePOIWrapper.loadWorkbookFromInputStream(this.getInputStream(filename));
+	}
+
+	/**
+	 * Returns a new input stream of the content of the template file with the given
+	 * filename. The template is read from the resources only, if it is not cached
+	 * yet.
+	 * 
+	 * @param filename The filename of the template file
+	 * @return A new input stream of the template
+	 * @throws IOException If reading the template file failed
+	 */
+	public InputStream getInputStream(String filename) throws IOException {
+		return new ByteArrayInputStream(this.getContent(filename));
+	}
+
+	/**
+	 * Returns the cached content of the template file with the given filename. If
+	 * the template is not cached yet, it is read from the resources and added to
+	 * the cache.
+	 * 
+	 * @param filename The filename of the template file
+	 * @return The content of the template file, which must not be modified
+	 * @throws IOException If reading the template file failed
+	 */
+	private byte[] getContent(String filename) throws IOException {
+		synchronized (this) {
+			byte[] content = this.templates.get(filename);
+			if (content != null) {
+				this.hits++;
+				return content;
+			}
+			this.misses++;
+		}
+
+		// The template is read outside of the lock, so a slow read does not block
+		// loads of other cached templates
+		InputStream inputStream = LectureWorkbook.getTemplateInputStream(filename);
+		if (inputStream == null) {
+			throw new IOException("The template file \"" + filename + "\" does not exist");
+		}
+		byte[] content;
+		try {
+			content = TemplateCache.storeUncompressed(inputStream);
+		} finally {
+			inputStream.close();
+		}
+
+		synchronized (this) {
+			byte[] cachedContent = this.templates.get(filename);
+			if (cachedContent != null) {
+				return cachedContent;
+			}
+			this.templates.put(filename, content);
+			while (this.templates.size() > this.maxSize) {
+				String eldestFilename = this.templates.keySet().iterator().next();
+				this.templates.remove(eldestFilename);
+				this.evictions++;
+			}
+		}
+		return content;
+	}
+
+	/**
+	 * Removes the template with the given filename from the cache.
+	 * 
+	 * @param filename The filename of the template file
+	 * @return True if the template was cached, otherwise false
+	 */
+	public synchronized boolean evict(String filename) {
+		return this.templates.remove(filename) != null;
+	}
+
+	/**
+	 * Removes all templates from the cache. The statistics are not reset.
+	 */
+	public synchronized void clear() {
+		this.templates.clear();
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counters.
+	 */
+	public synchronized void resetStatistics() {
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	/**
+	 * Returns the maximum number of cached templates.
+	 * 
+	 * @return The maximum number of cached templates
+	 */
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Returns the number of cached templates.
+	 * 
+	 * @return The number of cached templates
+	 */
+	public synchronized int getSize() {
+		return this.templates.size();
+	}
+
+	/**
+	 * Returns the number of loads, which used a cached template.
+	 * 
+	 * @return The number of cache hits
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of loads, which had to read the template resource.
+	 * 
+	 * @return The number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the number of templates, which were removed because the cache was
+	 * full.
+	 * 
+	 * @return The number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Returns the statistics of the cache.
+	 * 
+	 * @return The statistics as text
+	 */
+	@Override
+	public synchronized String toString() {
+		return "TemplateCache[size=" + this.templates.size() + "/" + this.maxSize + ", hits=" + this.hits
+				+ ", misses=" + this.misses + ", evictions=" + this.evictions + "]";
+	}
+
+	/**
+	 * Reads the given zip content and returns it with uncompressed entries. The
+	 * order and content of the entries are not changed.
+	 * 
+	 * @param inputStream The input stream of the zip content
+	 * @return The zip content with uncompressed entries
+	 * @throws IOException If reading the zip content failed
+	 */
+	private static byte[] storeUncompressed(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+		ZipOutputStream zipOutputStream = new ZipOutputStream(stream);
+		zipOutputStream.setMethod(ZipOutputStream.STORED);
+		try {
+			ByteArrayOutputStream entryStream = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			ZipEntry zipEntry;
+			while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+				if (zipEntry.isDirectory()) {
+					continue;
+				}
+				entryStream.reset();
+				int length;
+				while ((length = zipInputStream.read(buffer)) > 0) {
+					entryStream.write(buffer, 0, length);
+				}
+				byte[] entryContent = entryStream.toByteArray();
+
+				CRC32 crc = new CRC32();
+				crc.update(entryContent);
+				ZipEntry storedEntry = new ZipEntry(zipEntry.getName());
+				storedEntry.setMethod(ZipEntry.STORED);
+				storedEntry.setSize(entryContent.length);
+				storedEntry.setCompressedSize(entryContent.length);
+				storedEntry.setCrc(crc.getValue());
+				zipOutputStream.putNextEntry(storedEntry);
+				zipOutputStream.write(entryContent);
+				zipOutputStream.closeEntry();
+			}
+		} finally {
+			zipOutputStream.close();
+		}
+		return stream.toByteArray();
+	}
+}
@@ -0,0 +1,577 @@
+package semesterTimeTable.excel;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Writer of the first sheet of a template file, which writes exports without a
+ * workbook of Apache POI.
+ *
+ * The template is written once by Apache POI and compiled into the static XML
+ * fragments of its parts and of each cell of the template sheet. An export
+ * only records its changed cells and merged regions (see
+ * {@link RawLectureSheet}). When the export is written, the worksheet part is
+ * streamed from the fragments of the unchanged cells and the elements of the
+ * changed cells, the shared strings part from the shared strings of the export
+ * and all other parts are copied unchanged into the zip file.
+ *
+ * The cell styles of all exports are created in the model workbook of the
+ * writer, so its {@link StyleRegistry} must be locked while it is used. The
+ * cached values of the formulas are taken from the model workbook. If an export
+ * changes a number, which is used by a formula, the number is set in the model
+ * workbook, the dependent formulas are recalculated and the template is
+ * compiled again. So a batch of exports for the same quarter compiles the
+ * template only once.
+ */
+public class TemplateSheetWriter {
+
+	/** Size of the buffers for writing the zip file */
+	private final static int BUFFER_SIZE = 64 * 1024;
+
+	/** Index of the template sheet in the template file */
+	private final static int SHEET_INDEX = 0;
+
+	/** The writers used by all exports of the process */
+	private final static Map<String, TemplateSheetWriter> DEFAULT_WRITERS = new HashMap<String, TemplateSheetWriter>();
+
+	/** The model workbook with the styles and formula values of all exports */
+	private final XSSFWorkbook workbook;
+
+	/** The registry of the cell styles of the model workbook */
+	private final StyleRegistry styleRegistry;
+
+	/** The recalculator of the formulas of the model workbook */
+	private final FormulaRecalculator formulaRecalculator;
+
+	/** The zip entry name of the template sheet */
+	private final String sheetEntryName;
+
+	/** The zip entry name of the shared strings */
+	private final String sharedStringsEntryName;
+
+	/** The zip entry name of the styles */
+	private final String stylesEntryName;
+
+	/** The merged regions of the template sheet */
+	private final List<CellRangeAddress> mergedRegions;
+
+	/** Number of rows of the template sheet */
+	private final int rows;
+
+	/** Number of columns of the template sheet */
+	private final int columns;
+
+	/** The cells with a number, which is used by a formula (row and column) */
+	private final List<int[]> precedentCells;
+
+	/** The numbers of the precedent cells in the model workbook (null if blank) */
+	private final Double[] precedentValues;
+
+	/** The numbers of the precedent cells in the template (null if blank) */
+	private final Double[] templateValues;
+
+	/** The shared strings of the template */
+	private final byte[] sharedStrings;
+
+	/** The template compiled with the current formula values */
+	private CompiledTemplate compiledTemplate;
+
+	/** The styles part of the model workbook */
+	private byte[] styles;
+
+	/** The sizes of the styles table, when the styles part was written */
+	private String stylesKey;
+
+	/**
+	 * Creates a writer of the given template workbook and compiles the template.
+	 * 
+	 * @param workbook The template workbook, which becomes the model workbook
+	 * @throws IOException If the template cannot be written or compiled
+	 */
+	public TemplateSheetWriter(XSSFWorkbook workbook) throws IOException {
+		this.workbook = workbook;
+		this.styleRegistry = new StyleRegistry(workbook);
+		this.formulaRecalculator = new FormulaRecalculator(workbook);
+		XSSFSheet sheet = workbook.getSheetAt(TemplateSheetWriter.SHEET_INDEX);
+		if (workbook.getSharedStringSource() == null) {
+			throw new IOException("The template has no shared strings");
+		}
+		this.sheetEntryName = TemplateSheetWriter.getEntryName(sheet.getPackagePart().getPartName().getName());
+		this.sharedStringsEntryName = TemplateSheetWriter
+				.getEntryName(workbook.getSharedStringSource().getPackagePart().getPartName().getName());
+		this.stylesEntryName = TemplateSheetWriter
+				.getEntryName(workbook.getStylesSource().getPackagePart().getPartName().getName());
+		this.mergedRegions = Collections.unmodifiableList(sheet.getMergedRegions());
+
+		int rows = 0;
+		int columns = 0;
+		this.precedentCells = new ArrayList<int[]>();
+		List<Double> templateValues = new ArrayList<Double>();
+		for (int rowNum = 0; rowNum <= sheet.getLastRowNum(); rowNum++) {
+			XSSFRow row = sheet.getRow(rowNum);
+			if (row == null || row.getLastCellNum() < 0) {
+				continue;
+			}
+			rows = rowNum + 1;
+			columns = Math.max(columns, row.getLastCellNum());
+			for (int columnNum = 0; columnNum < row.getLastCellNum(); columnNum++) {
+				XSSFCell cell = row.getCell(columnNum);
+				if (cell == null || cell.getCellType() == CellType.FORMULA
+						|| !this.formulaRecalculator.isPrecedent(TemplateSheetWriter.SHEET_INDEX, rowNum, columnNum)) {
+					continue;
+				}
+				this.precedentCells.add(new int[] { rowNum, columnNum });
+				templateValues.add(TemplateSheetWriter.getNumber(cell));
+			}
+		}
+		this.rows = rows;
+		this.columns = columns;
+		this.templateValues = templateValues.toArray(new Double[templateValues.size()]);
+		this.precedentValues = this.templateValues.clone();
+
+		this.compiledTemplate = this.compile();
+		this.sharedStrings = this.compiledTemplate.parts.get(this.sharedStringsEntryName);
+		this.styles = this.compiledTemplate.parts.get(this.stylesEntryName);
+		this.stylesKey = StyleRegistry.getStylesTableKey(workbook.getStylesSource());
+	}
+
+	/**
+	 * Returns the writer of the template file with the given filename, which is
+	 * used by all exports of the process. The writer is created on the first call
+	 * with a workbook of the {@link TemplateCache}.
+	 * 
+	 * @param filename The filename of the template file
+	 * @return The writer of the template
+	 * @throws IOException If the template cannot be loaded or compiled
+	 */
+	public static TemplateSheetWriter getDefault(String filename) throws IOException {
+		synchronized (TemplateSheetWriter.DEFAULT_WRITERS) {
+			TemplateSheetWriter writer = TemplateSheetWriter.DEFAULT_WRITERS.get(filename);
+			if (writer == null) {
+				writer = new TemplateSheetWriter(TemplateCache.getDefault().loadWorkbook(filename));
+				TemplateSheetWriter.DEFAULT_WRITERS.put(filename, writer);
+			}
+			return writer;
+		}
+	}
+
+	/**
+	 * Returns the registry of the cell styles of the model workbook. The registry
+	 * must be locked, while its styles are created or used, because the writer
+	 * can be used by more than one export at the same time.
+	 * 
+	 * @return The style registry
+	 */
+	public StyleRegistry getStyleRegistry() {
+		return this.styleRegistry;
+	}
+
+	/**
+	 * Creates a sheet without changes, which is written by this writer.
+	 * 
+	 * @return The new sheet
+	 * @throws IOException If the shared strings of the template cannot be read
+	 */
+	public RawLectureSheet createSheet() throws IOException {
+		SharedStringsTable sharedStrings = new SharedStringsTable();
+		sharedStrings.readFrom(new ByteArrayInputStream(this.sharedStrings));
+		return new RawLectureSheet(this, this.rows, this.columns, this.mergedRegions, sharedStrings,
+				this.workbook.isDate1904());
+	}
+
+	/**
+	 * Writes the template with the changes of the given sheet as xlsx content into
+	 * the given output stream. The output stream is flushed, but not closed.
+	 * 
+	 * @param sheet             The sheet of the export
+	 * @param outputStream      The output stream for the xlsx content
+	 * @param compressionPolicy The policy for compressing the parts
+	 * @throws IOException           If writing the content failed
+	 * @throws IllegalStateException If the sheet changes a cell used by a formula
+	 *                               into a text
+	 */
+	public void write(RawLectureSheet sheet, OutputStream outputStream, CompressionPolicy compressionPolicy)
+			throws IOException {
+		CompiledTemplate compiledTemplate;
+		byte[] styles;
+		synchronized (this.styleRegistry) {
+			compiledTemplate = this.getCompiledTemplate(sheet);
+			styles = this.getStyles();
+		}
+		WorkbookZipOutputStream zipOutputStream = new WorkbookZipOutputStream(
+				new BufferedOutputStream(outputStream, TemplateSheetWriter.BUFFER_SIZE), compressionPolicy);
+		for (Map.Entry<String, byte[]> part : compiledTemplate.parts.entrySet()) {
+			String entryName = part.getKey();
+			zipOutputStream.putArchiveEntry(new ZipArchiveEntry(entryName));
+			if (entryName.equals(this.sheetEntryName)) {
+				this.writeSheet(compiledTemplate, sheet, zipOutputStream);
+			} else if (entryName.equals(this.sharedStringsEntryName)) {
+				sheet.writeSharedStrings(zipOutputStream);
+			} else if (entryName.equals(this.stylesEntryName)) {
+				zipOutputStream.write(styles);
+			} else {
+				zipOutputStream.write(part.getValue());
+			}
+			zipOutputStream.closeArchiveEntry();
+		}
+		zipOutputStream.finish();
+		zipOutputStream.flush();
+	}
+
+	/**
+	 * Writes the worksheet part of the given sheet.
+	 * 
+	 * @param compiledTemplate The compiled template
+	 * @param sheet            The sheet of the export
+	 * @param outputStream     The output stream of the worksheet part
+	 * @throws IOException If writing the worksheet part failed
+	 */
+	private void writeSheet(CompiledTemplate compiledTemplate, RawLectureSheet sheet, OutputStream outputStream)
+			throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
+				TemplateSheetWriter.BUFFER_SIZE);
+		writer.write(compiledTemplate.head);
+		for (CompiledRow row : compiledTemplate.rows) {
+			writer.write(row.start);
+			for (CompiledCell cell : row.cells) {
+				if (!sheet.writeCell(writer, row.rowNum, cell.columnNum, cell.reference, cell.styleIndex)) {
+					writer.write(cell.fragment);
+				}
+			}
+			writer.write(row.end);
+		}
+		writer.write(compiledTemplate.beforeMergedRegions);
+		sheet.writeMergedRegions(writer);
+		writer.write(compiledTemplate.tail);
+		writer.flush();
+	}
+
+	/**
+	 * Returns the template compiled with the formula values of the given sheet.
+	 * The numbers used by formulas are compared with the model workbook, which is
+	 * only recalculated and compiled again, if a number differs. The style
+	 * registry must be locked.
+	 * 
+	 * @param sheet The sheet of the export
+	 * @return The compiled template
+	 * @throws IOException           If compiling the template failed
+	 * @throws IllegalStateException If the sheet changes a cell used by a formula
+	 *                               into a text
+	 */
+	private CompiledTemplate getCompiledTemplate(RawLectureSheet sheet) throws IOException {
+		XSSFSheet modelSheet = this.workbook.getSheetAt(TemplateSheetWriter.SHEET_INDEX);
+		List<CellRangeAddress> changedRanges = new ArrayList<CellRangeAddress>();
+		for (int i = 0; i < this.precedentCells.size(); i++) {
+			int rowNum = this.precedentCells.get(i)[0];
+			int columnNum = this.precedentCells.get(i)[1];
+			byte type = sheet.getCellType(rowNum, columnNum);
+			Double value;
+			if (type == RawLectureSheet.UNCHANGED) {
+				value = this.templateValues[i];
+			} else if (type == RawLectureSheet.NUMBER) {
+				value = sheet.getNumber(rowNum, columnNum);
+			} else if (type == RawLectureSheet.BLANK) {
+				value = null;
+			} else {
+				throw new IllegalStateException("The cell " + new CellReference(rowNum, columnNum).formatAsString()
+						+ " is used by a formula and cannot be changed into a text");
+			}
+			if (value == null ? this.precedentValues[i] == null : value.equals(this.precedentValues[i])) {
+				continue;
+			}
+			XSSFCell cell = modelSheet.getRow(rowNum).getCell(columnNum);
+			if (value == null) {
+				cell.setBlank();
+			} else {
+				cell.setCellValue(value);
+			}
+			this.precedentValues[i] = value;
+			changedRanges.add(new CellRangeAddress(rowNum, rowNum, columnNum, columnNum));
+		}
+		if (!changedRanges.isEmpty()) {
+			this.formulaRecalculator.recalculate(FormulaRecalculator.Mode.DEPENDENT, TemplateSheetWriter.SHEET_INDEX,
+					changedRanges);
+			this.compiledTemplate = this.compile();
+		}
+		return this.compiledTemplate;
+	}
+
+	/**
+	 * Returns the styles part of the model workbook. The part is only written
+	 * again, if styles, fonts, fills, borders or number formats were added since
+	 * it was written. The style registry must be locked.
+	 * 
+	 * @return The styles part
+	 * @throws IOException If writing the styles part failed
+	 */
+	private byte[] getStyles() throws IOException {
+		String stylesKey = StyleRegistry.getStylesTableKey(this.workbook.getStylesSource());
+		if (!stylesKey.equals(this.stylesKey)) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			this.workbook.getStylesSource().writeTo(outputStream);
+			this.styles = outputStream.toByteArray();
+			this.stylesKey = stylesKey;
+		}
+		return this.styles;
+	}
+
+	/**
+	 * Writes the model workbook with Apache POI and compiles its parts and the
+	 * fragments of the template sheet.
+	 * 
+	 * @return The compiled template
+	 * @throws IOException If writing the model workbook failed or the worksheet
+	 *                     part has an unexpected structure
+	 */
+	private CompiledTemplate compile() throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		this.workbook.write(outputStream);
+		Map<String, byte[]> parts = new LinkedHashMap<String, byte[]>();
+		try (ZipInputStream zipInputStream = new ZipInputStream(
+				new ByteArrayInputStream(outputStream.toByteArray()))) {
+			ZipEntry entry;
+			while ((entry = zipInputStream.getNextEntry()) != null) {
+				parts.put(entry.getName(), TemplateSheetWriter.readAll(zipInputStream));
+			}
+		}
+		byte[] sheetPart = parts.get(this.sheetEntryName);
+		if (sheetPart == null) {
+			throw new IOException("The template has no part " + this.sheetEntryName);
+		}
+		return new CompiledTemplate(parts, new String(sheetPart, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns the zip entry name of the given part name.
+	 * 
+	 * @param partName The part name (e.g. "/xl/worksheets/sheet1.xml")
+	 * @return The zip entry name (e.g. "xl/worksheets/sheet1.xml")
+	 */
+	private static String getEntryName(String partName) {
+		return partName.startsWith("/") ? partName.substring(1) : partName;
+	}
+
+	/**
+	 * Returns the number of the given cell.
+	 * 
+	 * @param cell The cell
+	 * @return The number of the cell or null, if the cell is blank
+	 * @throws IOException If the cell has neither a number nor is blank
+	 */
+	private static Double getNumber(XSSFCell cell) throws IOException {
+		if (cell.getCellType() == CellType.BLANK) {
+			return null;
+		}
+		if (cell.getCellType() != CellType.NUMERIC) {
+			throw new IOException("The cell " + cell.getReference()
+					+ " of the template is used by a formula, but has no number");
+		}
+		return cell.getNumericCellValue();
+	}
+
+	/**
+	 * Reads all bytes of the given input stream.
+	 * 
+	 * @param inputStream The input stream
+	 * @return The bytes
+	 * @throws IOException If reading failed
+	 */
+	private static byte[] readAll(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[TemplateSheetWriter.BUFFER_SIZE];
+		int count;
+		while ((count = inputStream.read(buffer)) >= 0) {
+			outputStream.write(buffer, 0, count);
+		}
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Returns the value of the given attribute of the given start tag.
+	 * 
+	 * @param tag  The start tag
+	 * @param name The name of the attribute
+	 * @return The value of the attribute or null, if the tag has no such attribute
+	 */
+	private static String getAttribute(String tag, String name) {
+		String prefix = " " + name + "=\"";
+		int start = tag.indexOf(prefix);
+		if (start < 0) {
+			return null;
+		}
+		start += prefix.length();
+		return tag.substring(start, tag.indexOf('"', start));
+	}
+
+	/**
+	 * The parts of the template and the fragments of its worksheet part.
+	 */
+	private static class CompiledTemplate {
+
+		/** Map of the zip entry names and the content of all parts in their order */
+		private final Map<String, byte[]> parts;
+
+		/** The worksheet part up to the start tag of the sheet data */
+		private final String head;
+
+		/** The rows of the sheet data */
+		private final List<CompiledRow> rows;
+
+		/** The worksheet part from the end tag of the sheet data to the merge cells */
+		private final String beforeMergedRegions;
+
+		/** The worksheet part after the merge cells */
+		private final String tail;
+
+		/**
+		 * Compiles the given worksheet part as written by Apache POI.
+		 * 
+		 * @param parts The content of all parts
+		 * @param xml   The worksheet part of the template sheet
+		 * @throws IOException If the worksheet part has an unexpected structure
+		 */
+		private CompiledTemplate(Map<String, byte[]> parts, String xml) throws IOException {
+			this.parts = parts;
+			int position = xml.indexOf("<sheetData>");
+			int sheetDataEnd = xml.indexOf("</sheetData>");
+			if (position < 0 || sheetDataEnd < position) {
+				throw new IOException("The template sheet has no rows");
+			}
+			position += "<sheetData>".length();
+			this.head = xml.substring(0, position);
+			this.rows = new ArrayList<CompiledRow>();
+			while (position < sheetDataEnd) {
+				int rowTagEnd = xml.indexOf('>', position) + 1;
+				String rowStart = xml.substring(position, rowTagEnd);
+				if (!rowStart.startsWith("<row ")) {
+					throw new IOException("Unexpected element " + rowStart + " in the template sheet");
+				}
+				if (rowStart.endsWith("/>")) {
+					position = rowTagEnd;
+					continue;
+				}
+				CompiledRow row = new CompiledRow(Integer.parseInt(TemplateSheetWriter.getAttribute(rowStart, "r")) - 1,
+						rowStart);
+				int rowEnd = xml.indexOf("</row>", rowTagEnd);
+				int cellStart = rowTagEnd;
+				while (cellStart < rowEnd) {
+					int cellTagEnd = xml.indexOf('>', cellStart) + 1;
+					String cellTag = xml.substring(cellStart, cellTagEnd);
+					if (!cellTag.startsWith("<c ")) {
+						throw new IOException("Unexpected element " + cellTag + " in the template sheet");
+					}
+					int cellEnd = cellTag.endsWith("/>") ? cellTagEnd : xml.indexOf("</c>", cellTagEnd) + 4;
+					String reference = TemplateSheetWriter.getAttribute(cellTag, "r");
+					String styleIndex = TemplateSheetWriter.getAttribute(cellTag, "s");
+					row.cells.add(new CompiledCell(new CellReference(reference).getCol(), reference,
+							styleIndex == null ? 0 : Integer.parseInt(styleIndex), xml.substring(cellStart, cellEnd)));
+					cellStart = cellEnd;
+				}
+				this.rows.add(row);
+				position = rowEnd + "</row>".length();
+			}
+
+			String rest = xml.substring(sheetDataEnd);
+			int mergedRegionsStart = rest.indexOf("<mergeCells");
+			if (mergedRegionsStart < 0) {
+				this.beforeMergedRegions = "</sheetData>";
+				this.tail = rest.substring("</sheetData>".length());
+			} else {
+				int mergedRegionsEnd = rest.indexOf("</mergeCells>", mergedRegionsStart);
+				this.beforeMergedRegions = rest.substring(0, mergedRegionsStart);
+				this.tail = mergedRegionsEnd < 0 ? rest.substring(rest.indexOf("/>", mergedRegionsStart) + 2)
+						: rest.substring(mergedRegionsEnd + "</mergeCells>".length());
+			}
+		}
+	}
+
+	/**
+	 * The fragments of a row of the template sheet.
+	 */
+	private static class CompiledRow {
+
+		/** The (0 based) row number */
+		private final int rowNum;
+
+		/** The start tag of the row */
+		private final String start;
+
+		/** The end tag of the row */
+		private final String end;
+
+		/** The cells of the row */
+		private final List<CompiledCell> cells;
+
+		/**
+		 * Creates a row without cells.
+		 * 
+		 * @param rowNum The (0 based) row number
+		 * @param start  The start tag of the row
+		 */
+		private CompiledRow(int rowNum, String start) {
+			this.rowNum = rowNum;
+			this.start = start;
+			this.end = "</row>";
+			this.cells = new ArrayList<CompiledCell>();
+		}
+	}
+
+	/**
+	 * The fragment of a cell of the template sheet.
+	 */
+	private static class CompiledCell {
+
+		/** The (0 based) column number */
+		private final int columnNum;
+
+		/** The reference of the cell (e.g. "B4") */
+		private final String reference;
+
+		/** The style index of the cell */
+		private final int styleIndex;
+
+		/** The element of the cell */
+		private final String fragment;
+
+		/**
+		 * Creates a compiled cell.
+		 * 
+		 * @param columnNum  The (0 based) column number
+		 * @param reference  The reference of the cell
+		 * @param styleIndex The style index of the cell
+		 * @param fragment   The element of the cell
+		 */
+		private CompiledCell(int columnNum, String reference, int styleIndex, String fragment) {
+			this.columnNum = columnNum;
+			this.reference = reference;
+			this.styleIndex = styleIndex;
+			this.fragment = fragment;
+		}
+	}
+}
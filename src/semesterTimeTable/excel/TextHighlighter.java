@@ -0,0 +1,275 @@
+package semesterTimeTable.excel;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+
+import org.apache.poi.xssf.usermodel.XSSFFont;
+
+/**
+ * Multi pattern matcher for highlighting values in a text with their font.
+ *
+ * The highlighted values are compiled once into an Aho-Corasick automaton, so
+ * all occurrences of all values are found in one pass over the text. The time
+ * of a search depends on the length of the text and the number of occurrences,
+ * but not on the number of highlighted values.
+ *
+ * Each highlighted value has a font id, which is the index of the value in the
+ * order of creation. The highlighter cannot be modified after its creation and
+ * can be shared by multiple threads.
+ */
+public class TextHighlighter {
+
+	/** Number of integers of one run (start index, end index and font id) */
+	public final static int RUN_LENGTH = 3;
+
+	/** Runs of a text without highlighted values */
+	private final static int[] NO_RUNS = new int[0];
+
+	/** The highlighted values in the order of their font id */
+	private final String[] values;
+
+	/** The fonts in the order of their font id */
+	private final XSSFFont[] fonts;
+
+	/** The sorted characters of the transitions of each state */
+	private char[][] transitionCharacters;
+
+	/** The target states of the transitions of each state */
+	private int[][] transitionStates;
+
+	/** The failure state of each state */
+	private int[] failureStates;
+
+	/** The font id of the value ending at each state or -1 */
+	private int[] outputs;
+
+	/**
+	 * The next state with an output, which can be reached by failure transitions,
+	 * or -1
+	 */
+	private int[] outputLinks;
+
+	/** The number of states */
+	private int stateCount;
+
+	/**
+	 * Creates a highlighter of all keys of the given map and their fonts. The font
+	 * ids are assigned in the iteration order of the map. Empty values are
+	 * ignored.
+	 * 
+	 * @param highlightedFonts The map of values and their font to highlight the
+	 *                         value with
+	 */
+	public TextHighlighter(Map<String, XSSFFont> highlightedFonts) {
+		int size = highlightedFonts.size();
+		this.values = new String[size];
+		this.fonts = new XSSFFont[size];
+
+		int maxStateCount = 1;
+		for (String value : highlightedFonts.keySet()) {
+			maxStateCount += value.length();
+		}
+		this.transitionCharacters = new char[maxStateCount][];
+		this.transitionStates = new int[maxStateCount][];
+		this.outputs = new int[maxStateCount];
+		this.stateCount = 0;
+		this.createState();
+
+		int fontId = 0;
+		for (Entry<String, XSSFFont> entry : highlightedFonts.entrySet()) {
+			this.values[fontId] = entry.getKey();
+			this.fonts[fontId] = entry.getValue();
+			this.addValue(entry.getKey(), fontId);
+			fontId++;
+		}
+		this.createFailureStates();
+	}
+
+	/**
+	 * Creates a new state without transitions and output.
+	 * 
+	 * @return The new state
+	 */
+	private int createState() {
+		int state = this.stateCount++;
+		this.transitionCharacters[state] = new char[0];
+		this.transitionStates[state] = new int[0];
+		this.outputs[state] = -1;
+		return state;
+	}
+
+	/**
+	 * Adds the given value to the trie of the automaton.
+	 * 
+	 * @param value  The highlighted value
+	 * @param fontId The font id of the value
+	 */
+	private void addValue(String value, int fontId) {
+		if (value.isEmpty()) {
+			return;
+		}
+		int state = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char character = value.charAt(i);
+			int nextState = this.getTransition(state, character);
+			if (nextState < 0) {
+				nextState = this.createState();
+				this.addTransition(state, character, nextState);
+			}
+			state = nextState;
+		}
+		this.outputs[state] = fontId;
+	}
+
+	/**
+	 * Returns the target state of the transition of the given state and character.
+	 * 
+	 * @param state     The state
+	 * @param character The character of the transition
+	 * @return The target state or -1, if the state has no transition for the
+	 *         character
+	 */
+	private int getTransition(int state, char character) {
+		int index = Arrays.binarySearch(this.transitionCharacters[state], character);
+		return index < 0 ? -1 : this.transitionStates[state][index];
+	}
+
+	/**
+	 * Adds a transition to the given state. The transitions stay sorted by their
+	 * character.
+	 * 
+	 * @param state       The state
+	 * @param character   The character of the transition
+	 * @param targetState The target state of the transition
+	 */
+	private void addTransition(int state, char character, int targetState) {
+		char[] characters = this.transitionCharacters[state];
+		int[] states = this.transitionStates[state];
+		int index = -Arrays.binarySearch(characters, character) - 1;
+		char[] newCharacters = new char[characters.length + 1];
+		int[] newStates = new int[states.length + 1];
+		System.arraycopy(characters, 0, newCharacters, 0, index);
+		System.arraycopy(states, 0, newStates, 0, index);
+		System.arraycopy(characters, index, newCharacters, index + 1, characters.length - index);
+		System.arraycopy(states, index, newStates, index + 1, states.length - index);
+		newCharacters[index] = character;
+		newStates[index] = targetState;
+		this.transitionCharacters[state] = newCharacters;
+		this.transitionStates[state] = newStates;
+	}
+
+	/**
+	 * Computes the failure state and the output link of each state in breadth
+	 * first order.
+	 */
+	private void createFailureStates() {
+		this.failureStates = new int[this.stateCount];
+		this.outputLinks = new int[this.stateCount];
+		this.outputLinks[0] = -1;
+		Queue<Integer> queue = new ArrayDeque<Integer>();
+		for (int childState : this.transitionStates[0]) {
+			this.failureStates[childState] = 0;
+			this.outputLinks[childState] = -1;
+			queue.add(childState);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			char[] characters = this.transitionCharacters[state];
+			int[] states = this.transitionStates[state];
+			for (int i = 0; i < characters.length; i++) {
+				int childState = states[i];
+				int failureState = this.failureStates[state];
+				while (failureState > 0 && this.getTransition(failureState, characters[i]) < 0) {
+					failureState = this.failureStates[failureState];
+				}
+				int nextState = this.getTransition(failureState, characters[i]);
+				failureState = nextState < 0 ? 0 : nextState;
+				this.failureStates[childState] = failureState;
+				this.outputLinks[childState] = this.outputs[failureState] >= 0 ? failureState
+						: this.outputLinks[failureState];
+				queue.add(childState);
+			}
+		}
+	}
+
+	/**
+	 * Returns all occurrences of the highlighted values in the given text as runs.
+	 * Each run consists of {@value #RUN_LENGTH} integers: the start index
+	 * (inclusive), the end index (exclusive) and the font id.
+	 * 
+	 * The runs are sorted by their font id and then by their start index, so
+	 * applying the runs in this order lets later highlighted values override
+	 * earlier ones, where occurrences overlap.
+	 * 
+	 * @param text The text, which will be scanned
+	 * @return The runs of all occurrences
+	 */
+	public int[] getHighlights(String text) {
+		if (this.stateCount == 1) {
+			return TextHighlighter.NO_RUNS;
+		}
+		// Each occurrence is stored as font id and start index in one long, so
+		// sorting the longs sorts the occurrences
+		long[] occurrences = null;
+		int occurrenceCount = 0;
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char character = text.charAt(i);
+			int nextState = this.getTransition(state, character);
+			while (nextState < 0 && state > 0) {
+				state = this.failureStates[state];
+				nextState = this.getTransition(state, character);
+			}
+			state = nextState < 0 ? 0 : nextState;
+
+			int outputState = this.outputs[state] >= 0 ? state : this.outputLinks[state];
+			while (outputState >= 0) {
+				int fontId = this.outputs[outputState];
+				int start = i + 1 - this.values[fontId].length();
+				if (occurrences == null) {
+					occurrences = new long[8];
+				} else if (occurrenceCount == occurrences.length) {
+					occurrences = Arrays.copyOf(occurrences, occurrenceCount * 2);
+				}
+				occurrences[occurrenceCount++] = ((long) fontId << 32) | start;
+				outputState = this.outputLinks[outputState];
+			}
+		}
+		if (occurrenceCount == 0) {
+			return TextHighlighter.NO_RUNS;
+		}
+
+		Arrays.sort(occurrences, 0, occurrenceCount);
+		int[] runs = new int[occurrenceCount * TextHighlighter.RUN_LENGTH];
+		for (int i = 0; i < occurrenceCount; i++) {
+			int fontId = (int) (occurrences[i] >>> 32);
+			int start = (int) occurrences[i];
+			runs[i * TextHighlighter.RUN_LENGTH] = start;
+			runs[i * TextHighlighter.RUN_LENGTH + 1] = start + this.values[fontId].length();
+			runs[i * TextHighlighter.RUN_LENGTH + 2] = fontId;
+		}
+		return runs;
+	}
+
+	/**
+	 * Returns the number of font ids.
+	 * 
+	 * @return The number of font ids
+	 */
+	public int getFontCount() {
+		return this.fonts.length;
+	}
+
+	/**
+	 * Returns the font of the given font id. The font must not be modified.
+	 * 
+	 * @param fontId The font id
+	 * @return The font of the font id
+	 */
+	public XSSFFont getFont(int fontId) {
+		return this.fonts[fontId];
+	}
+}
@@ -0,0 +1,289 @@
+package semesterTimeTable.excel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+/**
+ * Precompiled set of matchers, which can contain wildcards ('*'), and their
+ * values.
+ *
+ * A wildcard matches any text without line terminators, so a matcher matches
+ * the same names as the regular expression, where each wildcard is replaced by
+ * ".*". The matchers are sorted into an exact match map, a prefix trie (e.g.
+ * "Math*"), a suffix trie (e.g. "*Math") and a list of compiled patterns for all
+ * other matchers (e.g. "*Math*" or "A*B"), so a name is matched without
+ * compiling a pattern and without testing each matcher.
+ *
+ * If a name matches more than one matcher, the value of the first matcher in
+ * the order of creation is returned. The matcher cannot be modified after its
+ * creation and can be shared by multiple threads.
+ *
+ * @param <T> The type of the values
+ */
+public class WildcardMatcher<T> {
+
+	/** The wildcard character */
+	public final static char WILDCARD = '*';
+
+	/** Ordinal of no matcher */
+	private final static int NO_MATCH = Integer.MAX_VALUE;
+
+	/** List of the values in the order of their matchers */
+	private final List<T> values;
+
+	/** Map of the matchers without wildcard and their ordinal */
+	private final Map<String, Integer> exactMatchers;
+
+	/** Trie of the matchers with only one wildcard at the end */
+	private final TrieNode prefixTrie;
+
+	/** Trie of the reversed matchers with only one wildcard at the start */
+	private final TrieNode suffixTrie;
+
+	/** Smallest ordinal of the matchers consisting only of wildcards */
+	private int matchAllOrdinal;
+
+	/** The compiled patterns of all other matchers in the order of creation */
+	private final List<Pattern> patterns;
+
+	/** The ordinals of the compiled patterns */
+	private final List<Integer> patternOrdinals;
+
+	/**
+	 * Creates a matcher of all keys of the given map and their values. The order
+	 * of the matchers is the iteration order of the map.
+	 * 
+	 * @param matchers The map of matchers and their values
+	 */
+	public WildcardMatcher(Map<String, T> matchers) {
+		this.values = new ArrayList<T>(matchers.size());
+		this.exactMatchers = new HashMap<String, Integer>();
+		this.prefixTrie = new TrieNode();
+		this.suffixTrie = new TrieNode();
+		this.matchAllOrdinal = WildcardMatcher.NO_MATCH;
+		this.patterns = new ArrayList<Pattern>();
+		this.patternOrdinals = new ArrayList<Integer>();
+		for (Entry<String, T> entry : matchers.entrySet()) {
+			this.add(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Returns a matcher of the given strings, which returns the matching string
+	 * itself as value.
+	 * 
+	 * @param matchers The array of matchers
+	 * @return The matcher of the strings
+	 */
+	public static WildcardMatcher<String> fromArray(String[] matchers) {
+		Map<String, String> matcherMap = new LinkedHashMap<String, String>();
+		for (String matcher : matchers) {
+			if (matcher != null && !matcherMap.containsKey(matcher)) {
+				matcherMap.put(matcher, matcher);
+			}
+		}
+		return new WildcardMatcher<String>(matcherMap);
+	}
+
+	/**
+	 * Adds the given matcher and its value to the index structure, which fits the
+	 * wildcards of the matcher.
+	 * 
+	 * @param matcher The matcher
+	 * @param value   The value of the matcher
+	 */
+	private void add(String matcher, T value) {
+		int ordinal = this.values.size();
+		this.values.add(value);
+
+		int wildcardCount = 0;
+		for (int i = 0; i < matcher.length(); i++) {
+			if (matcher.charAt(i) == WildcardMatcher.WILDCARD) {
+				wildcardCount++;
+			}
+		}
+		int length = matcher.length();
+
+		if (wildcardCount == 0) {
+			if (!this.exactMatchers.containsKey(matcher)) {
+				this.exactMatchers.put(matcher, ordinal);
+			}
+		} else if (wildcardCount == length) {
+			this.matchAllOrdinal = Math.min(this.matchAllOrdinal, ordinal);
+		} else if (wildcardCount == 1 && matcher.charAt(length - 1) == WildcardMatcher.WILDCARD) {
+			TrieNode node = this.prefixTrie;
+			for (int i = 0; i < length - 1; i++) {
+				node = node.getOrCreateChild(matcher.charAt(i));
+			}
+			node.ordinal = Math.min(node.ordinal, ordinal);
+		} else if (wildcardCount == 1 && matcher.charAt(0) == WildcardMatcher.WILDCARD) {
+			TrieNode node = this.suffixTrie;
+			for (int i = length - 1; i > 0; i--) {
+				node = node.getOrCreateChild(matcher.charAt(i));
+			}
+			node.ordinal = Math.min(node.ordinal, ordinal);
+		} else {
+			this.patterns.add(Pattern.compile("\\Q" + matcher.replace("*", "\\E.*\\Q") + "\\E"));
+			this.patternOrdinals.add(ordinal);
+		}
+	}
+
+	/**
+	 * Returns the value of the first matcher, which matches the given name.
+	 * 
+	 * @param name The name for matching a matcher
+	 * @return The value of the first matching matcher or null, if no matcher
+	 *         matches the name
+	 */
+	public T getFirstMatch(String name) {
+		int ordinal = this.getFirstMatchOrdinal(name);
+		return ordinal == WildcardMatcher.NO_MATCH ? null : this.values.get(ordinal);
+	}
+
+	/**
+	 * Checks if at least one matcher matches the given name.
+	 * 
+	 * @param name The name for matching a matcher
+	 * @return True if the name matches one of the matchers, otherwise false
+	 */
+	public boolean matches(String name) {
+		return this.getFirstMatchOrdinal(name) != WildcardMatcher.NO_MATCH;
+	}
+
+	/**
+	 * Returns the number of matchers.
+	 * 
+	 * @return The number of matchers
+	 */
+	public int size() {
+		return this.values.size();
+	}
+
+	/**
+	 * Returns the smallest ordinal of all matchers, which match the given name.
+	 * 
+	 * @param name The name for matching a matcher
+	 * @return The smallest ordinal of the matching matchers or
+	 *         {@link #NO_MATCH}, if no matcher matches the name
+	 */
+	private int getFirstMatchOrdinal(String name) {
+		int length = name.length();
+
+		// A wildcard does not match line terminators, so the text covered by a
+		// wildcard must be outside of the first and last line terminator
+		int firstLineTerminator = -1;
+		int lastLineTerminator = -1;
+		for (int i = 0; i < length; i++) {
+			if (WildcardMatcher.isLineTerminator(name.charAt(i))) {
+				firstLineTerminator = firstLineTerminator < 0 ? i : firstLineTerminator;
+				lastLineTerminator = i;
+			}
+		}
+
+		int firstOrdinal = firstLineTerminator < 0 ? this.matchAllOrdinal : WildcardMatcher.NO_MATCH;
+
+		Integer exactOrdinal = this.exactMatchers.get(name);
+		if (exactOrdinal != null) {
+			firstOrdinal = Math.min(firstOrdinal, exactOrdinal);
+		}
+
+		TrieNode node = this.prefixTrie;
+		for (int i = 0; i <= length && node != null; i++) {
+			if (node.ordinal < firstOrdinal && lastLineTerminator < i) {
+				firstOrdinal = node.ordinal;
+			}
+			node = i < length ? node.getChild(name.charAt(i)) : null;
+		}
+
+		node = this.suffixTrie;
+		for (int i = 0; i <= length && node != null; i++) {
+			if (node.ordinal < firstOrdinal && (firstLineTerminator < 0 || firstLineTerminator >= length - i)) {
+				firstOrdinal = node.ordinal;
+			}
+			node = i < length ? node.getChild(name.charAt(length - 1 - i)) : null;
+		}
+
+		for (int i = 0; i < this.patterns.size(); i++) {
+			int patternOrdinal = this.patternOrdinals.get(i);
+			if (patternOrdinal >= firstOrdinal) {
+				break;
+			}
+			if (this.patterns.get(i).matcher(name).matches()) {
+				firstOrdinal = patternOrdinal;
+				break;
+			}
+		}
+		return firstOrdinal;
+	}
+
+	/**
+	 * Checks if the given character is a line terminator, which is not matched by
+	 * the '.' of a regular expression.
+	 * 
+	 * @param character The character to check
+	 * @return True if the character is a line terminator, otherwise false
+	 */
+	private static boolean isLineTerminator(char character) {
+		return character == '\n' || character == '\r' || character == '\u0085' || character == '\u2028'
+				|| character == '\u2029';
+	}
+
+	/**
+	 * A node of a trie. The children are sorted by their character.
+	 */
+	private static class TrieNode {
+
+		/** The sorted characters of the children */
+		private char[] characters = new char[0];
+
+		/** The children in the order of their characters */
+		private TrieNode[] children = new TrieNode[0];
+
+		/** The smallest ordinal of the matchers ending at this node */
+		private int ordinal = WildcardMatcher.NO_MATCH;
+
+		/**
+		 * Returns the child of the given character.
+		 * 
+		 * @param character The character of the child
+		 * @return The child or null, if the node has no child for the character
+		 */
+		private TrieNode getChild(char character) {
+			int index = Arrays.binarySearch(this.characters, character);
+			return index < 0 ? null : this.children[index];
+		}
+
+		/**
+		 * Returns the child of the given character and creates it, if it does not
+		 * exist.
+		 * 
+		 * @param character The character of the child
+		 * @return The child of the character
+		 */
+		private TrieNode getOrCreateChild(char character) {
+			int index = Arrays.binarySearch(this.characters, character);
+			if (index >= 0) {
+				return this.children[index];
+			}
+			index = -index - 1;
+			int size = this.characters.length;
+			char[] characters = new char[size + 1];
+			TrieNode[] children = new TrieNode[size + 1];
+			System.arraycopy(this.characters, 0, characters, 0, index);
+			System.arraycopy(this.children, 0, children, 0, index);
+			System.arraycopy(this.characters, index, characters, index + 1, size - index);
+			System.arraycopy(this.children, index, children, index + 1, size - index);
+			characters[index] = character;
+			children[index] = new TrieNode();
+			this.characters = characters;
+			this.children = children;
+			return children[index];
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package semesterTimeTable.excel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The interface is to make sure, that the content of a workbook file can be
+ * written without a workbook of Apache POI (e.g. a workbook with spooled sheets
+ * or a sheet written from the compiled template).
+ */
+public interface WorkbookContent {
+
+	/**
+	 * Writes the content of the workbook file into the given output stream. The
+	 * output stream is flushed, but not closed.
+	 * 
+	 * @param outputStream      The output stream for the xlsx content
+	 * @param compressionPolicy The policy for compressing the parts
+	 * @throws IOException If writing the content failed
+	 */
+	public void write(OutputStream outputStream, CompressionPolicy compressionPolicy) throws IOException;
+}
@@ -0,0 +1,241 @@
+package semesterTimeTable.excel;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.poi.ooxml.POIXMLTypeLoader;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.xssf.model.CalculationChain;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbook;
+
+/**
+ * Patch of a workbook, which was loaded from a file, for saving only its
+ * changed parts.
+ *
+ * Apache POI writes every part of a workbook again, even if only one sheet was
+ * changed. The patch writes only the changed sheets, the shared strings, the
+ * calculation chain and, if they were changed, the styles and the workbook
+ * part. All other parts (e.g. the theme, drawings, printer settings and other
+ * sheets) are copied with their compressed bytes from the file, so they are
+ * neither inflated nor deflated again.
+ *
+ * The patch can only be written, if the file was not changed since the
+ * workbook was loaded and the workbook has still the parts of the file (see
+ * {@link #isApplicable()}). The workbook must not be changed outside of the
+ * changed sheets, its styles and its shared strings.
+ */
+public class WorkbookPatch implements WorkbookContent {
+
+	/** Options for writing the workbook part */
+	private final static XmlOptions WORKBOOK_OPTIONS = WorkbookPatch.createWorkbookOptions();
+
+	/** Size of the buffer for writing the zip file */
+	private final static int BUFFER_SIZE = 64 * 1024;
+
+	/** The loaded workbook */
+	private final XSSFWorkbook workbook;
+
+	/** The file, from which the workbook was loaded */
+	private final File sourceFile;
+
+	/** The time of the last modification of the file, when it was loaded */
+	private final FileTime sourceLastModified;
+
+	/** The size of the file, when it was loaded */
+	private final long sourceSize;
+
+	/** The key of the styles table, when the workbook was loaded */
+	private final String stylesKey;
+
+	/** True if the workbook forced a recalculation, when it was loaded */
+	private final boolean forceFormulaRecalculation;
+
+	/** Map of the zip entry names of the changed sheets and their sheets */
+	private final Map<String, XSSFSheet> changedSheets;
+
+	/**
+	 * Creates a patch without changed sheets of the given workbook. The patch must
+	 * be created directly after loading the workbook, before its styles are
+	 * changed.
+	 * 
+	 * @param workbook   The loaded workbook
+	 * @param sourceFile The file, from which the workbook was loaded
+	 * @throws IOException If the attributes of the file cannot be read
+	 */
+	public WorkbookPatch(XSSFWorkbook workbook, File sourceFile) throws IOException {
+		this.workbook = workbook;
+		this.sourceFile = sourceFile;
+		this.sourceLastModified = Files.getLastModifiedTime(sourceFile.toPath());
+		this.sourceSize = Files.size(sourceFile.toPath());
+		this.stylesKey = StyleRegistry.getStylesTableKey(workbook.getStylesSource());
+		this.forceFormulaRecalculation = workbook.getForceFormulaRecalculation();
+		this.changedSheets = new HashMap<String, XSSFSheet>();
+	}
+
+	/**
+	 * Returns the loaded workbook.
+	 * 
+	 * @return The workbook
+	 */
+	public XSSFWorkbook getWorkbook() {
+		return this.workbook;
+	}
+
+	/**
+	 * Adds the given sheet of the workbook to the changed sheets, which are
+	 * written instead of being copied from the file.
+	 * 
+	 * @param sheet The changed sheet
+	 */
+	public void addChangedSheet(XSSFSheet sheet) {
+		this.changedSheets.put(WorkbookPatch.getEntryName(sheet.getPackagePart()), sheet);
+	}
+
+	/**
+	 * Checks if the patch can be written. This is the case, if the file was not
+	 * changed since the workbook was loaded and each part of the workbook is an
+	 * entry of the file and vice versa.
+	 * 
+	 * @return True if the patch can be written, otherwise false
+	 * @throws IOException If reading the file failed
+	 */
+	public boolean isApplicable() throws IOException {
+		if (!Files.exists(this.sourceFile.toPath())
+				|| !this.sourceLastModified.equals(Files.getLastModifiedTime(this.sourceFile.toPath()))
+				|| this.sourceSize != Files.size(this.sourceFile.toPath())) {
+			return false;
+		}
+		Set<String> entryNames = new HashSet<String>();
+		try {
+			for (PackagePart part : this.workbook.getPackage().getParts()) {
+				entryNames.add(WorkbookPatch.getEntryName(part));
+			}
+		} catch (InvalidFormatException e) {
+			throw new IOException("The parts of the workbook are invalid", e);
+		}
+		int partCount = entryNames.size();
+		try (ZipFile zipFile = new ZipFile(this.sourceFile)) {
+			Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+			while (entries.hasMoreElements()) {
+				ZipArchiveEntry entry = entries.nextElement();
+				if (!entry.isDirectory() && !WorkbookPatch.isContentTypesEntry(entry.getName())
+						&& !entryNames.remove(entry.getName())) {
+					return false;
+				}
+			}
+		}
+		return entryNames.isEmpty() && partCount > 0;
+	}
+
+	/**
+	 * Writes the workbook into the given output stream. The changed parts are
+	 * written by Apache POI and all other parts are copied raw from the file. The
+	 * output stream is flushed, but not closed.
+	 * 
+	 * @param outputStream      The output stream for the xlsx content
+	 * @param compressionPolicy The policy for compressing the changed parts
+	 * @throws IOException If reading the file or writing the workbook failed
+	 */
+	@Override
+	public void write(OutputStream outputStream, CompressionPolicy compressionPolicy) throws IOException {
+		SharedStringsTable sharedStrings = this.workbook.getSharedStringSource();
+		StylesTable styles = this.workbook.getStylesSource();
+		CalculationChain calculationChain = this.workbook.getCalculationChain();
+		String sharedStringsEntryName = sharedStrings == null ? null
+				: WorkbookPatch.getEntryName(sharedStrings.getPackagePart());
+		String stylesEntryName = styles == null
+				|| this.stylesKey.equals(StyleRegistry.getStylesTableKey(styles)) ? null
+						: WorkbookPatch.getEntryName(styles.getPackagePart());
+		String calculationChainEntryName = calculationChain == null ? null
+				: WorkbookPatch.getEntryName(calculationChain.getPackagePart());
+		String workbookEntryName = this.forceFormulaRecalculation == this.workbook.getForceFormulaRecalculation()
+				? null
+				: WorkbookPatch.getEntryName(this.workbook.getPackagePart());
+
+		WorkbookZipOutputStream zipOutputStream = new WorkbookZipOutputStream(
+				new BufferedOutputStream(outputStream, WorkbookPatch.BUFFER_SIZE), compressionPolicy);
+		try (ZipFile zipFile = new ZipFile(this.sourceFile)) {
+			Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+			while (entries.hasMoreElements()) {
+				ZipArchiveEntry entry = entries.nextElement();
+				String entryName = entry.getName();
+				XSSFSheet changedSheet = this.changedSheets.get(entryName);
+				if (changedSheet == null && !entryName.equals(sharedStringsEntryName)
+						&& !entryName.equals(stylesEntryName) && !entryName.equals(calculationChainEntryName)
+						&& !entryName.equals(workbookEntryName)) {
+					try (InputStream inputStream = zipFile.getRawInputStream(entry)) {
+						zipOutputStream.addRawArchiveEntry(entry, inputStream);
+					}
+					continue;
+				}
+				zipOutputStream.putArchiveEntry(new ZipArchiveEntry(entryName));
+				if (changedSheet != null) {
+					SheetSpool.writeSheet(changedSheet, zipOutputStream);
+				} else if (entryName.equals(sharedStringsEntryName)) {
+					sharedStrings.writeTo(zipOutputStream);
+				} else if (entryName.equals(stylesEntryName)) {
+					styles.writeTo(zipOutputStream);
+				} else if (entryName.equals(calculationChainEntryName)) {
+					calculationChain.writeTo(zipOutputStream);
+				} else {
+					this.workbook.getCTWorkbook().save(zipOutputStream, WorkbookPatch.WORKBOOK_OPTIONS);
+				}
+				zipOutputStream.closeArchiveEntry();
+			}
+		}
+		zipOutputStream.finish();
+		zipOutputStream.flush();
+	}
+
+	/**
+	 * Returns the zip entry name of the given part.
+	 * 
+	 * @param part The part
+	 * @return The zip entry name (e.g. "xl/worksheets/sheet1.xml")
+	 */
+	private static String getEntryName(PackagePart part) {
+		return part.getPartName().getName().substring(1);
+	}
+
+	/**
+	 * Checks if the given zip entry name is the name of the content types entry,
+	 * which is no part of the workbook.
+	 * 
+	 * @param entryName The zip entry name
+	 * @return True if the entry contains the content types, otherwise false
+	 */
+	private static boolean isContentTypesEntry(String entryName) {
+		return entryName.equals("[Content_Types].xml");
+	}
+
+	/**
+	 * Returns the options for writing the workbook part like Apache POI does.
+	 * 
+	 * @return The options for writing the workbook part
+	 */
+	private static XmlOptions createWorkbookOptions() {
+		XmlOptions options = new XmlOptions(POIXMLTypeLoader.DEFAULT_XML_OPTIONS);
+		options.setSaveSyntheticDocumentElement(new QName(CTWorkbook.type.getName().getNamespaceURI(), "workbook"));
+		return options;
+	}
+}
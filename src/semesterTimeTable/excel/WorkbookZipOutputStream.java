@@ -0,0 +1,607 @@
+package semesterTimeTable.excel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+/**
+ * Zip output stream for workbook files, which compresses the parts with a
+ * {@link CompressionPolicy} and writes them with constant memory.
+ *
+ * The compressed data of an entry is written as soon as it is available and
+ * the CRC and the sizes follow the data in a data descriptor, like
+ * {@link java.util.zip.ZipOutputStream} does. So an entry is never buffered as
+ * a whole. On a single processor the data is deflated sequentially by one
+ * deflater. On more processors the data is split into chunks, which are
+ * deflated as tasks of the common fork-join pool, while the next chunks are
+ * written. The chunks are deflated with the end of the previous chunk as
+ * dictionary and flushed to a byte boundary, so their concatenation is one
+ * deflate stream of nearly the same size as a sequentially deflated stream.
+ * The deflated chunks are written in their order, as soon as the oldest task
+ * is done, and only a few tasks are running at once.
+ *
+ * The stream writes the zip format itself instead of using the methods of its
+ * super class, which need the whole entry for writing it in parallel. It can
+ * be given to Apache POI for writing a workbook, because Apache POI uses a
+ * given zip output stream instead of creating its own one. The parts are
+ * always deflated, {@link CompressionPolicy#STORE} writes uncompressed deflate
+ * blocks, so no sizes are needed before the data.
+ */
+public class WorkbookZipOutputStream extends ZipArchiveOutputStream {
+
+	/** Size of the chunks, which are deflated in parallel */
+	private final static int CHUNK_SIZE = 128 * 1024;
+
+	/** Size of the dictionary of a chunk (the window size of deflate) */
+	private final static int DICTIONARY_SIZE = 32 * 1024;
+
+	/** Size of the buffer for the output of the sequential deflater */
+	private final static int BUFFER_SIZE = 8 * 1024;
+
+	/** Signature of a local file header */
+	private final static int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+
+	/** Signature of a data descriptor */
+	private final static int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+
+	/** Signature of a central directory file header */
+	private final static int CENTRAL_FILE_HEADER_SIGNATURE = 0x02014b50;
+
+	/** Signature of the end of the central directory */
+	private final static int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+	/** Zip version 2.0, which is needed for deflate and data descriptors */
+	private final static int VERSION = 20;
+
+	/** Flag of an entry, whose CRC and sizes follow its data */
+	private final static int DATA_DESCRIPTOR_FLAG = 1 << 3;
+
+	/** Flag of an entry, whose name is encoded in UTF-8 */
+	private final static int UTF8_FLAG = 1 << 11;
+
+	/** Largest size or offset without zip64 extensions */
+	private final static long MAX_SIZE = 0xFFFFFFFFL;
+
+	/** Largest number of entries without zip64 extensions */
+	private final static int MAX_ENTRIES = 0xFFFF;
+
+	/** The output stream for the zip file */
+	private final OutputStream outputStream;
+
+	/** The policy for compressing the entries */
+	private final CompressionPolicy compressionPolicy;
+
+	/** True if the chunks are deflated in parallel */
+	private final boolean parallel;
+
+	/** Maximum number of deflating chunks of an entry */
+	private final int maxDeflateTasks;
+
+	/** The central directory headers of the written entries */
+	private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+
+	/** Number of the written entries */
+	private int entryCount;
+
+	/** Number of the written bytes */
+	private long offset;
+
+	/** True if the central directory was written */
+	private boolean finished;
+
+	/** The entry, whose data is written, or null */
+	private ZipArchiveEntry entry;
+
+	/** The offset of the local file header of the entry */
+	private long entryOffset;
+
+	/** The checksum of the data of the entry */
+	private final CRC32 crc = new CRC32();
+
+	/** Number of bytes of the data of the entry */
+	private long size;
+
+	/** Number of bytes of the compressed data of the entry */
+	private long compressedSize;
+
+	/** The deflater of the sequentially deflated entries or null */
+	private final Deflater deflater;
+
+	/** The buffer for the output of the sequential deflater or null */
+	private final byte[] buffer;
+
+	/** The chunk, which is filled with the data of the entry */
+	private byte[] chunk;
+
+	/** Number of bytes in the chunk */
+	private int chunkLength;
+
+	/** The previous chunk of the entry, whose end is the dictionary of the chunk */
+	private byte[] previousChunk;
+
+	/** The tasks deflating the chunks of the entry in the order of the chunks */
+	private final Deque<ForkJoinTask<byte[]>> deflateTasks = new ArrayDeque<ForkJoinTask<byte[]>>();
+
+	/**
+	 * Creates a zip output stream with the given compression policy.
+	 * 
+	 * @param outputStream      The output stream for the zip file
+	 * @param compressionPolicy The policy for compressing the entries
+	 */
+	public WorkbookZipOutputStream(OutputStream outputStream, CompressionPolicy compressionPolicy) {
+		this(outputStream, compressionPolicy, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a zip output stream with the given compression policy, which
+	 * deflates in parallel, if the given number of processors is greater than one.
+	 * Data without compression is always written sequentially.
+	 * 
+	 * @param outputStream      The output stream for the zip file
+	 * @param compressionPolicy The policy for compressing the entries
+	 * @param processors        The number of processors for deflating
+	 */
+	public WorkbookZipOutputStream(OutputStream outputStream, CompressionPolicy compressionPolicy, int processors) {
+		super(outputStream);
+		this.outputStream = outputStream;
+		this.compressionPolicy = compressionPolicy;
+		this.parallel = processors > 1 && compressionPolicy != CompressionPolicy.STORE;
+		this.maxDeflateTasks = 2 * processors;
+		this.deflater = this.parallel ? null : new Deflater(compressionPolicy.getLevel(), true);
+		this.buffer = this.parallel ? null : new byte[WorkbookZipOutputStream.BUFFER_SIZE];
+	}
+
+	/**
+	 * Returns the policy for compressing the entries.
+	 * 
+	 * @return The compression policy
+	 */
+	public CompressionPolicy getCompressionPolicy() {
+		return this.compressionPolicy;
+	}
+
+	/**
+	 * Checks if the entries are deflated in parallel.
+	 * 
+	 * @return True if the chunks are deflated in parallel, otherwise false
+	 */
+	public boolean isParallel() {
+		return this.parallel;
+	}
+
+	/**
+	 * Starts a new deflated entry by writing its local file header. The CRC and
+	 * the sizes are written after its data.
+	 * 
+	 * @param archiveEntry The entry, which must be a zip entry
+	 * @throws IOException If the previous entry was not closed or writing failed
+	 */
+	@Override
+	public void putArchiveEntry(ArchiveEntry archiveEntry) throws IOException {
+		this.checkNoEntry();
+		this.entry = (ZipArchiveEntry) archiveEntry;
+		this.entry.setMethod(ZipEntry.DEFLATED);
+		if (this.entry.getTime() == -1) {
+			this.entry.setTime(System.currentTimeMillis());
+		}
+		this.entryOffset = this.offset;
+		this.writeLocalFileHeader(this.entry, WorkbookZipOutputStream.DATA_DESCRIPTOR_FLAG);
+		this.crc.reset();
+		this.size = 0;
+		this.compressedSize = 0;
+		if (this.parallel) {
+			this.chunk = new byte[WorkbookZipOutputStream.CHUNK_SIZE];
+			this.chunkLength = 0;
+			this.previousChunk = null;
+		} else {
+			this.deflater.reset();
+		}
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (this.entry == null) {
+			throw new IOException("No entry was started");
+		}
+		this.crc.update(bytes, offset, length);
+		this.size += length;
+		if (!this.parallel) {
+			this.deflater.setInput(bytes, offset, length);
+			while (!this.deflater.needsInput()) {
+				this.writeDeflaterOutput();
+			}
+			return;
+		}
+		while (length > 0) {
+			int count = Math.min(length, this.chunk.length - this.chunkLength);
+			System.arraycopy(bytes, offset, this.chunk, this.chunkLength, count);
+			this.chunkLength += count;
+			offset += count;
+			length -= count;
+			if (this.chunkLength == this.chunk.length) {
+				this.submitChunk(false);
+				this.chunk = new byte[WorkbookZipOutputStream.CHUNK_SIZE];
+				this.chunkLength = 0;
+			}
+		}
+	}
+
+	/**
+	 * Closes the entry by writing the rest of its compressed data and its data
+	 * descriptor.
+	 * 
+	 * @throws IOException If writing the entry failed
+	 */
+	@Override
+	public void closeArchiveEntry() throws IOException {
+		if (this.entry == null) {
+			throw new IOException("No entry was started");
+		}
+		if (this.parallel) {
+			this.submitChunk(true);
+			while (!this.deflateTasks.isEmpty()) {
+				this.writeDeflatedChunk(this.deflateTasks.poll().join());
+			}
+			this.chunk = null;
+			this.previousChunk = null;
+		} else {
+			this.deflater.finish();
+			while (!this.deflater.finished()) {
+				this.writeDeflaterOutput();
+			}
+		}
+		ZipArchiveEntry entry = this.entry;
+		this.entry = null;
+		entry.setCrc(this.crc.getValue());
+		entry.setSize(this.size);
+		entry.setCompressedSize(this.compressedSize);
+		WorkbookZipOutputStream.checkSize(entry, this.size);
+		WorkbookZipOutputStream.checkSize(entry, this.compressedSize);
+
+		byte[] dataDescriptor = new byte[16];
+		WorkbookZipOutputStream.putInt(dataDescriptor, 0, WorkbookZipOutputStream.DATA_DESCRIPTOR_SIGNATURE);
+		WorkbookZipOutputStream.putInt(dataDescriptor, 4, entry.getCrc());
+		WorkbookZipOutputStream.putInt(dataDescriptor, 8, entry.getCompressedSize());
+		WorkbookZipOutputStream.putInt(dataDescriptor, 12, entry.getSize());
+		this.writeRaw(dataDescriptor, 0, dataDescriptor.length);
+		this.addCentralFileHeader(entry, WorkbookZipOutputStream.DATA_DESCRIPTOR_FLAG);
+	}
+
+	/**
+	 * Adds an entry with its already compressed data (e.g. from another zip file).
+	 * The method, the CRC and the sizes of the entry must be set.
+	 * 
+	 * @param entry     The entry
+	 * @param rawStream The stream of the compressed data
+	 * @throws IOException If the entry has no CRC or sizes or writing failed
+	 */
+	@Override
+	public void addRawArchiveEntry(ZipArchiveEntry entry, InputStream rawStream) throws IOException {
+		this.checkNoEntry();
+		if (entry.getCrc() == -1 || entry.getSize() == ArchiveEntry.SIZE_UNKNOWN
+				|| entry.getCompressedSize() == ArchiveEntry.SIZE_UNKNOWN) {
+			throw new IOException("The raw entry " + entry.getName() + " has no CRC or sizes");
+		}
+		ZipArchiveEntry rawEntry = new ZipArchiveEntry(entry.getName());
+		rawEntry.setMethod(entry.getMethod());
+		rawEntry.setTime(entry.getTime() == -1 ? System.currentTimeMillis() : entry.getTime());
+		rawEntry.setCrc(entry.getCrc());
+		rawEntry.setSize(entry.getSize());
+		rawEntry.setCompressedSize(entry.getCompressedSize());
+		WorkbookZipOutputStream.checkSize(rawEntry, rawEntry.getSize());
+		WorkbookZipOutputStream.checkSize(rawEntry, rawEntry.getCompressedSize());
+
+		this.entryOffset = this.offset;
+		this.writeLocalFileHeader(rawEntry, 0);
+		byte[] buffer = new byte[WorkbookZipOutputStream.BUFFER_SIZE];
+		long copied = 0;
+		int count;
+		while ((count = rawStream.read(buffer)) >= 0) {
+			this.writeRaw(buffer, 0, count);
+			copied += count;
+		}
+		if (copied != rawEntry.getCompressedSize()) {
+			throw new IOException("The raw entry " + entry.getName() + " has " + copied + " instead of "
+					+ rawEntry.getCompressedSize() + " bytes");
+		}
+		this.addCentralFileHeader(rawEntry, 0);
+	}
+
+	/**
+	 * Writes the central directory. The output stream is not closed.
+	 * 
+	 * @throws IOException If an entry was not closed or writing failed
+	 */
+	@Override
+	public void finish() throws IOException {
+		this.checkNoEntry();
+		if (this.finished) {
+			return;
+		}
+		if (this.entryCount > WorkbookZipOutputStream.MAX_ENTRIES) {
+			throw new IOException("The zip file has more than " + WorkbookZipOutputStream.MAX_ENTRIES + " entries");
+		}
+		long centralDirectoryOffset = this.offset;
+		byte[] centralDirectory = this.centralDirectory.toByteArray();
+		this.writeRaw(centralDirectory, 0, centralDirectory.length);
+		if (this.offset > WorkbookZipOutputStream.MAX_SIZE) {
+			throw new IOException("The zip file is larger than 4 GB");
+		}
+
+		byte[] end = new byte[22];
+		WorkbookZipOutputStream.putInt(end, 0, WorkbookZipOutputStream.END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+		WorkbookZipOutputStream.putShort(end, 8, this.entryCount);
+		WorkbookZipOutputStream.putShort(end, 10, this.entryCount);
+		WorkbookZipOutputStream.putInt(end, 12, centralDirectory.length);
+		WorkbookZipOutputStream.putInt(end, 16, centralDirectoryOffset);
+		this.writeRaw(end, 0, end.length);
+		this.finished = true;
+		if (this.deflater != null) {
+			this.deflater.end();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		this.outputStream.flush();
+	}
+
+	/**
+	 * Finishes the zip file, if it was not finished, and closes the output stream.
+	 * 
+	 * @throws IOException If finishing or closing failed
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (!this.finished) {
+				this.finish();
+			}
+		} finally {
+			this.outputStream.close();
+		}
+	}
+
+	/**
+	 * Writes the available output of the sequential deflater.
+	 * 
+	 * @throws IOException If writing failed
+	 */
+	private void writeDeflaterOutput() throws IOException {
+		int count = this.deflater.deflate(this.buffer);
+		this.writeRaw(this.buffer, 0, count);
+		this.compressedSize += count;
+	}
+
+	/**
+	 * Writes the given deflated chunk of the entry.
+	 * 
+	 * @param deflatedChunk The deflated chunk
+	 * @throws IOException If writing failed
+	 */
+	private void writeDeflatedChunk(byte[] deflatedChunk) throws IOException {
+		this.writeRaw(deflatedChunk, 0, deflatedChunk.length);
+		this.compressedSize += deflatedChunk.length;
+	}
+
+	/**
+	 * Submits a task deflating the current chunk. The end of the previous chunk is
+	 * used as dictionary of the chunk. The deflated chunks of the done tasks at the
+	 * head of the queue are written, and if too many tasks are running, the oldest
+	 * task is waited for.
+	 * 
+	 * @param last True if the chunk is the last chunk of the entry
+	 * @throws IOException If writing a deflated chunk failed
+	 */
+	private void submitChunk(boolean last) throws IOException {
+		byte[] chunk = this.chunk;
+		int chunkLength = this.chunkLength;
+		int level = this.compressionPolicy.getLevel();
+		byte[] previousChunk = this.previousChunk;
+		byte[] dictionary = previousChunk == null ? null
+				: Arrays.copyOfRange(previousChunk, previousChunk.length - WorkbookZipOutputStream.DICTIONARY_SIZE,
+						previousChunk.length);
+		this.previousChunk = chunk;
+		ForkJoinTask<byte[]> deflateTask = ForkJoinTask
+				.adapt(() -> WorkbookZipOutputStream.deflate(chunk, chunkLength, dictionary, level, last));
+		if (last && this.deflateTasks.isEmpty()) {
+			// A small entry is deflated directly, because a task would not run in
+			// parallel to anything
+			deflateTask.invoke();
+		} else {
+			ForkJoinPool.commonPool().execute(deflateTask);
+		}
+		this.deflateTasks.add(deflateTask);
+		while (!this.deflateTasks.isEmpty() && (this.deflateTasks.peek().isDone()
+				|| this.deflateTasks.size() > this.maxDeflateTasks)) {
+			this.writeDeflatedChunk(this.deflateTasks.poll().join());
+		}
+	}
+
+	/**
+	 * Writes the local file header of the given entry.
+	 * 
+	 * @param entry The entry
+	 * @param flags The general purpose flags except the UTF-8 flag
+	 * @throws IOException If writing failed
+	 */
+	private void writeLocalFileHeader(ZipArchiveEntry entry, int flags) throws IOException {
+		byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+		boolean dataDescriptor = (flags & WorkbookZipOutputStream.DATA_DESCRIPTOR_FLAG) != 0;
+		byte[] header = new byte[30 + name.length];
+		WorkbookZipOutputStream.putInt(header, 0, WorkbookZipOutputStream.LOCAL_FILE_HEADER_SIGNATURE);
+		WorkbookZipOutputStream.putShort(header, 4, WorkbookZipOutputStream.VERSION);
+		WorkbookZipOutputStream.putShort(header, 6, flags | WorkbookZipOutputStream.UTF8_FLAG);
+		WorkbookZipOutputStream.putShort(header, 8, entry.getMethod());
+		WorkbookZipOutputStream.putInt(header, 10, WorkbookZipOutputStream.toDosTime(entry.getTime()));
+		if (!dataDescriptor) {
+			WorkbookZipOutputStream.putInt(header, 14, entry.getCrc());
+			WorkbookZipOutputStream.putInt(header, 18, entry.getCompressedSize());
+			WorkbookZipOutputStream.putInt(header, 22, entry.getSize());
+		}
+		WorkbookZipOutputStream.putShort(header, 26, name.length);
+		System.arraycopy(name, 0, header, 30, name.length);
+		this.writeRaw(header, 0, header.length);
+	}
+
+	/**
+	 * Adds the central directory file header of the given written entry.
+	 * 
+	 * @param entry The entry with its CRC and sizes
+	 * @param flags The general purpose flags except the UTF-8 flag
+	 * @throws IOException If the entry starts after 4 GB
+	 */
+	private void addCentralFileHeader(ZipArchiveEntry entry, int flags) throws IOException {
+		WorkbookZipOutputStream.checkSize(entry, this.entryOffset);
+		byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+		byte[] header = new byte[46 + name.length];
+		WorkbookZipOutputStream.putInt(header, 0, WorkbookZipOutputStream.CENTRAL_FILE_HEADER_SIGNATURE);
+		WorkbookZipOutputStream.putShort(header, 4, WorkbookZipOutputStream.VERSION);
+		WorkbookZipOutputStream.putShort(header, 6, WorkbookZipOutputStream.VERSION);
+		WorkbookZipOutputStream.putShort(header, 8, flags | WorkbookZipOutputStream.UTF8_FLAG);
+		WorkbookZipOutputStream.putShort(header, 10, entry.getMethod());
+		WorkbookZipOutputStream.putInt(header, 12, WorkbookZipOutputStream.toDosTime(entry.getTime()));
+		WorkbookZipOutputStream.putInt(header, 16, entry.getCrc());
+		WorkbookZipOutputStream.putInt(header, 20, entry.getCompressedSize());
+		WorkbookZipOutputStream.putInt(header, 24, entry.getSize());
+		WorkbookZipOutputStream.putShort(header, 28, name.length);
+		WorkbookZipOutputStream.putInt(header, 42, this.entryOffset);
+		System.arraycopy(name, 0, header, 46, name.length);
+		this.centralDirectory.write(header, 0, header.length);
+		this.entryCount++;
+	}
+
+	/**
+	 * Writes the given bytes into the output stream.
+	 * 
+	 * @param bytes  The bytes
+	 * @param offset The offset of the first byte
+	 * @param length The number of bytes
+	 * @throws IOException If writing failed
+	 */
+	private void writeRaw(byte[] bytes, int offset, int length) throws IOException {
+		this.outputStream.write(bytes, offset, length);
+		this.offset += length;
+	}
+
+	/**
+	 * Checks that no entry is written.
+	 * 
+	 * @throws IOException If an entry was not closed
+	 */
+	private void checkNoEntry() throws IOException {
+		if (this.entry != null) {
+			throw new IOException("The entry " + this.entry.getName() + " was not closed");
+		}
+	}
+
+	/**
+	 * Checks that the given size or offset of the given entry needs no zip64
+	 * extensions.
+	 * 
+	 * @param entry The entry
+	 * @param size  The size or offset
+	 * @throws IOException If the size or offset is larger than 4 GB
+	 */
+	private static void checkSize(ZipArchiveEntry entry, long size) throws IOException {
+		if (size > WorkbookZipOutputStream.MAX_SIZE) {
+			throw new IOException("The entry " + entry.getName() + " is larger than 4 GB");
+		}
+	}
+
+	/**
+	 * Returns the MS-DOS date and time of the given time in the local time zone.
+	 * 
+	 * @param time The time in milliseconds
+	 * @return The MS-DOS time in the lower and the MS-DOS date in the upper 16 bits
+	 */
+	private static long toDosTime(long time) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		int year = calendar.get(Calendar.YEAR);
+		if (year < 1980) {
+			return (1 << 21) | (1 << 16);
+		}
+		return ((long) (year - 1980) << 25) | ((calendar.get(Calendar.MONTH) + 1) << 21)
+				| (calendar.get(Calendar.DAY_OF_MONTH) << 16) | (calendar.get(Calendar.HOUR_OF_DAY) << 11)
+				| (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+	}
+
+	/**
+	 * Puts the lower two bytes of the given value in little endian order.
+	 * 
+	 * @param bytes  The target bytes
+	 * @param offset The offset of the value
+	 * @param value  The value
+	 */
+	private static void putShort(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) value;
+		bytes[offset + 1] = (byte) (value >>> 8);
+	}
+
+	/**
+	 * Puts the lower four bytes of the given value in little endian order.
+	 * 
+	 * @param bytes  The target bytes
+	 * @param offset The offset of the value
+	 * @param value  The value
+	 */
+	private static void putInt(byte[] bytes, int offset, long value) {
+		WorkbookZipOutputStream.putShort(bytes, offset, (int) value);
+		WorkbookZipOutputStream.putShort(bytes, offset + 2, (int) (value >>> 16));
+	}
+
+	/**
+	 * Deflates the given chunk without zlib header. If the chunk is not the last
+	 * chunk, the deflated data is flushed to a byte boundary, so the next chunk
+	 * can be appended.
+	 * 
+	 * @param chunk       The chunk
+	 * @param chunkLength The number of bytes of the chunk
+	 * @param dictionary  The end of the previous chunk or null
+	 * @param level       The level of the deflater
+	 * @param last        True if the chunk is the last chunk of the entry
+	 * @return The deflated chunk
+	 */
+	private static byte[] deflate(byte[] chunk, int chunkLength, byte[] dictionary, int level, boolean last) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			if (dictionary != null) {
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(chunk, 0, chunkLength);
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream(chunkLength / 4 + 64);
+			byte[] buffer = new byte[WorkbookZipOutputStream.BUFFER_SIZE];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					outputStream.write(buffer, 0, deflater.deflate(buffer));
+				}
+			} else {
+				int count;
+				do {
+					count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					outputStream.write(buffer, 0, count);
+				} while (count == buffer.length);
+			}
+			return outputStream.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+}
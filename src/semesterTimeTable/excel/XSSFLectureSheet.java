@@ -0,0 +1,95 @@
+package semesterTimeTable.excel;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+
+/**
+ * Lecture sheet, which changes the sheet of a workbook of Apache POI.
+ */
+public class XSSFLectureSheet implements LectureSheet {
+
+	/** The sheet of the workbook */
+	private final XSSFSheet sheet;
+
+	/** The last fetched row, so consecutive cells of a row fetch the row once */
+	private XSSFRow row;
+
+	/**
+	 * Creates a lecture sheet, which changes the given sheet.
+	 * 
+	 * @param sheet The sheet of the workbook
+	 */
+	public XSSFLectureSheet(XSSFSheet sheet) {
+		this.sheet = sheet;
+	}
+
+	/**
+	 * Returns the sheet of the workbook.
+	 * 
+	 * @return The sheet
+	 */
+	public XSSFSheet getSheet() {
+		return this.sheet;
+	}
+
+	@Override
+	public List<CellRangeAddress> getMergedRegions() {
+		return this.sheet.getMergedRegions();
+	}
+
+	@Override
+	public void addMergedRegion(CellRangeAddress cellRange) {
+		this.sheet.addMergedRegion(cellRange);
+	}
+
+	@Override
+	public void addMergedRegionUnsafe(CellRangeAddress cellRange) {
+		this.sheet.addMergedRegionUnsafe(cellRange);
+	}
+
+	@Override
+	public void removeMergedRegions(Predicate<CellRangeAddress> filter) {
+		ApachePOIWrapper.removeMergedRegions(this.sheet, filter);
+	}
+
+	@Override
+	public void setCellBlank(int rowNum, int columnNum, short cellStyleIndex) {
+		ApachePOIWrapper.resetCell(this.getCell(rowNum, columnNum), cellStyleIndex);
+	}
+
+	@Override
+	public void setCellValue(int rowNum, int columnNum, XSSFRichTextString value, XSSFCellStyle cellStyle) {
+		XSSFCell cell = this.getCell(rowNum, columnNum);
+		cell.setCellStyle(cellStyle);
+		cell.setCellValue(value);
+	}
+
+	@Override
+	public void setCellValue(int rowNum, int columnNum, Calendar value) {
+		this.getCell(rowNum, columnNum).setCellValue(value);
+	}
+
+	/**
+	 * Returns the given cell of the sheet.
+	 * 
+	 * @param rowNum    The (0 based) row number of the cell
+	 * @param columnNum The (0 based) column number of the cell
+	 * @return The cell
+	 */
+	private XSSFCell getCell(int rowNum, int columnNum) {
+		XSSFRow row = this.row;
+		if (row == null || row.getRowNum() != rowNum) {
+			row = this.sheet.getRow(rowNum);
+			this.row = row;
+		}
+		return row.getCell(columnNum);
+	}
+}
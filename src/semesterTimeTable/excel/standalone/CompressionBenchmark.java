@@ -0,0 +1,258 @@
+package semesterTimeTable.excel.standalone;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import semesterTimeTable.excel.ApachePOIWrapper;
+import semesterTimeTable.excel.CompressionPolicy;
+import semesterTimeTable.excel.Output;
+import semesterTimeTable.excel.WorkbookZipOutputStream;
+
+/**
+ * Measures the throughput and the file size of the compression policies for
+ * the parts of a large workbook.
+ *
+ * The parts of a generated workbook are written once without compression. Then
+ * they are compressed by {@link java.util.zip.ZipOutputStream} with the default
+ * level as reference and by {@link WorkbookZipOutputStream} with each
+ * compression policy, sequentially and with all processors. Only the
+ * compression is measured, not the writing of the XML of the parts.
+ */
+public class CompressionBenchmark {
+
+	/** Default number of rows of the generated sheet */
+	private static final int DEFAULT_ROWS = 60000;
+
+	/** Default number of measured runs of each variant */
+	private static final int DEFAULT_RUNS = 5;
+
+	/** Number of columns of the generated sheet */
+	private static final int COLUMNS = 8;
+
+	/** The object for printing the results */
+	private Output output;
+
+	/** The uncompressed parts of the workbook by their zip entry name */
+	private Map<String, byte[]> parts;
+
+	/** The number of bytes of all uncompressed parts */
+	private long rawSize;
+
+	/**
+	 * Creates a benchmark for a generated workbook with the given number of rows.
+	 * 
+	 * @param output The object for printing the results
+	 * @param rows   The number of rows of the generated sheet
+	 * @throws IOException If writing the workbook failed
+	 */
+	public CompressionBenchmark(Output output, int rows) throws IOException {
+		this.output = output;
+		this.parts = CompressionBenchmark.readParts(CompressionBenchmark.createWorkbook(rows));
+		for (byte[] part : this.parts.values()) {
+			this.rawSize += part.length;
+		}
+	}
+
+	/**
+	 * Runs all variants after a warm up and prints the time, the throughput and
+	 * the size of each variant.
+	 * 
+	 * @param runs The number of measured runs of each variant
+	 * @throws IOException If compressing the parts failed
+	 */
+	public void run(int runs) throws IOException {
+		int processors = Runtime.getRuntime().availableProcessors();
+		this.output.println("Parts: " + this.parts.size() + ", uncompressed " + this.rawSize / 1024 + " KB, "
+				+ processors + " processors, " + runs + " runs");
+		for (int warmUp = 0; warmUp < 2; warmUp++) {
+			this.compressWithZipOutputStream();
+			for (CompressionPolicy policy : CompressionPolicy.values()) {
+				this.compress(policy, 1);
+				this.compress(policy, processors);
+			}
+		}
+
+		this.measure("java.util.zip default", runs, () -> this.compressWithZipOutputStream());
+		for (CompressionPolicy policy : CompressionPolicy.values()) {
+			this.measure(policy + " sequential", runs, () -> this.compress(policy, 1));
+			if (processors > 1 && policy != CompressionPolicy.STORE) {
+				this.measure(policy + " parallel", runs, () -> this.compress(policy, processors));
+			}
+		}
+	}
+
+	/**
+	 * Measures the given variant and prints its average time, its throughput and
+	 * its size.
+	 * 
+	 * @param name    The name of the variant
+	 * @param runs    The number of measured runs
+	 * @param variant The variant, which returns the size of the zip file
+	 * @throws IOException If compressing the parts failed
+	 */
+	private void measure(String name, int runs, Variant variant) throws IOException {
+		long size = 0;
+		long start = System.nanoTime();
+		for (int run = 0; run < runs; run++) {
+			size = variant.compress();
+		}
+		long millis = Math.max(1, (System.nanoTime() - start) / 1000000 / runs);
+		this.output.println(String.format("%-24s %6d ms %6d MB/s %8d KB", name, millis,
+				this.rawSize * 1000 / millis / (1024 * 1024), size / 1024));
+	}
+
+	/**
+	 * Compresses the parts with the zip output stream of java.util.zip.
+	 * 
+	 * @return The size of the zip file
+	 * @throws IOException If compressing the parts failed
+	 */
+	private long compressWithZipOutputStream() throws IOException {
+		CountingOutputStream countingOutputStream = new CountingOutputStream();
+		try (ZipOutputStream zipOutputStream = new ZipOutputStream(countingOutputStream)) {
+			for (Entry<String, byte[]> part : this.parts.entrySet()) {
+				zipOutputStream.putNextEntry(new ZipEntry(part.getKey()));
+				zipOutputStream.write(part.getValue());
+				zipOutputStream.closeEntry();
+			}
+		}
+		return countingOutputStream.count;
+	}
+
+	/**
+	 * Compresses the parts with the workbook zip output stream.
+	 * 
+	 * @param policy     The compression policy
+	 * @param processors The number of processors for deflating
+	 * @return The size of the zip file
+	 * @throws IOException If compressing the parts failed
+	 */
+	private long compress(CompressionPolicy policy, int processors) throws IOException {
+		CountingOutputStream countingOutputStream = new CountingOutputStream();
+		try (WorkbookZipOutputStream zipOutputStream = new WorkbookZipOutputStream(countingOutputStream, policy,
+				processors)) {
+			for (Entry<String, byte[]> part : this.parts.entrySet()) {
+				zipOutputStream.putArchiveEntry(new ZipArchiveEntry(part.getKey()));
+				zipOutputStream.write(part.getValue());
+				zipOutputStream.closeArchiveEntry();
+			}
+		}
+		return countingOutputStream.count;
+	}
+
+	/**
+	 * Creates a workbook with one sheet of the given number of rows, which contain
+	 * texts and numbers.
+	 * 
+	 * @param rows The number of rows
+	 * @return The workbook
+	 */
+	private static XSSFWorkbook createWorkbook(int rows) {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		XSSFSheet sheet = workbook.createSheet();
+		Random random = new Random(1);
+		for (int rowNum = 0; rowNum < rows; rowNum++) {
+			XSSFRow row = sheet.createRow(rowNum);
+			for (int columnNum = 0; columnNum < CompressionBenchmark.COLUMNS; columnNum++) {
+				if (columnNum % 2 == 0) {
+					row.createCell(columnNum).setCellValue("Lecture " + random.nextInt(5000));
+				} else {
+					row.createCell(columnNum).setCellValue(random.nextInt(100000));
+				}
+			}
+		}
+		return workbook;
+	}
+
+	/**
+	 * Writes the given workbook without compression and reads its parts.
+	 * 
+	 * @param workbook The workbook
+	 * @return The map of the zip entry names and the content of the parts
+	 * @throws IOException If writing the workbook failed
+	 */
+	private static Map<String, byte[]> readParts(XSSFWorkbook workbook) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		ApachePOIWrapper.saveWorkbookToStream(workbook, stream, CompressionPolicy.STORE);
+		workbook.close();
+		Map<String, byte[]> parts = new LinkedHashMap<String, byte[]>();
+		try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(stream.toByteArray()))) {
+			ZipEntry entry;
+			byte[] buffer = new byte[8192];
+			while ((entry = zipInputStream.getNextEntry()) != null) {
+				ByteArrayOutputStream part = new ByteArrayOutputStream();
+				int length;
+				while ((length = zipInputStream.read(buffer)) > 0) {
+					part.write(buffer, 0, length);
+				}
+				parts.put(entry.getName(), part.toByteArray());
+			}
+		}
+		return parts;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args The optional number of rows of the generated sheet and the
+	 *             optional number of measured runs
+	 */
+	public static void main(String[] args) {
+		try {
+			int rows = args.length > 0 ? Integer.parseInt(args[0]) : CompressionBenchmark.DEFAULT_ROWS;
+			int runs = args.length > 1 ? Integer.parseInt(args[1]) : CompressionBenchmark.DEFAULT_RUNS;
+			new CompressionBenchmark(message -> System.out.println(message), rows).run(runs);
+		} catch (NumberFormatException e) {
+			System.err.println("Usage: CompressionBenchmark [rows] [runs]");
+		} catch (IOException e) {
+			System.err.println("The benchmark failed: " + e.toString());
+		}
+	}
+
+	/**
+	 * Variant of compressing the parts.
+	 */
+	private interface Variant {
+
+		/**
+		 * Compresses the parts.
+		 * 
+		 * @return The size of the zip file
+		 * @throws IOException If compressing the parts failed
+		 */
+		long compress() throws IOException;
+	}
+
+	/**
+	 * Output stream, which only counts the written bytes.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		/** Number of the written bytes */
+		private long count;
+
+		@Override
+		public void write(int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			this.count += length;
+		}
+	}
+}
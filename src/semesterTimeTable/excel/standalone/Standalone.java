@@ -15,8 +15,9 @@ import java.util.Map;
 import java.util.TimeZone;
 import java.util.Map.Entry;
 
-import semesterTimeTable.excel.Lecture;
+import semesterTimeTable.excel.LectureTable;
 import semesterTimeTable.excel.LectureWorkbook;
+import semesterTimeTable.excel.StringDictionary;
 
 public class Standalone {
 
@@ -82,11 +83,12 @@ public class Standalone {
 				standaloneFrame.println("Converting CSV file to excel file...");
 				LectureWorkbook lectureWorkbook = new LectureWorkbook(path, standaloneFrame);
 
-				List<Lecture> lectures = this.getLecturesFromRawLectureList(rawLectureList);
+				LectureTable lectures = this.getLecturesFromRawLectureList(rawLectureList);
+				standaloneFrame.println("Read " + lectures.size() + " lectures, " + lectures.getDictionary());
 
 				if ((lectureWorkbook.getQuarterStartDate() == null || lectureWorkbook.getQuarterEndDate() == null)
 						&& lectures.size() > 0) {
-					Calendar dateInQuarter = (Calendar) lectures.get(0).getStartDate().clone();
+					Calendar dateInQuarter = lectures.getStartDate(0);
 					lectureWorkbook.setBorderDatesWithDateInQuarter(dateInQuarter);
 				}
 
@@ -184,18 +186,20 @@ public class Standalone {
 	}
 
 	/**
-	 * Converts a raw list of lectures into a list of lectures.
+	 * Converts a raw list of lectures into a table of lectures.
 	 * 
 	 * @param rawLectureList the raw list of lectures
-	 * @return A list of lectures
+	 * @return A table of lectures
 	 */
-	private List<Lecture> getLecturesFromRawLectureList(List<String[]> rawLectureList) {
+	private LectureTable getLecturesFromRawLectureList(List<String[]> rawLectureList) {
 
 		TimeZone timeZone = Standalone.TIME_ZONE;
 		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 		sdf.setTimeZone(timeZone);
 
-		List<Lecture> lectures = new ArrayList<Lecture>();
+		LectureTable lectures = new LectureTable(timeZone);
+		lectures.ensureCapacity(rawLectureList.size());
+		StringDictionary dictionary = lectures.getDictionary();
 
 		for (String[] row : rawLectureList) {
 			String lectureName = row[Standalone.LECTURE_NAME_POSITION];
@@ -223,7 +227,7 @@ public class Standalone {
 			String[] lectureResources = null;
 			String resourcesString = row[Standalone.LECTURE_RESOURCES_POSITION];
 			if (resourcesString != null) {
-				String[] resources = resourcesString.split(", ");
+				String[] resources = dictionary.split(resourcesString, ", ");
 				List<String> rooms = new ArrayList<String>();
 				for (String resource : resources) {
 					if (Standalone.resourceIsRoom(resource)) {
@@ -236,12 +240,10 @@ public class Standalone {
 			String[] lectureLecturers = null;
 			String lecturers = row[Standalone.LECTURE_LECTURERS_POSITION];
 			if (lecturers != null) {
-				lectureLecturers = lecturers.split(", ");
+				lectureLecturers = dictionary.split(lecturers, ", ");
 			}
 
-			Lecture lecture = new Lecture(lectureName, lectureStartDate, lectureEndDate, lectureResources,
-					lectureLecturers);
-			lectures.add(lecture);
+			lectures.add(lectureName, lectureStartDate, lectureEndDate, lectureResources, lectureLecturers);
 		}
 
 		return lectures;
@@ -0,0 +1,214 @@
+package semesterTimeTable.excel.standalone;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.stream.Stream;
+
+import semesterTimeTable.excel.Lecture;
+import semesterTimeTable.excel.LectureWorkbook;
+import semesterTimeTable.excel.Output;
+
+/**
+ * Measures the throughput of fresh exports (without an existing workbook file)
+ * written by Apache POI and written from the compiled template.
+ *
+ * Each export loads a new lecture workbook, sets the same generated lectures
+ * and writes the workbook into a stream, which only counts the bytes. The
+ * Apache POI path is forced by requesting the workbook of the lecture workbook
+ * before the lectures are set. Both paths use the same configuration, which is
+ * created in a temporary directory by the first export.
+ */
+public class TemplateBenchmark {
+
+	/** Default number of lectures of each export */
+	private static final int DEFAULT_LECTURES = 150;
+
+	/** Default number of measured exports of each path */
+	private static final int DEFAULT_EXPORTS = 100;
+
+	/** Number of exports of each path for the warm up */
+	private static final int WARM_UP_EXPORTS = 20;
+
+	/** Names of the generated lectures */
+	private static final String[] NAMES = new String[] { "Mathematik I", "Programmieren", "Klausur Mathematik",
+			"Datenbanken", "Theoretische Informatik", "BWL", "Englisch", "Recht" };
+
+	/** Lecturers of the generated lectures */
+	private static final String[] LECTURERS = new String[] { "Dr. Albrecht", "Prof. Dr. Berger", "Clausen",
+			"Dietrich" };
+
+	/** Rooms of the generated lectures */
+	private static final String[] ROOMS = new String[] { "A 1.01", "B 2.02", "C 3.03" };
+
+	/** Start minutes of the day of the generated lectures */
+	private static final int[] START_MINUTES = new int[] { 8 * 60, 9 * 60 + 45, 13 * 60, 14 * 60 + 45 };
+
+	/** The object for printing the results */
+	private Output output;
+
+	/** The lectures of each export */
+	private List<Lecture> lectures;
+
+	/**
+	 * Creates a benchmark for exports with the given number of generated
+	 * lectures.
+	 * 
+	 * @param output   The object for printing the results
+	 * @param lectures The number of lectures of each export
+	 */
+	public TemplateBenchmark(Output output, int lectures) {
+		this.output = output;
+		this.lectures = TemplateBenchmark.createLectures(lectures);
+	}
+
+	/**
+	 * Runs both paths after a warm up and prints the time, the throughput and the
+	 * size of the exports of each path and the speedup of the compiled template.
+	 * 
+	 * @param exports The number of measured exports of each path
+	 * @throws IOException If an export failed
+	 */
+	public void run(int exports) throws IOException {
+		Path configDirectory = Files.createTempDirectory("TemplateBenchmark");
+		try {
+			this.output.println(this.lectures.size() + " lectures per export, " + exports + " exports");
+			for (int warmUp = 0; warmUp < TemplateBenchmark.WARM_UP_EXPORTS; warmUp++) {
+				this.export(configDirectory, true);
+				this.export(configDirectory, false);
+			}
+
+			long poiMillis = this.measure("Apache POI", exports, configDirectory, true);
+			long templateMillis = this.measure("Compiled template", exports, configDirectory, false);
+			this.output.println(String.format("Speedup %.1fx", (double) poiMillis / templateMillis));
+		} finally {
+			try (Stream<Path> files = Files.list(configDirectory)) {
+				for (Object file : files.toArray()) {
+					Files.delete((Path) file);
+				}
+			}
+			Files.delete(configDirectory);
+		}
+	}
+
+	/**
+	 * Measures the given number of exports of the given path and prints their
+	 * time, their throughput and the size of an export.
+	 * 
+	 * @param name            The name of the path
+	 * @param exports         The number of measured exports
+	 * @param configDirectory The directory of the configuration
+	 * @param poi             True for the Apache POI path, false for the compiled
+	 *                        template
+	 * @return The time of all exports in milliseconds
+	 * @throws IOException If an export failed
+	 */
+	private long measure(String name, int exports, Path configDirectory, boolean poi) throws IOException {
+		long size = 0;
+		long start = System.nanoTime();
+		for (int export = 0; export < exports; export++) {
+			size = this.export(configDirectory, poi);
+		}
+		long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+		this.output.println(String.format("%-18s %6d ms %8.1f exports/s %6d KB", name, millis,
+				exports * 1000.0 / millis, size / 1024));
+		return millis;
+	}
+
+	/**
+	 * Exports the lectures into a fresh workbook.
+	 * 
+	 * @param configDirectory The directory of the configuration
+	 * @param poi             True for the Apache POI path, false for the compiled
+	 *                        template
+	 * @return The size of the workbook
+	 * @throws IOException If the export failed
+	 */
+	private long export(Path configDirectory, boolean poi) throws IOException {
+		LectureWorkbook lectureWorkbook = new LectureWorkbook((InputStream) null, configDirectory.toString(),
+				message -> {
+				});
+		if (poi) {
+			lectureWorkbook.getWorkbook();
+		}
+		if (lectureWorkbook.getQuarterStartDate() == null || lectureWorkbook.getQuarterEndDate() == null) {
+			lectureWorkbook.setBorderDatesWithDateInQuarter(this.lectures.get(0).getStartDate());
+		}
+		lectureWorkbook.setLectures(this.lectures);
+		CountingOutputStream countingOutputStream = new CountingOutputStream();
+		lectureWorkbook.save(countingOutputStream);
+		return countingOutputStream.count;
+	}
+
+	/**
+	 * Creates the given number of lectures in the quarter starting on 7 October
+	 * 2019.
+	 * 
+	 * @param count The number of lectures
+	 * @return The lectures
+	 */
+	private static List<Lecture> createLectures(int count) {
+		TimeZone timeZone = TimeZone.getTimeZone("Europe/Berlin");
+		Random random = new Random(1);
+		List<Lecture> lectures = new ArrayList<Lecture>(count);
+		for (int index = 0; index < count; index++) {
+			Calendar startDate = new GregorianCalendar(timeZone);
+			startDate.clear();
+			startDate.set(2019, Calendar.OCTOBER, 7);
+			startDate.add(Calendar.DAY_OF_MONTH, random.nextInt(84));
+			startDate.add(Calendar.MINUTE,
+					TemplateBenchmark.START_MINUTES[random.nextInt(TemplateBenchmark.START_MINUTES.length)]);
+			Calendar endDate = (Calendar) startDate.clone();
+			endDate.add(Calendar.MINUTE, 45 * (1 + random.nextInt(4)));
+			lectures.add(new Lecture(TemplateBenchmark.NAMES[random.nextInt(TemplateBenchmark.NAMES.length)],
+					startDate, endDate, TemplateBenchmark.ROOMS[random.nextInt(TemplateBenchmark.ROOMS.length)],
+					TemplateBenchmark.LECTURERS[random.nextInt(TemplateBenchmark.LECTURERS.length)]));
+		}
+		return lectures;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args The optional number of lectures of each export and the optional
+	 *             number of measured exports of each path
+	 */
+	public static void main(String[] args) {
+		try {
+			int lectures = args.length > 0 ? Integer.parseInt(args[0]) : TemplateBenchmark.DEFAULT_LECTURES;
+			int exports = args.length > 1 ? Integer.parseInt(args[1]) : TemplateBenchmark.DEFAULT_EXPORTS;
+			new TemplateBenchmark(message -> System.out.println(message), lectures).run(exports);
+		} catch (NumberFormatException e) {
+			System.err.println("Usage: TemplateBenchmark [lectures] [exports]");
+		} catch (IOException e) {
+			System.err.println("The benchmark failed: " + e.toString());
+		}
+	}
+
+	/**
+	 * Output stream, which only counts the written bytes.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		/** Number of the written bytes */
+		private long count;
+
+		@Override
+		public void write(int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			this.count += length;
+		}
+	}
+}
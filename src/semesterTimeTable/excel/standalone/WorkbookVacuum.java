@@ -0,0 +1,663 @@
+package semesterTimeTable.excel.standalone;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import semesterTimeTable.excel.ApachePOIWrapper;
+import semesterTimeTable.excel.Output;
+
+/**
+ * Compacts excel files, which contain duplicate or unused cell styles, fonts
+ * and shared strings.
+ *
+ * Duplicate fonts and cell styles are merged and all cell, row and column
+ * references in the worksheets are remapped onto the remaining cell styles.
+ * Fonts, cell styles and shared strings, which are not referenced anymore, are
+ * removed. All other parts of the file are copied unchanged.
+ */
+public class WorkbookVacuum {
+
+	/** Namespace of the spreadsheet elements */
+	private static final String NAMESPACE = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+	/** Zip entry name of the styles table */
+	private static final String STYLES_ENTRY = "xl/styles.xml";
+
+	/** Zip entry name of the shared strings table */
+	private static final String SHARED_STRINGS_ENTRY = "xl/sharedStrings.xml";
+
+	/** Prefix of the zip entry names of the worksheets */
+	private static final String WORKSHEET_ENTRY_PREFIX = "xl/worksheets/";
+
+	/** File extension for excel files */
+	private static final String FILE_EXTENSION = ".xlsx";
+
+	/** Number of loads of each version of a file for measuring the load time */
+	private static final int LOAD_RUNS = 2;
+
+	/** The object for printing the reports */
+	private Output output;
+
+	/**
+	 * Creates a vacuum, which prints the report of each compacted file to the given
+	 * output object.
+	 * 
+	 * @param output The object for printing the reports
+	 */
+	public WorkbookVacuum(Output output) {
+		this.output = output;
+	}
+
+	/**
+	 * Returns the object for printing the reports.
+	 * 
+	 * @return The object for printing the reports
+	 */
+	public Output getOutput() {
+		return this.output;
+	}
+
+	/**
+	 * Compacts the given excel file or all excel files in the given directory. The
+	 * files are replaced by their compacted versions.
+	 * 
+	 * @param file The excel file or directory
+	 * @throws IOException If reading or writing a file failed
+	 */
+	public void vacuumAll(File file) throws IOException {
+		if (file.isDirectory()) {
+			File[] files = file.listFiles();
+			if (files != null) {
+				Arrays.sort(files);
+				for (File child : files) {
+					if (child.isFile() && child.getName().toLowerCase().endsWith(WorkbookVacuum.FILE_EXTENSION)) {
+						this.vacuum(child);
+					}
+				}
+			}
+		} else {
+			this.vacuum(file);
+		}
+	}
+
+	/**
+	 * Compacts the given excel file and prints the sizes and load times before and
+	 * after compacting. The file is replaced by the compacted version.
+	 * 
+	 * @param file The excel file
+	 * @throws IOException If reading or writing the file failed
+	 */
+	public void vacuum(File file) throws IOException {
+		byte[] contentBefore = Files.readAllBytes(file.toPath());
+
+		Map<String, byte[]> entries = WorkbookVacuum.readZipEntries(contentBefore);
+		try {
+			WorkbookVacuum.compact(entries);
+		} catch (ParserConfigurationException | SAXException | TransformerException e) {
+			throw new IOException("Compacting the file \"" + file.getName() + "\" failed", e);
+		}
+		byte[] contentAfter = WorkbookVacuum.writeZipEntries(entries);
+
+		// Both versions are loaded alternately and the fastest load is taken, so the
+		// warm up of the JVM does not distort the comparison
+		int[] countsBefore = new int[3];
+		int[] countsAfter = new int[3];
+		long loadTimeBefore = Long.MAX_VALUE;
+		long loadTimeAfter = Long.MAX_VALUE;
+		for (int run = 0; run < WorkbookVacuum.LOAD_RUNS; run++) {
+			loadTimeBefore = Math.min(loadTimeBefore, WorkbookVacuum.measureLoadTime(contentBefore, countsBefore));
+			loadTimeAfter = Math.min(loadTimeAfter, WorkbookVacuum.measureLoadTime(contentAfter, countsAfter));
+		}
+
+		File tempFile = ApachePOIWrapper.createTempFile(file);
+		try {
+			ApachePOIWrapper.writeFile(tempFile, contentAfter);
+			ApachePOIWrapper.moveAtomically(tempFile, file);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+
+		this.getOutput().println("Compacted \"" + file.getPath() + "\": " + contentBefore.length + " -> "
+				+ contentAfter.length + " bytes, " + countsBefore[0] + " -> " + countsAfter[0] + " cell styles, "
+				+ countsBefore[1] + " -> " + countsAfter[1] + " fonts, " + countsBefore[2] + " -> " + countsAfter[2]
+				+ " shared strings, load time " + loadTimeBefore + " -> " + loadTimeAfter + " ms");
+	}
+
+	/**
+	 * Loads the given excel content and returns the time needed for loading. The
+	 * number of cell styles, fonts and unique shared strings of the workbook are
+	 * saved in the given array.
+	 * 
+	 * @param content The excel content
+	 * @param counts  The array for the number of cell styles, fonts and shared
+	 *                strings
+	 * @return The load time in milliseconds
+	 * @throws IOException If reading the content failed
+	 */
+	private static long measureLoadTime(byte[] content, int[] counts) throws IOException {
+		long startTime = System.nanoTime();
+		XSSFWorkbook workbook = ApachePOIWrapper.loadWorkbookFromInputStream(new ByteArrayInputStream(content));
+		long loadTime = (System.nanoTime() - startTime) / 1000000;
+		try {
+			counts[0] = workbook.getNumCellStyles();
+			counts[1] = workbook.getNumberOfFontsAsInt();
+			counts[2] = workbook.getSharedStringSource() == null ? 0
+					: workbook.getSharedStringSource().getUniqueCount();
+		} finally {
+			workbook.close();
+		}
+		return loadTime;
+	}
+
+	/**
+	 * Compacts the styles table, the shared strings table and the worksheets of
+	 * the given zip entries. The compacted parts replace the original parts in the
+	 * map.
+	 * 
+	 * @param entries The map of the zip entry names and their content
+	 * @throws ParserConfigurationException If no XML parser is available
+	 * @throws SAXException                 If parsing a part failed
+	 * @throws IOException                  If reading a part failed
+	 * @throws TransformerException         If serializing a part failed
+	 */
+	private static void compact(Map<String, byte[]> entries)
+			throws ParserConfigurationException, SAXException, IOException, TransformerException {
+		Map<String, Document> worksheets = new LinkedHashMap<String, Document>();
+		for (Entry<String, byte[]> entry : entries.entrySet()) {
+			String name = entry.getKey();
+			if (name.startsWith(WorkbookVacuum.WORKSHEET_ENTRY_PREFIX) && name.endsWith(".xml")
+					&& name.indexOf('/', WorkbookVacuum.WORKSHEET_ENTRY_PREFIX.length()) < 0) {
+				worksheets.put(name, WorkbookVacuum.parse(entry.getValue()));
+			}
+		}
+
+		byte[] styles = entries.get(WorkbookVacuum.STYLES_ENTRY);
+		if (styles != null) {
+			Document stylesDocument = WorkbookVacuum.parse(styles);
+			WorkbookVacuum.compactStyles(stylesDocument, worksheets.values());
+			entries.put(WorkbookVacuum.STYLES_ENTRY, WorkbookVacuum.serialize(stylesDocument));
+		}
+
+		byte[] sharedStrings = entries.get(WorkbookVacuum.SHARED_STRINGS_ENTRY);
+		if (sharedStrings != null) {
+			Document sharedStringsDocument = WorkbookVacuum.parse(sharedStrings);
+			WorkbookVacuum.compactSharedStrings(sharedStringsDocument, worksheets.values());
+			entries.put(WorkbookVacuum.SHARED_STRINGS_ENTRY, WorkbookVacuum.serialize(sharedStringsDocument));
+		}
+
+		for (Entry<String, Document> worksheet : worksheets.entrySet()) {
+			entries.put(worksheet.getKey(), WorkbookVacuum.serialize(worksheet.getValue()));
+		}
+	}
+
+	/**
+	 * Merges duplicate fonts and cell styles and removes unused fonts and cell
+	 * styles. The style references of the worksheets are remapped.
+	 * 
+	 * The first font and the first cell style are always kept at their position,
+	 * because they are the defaults of the workbook. Named cell styles are not
+	 * changed.
+	 * 
+	 * @param stylesDocument The styles table
+	 * @param worksheets     The worksheets referencing the styles table
+	 */
+	private static void compactStyles(Document stylesDocument, Iterable<Document> worksheets) {
+		Element fontsElement = WorkbookVacuum.getFirstChild(stylesDocument.getDocumentElement(), "fonts");
+		Element cellXfsElement = WorkbookVacuum.getFirstChild(stylesDocument.getDocumentElement(), "cellXfs");
+		Element cellStyleXfsElement = WorkbookVacuum.getFirstChild(stylesDocument.getDocumentElement(),
+				"cellStyleXfs");
+		if (fontsElement == null || cellXfsElement == null) {
+			return;
+		}
+		List<Element> fonts = WorkbookVacuum.getChildren(fontsElement, "font");
+		List<Element> cellXfs = WorkbookVacuum.getChildren(cellXfsElement, "xf");
+		List<Element> cellStyleXfs = cellStyleXfsElement == null ? new ArrayList<Element>()
+				: WorkbookVacuum.getChildren(cellStyleXfsElement, "xf");
+
+		// Mark all cell styles referenced by cells, rows and columns
+		boolean[] usedCellXfs = new boolean[cellXfs.size()];
+		if (usedCellXfs.length > 0) {
+			usedCellXfs[0] = true;
+		}
+		for (Document worksheet : worksheets) {
+			WorkbookVacuum.markUsedIndices(worksheet, "c", "s", usedCellXfs);
+			WorkbookVacuum.markUsedIndices(worksheet, "row", "s", usedCellXfs);
+			WorkbookVacuum.markUsedIndices(worksheet, "col", "style", usedCellXfs);
+		}
+
+		// Mark all fonts referenced by used cell styles and named cell styles
+		boolean[] usedFonts = new boolean[fonts.size()];
+		if (usedFonts.length > 0) {
+			usedFonts[0] = true;
+		}
+		for (int index = 0; index < cellXfs.size(); index++) {
+			if (usedCellXfs[index]) {
+				WorkbookVacuum.markUsedIndex(cellXfs.get(index), "fontId", usedFonts);
+			}
+		}
+		for (Element cellStyleXf : cellStyleXfs) {
+			WorkbookVacuum.markUsedIndex(cellStyleXf, "fontId", usedFonts);
+		}
+
+		int[] fontMapping = WorkbookVacuum.removeDuplicates(fontsElement, fonts, usedFonts);
+		for (Element cellStyleXf : cellStyleXfs) {
+			WorkbookVacuum.remapIndex(cellStyleXf, "fontId", fontMapping);
+		}
+		for (int index = 0; index < cellXfs.size(); index++) {
+			if (usedCellXfs[index]) {
+				WorkbookVacuum.remapIndex(cellXfs.get(index), "fontId", fontMapping);
+			}
+		}
+
+		int[] cellXfMapping = WorkbookVacuum.removeDuplicates(cellXfsElement, cellXfs, usedCellXfs);
+		for (Document worksheet : worksheets) {
+			WorkbookVacuum.remapIndices(worksheet, "c", "s", cellXfMapping);
+			WorkbookVacuum.remapIndices(worksheet, "row", "s", cellXfMapping);
+			WorkbookVacuum.remapIndices(worksheet, "col", "style", cellXfMapping);
+		}
+	}
+
+	/**
+	 * Merges duplicate shared strings and removes unused shared strings. The
+	 * shared string references of the worksheets are remapped.
+	 * 
+	 * @param sharedStringsDocument The shared strings table
+	 * @param worksheets            The worksheets referencing the shared strings
+	 *                              table
+	 */
+	private static void compactSharedStrings(Document sharedStringsDocument, Iterable<Document> worksheets) {
+		Element sharedStringsElement = sharedStringsDocument.getDocumentElement();
+		List<Element> sharedStrings = WorkbookVacuum.getChildren(sharedStringsElement, "si");
+
+		int count = 0;
+		boolean[] usedSharedStrings = new boolean[sharedStrings.size()];
+		for (Document worksheet : worksheets) {
+			for (Element value : WorkbookVacuum.getSharedStringValues(worksheet)) {
+				int index = WorkbookVacuum.parseIndex(value.getTextContent());
+				if (index >= 0 && index < usedSharedStrings.length) {
+					usedSharedStrings[index] = true;
+				}
+				count++;
+			}
+		}
+
+		int[] sharedStringMapping = WorkbookVacuum.removeDuplicates(sharedStringsElement, sharedStrings,
+				usedSharedStrings);
+		for (Document worksheet : worksheets) {
+			for (Element value : WorkbookVacuum.getSharedStringValues(worksheet)) {
+				int index = WorkbookVacuum.parseIndex(value.getTextContent());
+				if (index >= 0 && index < sharedStringMapping.length && sharedStringMapping[index] >= 0) {
+					value.setTextContent(Integer.toString(sharedStringMapping[index]));
+				}
+			}
+		}
+		sharedStringsElement.setAttribute("count", Integer.toString(count));
+		sharedStringsElement.setAttribute("uniqueCount",
+				Integer.toString(WorkbookVacuum.getChildren(sharedStringsElement, "si").size()));
+	}
+
+	/**
+	 * Removes all unused and duplicate children of the given parent element and
+	 * updates the count attribute of the parent element. Duplicates are merged into
+	 * their first occurrence.
+	 * 
+	 * @param parent   The parent element
+	 * @param children The children of the parent element
+	 * @param used     The flags, if a child is used
+	 * @return The new index of each old index, or -1 if the child was removed
+	 */
+	private static int[] removeDuplicates(Element parent, List<Element> children, boolean[] used) {
+		int[] mapping = new int[children.size()];
+		Map<String, Integer> newIndices = new HashMap<String, Integer>();
+		int newIndex = 0;
+		for (int index = 0; index < children.size(); index++) {
+			Element child = children.get(index);
+			if (used[index]) {
+				String key = WorkbookVacuum.getElementKey(child);
+				Integer existingIndex = newIndices.get(key);
+				if (existingIndex == null) {
+					newIndices.put(key, newIndex);
+					mapping[index] = newIndex;
+					newIndex++;
+					continue;
+				}
+				mapping[index] = existingIndex;
+			} else {
+				mapping[index] = -1;
+			}
+			parent.removeChild(child);
+		}
+		if (parent.hasAttribute("count")) {
+			parent.setAttribute("count", Integer.toString(newIndex));
+		}
+		return mapping;
+	}
+
+	/**
+	 * Returns a key of the given element, which is equal for equal elements. The
+	 * key contains the name, the attributes (in sorted order) and all children of
+	 * the element.
+	 * 
+	 * @param element The element
+	 * @return The key of the element
+	 */
+	private static String getElementKey(Element element) {
+		StringBuilder key = new StringBuilder();
+		WorkbookVacuum.appendNodeKey(key, element);
+		return key.toString();
+	}
+
+	/**
+	 * Appends the key of the given node to the given string builder.
+	 * 
+	 * @param key  The string builder for the key
+	 * @param node The node
+	 */
+	private static void appendNodeKey(StringBuilder key, Node node) {
+		if (node.getNodeType() == Node.ELEMENT_NODE) {
+			key.append('<').append(node.getNamespaceURI()).append(':').append(node.getLocalName());
+			NamedNodeMap attributes = node.getAttributes();
+			List<String> sortedAttributes = new ArrayList<String>();
+			for (int index = 0; index < attributes.getLength(); index++) {
+				Attr attribute = (Attr) attributes.item(index);
+				if (!"http://www.w3.org/2000/xmlns/".equals(attribute.getNamespaceURI())) {
+					sortedAttributes.add(attribute.getNamespaceURI() + ":" + attribute.getLocalName() + "=\""
+							+ attribute.getValue() + "\"");
+				}
+			}
+			sortedAttributes.sort(null);
+			for (String attribute : sortedAttributes) {
+				key.append(' ').append(attribute);
+			}
+			key.append('>');
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+				WorkbookVacuum.appendNodeKey(key, child);
+			}
+			key.append("</>");
+		} else if (node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE) {
+			key.append(node.getNodeValue().replace("<", "&lt;"));
+		}
+	}
+
+	/**
+	 * Marks the index in the given attribute of all elements with the given name
+	 * as used.
+	 * 
+	 * @param document      The document containing the elements
+	 * @param elementName   The name of the elements
+	 * @param attributeName The name of the attribute containing the index
+	 * @param used          The flags, if an index is used
+	 */
+	private static void markUsedIndices(Document document, String elementName, String attributeName,
+			boolean[] used) {
+		NodeList elements = document.getElementsByTagNameNS(WorkbookVacuum.NAMESPACE, elementName);
+		for (int index = 0; index < elements.getLength(); index++) {
+			WorkbookVacuum.markUsedIndex((Element) elements.item(index), attributeName, used);
+		}
+	}
+
+	/**
+	 * Marks the index in the given attribute of the given element as used.
+	 * 
+	 * @param element       The element
+	 * @param attributeName The name of the attribute containing the index
+	 * @param used          The flags, if an index is used
+	 */
+	private static void markUsedIndex(Element element, String attributeName, boolean[] used) {
+		if (element.hasAttribute(attributeName)) {
+			int index = WorkbookVacuum.parseIndex(element.getAttribute(attributeName));
+			if (index >= 0 && index < used.length) {
+				used[index] = true;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the index in the given attribute of all elements with the given
+	 * name by its new index.
+	 * 
+	 * @param document      The document containing the elements
+	 * @param elementName   The name of the elements
+	 * @param attributeName The name of the attribute containing the index
+	 * @param mapping       The new index of each old index
+	 */
+	private static void remapIndices(Document document, String elementName, String attributeName, int[] mapping) {
+		NodeList elements = document.getElementsByTagNameNS(WorkbookVacuum.NAMESPACE, elementName);
+		for (int index = 0; index < elements.getLength(); index++) {
+			WorkbookVacuum.remapIndex((Element) elements.item(index), attributeName, mapping);
+		}
+	}
+
+	/**
+	 * Replaces the index in the given attribute of the given element by its new
+	 * index.
+	 * 
+	 * @param element       The element
+	 * @param attributeName The name of the attribute containing the index
+	 * @param mapping       The new index of each old index
+	 */
+	private static void remapIndex(Element element, String attributeName, int[] mapping) {
+		if (element.hasAttribute(attributeName)) {
+			int index = WorkbookVacuum.parseIndex(element.getAttribute(attributeName));
+			if (index >= 0 && index < mapping.length && mapping[index] >= 0) {
+				element.setAttribute(attributeName, Integer.toString(mapping[index]));
+			}
+		}
+	}
+
+	/**
+	 * Returns the value elements of all cells of the given worksheet, which
+	 * reference a shared string.
+	 * 
+	 * @param worksheet The worksheet
+	 * @return The list of value elements
+	 */
+	private static List<Element> getSharedStringValues(Document worksheet) {
+		List<Element> values = new ArrayList<Element>();
+		NodeList cells = worksheet.getElementsByTagNameNS(WorkbookVacuum.NAMESPACE, "c");
+		for (int index = 0; index < cells.getLength(); index++) {
+			Element cell = (Element) cells.item(index);
+			if ("s".equals(cell.getAttribute("t"))) {
+				Element value = WorkbookVacuum.getFirstChild(cell, "v");
+				if (value != null) {
+					values.add(value);
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Parses an index. Returns -1, if the given string is no valid index.
+	 * 
+	 * @param value The string to parse
+	 * @return The index or -1
+	 */
+	private static int parseIndex(String value) {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the first child element with the given name.
+	 * 
+	 * @param parent The parent element
+	 * @param name   The local name of the child element
+	 * @return The first child element or null, if no child element has the name
+	 */
+	private static Element getFirstChild(Element parent, String name) {
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE && name.equals(child.getLocalName())) {
+				return (Element) child;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns all child elements with the given name.
+	 * 
+	 * @param parent The parent element
+	 * @param name   The local name of the child elements
+	 * @return The list of child elements
+	 */
+	private static List<Element> getChildren(Element parent, String name) {
+		List<Element> children = new ArrayList<Element>();
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE && name.equals(child.getLocalName())) {
+				children.add((Element) child);
+			}
+		}
+		return children;
+	}
+
+	/**
+	 * Parses the given XML content.
+	 * 
+	 * @param content The XML content
+	 * @return The XML document
+	 * @throws ParserConfigurationException If no XML parser is available
+	 * @throws SAXException                 If parsing the content failed
+	 * @throws IOException                  If reading the content failed
+	 */
+	private static Document parse(byte[] content) throws ParserConfigurationException, SAXException, IOException {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		factory.setExpandEntityReferences(false);
+		factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+		return factory.newDocumentBuilder().parse(new ByteArrayInputStream(content));
+	}
+
+	/**
+	 * Serializes the given XML document.
+	 * 
+	 * @param document The XML document
+	 * @return The XML content
+	 * @throws TransformerException If serializing the document failed
+	 */
+	private static byte[] serialize(Document document) throws TransformerException {
+		document.setXmlStandalone(true);
+		Transformer transformer = TransformerFactory.newInstance().newTransformer();
+		transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		transformer.transform(new DOMSource(document), new StreamResult(stream));
+		return stream.toByteArray();
+	}
+
+	/**
+	 * Reads all entries of the given zip content in their original order.
+	 * 
+	 * @param content The zip content
+	 * @return The map of the zip entry names and their content
+	 * @throws IOException If reading the content failed
+	 */
+	private static Map<String, byte[]> readZipEntries(byte[] content) throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+		ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(content));
+		try {
+			ZipEntry entry;
+			while ((entry = zipInputStream.getNextEntry()) != null) {
+				if (!entry.isDirectory()) {
+					entries.put(entry.getName(), WorkbookVacuum.readAll(zipInputStream));
+				}
+			}
+		} finally {
+			zipInputStream.close();
+		}
+		return entries;
+	}
+
+	/**
+	 * Writes the given entries into a zip content.
+	 * 
+	 * @param entries The map of the zip entry names and their content
+	 * @return The zip content
+	 * @throws IOException If writing the zip content failed
+	 */
+	private static byte[] writeZipEntries(Map<String, byte[]> entries) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		ZipOutputStream zipOutputStream = new ZipOutputStream(stream);
+		try {
+			for (Entry<String, byte[]> entry : entries.entrySet()) {
+				zipOutputStream.putNextEntry(new ZipEntry(entry.getKey()));
+				zipOutputStream.write(entry.getValue());
+				zipOutputStream.closeEntry();
+			}
+		} finally {
+			zipOutputStream.close();
+		}
+		return stream.toByteArray();
+	}
+
+	/**
+	 * Reads the remaining content of the given input stream.
+	 * 
+	 * @param inputStream The input stream
+	 * @return The content
+	 * @throws IOException If reading the input stream failed
+	 */
+	private static byte[] readAll(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int length;
+		while ((length = inputStream.read(buffer)) > 0) {
+			stream.write(buffer, 0, length);
+		}
+		return stream.toByteArray();
+	}
+
+	/**
+	 * Compacts all given excel files and all excel files in the given directories.
+	 * 
+	 * @param args The excel files and directories
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Usage: WorkbookVacuum <excel file or directory>...");
+			return;
+		}
+		WorkbookVacuum workbookVacuum = new WorkbookVacuum(message -> System.out.println(message));
+		for (String arg : args) {
+			try {
+				workbookVacuum.vacuumAll(new File(arg));
+			} catch (IOException e) {
+				System.err.println("Compacting \"" + arg + "\" failed: " + e.toString());
+			}
+		}
+	}
+}